@@ -0,0 +1,123 @@
+package net.jxta.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Hashtable;
+
+import net.jxta.document.Advertisement;
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.Element;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.XMLDocument;
+import net.jxta.endpoint.ByteArrayMessageElement;
+import net.jxta.endpoint.Message;
+import net.jxta.endpoint.StringMessageElement;
+import net.jxta.endpoint.WireFormatMessageFactory;
+import net.jxta.id.ID;
+import net.jxta.id.IDFactory;
+import net.jxta.impl.protocol.TCPAdv;
+import net.jxta.peergroup.PeerGroupID;
+import net.jxta.pipe.PipeService;
+import net.jxta.protocol.PeerAdvertisement;
+import net.jxta.protocol.PeerGroupAdvertisement;
+import net.jxta.protocol.PipeAdvertisement;
+
+/**
+ * Builds the messages and documents used by the benchmarks.
+ */
+final class Fixtures {
+
+    static final String NAMESPACE = "jxta";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a message similar to those sent by the core services: a few
+     * small string elements followed by the given number of payload elements.
+     *
+     * @param elementCount the number of payload elements.
+     * @param elementSize the size of each payload element in bytes.
+     * @return the message.
+     */
+    static Message newMessage(int elementCount, int elementSize) {
+        Message message = new Message();
+
+        message.addMessageElement(NAMESPACE, new StringMessageElement("EndpointSourceAddress", "tcp://192.168.1.10:9701", null));
+        message.addMessageElement(NAMESPACE, new StringMessageElement("EndpointDestinationAddress", "jxta://uuid-59616261646162614E50472050325033E7E1335996F44E38BD66B16349BB1F1E03/EndpointService:jxta-NetGroup/PipeService/urn:jxta:uuid-59616261646162614E50472050325033E7E1335996F44E38BD66B16349BB1F1E04", null));
+
+        for (int eachElement = 0; eachElement < elementCount; eachElement++) {
+            byte[] payload = new byte[elementSize];
+
+            Arrays.fill(payload, (byte) eachElement);
+            message.addMessageElement(NAMESPACE, new ByteArrayMessageElement("Payload" + eachElement, MimeMediaType.AOS, payload, null));
+        }
+
+        return message;
+    }
+
+    /**
+     * Serializes a message in the default binary wire format.
+     *
+     * @param message the message.
+     * @return the serialized message.
+     */
+    static byte[] toWireBytes(Message message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        WireFormatMessageFactory.toWireExternal(message, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null).sendToStream(out);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates the XML text of one of the advertisements most commonly
+     * exchanged by peers.
+     *
+     * @param kind one of "peer", "group" or "pipe".
+     * @return the advertisement as XML text.
+     */
+    @SuppressWarnings("unchecked")
+    static String newAdvertisementXml(String kind) {
+        PeerGroupID groupID = IDFactory.newPeerGroupID();
+        Advertisement adv;
+
+        if ("peer".equals(kind)) {
+            PeerAdvertisement peerAdv = (PeerAdvertisement) AdvertisementFactory.newAdvertisement(PeerAdvertisement.getAdvertisementType());
+            TCPAdv tcpAdv = (TCPAdv) AdvertisementFactory.newAdvertisement(TCPAdv.getAdvertisementType());
+            Hashtable<ID, Element> params = new Hashtable<ID, Element>();
+
+            tcpAdv.setProtocol("tcp");
+            tcpAdv.setPort(9701);
+            tcpAdv.setServer("192.168.1.10:9701");
+            params.put(IDFactory.newModuleClassID(), (XMLDocument) tcpAdv.getDocument(MimeMediaType.XMLUTF8));
+
+            peerAdv.setPeerID(IDFactory.newPeerID(groupID));
+            peerAdv.setPeerGroupID(groupID);
+            peerAdv.setName("Benchmark Peer");
+            peerAdv.setDescription("A peer created for benchmarking");
+            peerAdv.setServiceParams(params);
+            adv = peerAdv;
+        } else if ("group".equals(kind)) {
+            PeerGroupAdvertisement groupAdv = (PeerGroupAdvertisement) AdvertisementFactory.newAdvertisement(PeerGroupAdvertisement.getAdvertisementType());
+
+            groupAdv.setPeerGroupID(groupID);
+            groupAdv.setModuleSpecID(IDFactory.newModuleSpecID(IDFactory.newModuleClassID()));
+            groupAdv.setName("Benchmark Group");
+            groupAdv.setDescription("A group created for benchmarking");
+            adv = groupAdv;
+        } else if ("pipe".equals(kind)) {
+            PipeAdvertisement pipeAdv = (PipeAdvertisement) AdvertisementFactory.newAdvertisement(PipeAdvertisement.getAdvertisementType());
+
+            pipeAdv.setPipeID(IDFactory.newPipeID(groupID));
+            pipeAdv.setType(PipeService.UnicastType);
+            pipeAdv.setName("Benchmark Pipe");
+            adv = pipeAdv;
+        } else {
+            throw new IllegalArgumentException("Unknown advertisement kind : " + kind);
+        }
+
+        return adv.getDocument(MimeMediaType.XMLUTF8).toString();
+    }
+}
@@ -0,0 +1,90 @@
+package net.jxta.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import net.jxta.document.Advertisement;
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.TextElement;
+import net.jxta.document.XMLDocument;
+import net.jxta.impl.document.LiteXMLDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of typical advertisements with {@link LiteXMLDocument}, alone and
+ * followed by the work done with the result during discovery: visiting
+ * every element or building the advertisement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LiteXMLElementBenchmark {
+
+    @Param({"peer", "group", "pipe"})
+    public String advertisement;
+
+    private String xml;
+
+    @Setup
+    public void setUp() {
+        xml = Fixtures.newAdvertisementXml(advertisement);
+    }
+
+    private XMLDocument parse() throws IOException {
+        return (XMLDocument) LiteXMLDocument.INSTANTIATOR.newInstance(MimeMediaType.XMLUTF8, new StringReader(xml));
+    }
+
+    @Benchmark
+    public XMLDocument parseDocument() throws IOException {
+        return parse();
+    }
+
+    @Benchmark
+    public int parseAndVisit() throws IOException {
+        return visit(parse());
+    }
+
+    @Benchmark
+    public Advertisement parseAdvertisement() throws IOException {
+        return AdvertisementFactory.newAdvertisement(parse());
+    }
+
+    @Benchmark
+    public String parseAndSerialize() throws IOException {
+        return parse().toString();
+    }
+
+    private static int visit(TextElement<?> element) {
+        int result = element.getName().length();
+        String value = element.getTextValue();
+
+        if (null != value) {
+            result += value.length();
+        }
+
+        Enumeration<?> children = element.getChildren();
+
+        while (children.hasMoreElements()) {
+            result += visit((TextElement<?>) children.nextElement());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package net.jxta.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import net.jxta.endpoint.Message;
+import net.jxta.endpoint.MessageElement;
+import net.jxta.endpoint.StringMessageElement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding, iterating and looking up the elements of a {@link Message}, as done
+ * by every service which builds or handles a message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MessageBenchmark {
+
+    @Param({"4", "32"})
+    public int elementCount;
+
+    private StringMessageElement[] elements;
+    private Message message;
+    private String lastName;
+
+    @Setup
+    public void setUp() {
+        elements = new StringMessageElement[elementCount];
+
+        for (int eachElement = 0; eachElement < elementCount; eachElement++) {
+            elements[eachElement] = new StringMessageElement("Element" + eachElement, "value " + eachElement, null);
+        }
+
+        message = addElements();
+        lastName = elements[elementCount - 1].getElementName();
+    }
+
+    @Benchmark
+    public Message addElements() {
+        Message result = new Message();
+
+        for (StringMessageElement element : elements) {
+            result.addMessageElement(Fixtures.NAMESPACE, element);
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public long iterateElements() {
+        long result = 0;
+        Iterator<MessageElement> eachElement = message.getMessageElements();
+
+        while (eachElement.hasNext()) {
+            result += eachElement.next().getByteLength();
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public MessageElement getElementByName() {
+        return message.getMessageElement(Fixtures.NAMESPACE, lastName);
+    }
+
+    @Benchmark
+    public Message copy() {
+        return message.clone();
+    }
+}
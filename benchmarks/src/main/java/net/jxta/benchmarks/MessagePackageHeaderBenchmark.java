@@ -0,0 +1,90 @@
+package net.jxta.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import net.jxta.endpoint.WireFormatMessageFactory;
+import net.jxta.impl.endpoint.msgframing.MessagePackageHeader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and writing of the message package header which frames each
+ * message sent over a stream transport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MessagePackageHeaderBenchmark {
+
+    private MessagePackageHeader header;
+    private byte[] headerBytes;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        header = newHeader();
+        out = new ByteArrayOutputStream();
+        header.sendToStream(out);
+        headerBytes = out.toByteArray();
+    }
+
+    private static MessagePackageHeader newHeader() {
+        MessagePackageHeader result = new MessagePackageHeader();
+
+        // the headers set by the TCP transport for each message
+        result.setContentTypeHeader(WireFormatMessageFactory.DEFAULT_WIRE_MIME);
+        result.setContentLengthHeader(16384);
+
+        return result;
+    }
+
+    @Benchmark
+    public MessagePackageHeader build() {
+        return newHeader();
+    }
+
+    @Benchmark
+    public int writeToStream() throws IOException {
+        out.reset();
+        header.sendToStream(out);
+
+        return out.size();
+    }
+
+    @Benchmark
+    public ByteBuffer writeToBuffer() {
+        return header.getByteBuffer();
+    }
+
+    @Benchmark
+    public MessagePackageHeader readFromStream() throws IOException {
+        return new MessagePackageHeader(new ByteArrayInputStream(headerBytes));
+    }
+
+    @Benchmark
+    public MessagePackageHeader readFromBuffer() throws IOException {
+        MessagePackageHeader result = new MessagePackageHeader();
+
+        if (!result.readHeader(ByteBuffer.wrap(headerBytes))) {
+            throw new IllegalStateException("Incomplete header");
+        }
+
+        return result;
+    }
+}
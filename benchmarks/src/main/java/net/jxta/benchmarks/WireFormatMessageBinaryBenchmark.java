@@ -0,0 +1,99 @@
+package net.jxta.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import net.jxta.endpoint.Message;
+import net.jxta.endpoint.WireFormatMessageFactory;
+import net.jxta.impl.endpoint.WireFormatMessageBinary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding and decoding of messages in the binary wire format
+ * ({@code application/x-jxta-msg}), through both the stream and the
+ * byte buffer paths. Messages are encoded as the transports encode them,
+ * with {@link WireFormatMessageFactory#toWireExternal}.
+ * <p/>
+ * The benchmarks have no peer group with which to sign messages, so they
+ * are run with CBJX signing disabled and measure the serialization alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dnet.jxta.endpoint.WireFormatMessageFactory.CBJX_DISABLE=true")
+public class WireFormatMessageBinaryBenchmark {
+
+    @Param({"1", "8"})
+    public int elementCount;
+
+    @Param({"128", "16384"})
+    public int elementSize;
+
+    private Message message;
+    private byte[] wireBytes;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        message = Fixtures.newMessage(elementCount, elementSize);
+        wireBytes = Fixtures.toWireBytes(message);
+        out = new ByteArrayOutputStream(wireBytes.length);
+    }
+
+    @Benchmark
+    public int encodeToStream() throws IOException {
+        out.reset();
+        WireFormatMessageFactory.toWireExternal(message, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null).sendToStream(out);
+
+        return out.size();
+    }
+
+    @Benchmark
+    public ByteBuffer[] encodeToBuffers() {
+        return WireFormatMessageFactory.toWireExternal(message, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null).getByteBuffers();
+    }
+
+    @Benchmark
+    public long encodedLength() {
+        return WireFormatMessageFactory.toWireExternal(message, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null).getByteLength();
+    }
+
+    @Benchmark
+    public Message decodeFromStream() throws IOException {
+        return WireFormatMessageFactory.fromWire(new ByteArrayInputStream(wireBytes), WireFormatMessageFactory.DEFAULT_WIRE_MIME, null);
+    }
+
+    @Benchmark
+    public Message decodeFromBuffer() throws IOException {
+        return WireFormatMessageFactory.fromBuffer(ByteBuffer.wrap(wireBytes), WireFormatMessageFactory.DEFAULT_WIRE_MIME, null);
+    }
+
+    @Benchmark
+    public Message decodeFromSharedBuffer() throws IOException {
+        return WireFormatMessageBinary.fromSharedBuffer(ByteBuffer.wrap(wireBytes), WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null);
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) throws IOException {
+        out.reset();
+        WireFormatMessageFactory.toWireExternal(message, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, null).sendToStream(out);
+        blackhole.consume(WireFormatMessageFactory.fromBuffer(ByteBuffer.wrap(out.toByteArray()), WireFormatMessageFactory.DEFAULT_WIRE_MIME, null));
+    }
+}
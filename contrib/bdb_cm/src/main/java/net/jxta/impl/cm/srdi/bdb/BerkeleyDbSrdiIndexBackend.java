@@ -19,6 +19,7 @@ import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
 import net.jxta.peergroup.PeerGroupID;
+import net.jxta.protocol.SrdiMessage;
 
 import com.sleepycat.bind.tuple.LongBinding;
 import com.sleepycat.bind.tuple.TupleBinding;
@@ -148,6 +149,25 @@ public class BerkeleyDbSrdiIndexBackend implements SrdiAPI {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The environment is not transactional, so the entries are written one after another; the database
+	 * uses deferred writes, so the batch is not written to disk record by record.
+	 */
+	public void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) throws IOException {
+		DatabaseEntry data = new DatabaseEntry();
+		try {
+			for(SrdiMessage.Entry entry : entries) {
+				DatabaseEntry key = new SrdiIndexKey(groupId, indexName, primaryKey, entry.key, entry.value, pid).toDatabaseEntry();
+				LongBinding.longToEntry(TimeUtils.toAbsoluteTimeMillis(entry.expiration), data);
+				db.put(null, key, data);
+			}
+		} catch (DatabaseException e) {
+			throw new IOExceptionWrapper(e);
+		}
+	}
+
 	public void clear() throws IOException {
 		SrdiIndexKey searchKey = new SrdiIndexKey(groupId, indexName);
 		SrdiIndexKeyTupleBinding binding = new SrdiIndexKeyTupleBinding();
@@ -133,6 +133,15 @@ public class FileDocument implements Document {
         }
     }
 
+    /**
+     * Returns the file which backs this document.
+     *
+     * @return the file which backs this document.
+     */
+    public File getFile() {
+        return file;
+    }
+
     /**
      *  {@inheritDoc}
      **/
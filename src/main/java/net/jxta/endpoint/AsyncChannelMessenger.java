@@ -59,6 +59,9 @@ import net.jxta.peergroup.PeerGroupID;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
@@ -349,6 +352,10 @@ public abstract class AsyncChannelMessenger extends ChannelMessenger {
             resolPendingImpl();
         }
 
+        if (queued) {
+            queuedImpl();
+        }
+
         return queued;
     }
 
@@ -569,6 +576,40 @@ public abstract class AsyncChannelMessenger extends ChannelMessenger {
         return theMsg;
     }
 
+    /**
+     * Like {@link #peek()}, but returns up to {@code max} of the messages at
+     * the head of the queue, in the order they were queued. The messages
+     * remain in the queue until removed by {@link #poll(int)}.
+     *
+     * @param max the maximum number of messages to return.
+     * @return the pending messages or {@code null} if there are none.
+     */
+    protected List<PendingMessage> peek(int max) {
+
+        PendingMessage first = peek();
+
+        if (null == first) {
+            return null;
+        }
+
+        List<PendingMessage> result = new ArrayList<PendingMessage>(Math.min(max, queue.size()));
+
+        result.add(first);
+
+        synchronized (stateMachine) {
+            // The shared messenger is the only one to remove messages, so the
+            // head of the queue is still the message we peeked.
+            Iterator<PendingMessage> eachMsg = queue.iterator();
+
+            eachMsg.next();
+            while ((result.size() < max) && eachMsg.hasNext()) {
+                result.add(eachMsg.next());
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the number of elements in this collection.  If this collection
      * contains more than <tt>Integer.MAX_VALUE</tt> elements, returns
@@ -586,12 +627,25 @@ public abstract class AsyncChannelMessenger extends ChannelMessenger {
      * @return true if there are more messages after the one we removed.
      */
     protected boolean poll() {
+        return poll(1);
+    }
+
+    /**
+     * Several messages done. Update the saturated/etc state accordingly.
+     *
+     * @param count the number of messages to remove from the head of the
+     *              queue.
+     * @return true if there are more messages after the ones we removed.
+     */
+    protected boolean poll(int count) {
 
         boolean result;
         DeferredAction action;
 
         synchronized (stateMachine) {
-            queue.poll();
+            for (int eachMsg = 0; eachMsg < count; eachMsg++) {
+                queue.poll();
+            }
 
             if (queue.peek() == null) {
                 stateMachine.idleEvent();
@@ -653,4 +707,13 @@ public abstract class AsyncChannelMessenger extends ChannelMessenger {
      * ignore such calls.
      */
     protected abstract void resolPendingImpl();
+
+    /**
+     * This is invoked, without holding our lock, after a message has been
+     * added to the queue. Shared messengers which wait for messages to
+     * accumulate may use it to wake up. The default implementation does
+     * nothing.
+     */
+    protected void queuedImpl() {
+    }
 }
@@ -0,0 +1,42 @@
+package net.jxta.endpoint;
+
+import java.io.IOException;
+
+/**
+ * Thrown when sending a batch of messages fails part way through. The
+ * messages before the one which failed were sent, the others were not.
+ *
+ * @see ThreadedMessenger#sendMessagesBImpl(Message[], String[], String[])
+ */
+public class BatchSendException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of messages sent before the failure.
+     */
+    private final int sent;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param sent  The number of messages at the start of the batch which were sent.
+     *              The message at that index is the one which failed.
+     * @param cause The failure of that message.
+     */
+    public BatchSendException(int sent, Throwable cause) {
+        super("Failed sending message " + sent + " of batch");
+        this.sent = sent;
+        initCause(cause);
+    }
+
+    /**
+     * Returns the number of messages at the start of the batch which were
+     * sent. The message at that index is the one which failed.
+     *
+     * @return the number of messages sent.
+     */
+    public int getSent() {
+        return sent;
+    }
+}
@@ -97,6 +97,11 @@ public abstract class ChannelMessenger extends AbstractMessenger implements Mess
 
     protected String origServiceParam;
 
+    /**
+     * The base address with the default service and service parameter.
+     */
+    private final EndpointAddress channelAddress;
+
     /**
      * Figure out what the service string will be after mangling (if required)
      * and applying relevant defaults.
@@ -180,6 +185,19 @@ public abstract class ChannelMessenger extends AbstractMessenger implements Mess
         }
         this.origService = origService;
         this.origServiceParam = origServiceParam;
+        channelAddress = new EndpointAddress(baseAddress, origService, origServiceParam);
+    }
+
+    /**
+     * Returns the address of this channel: the network address messages go to,
+     * with the default service and service parameter of the channel. The same
+     * object is returned for the life of the channel, so it may be used as the
+     * key of a weak map of channels.
+     *
+     * @return the address of this channel
+     */
+    public EndpointAddress getChannelAddress() {
+        return channelAddress;
     }
 
     /**
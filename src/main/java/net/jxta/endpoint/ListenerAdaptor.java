@@ -55,6 +55,7 @@
  */
 package net.jxta.endpoint;
 
+import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.logging.Logging;
 import net.jxta.util.SimpleSelectable;
 import net.jxta.util.SimpleSelectable.IdentityReference;
@@ -127,6 +128,12 @@ public class ListenerAdaptor implements Runnable {
      */
     private final ThreadGroup threadGroup;
 
+    /**
+     * Creates the thread that does the work, or {@code null} for a plain
+     * daemon thread.
+     */
+    private final TaskManager taskManager;
+
     /**
      * Standard Constructor
      *
@@ -142,8 +149,21 @@ public class ListenerAdaptor implements Runnable {
      * @param executor the excutor to use for notification callback
      */
     public ListenerAdaptor(ThreadGroup threadGroup, Executor executor) {
+        this(threadGroup, executor, null);
+    }
+
+    /**
+     * Creates a ListenerAdaptor whose thread is created by a task manager.
+     *
+     * @param threadGroup The ThreadGroup in which this adaptor will run.
+     * @param executor the excutor to use for notification callback
+     * @param taskManager creates the thread of this adaptor, or {@code null}
+     * for a plain daemon thread
+     */
+    public ListenerAdaptor(ThreadGroup threadGroup, Executor executor, TaskManager taskManager) {
         this.executor = executor;
         this.threadGroup = threadGroup;
+        this.taskManager = taskManager;
     }
 
     /**
@@ -156,8 +176,12 @@ public class ListenerAdaptor implements Runnable {
             return;
         }
 
-        bgThread = new Thread(threadGroup, this, "Listener Adaptor");
-        bgThread.setDaemon(true);
+        if (taskManager != null) {
+            bgThread = taskManager.newThread(threadGroup, this, "Listener Adaptor");
+        } else {
+            bgThread = new Thread(threadGroup, this, "Listener Adaptor");
+            bgThread.setDaemon(true);
+        }
         bgThread.start();
     }
 
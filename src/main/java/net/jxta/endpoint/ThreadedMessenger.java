@@ -55,10 +55,12 @@
  */
 package net.jxta.endpoint;
 
+import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.logging.Logging;
 import net.jxta.peergroup.PeerGroupID;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.WeakHashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -97,6 +99,11 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
      */
     private PeerGroupID homeGroupID = null;
 
+    /**
+     * Creates the background thread, or {@code null} for a plain daemon thread.
+     */
+    private final TaskManager taskManager;
+
     /**
      * The duration in milliseconds which the background thread will remain
      * idle before quitting.
@@ -173,6 +180,42 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
      */
     private final ThreadedMessengerState stateMachine;
 
+    /**
+     * The maximum number of messages sent as a batch. Batching is disabled
+     * if this is 1.
+     */
+    private volatile int maxBatchMessages = 1;
+
+    /**
+     * The number of bytes after which no more messages are added to a batch.
+     */
+    private volatile long maxBatchBytes = Long.MAX_VALUE;
+
+    /**
+     * The duration in milliseconds for which the background thread may wait
+     * for more messages to be queued before sending an incomplete batch.
+     */
+    private volatile long maxBatchDelay = 0;
+
+    /**
+     * Lock on which the background thread waits for more messages to be
+     * queued while filling a batch.
+     */
+    private final Object batchLock = new Object();
+
+    /**
+     * {@code true} while the background thread is waiting on
+     * {@link #batchLock}.
+     */
+    private volatile boolean batchWaiting = false;
+
+    /**
+     * The number of messages still to be sent one at a time because a batch
+     * failed without telling which of its messages caused the failure. Only
+     * used by the background thread.
+     */
+    private int unbatchedSends = 0;
+
     /**
      * The implementation of channel messenger that getChannelMessenger returns:
      */
@@ -241,6 +284,17 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
             strongRefResolvingChannel(this);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void queuedImpl() {
+            if (batchWaiting) {
+                synchronized (batchLock) {
+                    batchLock.notifyAll();
+                }
+            }
+        }
     }
 
     /**
@@ -341,16 +395,66 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
      * @param channelQueueSize   The queue size that channels should have.
      */
     public ThreadedMessenger(PeerGroupID homeGroupID, EndpointAddress destination, EndpointAddress logicalDestination, int channelQueueSize) {
+        this(homeGroupID, destination, logicalDestination, channelQueueSize, null);
+    }
+
+    /**
+     * Create a new ThreadedMessenger whose background thread is created by a task manager.
+     *
+     * @param homeGroupID        the group that this messenger works for. This is the group of the endpoint service or transport
+     *                           that created this messenger.
+     * @param destination        where messages should be addressed to
+     * @param logicalDestination the expected logical address of the destination. Pass null if unknown/irrelevant
+     * @param channelQueueSize   The queue size that channels should have.
+     * @param taskManager        creates the background thread, or {@code null} for a plain daemon thread.
+     */
+    public ThreadedMessenger(PeerGroupID homeGroupID, EndpointAddress destination, EndpointAddress logicalDestination, int channelQueueSize, TaskManager taskManager) {
 
         super(destination);
 
         this.homeGroupID = homeGroupID;
+        this.taskManager = taskManager;
         stateMachine = new ThreadedMessengerState(distributingListener);
 
         this.logicalDestination = logicalDestination;
         this.channelQueueSize = channelQueueSize;
     }
 
+    /**
+     * Enables sending the messages queued in a channel in batches through
+     * {@link #sendMessagesBImpl(Message[], String[], String[])}. A batch is
+     * sent as soon as it holds {@code maxMessages} messages or at least
+     * {@code maxBytes} bytes, or when {@code maxDelay} milliseconds have
+     * passed without it filling up. Batches are never made of messages from
+     * more than one channel.
+     *
+     * @param maxMessages the maximum number of messages in a batch. 1
+     *                    disables batching.
+     * @param maxBytes    the number of bytes after which no more messages are
+     *                    added to a batch. A batch always holds at least one
+     *                    message.
+     * @param maxDelay    the maximum duration in milliseconds to wait for more
+     *                    messages. 0 sends the messages which are already
+     *                    queued without waiting.
+     */
+    protected final void setBatching(int maxMessages, long maxBytes, long maxDelay) {
+        if (maxMessages < 1) {
+            throw new IllegalArgumentException("maxMessages must be at least 1");
+        }
+
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("maxDelay must not be negative");
+        }
+
+        maxBatchMessages = maxMessages;
+        maxBatchBytes = maxBytes;
+        maxBatchDelay = maxDelay;
+    }
+
     /**
      * Runs the state machine until there's nothing left to do.
      * <p/>
@@ -408,8 +512,14 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
         deferredAction = action;
 
         if (bgThread == null) {
-            bgThread = new Thread(myThreadGroup, this, "ThreadedMessenger for " + getDestinationAddress());
-            bgThread.setDaemon(true);
+            String name = "ThreadedMessenger for " + getDestinationAddress();
+
+            if (taskManager != null) {
+                bgThread = taskManager.newThread(myThreadGroup, this, name);
+            } else {
+                bgThread = new Thread(myThreadGroup, this, name);
+                bgThread.setDaemon(true);
+            }
             bgThread.start();
         }
     }
@@ -463,7 +573,15 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
         }
 
         while (true) {
-            AsyncChannelMessenger.PendingMessage theMsg = theChannel.peek();
+            List<AsyncChannelMessenger.PendingMessage> batch = null;
+            AsyncChannelMessenger.PendingMessage theMsg;
+
+            if ((maxBatchMessages > 1) && (0 == unbatchedSends)) {
+                batch = peekBatch(theChannel);
+                theMsg = (null == batch) ? null : batch.get(0);
+            } else {
+                theMsg = theChannel.peek();
+            }
 
             if (theMsg == null) {
                 // done with that channel for now. (And it knows it). Move to the next channel. Actually
@@ -490,19 +608,50 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
             String currentParam = theMsg.param;
 
             try {
-                sendMessageBImpl(currentMsg, currentService, currentParam);
+                if ((null == batch) || (1 == batch.size())) {
+                    sendMessageBImpl(currentMsg, currentService, currentParam);
+                } else {
+                    sendBatch(batch);
+                }
             } catch (Throwable any) {
 
-                // When the current message fails, we leave it in there. sendMessageBImpl does not report failures. So that we can retry if
+                // When the current message fails, we leave it in there. If it was part of a batch, the messages sent
+                // before it are removed and the failure is charged to the message which caused it. If the batch could
+                // not tell which message that was, nobody is charged and the messages of the batch are sent again one
+                // at a time so that the next failure can be charged to the right message.
+                AsyncChannelMessenger.PendingMessage failedMsg = theMsg;
+                Throwable failure = any;
+                int sent = 0;
+
+                if ((null != batch) && (batch.size() > 1)) {
+                    if (any instanceof BatchSendException) {
+                        sent = Math.min(((BatchSendException) any).getSent(), batch.size() - 1);
+                        failedMsg = batch.get(sent);
+                        if (null != any.getCause()) {
+                            failure = any.getCause();
+                        }
+                    } else {
+                        failedMsg = null;
+                        unbatchedSends = batch.size();
+                    }
+                }
+
+                // sendMessageBImpl does not report failures. So that we can retry if
                 // applicable. It is up to us to report failures. See failall in AsyncChannel. However, there is a risk that a bad
                 // message causes this messenger to go down repeatedly. We need some kind of safeguard. So, if there's already a failure
                 // recorded for this message, we bounce it.
                 synchronized (stateMachine) {
-                    if (theMsg.failure != null) {
+                    if (sent > 0) {
+                        theChannel.poll(sent);
+                    }
+
+                    if (null == failedMsg) {
+                        // Not charged to any message.
+                    } else if (failedMsg.failure != null) {
                         theChannel.poll();
-                        currentMsg.setMessageProperty(Messenger.class, new OutgoingMessageEvent(currentMsg, theMsg.failure));
+                        failedMsg.msg.setMessageProperty(Messenger.class, new OutgoingMessageEvent(failedMsg.msg, failedMsg.failure));
                     } else {
-                        theMsg.failure = any;
+                        failedMsg.failure = failure;
                     }
                     stateMachine.downEvent();
                     stateMachine.notifyAll();
@@ -511,9 +660,13 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
                 return;
             }
 
+            if ((null == batch) && (unbatchedSends > 0)) {
+                unbatchedSends--;
+            }
+
             synchronized (stateMachine) {
-                // Remove the message sent
-                theChannel.poll();
+                // Remove the messages sent
+                theChannel.poll((null == batch) ? 1 : batch.size());
                 // Rotate the queues (Things are quite a bit simpler if there's a single still active channel
                 // and it's frequent, so it's worth checking)
                 boolean empty = (theChannel.peek() == null);
@@ -546,6 +699,79 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
         }
     }
 
+    /**
+     * Collects the next batch of messages from a channel, waiting for up to
+     * {@link #maxBatchDelay} milliseconds for more messages if the batch is
+     * not full.
+     *
+     * @param theChannel the channel.
+     * @return the batch or {@code null} if the channel has no messages.
+     * @throws InterruptedException if interrupted
+     */
+    private List<AsyncChannelMessenger.PendingMessage> peekBatch(ThreadedMessengerChannel theChannel) throws InterruptedException {
+
+        long waitUntil = System.currentTimeMillis() + maxBatchDelay;
+
+        while (true) {
+            List<AsyncChannelMessenger.PendingMessage> batch = theChannel.peek(maxBatchMessages);
+
+            if (batch == null) {
+                return null;
+            }
+
+            int count = 0;
+            long bytes = 0;
+
+            for (AsyncChannelMessenger.PendingMessage aMsg : batch) {
+                if ((count > 0) && (bytes >= maxBatchBytes)) {
+                    break;
+                }
+
+                bytes += aMsg.msg.getByteLength();
+                count++;
+            }
+
+            long remaining = waitUntil - System.currentTimeMillis();
+
+            if ((count < batch.size()) || (count >= maxBatchMessages) || (bytes >= maxBatchBytes) || (remaining <= 0)) {
+                return batch.subList(0, count);
+            }
+
+            synchronized (batchLock) {
+                batchWaiting = true;
+                try {
+                    if (theChannel.size() <= count) {
+                        batchLock.wait(remaining);
+                    }
+                } finally {
+                    batchWaiting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a batch of messages.
+     *
+     * @param batch the messages.
+     * @throws IOException Thrown for errors encountered while sending the messages.
+     */
+    private void sendBatch(List<AsyncChannelMessenger.PendingMessage> batch) throws IOException {
+        Message[] msgs = new Message[batch.size()];
+        String[] services = new String[msgs.length];
+        String[] params = new String[msgs.length];
+
+        for (int eachMsg = 0; eachMsg < msgs.length; eachMsg++) {
+            AsyncChannelMessenger.PendingMessage aMsg = batch.get(eachMsg);
+
+            msgs[eachMsg] = aMsg.msg;
+            services[eachMsg] = aMsg.service;
+            params[eachMsg] = aMsg.param;
+        }
+
+        sendMessagesBImpl(msgs, services, params);
+    }
+
     /**
      * Performs the ACTION_CONNECT deferred action. Generates a down event if it does not work.
      */
@@ -795,6 +1021,37 @@ public abstract class ThreadedMessenger extends AbstractMessenger implements Run
      */
     protected abstract void sendMessageBImpl(Message msg, String service, String param) throws IOException;
 
+    /**
+     * Send a batch of messages, in order, blocking as needed until all of the
+     * messages are sent. This is used only if batching has been enabled with
+     * {@link #setBatching(int, long, long)}. The default implementation sends
+     * the messages one at a time with
+     * {@link #sendMessageBImpl(Message, String, String)}; implementations
+     * whose underlying connection can write several messages at once should
+     * override it.
+     * <p/>
+     * Implementations should throw a {@link BatchSendException} when they can
+     * tell which message failed, so that the failure is charged to that
+     * message and the messages sent before it are not sent again. For any
+     * other failure, the messages of the batch are sent again one at a time.
+     *
+     * @param msgs     The messages to send.
+     * @param services The destination service of each message.
+     * @param params   The destination service param of each message.
+     * @throws IOException Thrown for errors encountered while sending the messages.
+     */
+    protected void sendMessagesBImpl(Message[] msgs, String[] services, String[] params) throws IOException {
+        for (int eachMsg = 0; eachMsg < msgs.length; eachMsg++) {
+            try {
+                sendMessageBImpl(msgs[eachMsg], services[eachMsg], params[eachMsg]);
+            } catch (IOException failed) {
+                throw new BatchSendException(eachMsg, failed);
+            } catch (RuntimeException failed) {
+                throw new BatchSendException(eachMsg, failed);
+            }
+        }
+    }
+
     /**
      * Get the logical destination endpoint address.
      * 
@@ -111,6 +111,11 @@ public final class CacheManager {
 
     private AdvertisementCache wrappedImpl;
 
+    /**
+     * Parsed advertisements for the records returned by searches.
+     */
+    private final ParsedAdvertisementCache parsedAdvertisements = new ParsedAdvertisementCache();
+
     public CacheManager(AdvertisementCache wrappedImpl) {
         this.wrappedImpl = wrappedImpl;
     }
@@ -260,6 +265,7 @@ public final class CacheManager {
 
     public void remove(String dn, String fn) throws IOException {
         wrappedImpl.remove(dn, fn);
+        parsedAdvertisements.invalidate(dn, fn);
     }
 
     public void save(String dn, String fn, Advertisement adv) throws IOException {
@@ -268,10 +274,12 @@ public final class CacheManager {
 
     public void save(String dn, String fn, Advertisement adv, long lifetime, long expiration) throws IOException {
         wrappedImpl.save(dn, fn, adv, lifetime, expiration);
+        parsedAdvertisements.invalidate(dn, fn);
     }
 
     public void save(String dn, String fn, byte[] data, long lifetime, long expiration) throws IOException {
         wrappedImpl.save(dn, fn, data, lifetime, expiration);
+        parsedAdvertisements.invalidate(dn, fn);
     }
 
     public List<InputStream> search(String dn, String attribute, String value, int threshold, List<Long> expirations) {
@@ -282,12 +290,39 @@ public final class CacheManager {
 		}
     }
 
+    /**
+     * Returns the advertisement contained in a record returned by
+     * {@link #search} or {@link #getRecords}. Records which have been seen
+     * recently are not parsed again.
+     *
+     * @param dn     the directory the record was read from
+     * @param record the record
+     * @return the advertisement
+     * @throws IOException if the record cannot be read or parsed
+     * @see ParsedAdvertisementCache
+     */
+    public Advertisement getAdvertisement(String dn, InputStream record) throws IOException {
+        return parsedAdvertisements.getAdvertisement(dn, record);
+    }
+
+    /**
+     * Returns the cache of parsed advertisements used by
+     * {@link #getAdvertisement}.
+     *
+     * @return the cache of parsed advertisements
+     */
+    public ParsedAdvertisementCache getParsedAdvertisementCache() {
+        return parsedAdvertisements;
+    }
+
     public void setTrackDeltas(boolean trackDeltas) {
         wrappedImpl.setTrackDeltas(trackDeltas);
     }
 
     public void stop() {
 
+        parsedAdvertisements.clear();
+
         try {
 	    wrappedImpl.stop();
 	} catch (IOException e) {
@@ -298,6 +333,8 @@ public final class CacheManager {
 
     public void garbageCollect() {
 
+        parsedAdvertisements.clear();
+
         try {
             wrappedImpl.garbageCollect();
 	} catch (IOException e) {
@@ -70,9 +70,12 @@ import net.jxta.peer.PeerID;
 
 import net.jxta.peergroup.PeerGroup;
 
+import net.jxta.protocol.SrdiMessage;
+
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -104,9 +107,9 @@ public class InMemorySrdi implements SrdiAPI {
     private static Hashtable<PeerGroup, List<SrdiAPI>> backends = new Hashtable<PeerGroup, List<SrdiAPI>>(  );
 
     // Three in-memory indexes used to store, search and garbage collect the SRDI
-    private GcIndex gcIndex = null;
-    private PeerIdIndex peerIdIndex = null;
-    private SearchIndex searchIndex = null;
+    private final GcIndex gcIndex;
+    private final PeerIdIndex peerIdIndex;
+    private final SearchIndex searchIndex;
 
     // Used as a lock to ensure all operations on the above three indexes are thread safe
     private final Object indexLock = new Object(  );
@@ -119,10 +122,46 @@ public class InMemorySrdi implements SrdiAPI {
 
     public InMemorySrdi( PeerGroup group, String indexName ) {
 
+        this( group, indexName, true );
+    }
+
+    /**
+     * Creates an index which is optionally not registered for clearing via {@link #clearSrdi(PeerGroup)}. Unregistered
+     * instances are used as partitions of a {@link StripedInMemorySrdi}, which registers itself instead.
+     *
+     * @param group the peer group, used for logging and registration
+     * @param indexName the index name
+     * @param register if {@code true} the index is cleared by {@link #clearSrdi(PeerGroup)}
+     */
+    InMemorySrdi( PeerGroup group, String indexName, boolean register ) {
+
         // The index name is only used for logging
         this.indexName = ( ( group == null ) ? "none" : ( ( group.getPeerGroupName(  ) == null ) ? "NPG" : group.getPeerGroupName(  ) ) ) +
             ":" + indexName;
 
+        this.gcIndex = new GcIndex( this.indexName );
+        this.peerIdIndex = new PeerIdIndex( this.indexName );
+        this.searchIndex = new SearchIndex( this.indexName );
+
+        if ( register ) {
+
+            register( group, this );
+        }
+
+        if ( Logging.SHOW_INFO && LOG.isLoggable( Level.INFO ) ) {
+
+            LOG.info( "[" + ( ( group == null ) ? "none" : group.toString(  ) ) + "] : Initialized " + indexName );
+        }
+    }
+
+    /**
+     * Records an index so that it is cleared by {@link #clearSrdi(PeerGroup)}.
+     *
+     * @param group the peer group of the index
+     * @param index the index
+     */
+    static void register( PeerGroup group, SrdiAPI index ) {
+
         List<SrdiAPI> idxs = null;
 
         synchronized ( backends ) {
@@ -142,15 +181,7 @@ public class InMemorySrdi implements SrdiAPI {
                 }
             }
 
-            idxs.add( this );
-            this.gcIndex = new GcIndex( this.indexName );
-            this.peerIdIndex = new PeerIdIndex( this.indexName );
-            this.searchIndex = new SearchIndex( this.indexName );
-        }
-
-        if ( Logging.SHOW_INFO && LOG.isLoggable( Level.INFO ) ) {
-
-            LOG.info( "[" + ( ( group == null ) ? "none" : group.toString(  ) ) + "] : Initialized " + indexName );
+            idxs.add( index );
         }
     }
 
@@ -545,21 +576,54 @@ public class InMemorySrdi implements SrdiAPI {
 
             synchronized ( indexLock ) {
 
-                // Add it (back) at the proper location
-                this.gcIndex.add( expiration, gcKey );
+                update( gcKey, expiration );
+            }
+        } catch ( Throwable th ) {
 
-                // Add/replace it in the peers ID Index
-                this.peerIdIndex.update( peerIdKey, searchKey, expiration );
+            if ( Logging.SHOW_SEVERE && LOG.isLoggable( Level.SEVERE ) ) {
 
-                // Finally, add/replace it in the search index with FULL key
+                LOG.log( Level.SEVERE, "[" + this.indexName + "] Unexpected exception encountered!", th );
+            }
 
-                // Create a default map in case this node does not exist
-                Long previousExpiration = searchIndex.update( searchKey, peerIdKey, expiration );
+            throw new IOException( th );
+        }
+    }
 
-                // Remove the original entry from the GC index if it existed (as long as it's not the same expiration)
-                if ( ( previousExpiration != null ) && ( previousExpiration != expiration ) ) {
+    /* (non-Javadoc)
+     * @see net.jxta.impl.cm.SrdiAPI#addAll(java.lang.String, java.util.Collection, net.jxta.peer.PeerID)
+     */
+    public void addAll( String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid )
+        throws IOException {
+
+        stoppedCheck(  );
+
+        try {
+
+            // The peer key is expensive to build, so it is built once for the whole batch
+            PeerIdKey peerIdKey = new PeerIdKey( pid );
+
+            // Build all of the keys before taking the lock
+            GcKey[] gcKeys = new GcKey[ entries.size(  ) ];
+            long[] expirations = new long[ gcKeys.length ];
+            int count = 0;
+
+            for ( SrdiMessage.Entry entry : entries ) {
+
+                gcKeys [ count ] = new GcKey( new SearchKey( primaryKey, entry.key, entry.value ), peerIdKey );
+                expirations [ count ] = TimeUtils.toAbsoluteTimeMillis( entry.expiration );
+                count++;
+            }
+
+            if ( Logging.SHOW_FINEST && LOG.isLoggable( Level.FINEST ) ) {
+
+                LOG.finest( "[" + indexName + "] Adding / Updating " + count + " entries under " + primaryKey + " for " + peerIdKey );
+            }
+
+            synchronized ( indexLock ) {
+
+                for ( int i = 0; i < count; i++ ) {
 
-                    this.gcIndex.remove( previousExpiration, gcKey );
+                    update( gcKeys [ i ], expirations [ i ] );
                 }
             }
         } catch ( Throwable th ) {
@@ -572,4 +636,33 @@ public class InMemorySrdi implements SrdiAPI {
             throw new IOException( th );
         }
     }
+
+    /**
+     * Adds or updates an entry in the three indexes. The caller must hold the index lock.
+     *
+     * @param gcKey the search and peer keys of the entry
+     * @param expiration the absolute expiration time of the entry
+     */
+    private void update( GcKey gcKey, long expiration ) {
+
+        SearchKey searchKey = gcKey.getSearchKey(  );
+        PeerIdKey peerIdKey = gcKey.getPeerIdKey(  );
+
+        // Add it (back) at the proper location
+        this.gcIndex.add( expiration, gcKey );
+
+        // Add/replace it in the peers ID Index
+        this.peerIdIndex.update( peerIdKey, searchKey, expiration );
+
+        // Finally, add/replace it in the search index with FULL key
+
+        // Create a default map in case this node does not exist
+        Long previousExpiration = searchIndex.update( searchKey, peerIdKey, expiration );
+
+        // Remove the original entry from the GC index if it existed (as long as it's not the same expiration)
+        if ( ( previousExpiration != null ) && ( previousExpiration != expiration ) ) {
+
+            this.gcIndex.remove( previousExpiration, gcKey );
+        }
+    }
 }
@@ -0,0 +1,322 @@
+package net.jxta.impl.cm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.jxta.document.Advertisement;
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.StructuredDocumentFactory;
+import net.jxta.document.XMLDocument;
+import net.jxta.id.ID;
+
+/**
+ * A bounded cache of parsed {@link Advertisement} objects which sits in front
+ * of the document parser for records returned by an {@link AdvertisementCache}.
+ * <p>
+ * The records returned by searches carry neither their file name nor a
+ * modification stamp, so entries are keyed by the directory name and the
+ * record content itself. A record which is replaced or modified therefore
+ * never matches the stale entry. Entries are additionally indexed by the name
+ * under which their advertisement is normally stored (the unique value of the
+ * advertisement id) so that {@link CacheManager} can drop them eagerly when a
+ * record is saved or removed, and the whole cache is cleared by garbage
+ * collection.
+ * <p>
+ * The cache is bounded by the total size in bytes of the cached records, read
+ * from the system property {@link #MAX_BYTES_SYSPROP}. The least recently used
+ * entries are evicted first.
+ * <p>
+ * Cached instances are never handed out; each caller receives its own clone.
+ * Advertisements whose class does not override {@link Advertisement#clone()}
+ * are not cached.
+ */
+public class ParsedAdvertisementCache {
+
+    /**
+     * The system property which specifies the maximum total size in bytes of
+     * the cached records. Zero disables the cache.
+     */
+    public static final String MAX_BYTES_SYSPROP = "net.jxta.impl.cm.ParsedAdvertisementCache.maxBytes";
+
+    /**
+     * The maximum total size of the cached records if none is specified.
+     */
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    private final long maxBytes;
+
+    /**
+     * The cached entries in least recently used order.
+     */
+    private final LinkedHashMap<RecordKey, CachedAdvertisement> entries = new LinkedHashMap<RecordKey, CachedAdvertisement>(64, 0.75f, true);
+
+    /**
+     * The cached entries indexed by directory and file name.
+     */
+    private final Map<String, RecordKey> byName = new HashMap<String, RecordKey>();
+
+    private long totalBytes = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    public ParsedAdvertisementCache() {
+        this(Long.getLong(MAX_BYTES_SYSPROP, DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Creates a cache of the specified size.
+     *
+     * @param maxBytes the maximum total size in bytes of the cached records,
+     *                 zero to disable caching
+     */
+    public ParsedAdvertisementCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the advertisement contained in a record read from the specified
+     * directory. The record is parsed only if an identical record from the
+     * same directory is not already cached.
+     *
+     * @param dn     the directory the record was read from
+     * @param record the record content, which is consumed
+     * @return a private copy of the advertisement
+     * @throws IOException if the record cannot be read or parsed
+     */
+    public Advertisement getAdvertisement(String dn, InputStream record) throws IOException {
+        byte[] data = readFully(record);
+        RecordKey key = new RecordKey(dn, data);
+
+        synchronized (this) {
+            CachedAdvertisement cached = entries.get(key);
+
+            if (null != cached) {
+                hits++;
+                return copyOf(cached.adv);
+            }
+
+            misses++;
+        }
+
+        XMLDocument asDoc = (XMLDocument) StructuredDocumentFactory.newStructuredDocument(MimeMediaType.XMLUTF8, new ByteArrayInputStream(data));
+        Advertisement adv = AdvertisementFactory.newAdvertisement(asDoc);
+
+        if ((data.length > maxBytes) || !isCloneable(adv)) {
+            return adv;
+        }
+
+        Advertisement result = copyOf(adv);
+
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                String name = nameOf(dn, adv);
+
+                if (null != name) {
+                    RecordKey previous = byName.put(name, key);
+
+                    if (null != previous) {
+                        removeEntry(previous);
+                    }
+                }
+
+                entries.put(key, new CachedAdvertisement(adv, name));
+                totalBytes += data.length;
+
+                Iterator<Map.Entry<RecordKey, CachedAdvertisement>> eldest = entries.entrySet().iterator();
+
+                while ((totalBytes > maxBytes) && eldest.hasNext()) {
+                    Map.Entry<RecordKey, CachedAdvertisement> evict = eldest.next();
+
+                    eldest.remove();
+                    forget(evict.getKey(), evict.getValue());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops any cached advertisement stored under the specified name.
+     *
+     * @param dn the directory name
+     * @param fn the file name
+     */
+    public synchronized void invalidate(String dn, String fn) {
+        RecordKey key = byName.remove(dn + "/" + fn);
+
+        if (null != key) {
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * Drops all of the cached advertisements.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        byName.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Returns the number of cached advertisements.
+     *
+     * @return the number of cached advertisements
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total size in bytes of the cached records.
+     *
+     * @return the total size in bytes of the cached records
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which required the record to be parsed.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void removeEntry(RecordKey key) {
+        CachedAdvertisement removed = entries.remove(key);
+
+        if (null != removed) {
+            forget(key, removed);
+        }
+    }
+
+    private void forget(RecordKey key, CachedAdvertisement removed) {
+        totalBytes -= key.data.length;
+
+        if ((null != removed.name) && key.equals(byName.get(removed.name))) {
+            byName.remove(removed.name);
+        }
+    }
+
+    /**
+     * Returns the directory and file name under which the advertisement is
+     * normally stored or {@code null} if it has no id.
+     */
+    private static String nameOf(String dn, Advertisement adv) {
+        ID id = adv.getID();
+
+        if ((null == id) || ID.nullID.equals(id)) {
+            return null;
+        }
+
+        return dn + "/" + id.getUniqueValue().toString();
+    }
+
+    /**
+     * Returns {@code true} if the advertisement's class provides its own
+     * {@code clone()} rather than inheriting the shallow copy of
+     * {@link Advertisement}.
+     */
+    private static boolean isCloneable(Advertisement adv) {
+        try {
+            return Advertisement.class != adv.getClass().getMethod("clone").getDeclaringClass();
+        } catch (NoSuchMethodException impossible) {
+            return false;
+        }
+    }
+
+    private static Advertisement copyOf(Advertisement adv) {
+        try {
+            return adv.clone();
+        } catch (CloneNotSupportedException impossible) {
+            throw new Error("Advertisement.clone() threw CloneNotSupportedException", impossible);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 256));
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * The key of a cached advertisement, the directory name and the record
+     * content.
+     */
+    private static final class RecordKey {
+
+        final String dn;
+        final byte[] data;
+        final int hash;
+
+        RecordKey(String dn, byte[] data) {
+            this.dn = dn;
+            this.data = data;
+            this.hash = dn.hashCode() * 31 + Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof RecordKey)) {
+                return false;
+            }
+
+            RecordKey other = (RecordKey) obj;
+
+            return (hash == other.hash) && dn.equals(other.dn) && Arrays.equals(data, other.data);
+        }
+    }
+
+    private static final class CachedAdvertisement {
+
+        final Advertisement adv;
+        final String name;
+
+        CachedAdvertisement(Advertisement adv, String name) {
+            this.adv = adv;
+            this.name = name;
+        }
+    }
+}
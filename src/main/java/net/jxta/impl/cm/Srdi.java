@@ -60,6 +60,7 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
@@ -71,6 +72,7 @@ import net.jxta.impl.xindice.core.data.Key;
 import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
+import net.jxta.protocol.SrdiMessage;
 
 /**
  * Searchable store of records of all known peers who have broadcast advertisements that have not yet
@@ -79,6 +81,8 @@ import net.jxta.peergroup.PeerGroup;
  * Internally, this is a wrapper around an {@link net.jxta.impl.cm.SrdiAPI} selected using the system property
  * {@link #SRDI_INDEX_BACKEND_SYSPROP}. If no backend is specified through this system property, the default
  * implementation specified by {@link #DEFAULT_SRDI_INDEX_BACKEND} is used.
+ * <p>
+ * Calls are not serialized by this wrapper; backends are responsible for their own thread safety.
  */
 public class Srdi implements SrdiAPI {
 
@@ -179,7 +183,7 @@ public class Srdi implements SrdiAPI {
      * @param pid        peerid reference
      * @throws IOException if an error occurred storing the entry
      */
-    public synchronized void add(String primaryKey, String attribute, String value, PeerID pid, long expiration) {
+    public void add(String primaryKey, String attribute, String value, PeerID pid, long expiration) {
     	
         try {
             backend.add(primaryKey, attribute, value, pid, expiration);
@@ -189,6 +193,24 @@ public class Srdi implements SrdiAPI {
 
     }
 
+    /**
+     * add a batch of index entries for a peer
+     *
+     * @param primaryKey primary key
+     * @param entries    the entries to add, keyed by attribute with
+     *                   expirations in relative time in milliseconds
+     * @param pid        peerid reference
+     */
+    public void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) {
+
+        try {
+            backend.addAll(primaryKey, entries, pid);
+        } catch(IOException e) {
+            Logging.logCheckedWarning(LOG, "Failed to write entries to backend\n", e);
+        }
+
+    }
+
     /**
      * retrieves a record
      *
@@ -217,7 +239,7 @@ public class Srdi implements SrdiAPI {
      *
      * @param pid peer id to remove
      */
-    public synchronized void remove(PeerID pid) {
+    public void remove(PeerID pid) {
     	
         try {
 
@@ -240,7 +262,7 @@ public class Srdi implements SrdiAPI {
      * @param primaryKey primary key
      * @param threshold max number of results
      */
-    public synchronized List<PeerID> query(String primaryKey, String attribute, String value, int threshold) {
+    public List<PeerID> query(String primaryKey, String attribute, String value, int threshold) {
 
         try {
 
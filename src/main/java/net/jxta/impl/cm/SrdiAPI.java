@@ -57,8 +57,10 @@
 package net.jxta.impl.cm;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import net.jxta.peer.PeerID;
+import net.jxta.protocol.SrdiMessage;
 
 /**
  * Interface for all storage backends of Srdi. In addition to correctly implementing this interface, all
@@ -88,6 +90,20 @@ public interface SrdiAPI {
      */
 	void add(String primaryKey, String attribute, String value, PeerID pid, long expiration) throws IOException;
 	
+	/**
+	 * Adds a batch of entries for a single peer under the same primary key, typically all the entries of
+	 * one {@link SrdiMessage}. The result is the same as calling {@link #add(String, String, String, PeerID, long)}
+	 * for each entry in turn, but implementations should apply the whole batch at once, e.g. under a single
+	 * lock acquisition.
+	 *
+	 * @param primaryKey primary key
+	 * @param entries    the entries to add. The entry key is used as the attribute and the entry expiration
+	 *                   is relative time in milliseconds.
+	 * @param pid        peerid reference
+	 * @throws IOException if there was a failure writing the entries to the index
+	 */
+	void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) throws IOException;
+	
 	/**
      * retrieves all entries exactly matching the provided primary key, secondary key and value.
      *
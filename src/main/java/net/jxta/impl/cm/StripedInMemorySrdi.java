@@ -0,0 +1,236 @@
+package net.jxta.impl.cm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import net.jxta.impl.cm.Srdi.Entry;
+import net.jxta.impl.cm.srdi.inmemory.SearchKey;
+import net.jxta.logging.Logging;
+import net.jxta.peer.PeerID;
+import net.jxta.peergroup.PeerGroup;
+import net.jxta.protocol.SrdiMessage;
+
+/**
+ * An in memory Srdi index which is partitioned into a number of independent
+ * {@link InMemorySrdi} stripes, each with its own search, peer id and garbage
+ * collection indexes and its own lock.
+ * <p>
+ * Entries are assigned to a stripe by the hash of their primary key, attribute
+ * and value, so concurrent additions for different entries rarely contend.
+ * Record lookups and queries for an exact primary key, attribute and value
+ * visit only the owning stripe. Queries with a wildcard, or without an
+ * attribute or value, are answered by visiting every stripe in turn and
+ * merging the results. Removal of a peer and garbage collection likewise visit
+ * each stripe, holding only that stripe's lock at any time.
+ * <p>
+ * The number of stripes is read from the system property
+ * {@link #STRIPES_SYSPROP} and is rounded up to a power of two.
+ * <p>
+ * To use this backend set the system property
+ * {@link Srdi#SRDI_INDEX_BACKEND_SYSPROP} to the name of this class.
+ */
+public class StripedInMemorySrdi implements SrdiAPI {
+
+    private final static transient Logger LOG = Logger.getLogger(StripedInMemorySrdi.class.getName());
+
+    /**
+     * The system property which specifies the number of stripes.
+     */
+    public static final String STRIPES_SYSPROP = "net.jxta.impl.cm.StripedInMemorySrdi.stripes";
+
+    /**
+     * The number of stripes used if none is specified.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    private static final char WILDCARD = '*';
+
+    /**
+     * The stripes. The length is always a power of two.
+     */
+    private final InMemorySrdi[] stripes;
+
+    public StripedInMemorySrdi(PeerGroup group, String indexName) {
+        this(group, indexName, Integer.getInteger(STRIPES_SYSPROP, DEFAULT_STRIPES));
+    }
+
+    /**
+     * Creates an index with the specified number of stripes.
+     *
+     * @param group the peer group
+     * @param indexName the index name
+     * @param stripeCount the number of stripes, rounded up to a power of two
+     */
+    public StripedInMemorySrdi(PeerGroup group, String indexName, int stripeCount) {
+        int size = 1;
+
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+
+        stripes = new InMemorySrdi[size];
+
+        for (int eachStripe = 0; eachStripe < stripes.length; eachStripe++) {
+            stripes[eachStripe] = new InMemorySrdi(group, indexName + "#" + eachStripe, false);
+        }
+
+        InMemorySrdi.register(group, this);
+
+        Logging.logCheckedConfig(LOG, "Srdi index ", indexName, " uses ", stripes.length, " stripes");
+    }
+
+    /**
+     * Clears all of the in memory indexes of the specified group, including
+     * those which are not striped.
+     *
+     * @param group the peer group
+     */
+    public static void clearSrdi(PeerGroup group) {
+        InMemorySrdi.clearSrdi(group);
+    }
+
+    /**
+     * Returns the stripe which holds the entries for the specified key.
+     */
+    private InMemorySrdi stripeFor(String primaryKey, String attribute, String value) {
+        return stripes[stripeIndex(primaryKey, attribute, value)];
+    }
+
+    /**
+     * Returns the index of the stripe which holds the entries for the
+     * specified key.
+     */
+    private int stripeIndex(String primaryKey, String attribute, String value) {
+        int hash = new SearchKey(primaryKey, attribute, value).hashCode();
+
+        // spread the high bits into the low bits used as the index
+        hash ^= (hash >>> 16);
+        hash ^= (hash >>> 8);
+
+        return hash & (stripes.length - 1);
+    }
+
+    /**
+     * Returns {@code true} if the query matches a single primary key,
+     * attribute and value combination and can be answered by a single stripe.
+     */
+    private static boolean isExactQuery(String primaryKey, String attribute, String value) {
+        return (null != attribute) && (null != value)
+                && (primaryKey.indexOf(WILDCARD) < 0)
+                && (attribute.indexOf(WILDCARD) < 0)
+                && (value.indexOf(WILDCARD) < 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add(String primaryKey, String attribute, String value, PeerID pid, long expiration) throws IOException {
+        stripeFor(primaryKey, attribute, value).add(primaryKey, attribute, value, pid, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The entries are divided amongst their stripes and each stripe applies
+     * its share as a single batch.
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) throws IOException {
+        List<SrdiMessage.Entry>[] batches = new List[stripes.length];
+
+        for (SrdiMessage.Entry entry : entries) {
+            int stripe = stripeIndex(primaryKey, entry.key, entry.value);
+
+            if (null == batches[stripe]) {
+                batches[stripe] = new ArrayList<SrdiMessage.Entry>();
+            }
+
+            batches[stripe].add(entry);
+        }
+
+        for (int eachStripe = 0; eachStripe < stripes.length; eachStripe++) {
+            if (null != batches[eachStripe]) {
+                stripes[eachStripe].addAll(primaryKey, batches[eachStripe], pid);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Entry> getRecord(String pkey, String skey, String value) throws IOException {
+        return stripeFor(pkey, skey, value).getRecord(pkey, skey, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void remove(PeerID pid) throws IOException {
+        for (InMemorySrdi stripe : stripes) {
+            stripe.remove(pid);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<PeerID> query(String primaryKey, String attribute, String value, int threshold) throws IOException {
+        if (null == primaryKey) {
+            throw new IOException("Null primary key is not supported in query.");
+        }
+
+        if (isExactQuery(primaryKey, attribute, value)) {
+            return stripeFor(primaryKey, attribute, value).query(primaryKey, attribute, value, threshold);
+        }
+
+        Set<PeerID> results = new LinkedHashSet<PeerID>();
+
+        for (InMemorySrdi stripe : stripes) {
+            if ((threshold >= 0) && (results.size() >= threshold)) {
+                break;
+            }
+
+            for (PeerID peer : stripe.query(primaryKey, attribute, value, threshold)) {
+                if ((threshold >= 0) && (results.size() >= threshold)) {
+                    break;
+                }
+
+                results.add(peer);
+            }
+        }
+
+        return new ArrayList<PeerID>(results);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() throws IOException {
+        for (InMemorySrdi stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void garbageCollect() throws IOException {
+        for (InMemorySrdi stripe : stripes) {
+            stripe.garbageCollect();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stop() {
+        for (InMemorySrdi stripe : stripes) {
+            stripe.stop();
+        }
+    }
+}
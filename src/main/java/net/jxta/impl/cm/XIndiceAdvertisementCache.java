@@ -78,6 +78,9 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 import net.jxta.discovery.DiscoveryService;
 import net.jxta.document.Advertisement;
@@ -105,6 +108,12 @@ import net.jxta.protocol.SrdiMessage;
 
 /**
  * This is the original Cm implementation.
+ * <p/>
+ * Lookups (searches, restores and lifetime queries) share a read lock and
+ * run concurrently, relying upon the page and node level synchronization of
+ * the underlying {@link BTreeFiler} and indexes. Operations which modify the
+ * record database or indexes (saves, removes, garbage collection) hold the
+ * write lock and are serialized.
  */
 public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implements AdvertisementCache {
 
@@ -151,6 +160,12 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * Record indexer.
      */
     private final XIndiceIndexer indexer;
+
+    /**
+     * Guards the record database and indexer. Modifications hold the write
+     * lock, lookups hold the read lock.
+     */
+    private final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
     
     /**
      * If {@code true} then we will track changes to the indexes.
@@ -338,7 +353,7 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
         return getRecords(dn, threshold, expirations, false);
     }
 
-    public synchronized List<InputStream> getRecords(String dn, int threshold, List<Long> expirations, boolean purge) {
+    public List<InputStream> getRecords(String dn, int threshold, List<Long> expirations, boolean purge) {
 
         ArrayList<InputStream> res = new ArrayList<InputStream>();
 
@@ -349,6 +364,10 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
 
             IndexQuery iq = new IndexQuery(IndexQuery.SW, new Value(dn+'/'));
 
+            // purging deletes expired records so needs exclusive access
+            Lock lock = purge ? cacheLock.writeLock() : cacheLock.readLock();
+
+            lock.lock();
             try {
 
                 SearchCallback callback = new SearchCallback(cacheDB, indexer, threshold, purge);
@@ -369,22 +388,29 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
                 Logging.logCheckedFine(LOG, "Exception during getRecords(): " + dbe);
             } catch (IOException ie) {
                 Logging.logCheckedFine(LOG, "Exception during getRecords(): " + ie);
+            } finally {
+                lock.unlock();
             }
 
             return res;
     	}
     }
-    public synchronized void garbageCollect() {
+    public void garbageCollect() {
 
-        // calling getRecords() is good enough since it removes expired entries
-        Map<String, NameIndexer> map = indexer.getIndexers();
+        cacheLock.writeLock().lock();
+        try {
+            // calling getRecords() is good enough since it removes expired entries
+            Map<String, NameIndexer> map = indexer.getIndexers();
 
-        for (String indexName : map.keySet()) {
+            for (String indexName : map.keySet()) {
 
-            long t0 = TimeUtils.timeNow();
-            getRecords(indexName, Integer.MAX_VALUE, null, true);
-            Logging.logCheckedFiner(LOG, "Cm garbageCollect :", indexName, " in :" + (TimeUtils.timeNow() - t0));
+                long t0 = TimeUtils.timeNow();
+                getRecords(indexName, Integer.MAX_VALUE, null, true);
+                Logging.logCheckedFiner(LOG, "Cm garbageCollect :", indexName, " in :" + (TimeUtils.timeNow() - t0));
 
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
         }
     }
 
@@ -398,10 +424,10 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      *         document will expire. -1 is returned if the file is not
      *         recognized or already expired.
      */
-    public synchronized long getLifetime(String dn, String fn) {
+    public long getLifetime(String dn, String fn) {
         try {
             Key key = new Key(dn + "/" + fn);
-            Record record = cacheDB.readRecord(key);
+            Record record = readRecord(key);
 
             if (record == null) return -1;
             
@@ -412,12 +438,7 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             if (life < TimeUtils.timeNow()) {
 
                 Logging.logCheckedFine(LOG, "Removing expired record :", fn);
-                
-                try {
-                    remove(dn, fn);
-                } catch (IOException e) {
-                    Logging.logCheckedFine(LOG, "Failed to remove record\n", e);
-                }
+                removeExpired(dn, fn);
 
             }
 
@@ -442,10 +463,10 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @return number of milliseconds until the file expires or -1 if the
      *         file is not recognized or already expired.
      */
-    public synchronized long getExpirationtime(String dn, String fn) {
+    public long getExpirationtime(String dn, String fn) {
         try {
             Key key = new Key(dn + "/" + fn);
-            Record record = cacheDB.readRecord(key);
+            Record record = readRecord(key);
 
             // Retrieving amount of relative time record should stay in cache
             long expiration = calcExpiration(record);
@@ -455,12 +476,7 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             if (expiration < 0) {
 
                 Logging.logCheckedFine(LOG, "Removing expired record :", fn);
-                
-                try {
-                    remove(dn, fn);
-                } catch (IOException e) {
-                    Logging.logCheckedFine(LOG, "Failed to remove record\n", e);
-                }
+                removeExpired(dn, fn);
             }
 
             return expiration;
@@ -473,6 +489,45 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
         }
     }
 
+    /**
+     * Reads a record while holding the read lock.
+     *
+     * @param key the record key
+     * @return the record or {@code null} if there is no such record
+     * @throws DBException if the record could not be read
+     */
+    private Record readRecord(Key key) throws DBException {
+        cacheLock.readLock().lock();
+        try {
+            return cacheDB.readRecord(key);
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a record which was found to have expired while holding only the
+     * read lock. The record is read again once the write lock is held and is
+     * left alone if it has since been saved again.
+     *
+     * @param dn directory name
+     * @param fn file name
+     */
+    private void removeExpired(String dn, String fn) {
+        cacheLock.writeLock().lock();
+        try {
+            if (calcExpiration(cacheDB.readRecord(new Key(dn + "/" + fn))) < 0) {
+                remove(dn, fn);
+            }
+        } catch (DBException e) {
+            Logging.logCheckedFine(LOG, "Failed to remove record\n", e);
+        } catch (IOException e) {
+            Logging.logCheckedFine(LOG, "Failed to remove record\n", e);
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Figures out remaing amount of relative expiration time the record
      * should stay in cache. If delay is expired, the method returns {@code -1}.
@@ -539,7 +594,7 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
         Key key = new Key(dn + "/" + fn);
         try {
 
-            Record record = cacheDB.readRecord(key);
+            Record record = readRecord(key);
 
             if (record == null) return null;
             
@@ -570,12 +625,14 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @param fn file name
      * @throws IOException if an I/O error occurs
      */
-    public synchronized void remove(String dn, String fn) throws IOException {
+    public void remove(String dn, String fn) throws IOException {
+
+        if (fn == null) {
+            return;
+        }
 
+        cacheLock.writeLock().lock();
         try {
-            if (fn == null) {
-                return;
-            }
             Key key = new Key(dn + "/" + fn);
             Record record = cacheDB.readRecord(key);
             long removePos = cacheDB.findValue(key);
@@ -610,6 +667,8 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             // entry does not exist
             Logging.logCheckedFine(LOG, "failed to remove ", dn, "/", fn);
             
+        } finally {
+            cacheLock.writeLock().unlock();
         }
         
     }
@@ -636,12 +695,12 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @return byte [] containing the file
      * @throws IOException if an I/O error occurs
      */
-    public synchronized byte[] restoreBytes(String dn, String fn) throws IOException {
+    public byte[] restoreBytes(String dn, String fn) throws IOException {
 
         try {
 
             Key key = new Key(dn + "/" + fn);
-            Record record = cacheDB.readRecord(key);
+            Record record = readRecord(key);
 
             if (record == null) return null;
             
@@ -688,27 +747,30 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @param expiration Document (global) expiration time in relative ms
      * @throws IOException Thrown if there is a problem saving the document.
      */
-    public synchronized void save(String dn, String fn, Advertisement adv, long lifetime, long expiration) throws IOException {
+    public void save(String dn, String fn, Advertisement adv, long lifetime, long expiration) throws IOException {
+
+        if (expiration < 0 || lifetime <= 0) {
+            throw new IllegalArgumentException("Bad expiration or lifetime.");
+        }
+        XMLDocument doc;
 
         try {
+            doc = (XMLDocument) adv.getSignedDocument();
+        } catch (RuntimeException e) {
+            IOException failure = new IOException("Advertisement couldn't be saved");
+            failure.initCause(e);
+            throw failure;
+        }
 
-            if (expiration < 0 || lifetime <= 0) {
-                throw new IllegalArgumentException("Bad expiration or lifetime.");
-            }
-            XMLDocument doc;
+        // serialize the new version before taking the lock
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        doc.sendToStream(baos);
+        baos.close();
 
-            try {
-                doc = (XMLDocument) adv.getSignedDocument();
-            } catch (RuntimeException e) {
-                IOException failure = new IOException("Advertisement couldn't be saved");
-                failure.initCause(e);
-                throw failure;
-            }
+        Map<String, String> indexables = CacheUtils.getIndexfields(adv.getIndexFields(), doc);
 
-            // save the new version
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            doc.sendToStream(baos);
-            baos.close();
+        cacheLock.writeLock().lock();
+        try {
 
             Key key = new Key(dn + "/" + fn);
             Value value = new Value(baos.toByteArray());
@@ -741,7 +803,6 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             }
 
             long pos = cacheDB.writeRecord(key, value, absoluteLifetime, expiration);
-            Map<String, String> indexables = CacheUtils.getIndexfields(adv.getIndexFields(), doc);
             Map<String, String> keyedIdx = addKey(dn, indexables);
 
             Logging.logCheckedFine(LOG, "Indexing ", keyedIdx, " at ", pos);
@@ -761,6 +822,8 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             failure.initCause(de);
             throw failure;
             
+        } finally {
+            cacheLock.writeLock().unlock();
         }
 
     }
@@ -776,7 +839,7 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @param expiration Document (global) expiration time in relative ms
      * @throws IOException Thrown if there is a problem saving the document.
      */
-    public synchronized void save(String dn, String fn, byte[] data, long lifetime, long expiration) throws IOException {
+    public void save(String dn, String fn, byte[] data, long lifetime, long expiration) throws IOException {
 
         /*
          * REMINDER:
@@ -785,10 +848,12 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
          * - expiration is the maximum amount of relative time an advertisement lives in cache
          */
 
+        if (expiration < 0 || lifetime <= 0) {
+            throw new IllegalArgumentException("Bad expiration or lifetime.");
+        }
+
+        cacheLock.writeLock().lock();
         try {
-            if (expiration < 0 || lifetime <= 0) {
-                throw new IllegalArgumentException("Bad expiration or lifetime.");
-            }
 
             Key key = new Key(dn + "/" + fn);
             Value value = new Value(data);
@@ -842,6 +907,8 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
             failure.initCause(de);
             throw failure;
 
+        } finally {
+            cacheLock.writeLock().unlock();
         }
     }
 
@@ -1050,13 +1117,20 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @param expirations List to contain expirations
      * @return Enumeration containing of all the documents as InputStreams
      */
-    public synchronized List<InputStream> search(String dn, String attribute, String value, int threshold, List<Long> expirations) {
+    public List<InputStream> search(String dn, String attribute, String value, int threshold, List<Long> expirations) {
 
         try {
             IndexQuery iq = getIndexQuery(value);
 
             SearchCallback callback = new SearchCallback(cacheDB, indexer, threshold);
-            indexer.search(iq, dn + attribute, callback);
+
+            cacheLock.readLock().lock();
+            try {
+                indexer.search(iq, dn + attribute, callback);
+            } finally {
+                cacheLock.readLock().unlock();
+            }
+
             Collection<SearchResult> searchResults = callback.results;
 
             List<InputStream> res = new ArrayList<InputStream>(searchResults.size());
@@ -1088,8 +1162,15 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      * @param clearDeltas if true clears the delta cache
      * @return SrdiMessage.Entries
      */
-    public synchronized List<SrdiMessage.Entry> getEntries(String dn, boolean clearDeltas) {
+    public List<SrdiMessage.Entry> getEntries(String dn, boolean clearDeltas) {
         List<SrdiMessage.Entry> res = new ArrayList<SrdiMessage.Entry>();
+
+        // Deltas are added under the write lock. Clearing them under the
+        // write lock as well ensures that no delta is dropped for an entry
+        // saved after the entries were read.
+        Lock lock = clearDeltas ? cacheLock.writeLock() : cacheLock.readLock();
+
+        lock.lock();
         try {
             Map<String, NameIndexer> map = indexer.getIndexers();
             BTreeFiler listDB = indexer.getListDB();
@@ -1110,11 +1191,14 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
 
             Logging.logCheckedSevere(LOG, "Exception while searching in index\n", ex);
 
-        }
+        } finally {
+            if (clearDeltas) {
+                clearDeltas(dn);
+            }
 
-        if (clearDeltas) {
-            clearDeltas(dn);
+            lock.unlock();
         }
+
         return res;
     }
 
@@ -1190,7 +1274,8 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
     /**
      * stop the cm
      */
-    public synchronized void stop() {
+    public void stop() {
+        cacheLock.writeLock().lock();
         try {
 
             cacheDB.close();
@@ -1203,6 +1288,8 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
 
             Logging.logCheckedSevere(LOG, "Unable to close advertisments.tbl\n", ex);
 
+        } finally {
+            cacheLock.writeLock().unlock();
         }
 
     }
@@ -1277,14 +1364,19 @@ public class XIndiceAdvertisementCache extends AbstractAdvertisementCache implem
      *
      * @throws java.io.IOException
      */
-    private synchronized void rebuildIndex() throws DBException, IOException {
+    private void rebuildIndex() throws DBException, IOException {
 
         Logging.logCheckedInfo(LOG, "Rebuilding indices");
         
         String pattern = "*";
         IndexQuery any = new IndexQuery(IndexQuery.ANY, pattern);
 
-        cacheDB.query(any, new RebuildIndexCallback(cacheDB, indexer));
+        cacheLock.writeLock().lock();
+        try {
+            cacheDB.query(any, new RebuildIndexCallback(cacheDB, indexer));
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
     }
 
     private static final class RebuildIndexCallback implements BTreeCallback {
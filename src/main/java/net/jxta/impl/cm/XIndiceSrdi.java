@@ -67,6 +67,7 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -89,6 +90,7 @@ import net.jxta.impl.xindice.core.indexer.NameIndexer;
 import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
+import net.jxta.protocol.SrdiMessage;
 
 /**
  * Srdi
@@ -206,8 +208,6 @@ public class XIndiceSrdi implements SrdiAPI {
         Logging.logCheckedFine(LOG, "[", indexName, "] Adding ", primaryKey, "/", attribute, " = \'", value, "\' for ", pid);
 
         try {
-            Key key = new Key(primaryKey + attribute + value);
-            long expiresin = TimeUtils.toAbsoluteTimeMillis(expiration);
 
             // update the record if it exists
             synchronized (cacheDB) {
@@ -216,40 +216,40 @@ public class XIndiceSrdi implements SrdiAPI {
                 // collection.  will address this issue in a subsequent patch
                 gcPeerTBL.remove(pid);
 
-                Record record = cacheDB.readRecord(key);
-                List<Srdi.Entry> old;
+                writeEntry(primaryKey, attribute, value, pid, expiration);
+            }
 
-                if (record != null) {
-                    old = readRecord(record).list;
-                } else {
-                    old = new ArrayList<Srdi.Entry>();
-                }
-                Srdi.Entry entry = new Srdi.Entry(pid, expiresin);
+        } catch (IOException de) {
 
-                if (!old.contains(entry)) {
-                    old.add(entry);
-                } else {
-                    // entry exists, replace it (effectively updating expiration)
-                    old.remove(old.indexOf(entry));
-                    old.add(entry);
-                }
-                // no sense in keeping expired entries.
-                old = removeExpired(old);
-                byte[] data = getData(key, old);
-
-                // if (LOG.isLoggable(Level.FINE)) {
-                // LOG.fine("Serialized result in : " + (TimeUtils.timeNow() - t0) + "ms.");
-                // }
-                if (data == null) {
-                    Logging.logCheckedSevere(LOG, "Failed to serialize data");
-                    return;
-                }
+            Logging.logCheckedWarning(LOG, "Failed to add SRDI\n", de);
+
+        } catch (DBException de) {
+
+            Logging.logCheckedWarning(LOG, "Failed to add SRDI\n", de);
+
+        }
+    }
+
+    /**
+     * add a batch of index entries for a peer. All of the entries are
+     * written while holding the database lock once.
+     *
+     * @param primaryKey primary key
+     * @param entries    the entries to add
+     * @param pid        peerid reference
+     */
+    public synchronized void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) {
 
-                Value recordValue = new Value(data);
-                long pos = cacheDB.writeRecord(key, recordValue);
-                Map<String, String> indexables = getIndexMap(primaryKey + attribute, value);
+        Logging.logCheckedFine(LOG, "[", indexName, "] Adding ", entries.size(), " entries under ", primaryKey, " for ", pid);
 
-                srdiIndexer.addToIndex(indexables, pos);
+        try {
+
+            synchronized (cacheDB) {
+                gcPeerTBL.remove(pid);
+
+                for (SrdiMessage.Entry entry : entries) {
+                    writeEntry(primaryKey, entry.key, entry.value, pid, entry.expiration);
+                }
             }
 
         } catch (IOException de) {
@@ -263,6 +263,50 @@ public class XIndiceSrdi implements SrdiAPI {
         }
     }
 
+    /**
+     * Adds or updates the record of a peer for an index entry. The caller
+     * must hold the database lock.
+     */
+    private void writeEntry(String primaryKey, String attribute, String value, PeerID pid, long expiration) throws IOException, DBException {
+        Key key = new Key(primaryKey + attribute + value);
+        long expiresin = TimeUtils.toAbsoluteTimeMillis(expiration);
+
+        Record record = cacheDB.readRecord(key);
+        List<Srdi.Entry> old;
+
+        if (record != null) {
+            old = readRecord(record).list;
+        } else {
+            old = new ArrayList<Srdi.Entry>();
+        }
+        Srdi.Entry entry = new Srdi.Entry(pid, expiresin);
+
+        if (!old.contains(entry)) {
+            old.add(entry);
+        } else {
+            // entry exists, replace it (effectively updating expiration)
+            old.remove(old.indexOf(entry));
+            old.add(entry);
+        }
+        // no sense in keeping expired entries.
+        old = removeExpired(old);
+        byte[] data = getData(key, old);
+
+        // if (LOG.isLoggable(Level.FINE)) {
+        // LOG.fine("Serialized result in : " + (TimeUtils.timeNow() - t0) + "ms.");
+        // }
+        if (data == null) {
+            Logging.logCheckedSevere(LOG, "Failed to serialize data");
+            return;
+        }
+
+        Value recordValue = new Value(data);
+        long pos = cacheDB.writeRecord(key, recordValue);
+        Map<String, String> indexables = getIndexMap(primaryKey + attribute, value);
+
+        srdiIndexer.addToIndex(indexables, pos);
+    }
+
     /**
      * retrieves a record
      *
@@ -59,8 +59,12 @@ package net.jxta.impl.content.defprovider;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import net.jxta.content.Content;
 import net.jxta.document.Document;
+import net.jxta.document.FileDocument;
 import net.jxta.peergroup.PeerGroup;
 import net.jxta.pipe.OutputPipe;
 import net.jxta.pipe.PipeService;
@@ -94,10 +98,17 @@ public class ActiveTransfer {
 
     /**
      * Recovery window used to maintain temporary references to recent data
-     * in the event the client needs to retry.
+     * in the event the client needs to retry.  Not used when the content is
+     * backed by a file.
      */
     private final RecoveryWindow window;
 
+    /**
+     * Channel used to read file backed content at any offset, or null if
+     * the content is not backed by a file.
+     */
+    private final FileChannel channel;
+
     /**
      * The share which we are serving.
      */
@@ -106,7 +117,7 @@ public class ActiveTransfer {
     /**
      * The last time data was requested from this transfer client.
      */
-    private long lastAccess = System.currentTimeMillis();
+    private volatile long lastAccess = System.currentTimeMillis();
 
     /**
      * Constructs a new transfer client node.
@@ -123,8 +134,70 @@ public class ActiveTransfer {
         share = toShare;
         Content content = toShare.getContent();
         Document doc = content.getDocument();
-        BufferedInputStream in =  new BufferedInputStream(doc.getStream());
-        window = new RecoveryWindow(in);
+        if (doc instanceof FileDocument) {
+            // Files can be read at any offset, no need to buffer them
+            RandomAccessFile file =
+                    new RandomAccessFile(((FileDocument) doc).getFile(), "r");
+            channel = file.getChannel();
+            window = null;
+        } else {
+            BufferedInputStream in =  new BufferedInputStream(doc.getStream());
+            window = new RecoveryWindow(in);
+            channel = null;
+        }
+    }
+
+    /**
+     * Determines whether or not the content is backed by a file which can
+     * be read with {@link #getData(long, int)}.
+     *
+     * @return true if the content is backed by a file, false if the data
+     *  must be retrieved with {@link #getData(long, int, OutputStream)}
+     */
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    /**
+     * Reads the data specified directly from the file backing the content.
+     * Reads do not change the position of the file and so requests for
+     * different offsets may be served concurrently.
+     *
+     * @param offset position in the file of the beginning of the data
+     * @param length number of bytes desired
+     * @return buffer holding the bytes read, fewer than requested when the
+     *      end of the file is reached
+     * @throws IOException when a problem arises working with IO
+     */
+    public ByteBuffer getData(long offset, int length) throws IOException {
+        long size = channel.size();
+        int toRead = (int) Math.max(0, Math.min(length, size - offset));
+        ByteBuffer result = ByteBuffer.allocate(toRead);
+
+        while (result.hasRemaining()) {
+            int read = channel.read(result, offset + result.position());
+            if (read < 0) {
+                // File was truncated since we checked its size
+                break;
+            }
+        }
+
+        result.flip();
+        lastAccess = System.currentTimeMillis();
+
+        return result;
+    }
+
+    /**
+     * Determines whether or not the offset given is at or beyond the end of
+     * the file backing the content.
+     *
+     * @param offset position in the file
+     * @return true if there is no data at or beyond the offset
+     * @throws IOException when a problem arises working with IO
+     */
+    public boolean isEOF(long offset) throws IOException {
+        return offset >= channel.size();
     }
 
     /**
@@ -165,8 +238,15 @@ public class ActiveTransfer {
      * @throws IOException when IO problem arises
      */
     public synchronized void close() throws IOException {
-        window.close();
-        destPipe.close();
+        try {
+            if (window != null) {
+                window.close();
+            } else {
+                channel.close();
+            }
+        } finally {
+            destPipe.close();
+        }
     }
 
     /**
@@ -0,0 +1,403 @@
+package net.jxta.impl.content.defprovider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import net.jxta.document.Attributable;
+import net.jxta.document.Attribute;
+import net.jxta.document.Element;
+import net.jxta.document.StructuredDocument;
+import net.jxta.impl.util.BASE64InputStream;
+import net.jxta.impl.util.BASE64OutputStream;
+
+/**
+ * Describes Content as a sequence of fixed size blocks along with the digest
+ * of each block.  The manifest is computed once by the sharing peer and
+ * carried in the share advertisement, allowing a receiving peer to verify
+ * each block as soon as it has been received and to resume an interrupted
+ * transfer from the blocks it already holds.
+ */
+public final class BlockManifest {
+
+    /**
+     * Element name used when serialized into an advertisement.
+     */
+    static final String TAG = "BlockManifest";
+
+    /**
+     * Digest algorithm used for the blocks.
+     */
+    static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Smallest block size used, in bytes.
+     */
+    private static final int MIN_BLOCK_SIZE =
+            Integer.getInteger(BlockManifest.class.getName()
+            + ".minBlockSize", 256 * 1024).intValue();
+
+    /**
+     * Largest number of blocks in a manifest.  The block size of large
+     * Content grows to keep the manifest, and the advertisement carrying it,
+     * small: 128 SHA-256 digests are about 5KB once base64 encoded.
+     */
+    private static final int MAX_BLOCKS =
+            Integer.getInteger(BlockManifest.class.getName()
+            + ".maxBlocks", 128).intValue();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int blockSize;
+    private final long length;
+    private final byte[][] digests;
+
+    /**
+     * Creates a manifest.
+     *
+     * @param blockSize size of each block, the last block may be shorter
+     * @param length length of the Content in bytes
+     * @param digests digest of each block
+     */
+    BlockManifest(int blockSize, long length, byte[][] digests) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("block size must be positive");
+        }
+
+        if (digests.length != getBlockCount(blockSize, length)) {
+            throw new IllegalArgumentException("wrong number of digests");
+        }
+
+        this.blockSize = blockSize;
+        this.length = length;
+        this.digests = digests;
+    }
+
+    /**
+     * Computes the manifest of the data read from a stream.  The stream is
+     * read to its end but not closed.
+     *
+     * @param in stream of the Content data
+     * @param length length of the Content in bytes
+     * @return the manifest
+     * @throws IOException when the stream cannot be read or does not hold the
+     *  number of bytes expected
+     */
+    public static BlockManifest compute(InputStream in, long length)
+            throws IOException {
+        return compute(in, length, getBlockSizeFor(length));
+    }
+
+    /**
+     * Computes the manifest of the data read from a stream using the block
+     * size given.  The stream is read to its end but not closed.
+     *
+     * @param in stream of the Content data
+     * @param length length of the Content in bytes
+     * @param blockSize size of each block
+     * @return the manifest
+     * @throws IOException when the stream cannot be read or does not hold the
+     *  number of bytes expected
+     */
+    static BlockManifest compute(InputStream in, long length, int blockSize)
+            throws IOException {
+        MessageDigest digest = newDigest();
+        byte[][] digests = new byte[getBlockCount(blockSize, length)][];
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, blockSize)];
+        long position = 0;
+
+        for (int block = 0; block < digests.length; block++) {
+            int remaining = (int) Math.min(blockSize, length - position);
+
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+
+                if (read < 0) {
+                    throw new IOException("Content ended after " + position + " of " + length + " bytes");
+                }
+
+                digest.update(buffer, 0, read);
+                remaining -= read;
+                position += read;
+            }
+
+            digests[block] = digest.digest();
+        }
+
+        if (in.read() >= 0) {
+            throw new IOException("Content is longer than " + length + " bytes");
+        }
+
+        return new BlockManifest(blockSize, length, digests);
+    }
+
+    /**
+     * Returns the block size used for Content of the given length.
+     */
+    static int getBlockSizeFor(long length) {
+        long blockSize = MIN_BLOCK_SIZE;
+
+        while ((blockSize * MAX_BLOCKS < length) && (blockSize < Integer.MAX_VALUE / 2)) {
+            blockSize *= 2;
+        }
+
+        return (int) blockSize;
+    }
+
+    private static int getBlockCount(int blockSize, long length) {
+        return (int) ((length + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Returns a new instance of the digest used for the blocks.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException nsax) {
+            throw new IllegalStateException(ALGORITHM + " is not available", nsax);
+        }
+    }
+
+    /**
+     * Returns the size of the blocks.
+     *
+     * @return size of the blocks in bytes, the last block may be shorter
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the length of the Content.
+     *
+     * @return length of the Content in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return digests.length;
+    }
+
+    /**
+     * Returns the offset of the start of a block.
+     *
+     * @param block index of the block
+     * @return offset of the block in bytes
+     */
+    public long getBlockOffset(int block) {
+        return (long) block * blockSize;
+    }
+
+    /**
+     * Returns the length of a block.
+     *
+     * @param block index of the block
+     * @return length of the block in bytes
+     */
+    public int getBlockLength(int block) {
+        return (int) Math.min(blockSize, length - getBlockOffset(block));
+    }
+
+    /**
+     * Returns a digest identifying this manifest.
+     *
+     * @return digest of the block size, length and block digests
+     */
+    byte[] getFingerprint() {
+        MessageDigest digest = newDigest();
+
+        digest.update(Integer.toString(blockSize).getBytes());
+        digest.update((byte) ':');
+        digest.update(Long.toString(length).getBytes());
+
+        for (byte[] each : digests) {
+            digest.update(each);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Determines whether the data given is the content of a block.
+     *
+     * @param block index of the block
+     * @param data buffer holding the data
+     * @param offset offset of the data in the buffer
+     * @param len length of the data
+     * @return true if the data matches the digest of the block
+     */
+    public boolean verify(int block, byte[] data, int offset, int len) {
+        if (len != getBlockLength(block)) {
+            return false;
+        }
+
+        MessageDigest digest = newDigest();
+
+        digest.update(data, offset, len);
+
+        return matches(block, digest.digest());
+    }
+
+    /**
+     * Determines whether a digest computed over the content of a block
+     * matches the manifest.
+     *
+     * @param block index of the block
+     * @param digest the digest computed
+     * @return true if the digest matches the digest of the block
+     */
+    boolean matches(int block, byte[] digest) {
+        return MessageDigest.isEqual(digests[block], digest);
+    }
+
+    /**
+     * Appends this manifest to a document.
+     *
+     * @param doc document to append the manifest to
+     * @param parent element to append the manifest to
+     */
+    @SuppressWarnings("unchecked")
+    void appendTo(StructuredDocument doc, Element parent) {
+        ByteArrayOutputStream all = new ByteArrayOutputStream(digests.length * 32);
+
+        for (byte[] each : digests) {
+            all.write(each, 0, each.length);
+        }
+
+        StringWriter encoded = new StringWriter();
+
+        try {
+            BASE64OutputStream out = new BASE64OutputStream(encoded);
+
+            out.write(all.toByteArray());
+            out.close();
+        } catch (IOException iox) {
+            // Can't happen, writing to memory.
+            throw new IllegalStateException("Could not encode manifest", iox);
+        }
+
+        Element elem = doc.createElement(TAG, encoded.toString());
+
+        parent.appendChild(elem);
+
+        Attributable attrs = (Attributable) elem;
+
+        attrs.addAttribute("algorithm", ALGORITHM);
+        attrs.addAttribute("blockSize", Integer.toString(blockSize));
+        attrs.addAttribute("length", Long.toString(length));
+    }
+
+    /**
+     * Reads a manifest from an advertisement element.
+     *
+     * @param elem element holding the manifest
+     * @return the manifest
+     * @throws IllegalArgumentException if the element is not a valid manifest
+     */
+    static BlockManifest fromElement(Element elem) {
+        Attributable attrs = (Attributable) elem;
+        Attribute algorithm = attrs.getAttribute("algorithm");
+        Attribute blockSizeAttr = attrs.getAttribute("blockSize");
+        Attribute lengthAttr = attrs.getAttribute("length");
+
+        if ((null == algorithm) || !ALGORITHM.equals(algorithm.getValue())) {
+            throw new IllegalArgumentException("Unsupported manifest algorithm");
+        }
+
+        if ((null == blockSizeAttr) || (null == lengthAttr)) {
+            throw new IllegalArgumentException("Incomplete manifest");
+        }
+
+        int blockSize;
+        long length;
+
+        try {
+            blockSize = Integer.parseInt(blockSizeAttr.getValue());
+            length = Long.parseLong(lengthAttr.getValue());
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException("Bad manifest size", nfx);
+        }
+
+        if ((blockSize <= 0) || (length < 0)) {
+            throw new IllegalArgumentException("Bad manifest size");
+        }
+
+        byte[] all;
+
+        try {
+            BASE64InputStream in = new BASE64InputStream(new StringReader((String) elem.getValue()));
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            int c;
+
+            while ((c = in.read()) >= 0) {
+                decoded.write(c);
+            }
+
+            all = decoded.toByteArray();
+        } catch (IOException iox) {
+            throw new IllegalArgumentException("Bad manifest digests", iox);
+        }
+
+        int digestLength = newDigest().getDigestLength();
+        int count = getBlockCount(blockSize, length);
+
+        if (all.length != count * digestLength) {
+            throw new IllegalArgumentException("Bad manifest digests");
+        }
+
+        byte[][] digests = new byte[count][];
+
+        for (int block = 0; block < count; block++) {
+            digests[block] = Arrays.copyOfRange(all, block * digestLength, (block + 1) * digestLength);
+        }
+
+        return new BlockManifest(blockSize, length, digests);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (!(other instanceof BlockManifest)) {
+            return false;
+        }
+
+        BlockManifest that = (BlockManifest) other;
+
+        return (blockSize == that.blockSize) && (length == that.length)
+                && Arrays.deepEquals(digests, that.digests);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(digests) * 31 + blockSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[BlockManifest length=" + length + ", blockSize=" + blockSize + ", blocks=" + digests.length + "]";
+    }
+}
@@ -0,0 +1,279 @@
+package net.jxta.impl.content.defprovider;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import net.jxta.logging.Logging;
+
+/**
+ * Tracks which blocks of a {@link BlockManifest} have been received and
+ * verified during a transfer, and persists the verified blocks next to the
+ * data file so that an interrupted transfer can be resumed.
+ * <p>
+ * This class is not thread safe.
+ */
+final class BlockTracker {
+    private static final Logger LOG =
+            Logger.getLogger(BlockTracker.class.getName());
+
+    /**
+     * Identifies the format of the state file.
+     */
+    private static final int MAGIC = 0x4a584252;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BlockManifest manifest;
+    private final String contentID;
+    private final File stateFile;
+    private final int[] receivedBytes;
+    private final boolean[] verified;
+    private int verifiedCount;
+
+    /**
+     * Creates a tracker with no blocks verified.
+     *
+     * @param manifest manifest of the Content
+     * @param contentID ID of the Content, recorded in the state file
+     * @param stateFile file the verified blocks are persisted to
+     */
+    BlockTracker(BlockManifest manifest, String contentID, File stateFile) {
+        this.manifest = manifest;
+        this.contentID = contentID;
+        this.stateFile = stateFile;
+        receivedBytes = new int[manifest.getBlockCount()];
+        verified = new boolean[manifest.getBlockCount()];
+    }
+
+    /**
+     * Returns the manifest being tracked.
+     *
+     * @return the manifest
+     */
+    BlockManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Restores the blocks verified by an earlier transfer.  Each block the
+     * state file lists is verified again against the data file, since the
+     * data may not have reached the disk before the earlier transfer was
+     * interrupted.
+     *
+     * @param data the data file of the earlier transfer
+     * @return the number of blocks restored
+     */
+    int resume(RandomAccessFile data) {
+        boolean[] saved = load();
+
+        if (null == saved) {
+            return 0;
+        }
+
+        int restored = 0;
+
+        for (int block = 0; block < saved.length; block++) {
+            if (!saved[block]) {
+                continue;
+            }
+
+            try {
+                if (verify(block, data)) {
+                    restored++;
+                }
+            } catch (IOException iox) {
+                Logging.logCheckedFine(LOG, "Could not read block ", block, "\n", iox);
+            }
+        }
+
+        return restored;
+    }
+
+    /**
+     * Reads the state file, returning null if it is missing or does not
+     * belong to this Content.
+     */
+    private boolean[] load() {
+        if (!stateFile.exists()) {
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(stateFile));
+
+            try {
+                if (in.readInt() != MAGIC || !contentID.equals(in.readUTF())) {
+                    return null;
+                }
+
+                byte[] fingerprint = new byte[in.readInt()];
+
+                in.readFully(fingerprint);
+
+                if (!Arrays.equals(fingerprint, manifest.getFingerprint())) {
+                    return null;
+                }
+
+                byte[] bits = new byte[in.readInt()];
+
+                if (bits.length != (verified.length + 7) / 8) {
+                    return null;
+                }
+
+                in.readFully(bits);
+
+                boolean[] result = new boolean[verified.length];
+
+                for (int block = 0; block < result.length; block++) {
+                    result[block] = (bits[block / 8] & (1 << (block % 8))) != 0;
+                }
+
+                return result;
+            } finally {
+                in.close();
+            }
+        } catch (IOException iox) {
+            Logging.logCheckedWarning(LOG, "Could not read transfer state ", stateFile, "\n", iox);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the verified blocks to the state file.
+     *
+     * @throws IOException if the state file cannot be written
+     */
+    void save() throws IOException {
+        byte[] bits = new byte[(verified.length + 7) / 8];
+
+        for (int block = 0; block < verified.length; block++) {
+            if (verified[block]) {
+                bits[block / 8] |= (1 << (block % 8));
+            }
+        }
+
+        byte[] fingerprint = manifest.getFingerprint();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(stateFile));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeUTF(contentID);
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+            out.writeInt(bits.length);
+            out.write(bits);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Deletes the state file.
+     */
+    void delete() {
+        stateFile.delete();
+    }
+
+    /**
+     * Records data received for the Content.
+     *
+     * @param offset offset of the data
+     * @param length length of the data
+     * @return the blocks which have now been fully received and should be
+     *  verified
+     */
+    List<Integer> received(long offset, int length) {
+        List<Integer> complete = new ArrayList<Integer>();
+        long end = Math.min(offset + length, manifest.getLength());
+        int blockSize = manifest.getBlockSize();
+
+        for (long position = offset; position < end;) {
+            int block = (int) (position / blockSize);
+            long blockEnd = Math.min(manifest.getBlockOffset(block) + blockSize, end);
+
+            receivedBytes[block] += (int) (blockEnd - position);
+
+            if (!verified[block] && receivedBytes[block] >= manifest.getBlockLength(block)) {
+                complete.add(block);
+            }
+
+            position = blockEnd;
+        }
+
+        return complete;
+    }
+
+    /**
+     * Reads a block from the data file and checks it against the manifest.
+     * If the block matches it is marked verified, otherwise its received
+     * data is forgotten.
+     *
+     * @param block index of the block
+     * @param data the data file
+     * @return true if the block matches the manifest
+     * @throws IOException if the block cannot be read
+     */
+    boolean verify(int block, RandomAccessFile data) throws IOException {
+        int length = manifest.getBlockLength(block);
+
+        // Unless it matches, the block has to be received again
+        receivedBytes[block] = 0;
+
+        if (data.length() < manifest.getBlockOffset(block) + length) {
+            return false;
+        }
+
+        MessageDigest digest = BlockManifest.newDigest();
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, length)];
+
+        data.seek(manifest.getBlockOffset(block));
+
+        for (int remaining = length; remaining > 0;) {
+            int toRead = Math.min(buffer.length, remaining);
+
+            data.readFully(buffer, 0, toRead);
+            digest.update(buffer, 0, toRead);
+            remaining -= toRead;
+        }
+
+        if (!manifest.matches(block, digest.digest())) {
+            return false;
+        }
+
+        if (!verified[block]) {
+            verified[block] = true;
+            verifiedCount++;
+        }
+
+        receivedBytes[block] = length;
+        return true;
+    }
+
+    /**
+     * Determines whether a block has been verified.
+     *
+     * @param block index of the block
+     * @return true if the block has been verified
+     */
+    boolean isVerified(int block) {
+        return verified[block];
+    }
+
+    /**
+     * Determines whether every block has been verified.
+     *
+     * @return true if every block has been verified
+     */
+    boolean isComplete() {
+        return verifiedCount == verified.length;
+    }
+}
@@ -61,6 +61,7 @@ import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -101,6 +102,8 @@ import net.jxta.endpoint.MessageElement;
 import net.jxta.endpoint.TextDocumentMessageElement;
 import net.jxta.id.IDFactory;
 import net.jxta.impl.content.ModuleWrapperFactory;
+import net.jxta.impl.endpoint.ByteBufferMessageElement;
+import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.pipe.InputPipe;
 import net.jxta.pipe.OutputPipe;
 import net.jxta.pipe.PipeID;
@@ -186,6 +189,12 @@ public class DefaultContentProvider implements
      */
     protected static final String MSG_ELEM_NAME = "DR";
 
+    /**
+     * MIME type of the message element carrying response data.
+     */
+    private static final MimeMediaType DATA_MIME_TYPE =
+            new MimeMediaType("application", "octet-stream").intern();
+
     /**
      * Module spec ID for this provider.
      */
@@ -226,8 +235,12 @@ public class DefaultContentProvider implements
     private class ThreadFactoryImpl
             implements ThreadFactory, UncaughtExceptionHandler {
         private ThreadGroup threadGroup;
+        private TaskManager taskManager;
+        private int threadCount;
 
         public ThreadFactoryImpl(PeerGroup group) {
+            taskManager = group.getTaskManager();
+
             StringBuilder name = new StringBuilder();
             name.append(group.getPeerGroupName());
             name.append(" - ");
@@ -238,8 +251,9 @@ public class DefaultContentProvider implements
             threadGroup.setDaemon(true);
         }
 
-        public Thread newThread(Runnable runnable) {
-            Thread thread = new Thread(threadGroup, runnable);
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = taskManager.newThread(threadGroup, runnable,
+                    threadGroup.getName() + " " + (++threadCount));
             thread.setUncaughtExceptionHandler(this);
             return thread;
         }
@@ -486,6 +500,14 @@ public class DefaultContentProvider implements
             }
         }
 
+        /*
+         * Compute the block manifest before returning, so that the
+         * advertisement our caller publishes carries it.  This reads the
+         * whole file, so it is done on the caller's thread without holding
+         * any of our locks and without tying up our executor.
+         */
+        share.computeBlockManifest();
+
         if (result.size() == 0) {
             /*
              * This content was already shared.  We'll skip notifying our
@@ -697,6 +719,7 @@ public class DefaultContentProvider implements
         ByteArrayOutputStream byteOut = null;
         DataResponse resp;
         DefaultContentShare share;
+        MessageElement data = null;
         int written;
 
         Logging.logCheckedFinest(LOG, "DataRequest:");
@@ -719,21 +742,41 @@ public class DefaultContentProvider implements
 
             ActiveTransfer session = tracker.getSession(
                     share, req.getResponsePipe());
-            byteOut = new ByteArrayOutputStream();
-            written = session.getData(
-                    req.getOffset(), req.getLength(), byteOut);
-
-            // Send response
             resp = new DataResponse(req);
-            if (written <= 0) {
-                written = -written;
-                resp.setEOF(true);
+
+            if (session.isFileBacked()) {
+
+                // Read straight from the file into the message element
+                ByteBuffer buffer = session.getData(
+                        req.getOffset(), req.getLength());
+                written = buffer.remaining();
+                resp.setEOF(session.isEOF(req.getOffset() + written));
+                if (written > 0) {
+                    data = new ByteBufferMessageElement("data",
+                            DATA_MIME_TYPE, buffer, null);
+                }
+
+            } else {
+
+                byteOut = new ByteArrayOutputStream();
+                written = session.getData(
+                        req.getOffset(), req.getLength(), byteOut);
+                if (written <= 0) {
+                    written = -written;
+                    resp.setEOF(true);
+                }
+                if (written > 0) {
+                    data = new ByteArrayMessageElement("data",
+                            DATA_MIME_TYPE, byteOut.toByteArray(), null);
+                }
+
             }
+
+            // Send response
             resp.setLength(written);
             share.fireShareAccessed(session, resp);
 
-            sendDataResponse(resp, session.getOutputPipe(),
-                    (written == 0) ? null : byteOut.toByteArray());
+            sendDataResponse(resp, session.getOutputPipe(), data);
 
         } catch (TooManyClientsException tmcx) {
 
@@ -750,7 +793,7 @@ public class DefaultContentProvider implements
      * Sends a response to the destination specified.
      */
     private void sendDataResponse(DataResponse resp, OutputPipe destPipe,
-            byte[] data) {
+            MessageElement data) {
         MessageElement msge;
         XMLDocument doc;
         Message msg;
@@ -761,10 +804,7 @@ public class DefaultContentProvider implements
         msg.addMessageElement(MSG_NAMESPACE, msge);
 
         if (data != null) {
-            msge = new ByteArrayMessageElement("data",
-                    new MimeMediaType("application", "octet-stream"),
-                    data, null);
-            msg.addMessageElement(MSG_NAMESPACE, msge);
+            msg.addMessageElement(MSG_NAMESPACE, data);
         }
 
         Logging.logCheckedFiner(LOG, "Sending response: " + msg);
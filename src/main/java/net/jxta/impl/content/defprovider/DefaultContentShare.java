@@ -56,15 +56,21 @@
 
 package net.jxta.impl.content.defprovider;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
 import net.jxta.content.Content;
 import net.jxta.content.ContentShareEvent;
 import net.jxta.content.ContentShareEvent.Builder;
 import net.jxta.content.ContentShareListener;
+import net.jxta.document.Document;
+import net.jxta.document.FileDocument;
 import net.jxta.id.ID;
 import net.jxta.pipe.OutputPipe;
 import net.jxta.protocol.ContentAdvertisement;
 import net.jxta.protocol.PipeAdvertisement;
 import net.jxta.impl.content.AbstractPipeContentShare;
+import net.jxta.logging.Logging;
 
 /**
  * Implementation of the ContentShare interface for use in the
@@ -74,6 +80,34 @@ import net.jxta.impl.content.AbstractPipeContentShare;
  */
 public class DefaultContentShare extends AbstractPipeContentShare<
     ContentAdvertisement, DefaultContentShareAdvertisementImpl> {
+    /**
+     * Logger.
+     */
+    private static final Logger LOG =
+            Logger.getLogger(DefaultContentShare.class.getName());
+
+    /**
+     * Whether or not block manifests are computed for file backed Content.
+     */
+    private static final boolean BLOCK_MANIFESTS =
+            Boolean.valueOf(System.getProperty(
+            DefaultContentShare.class.getName() + ".blockManifests", "true"));
+
+    /**
+     * Block manifest of the Content, or null until it has been computed.
+     */
+    private volatile BlockManifest manifest;
+
+    /**
+     * Held while the manifest is computed, so that it is only computed once.
+     * Never held by {@link #getBlockManifest()}.
+     */
+    private final Object manifestLock = new Object();
+
+    /**
+     * Set once the manifest has been computed, or could not be.
+     */
+    private boolean manifestDone;
 
     /**
      * Construct a new DefaultContentShare object, generating a new
@@ -97,6 +131,68 @@ public class DefaultContentShare extends AbstractPipeContentShare<
         return new DefaultContentShareAdvertisementImpl();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Includes the block manifest of file backed Content, once it has
+     * been computed.
+     */
+    @Override
+    public DefaultContentShareAdvertisementImpl getContentShareAdvertisement() {
+        DefaultContentShareAdvertisementImpl adv =
+                super.getContentShareAdvertisement();
+        adv.setBlockManifest(getBlockManifest());
+        return adv;
+    }
+
+    /**
+     * Returns the block manifest of the shared Content.  This never blocks;
+     * the manifest is computed by {@link #computeBlockManifest()} before
+     * the provider hands the share out.
+     *
+     * @return block manifest, or null if there is none
+     */
+    public BlockManifest getBlockManifest() {
+        return manifest;
+    }
+
+    /**
+     * Computes the block manifest of the shared Content.  Manifests are only
+     * computed for file backed Content, whose length is known and which can
+     * be read more than once.  Reading the whole file may take a long time
+     * so callers must not hold the share's or the provider's monitor.
+     * Concurrent callers wait for the first one to finish.
+     */
+    void computeBlockManifest() {
+        synchronized (manifestLock) {
+            if (manifestDone) {
+                return;
+            }
+
+            manifestDone = true;
+
+            Document doc = getContent().getDocument();
+            if (!BLOCK_MANIFESTS || !(doc instanceof FileDocument)) {
+                return;
+            }
+
+            long length = ((FileDocument) doc).getFile().length();
+
+            try {
+                InputStream in = doc.getStream();
+                try {
+                    manifest = BlockManifest.compute(in, length);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException iox) {
+                Logging.logCheckedWarning(LOG, "Could not compute block manifest\n", iox);
+            }
+
+            Logging.logCheckedFine(LOG, "Block manifest: ", manifest);
+        }
+    }
+
     /**
      * Notify all listeners of this object of a new session being
      * created.
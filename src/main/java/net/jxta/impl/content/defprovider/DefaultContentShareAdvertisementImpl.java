@@ -56,10 +56,16 @@
 
 package net.jxta.impl.content.defprovider;
 
+import java.util.logging.Logger;
 import net.jxta.document.Advertisement;
 import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.Document;
 import net.jxta.document.Element;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.StructuredDocument;
+import net.jxta.document.XMLElement;
 import net.jxta.impl.content.AbstractPipeContentShareAdvertisement;
+import net.jxta.logging.Logging;
 
 /**
  * This class is a simple re-badging of the more generic abstract version,
@@ -69,6 +75,12 @@ import net.jxta.impl.content.AbstractPipeContentShareAdvertisement;
  */
 public class DefaultContentShareAdvertisementImpl
         extends AbstractPipeContentShareAdvertisement {
+    /**
+     * Logger.
+     */
+    private static final Logger LOG =
+            Logger.getLogger(DefaultContentShareAdvertisementImpl.class.getName());
+
     /**
      * ContentID field.
      */
@@ -117,6 +129,12 @@ public class DefaultContentShareAdvertisementImpl
         }
     };
 
+    /**
+     * Block manifest of the Content, or null if the sharing peer did not
+     * provide one.
+     */
+    private BlockManifest manifest;
+
     /**
      *  Construct a new AbstractPipeContentAdvertisement.
      */
@@ -145,6 +163,62 @@ public class DefaultContentShareAdvertisementImpl
         return clone;
     }
 
+    /**
+     * Returns the block manifest of the Content.
+     *
+     * @return block manifest, or null if the sharing peer did not provide one
+     */
+    public BlockManifest getBlockManifest() {
+        return manifest;
+    }
+
+    /**
+     * Sets the block manifest of the Content.
+     *
+     * @param blockManifest block manifest, or null for none
+     */
+    public void setBlockManifest(BlockManifest blockManifest) {
+        manifest = blockManifest;
+    }
+
+    /**
+     *  {@inheritDoc}
+     */
+    @Override
+    protected boolean handleElement( Element raw ) {
+        if ( super.handleElement( raw ) )
+            return true;
+
+        XMLElement elem = (XMLElement) raw;
+
+        if (elem.getName().equals(BlockManifest.TAG)) {
+            try {
+                setBlockManifest(BlockManifest.fromElement(elem));
+            } catch (IllegalArgumentException badManifest) {
+                // Transfers work without it, just less robustly
+                Logging.logCheckedWarning(LOG, "Ignoring block manifest\n", badManifest);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     *  {@inheritDoc}
+     */
+    @Override
+    public Document getDocument( MimeMediaType encodeAs ) {
+        StructuredDocument adv =
+                (StructuredDocument) super.getDocument( encodeAs );
+
+        if (manifest != null) {
+            manifest.appendTo(adv, adv);
+        }
+
+        return adv;
+    }
+
     /**
      *  {@inheritDoc}
      */
@@ -56,18 +56,15 @@
 
 package net.jxta.impl.content.defprovider;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -88,12 +85,12 @@ import net.jxta.document.MimeMediaType;
 import net.jxta.document.StructuredDocument;
 import net.jxta.document.StructuredDocumentFactory;
 import net.jxta.document.XMLDocument;
-import net.jxta.endpoint.ByteArrayMessageElement;
 import net.jxta.endpoint.Message;
 import net.jxta.endpoint.MessageElement;
 import net.jxta.endpoint.TextDocumentMessageElement;
 import net.jxta.id.IDFactory;
 import net.jxta.impl.content.AbstractContentTransfer;
+import net.jxta.impl.content.defprovider.SwarmScheduler.Request;
 import net.jxta.pipe.InputPipe;
 import net.jxta.pipe.OutputPipe;
 import net.jxta.pipe.PipeID;
@@ -105,7 +102,11 @@ import net.jxta.protocol.ContentShareAdvertisement;
 import net.jxta.protocol.PipeAdvertisement;
 
 /**
- *
+ * Retrieves Content from the peers sharing it.  The Content is divided into
+ * chunks which are requested from all of the known sources at once.  The
+ * number of requests outstanding to each source follows the throughput
+ * measured for that source and once all chunks have been requested, slow
+ * requests are repeated to other sources.  See {@link SwarmScheduler}.
  */
 public class DefaultContentTransfer extends AbstractContentTransfer
         implements PipeMsgListener {
@@ -173,12 +174,28 @@ public class DefaultContentTransfer extends AbstractContentTransfer
             + ".responseTimeout", 5).longValue() * 1000;
 
     /**
-     * Maximum number of outstanding requests.
+     * Number of outstanding requests per source before the throughput of the
+     * source has been measured.
      */
     private static final int MAX_OUTSTANDING =
             Integer.getInteger(DefaultContentTransfer.class.getName()
             + ".maxOutstanding", 3).intValue();
 
+    /**
+     * Maximum number of outstanding requests per source.
+     */
+    private static final int MAX_SOURCE_WINDOW =
+            Integer.getInteger(DefaultContentTransfer.class.getName()
+            + ".maxSourceWindow", 16).intValue();
+
+    /**
+     * Number of consecutive unanswered requests after which a source is
+     * no longer used.
+     */
+    private static final int MAX_SOURCE_FAILURES =
+            Integer.getInteger(DefaultContentTransfer.class.getName()
+            + ".maxSourceFailures", 3).intValue();
+
     /**
      * Maximum number of bytes to request at one time.
      */
@@ -208,7 +225,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
      */
     private static final int MAX_QUEUE_SIZE =
             Integer.getInteger(DefaultContentTransfer.class.getName()
-            + ".maxQueue", MAX_OUTSTANDING * 2).intValue();
+            + ".maxQueue", MAX_SOURCE_WINDOW * MANY_SOURCES).intValue();
 
     /**
      * Random number generator used when simulating packet loss.
@@ -225,7 +242,6 @@ public class DefaultContentTransfer extends AbstractContentTransfer
     // Initialized at construction
     private final ScheduledExecutorService executor;
     private final PeerGroup peerGroup;
-    private final List<Node> outstanding = new CopyOnWriteArrayList<Node>();
     private final BlockingQueue<PipeMsgEvent> msgQueue =
             new ArrayBlockingQueue<PipeMsgEvent>(MAX_QUEUE_SIZE);
 
@@ -245,35 +261,30 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
     // Managed by the worker thread and periodic threads after initialiation
     private Thread ownerThread = null;
-    private OutputPipe sourcePipe;
-    private BufferedOutputStream out;
+    private SwarmScheduler<Source> scheduler;
+    private BlockTracker blocks;
+    private RandomAccessFile out;
     private long lastProgress;
-    private long request;
-    private long written;
-    private long eofOffset;
     private boolean doPeriodic;
 
     //////////////////////////////////////////////////////////////////////////
     // Inner classes:
 
     /**
-     * Struct to track requests and responses.
+     * A source of the Content and the pipe used to send it requests.
      */
-    private static class Node {
-        public long timeStamp;
-        public long offset;
-        public int length;
-        public byte[] data;
+    private static class Source {
+        public final DefaultContentShareAdvertisementImpl adv;
+        public final OutputPipe pipe;
+
+        public Source(DefaultContentShareAdvertisementImpl adv, OutputPipe pipe) {
+            this.adv = adv;
+            this.pipe = pipe;
+        }
 
         @Override
         public String toString() {
-            String result = "[Node timeStamp=" + timeStamp
-                    + ", offset=" + offset
-                    + ", length=" + length;
-            if (data != null) {
-                result += ", dataLength=" + data.length;
-            }
-            return result + "]";
+            return "[Source pipe=" + adv.getPipeAdvertisement().getPipeID() + "]";
         }
     }
 
@@ -380,39 +391,34 @@ public class DefaultContentTransfer extends AbstractContentTransfer
              */
         }
 
-        // Find a share adv we can use:
-        DefaultContentShareAdvertisementImpl adv = null;
-        sourcePipe = null;
-        do {
-            if (sourcesRemaining.size() == 0) {
-                break;
-            }
-            adv = sourcesRemaining.remove(0);
+        // Use every share adv we can:
+        List<Source> selected = new ArrayList<Source>();
+        while (sourcesRemaining.size() > 0) {
+            DefaultContentShareAdvertisementImpl adv = sourcesRemaining.remove(0);
             sourcesTried.add(adv);
 
             try {
 
                 PipeService pipeService = peerGroup.getPipeService();
-                sourcePipe = pipeService.createOutputPipe(
+                OutputPipe sourcePipe = pipeService.createOutputPipe(
                         adv.getPipeAdvertisement(), PIPE_TIMEOUT);
+                selected.add(new Source(adv, sourcePipe));
 
             } catch (IOException iox) {
 
                 Logging.logCheckedWarning(LOG, "Could not resolve source pipe for Source: ",
                     adv.getPipeAdvertisement(), iox);
 
-                adv = null;
-
             }
 
-        } while (adv == null);
+        }
 
-        if (adv == null) throw(new TransferException("Could not find usable source"));
+        if (selected.isEmpty()) throw(new TransferException("Could not find usable source"));
 
-        Logging.logCheckedFine(LOG, "Source selected: ", adv);
+        Logging.logCheckedFine(LOG, "Sources selected: ", selected);
 
         try {
-            transferInit(dest);
+            transferInit(dest, selected);
             processMessages();
 
             criticalEntry();
@@ -432,7 +438,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
             try {
 
-                transferCleanup(dest, adv);
+                transferCleanup(dest, selected);
 
             } catch (InterruptedException intx) {
 
@@ -484,7 +490,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
     /**
      * Initialize member vars for transfer.
      */
-    private void transferInit(File dataFile)
+    private void transferInit(File dataFile, List<Source> sources)
             throws TransferException, InterruptedException  {
         criticalEntry();
         try {
@@ -496,9 +502,11 @@ public class DefaultContentTransfer extends AbstractContentTransfer
                 setupResponsePipe();
 
                 // Initialized transfer data
-                outstanding.clear();
-                for (int i=0; i<MAX_OUTSTANDING; i++) {
-                    outstanding.add(new Node());
+                scheduler = new SwarmScheduler<Source>(MAX_REQUEST_LENGTH,
+                        MAX_OUTSTANDING, MAX_SOURCE_WINDOW,
+                        MAX_SOURCE_FAILURES, RESPONSE_TIMEOUT);
+                for (Source source : sources) {
+                    scheduler.addSource(source);
                 }
 
                 // Start up periodic health check
@@ -526,49 +534,106 @@ public class DefaultContentTransfer extends AbstractContentTransfer
                 }
             }
 
+            // Verify blocks as they arrive if the sharing peer provided a
+            // manifest.
+            BlockManifest manifest = null;
+            for (Source source : sources) {
+                manifest = source.adv.getBlockManifest();
+                if (manifest != null) {
+                    break;
+                }
+            }
+
+            // Chunks arrive out of order and are written where they belong.
             try {
-                out = new BufferedOutputStream(new FileOutputStream(dataFile));
-            } catch (FileNotFoundException filex) {
+                out = new RandomAccessFile(dataFile, "rw");
+                if (manifest == null) {
+                    blocks = null;
+                    out.setLength(0);
+                } else {
+                    resumeBlocks(manifest, dataFile);
+                }
+            } catch (IOException iox) {
+                closeOut();
                 throw(new TransferException(
-                        "Could not initialize transfer", filex));
+                        "Could not initialize transfer", iox));
             }
 
-            written = 0;
-            request = 0;
-            eofOffset = -1;
             lastProgress = System.currentTimeMillis();
         } finally {
             criticalExit();
         }
     }
 
+    /**
+     * Sets up block verification and skips the blocks which an earlier
+     * attempt already received.
+     */
+    private void resumeBlocks(BlockManifest manifest, File dataFile) {
+        blocks = new BlockTracker(manifest,
+                getTransferContentID().toString(), getStateFile(dataFile));
+        int restored = blocks.resume(out);
+
+        scheduler.setLength(manifest.getLength());
+        for (int block = 0; block < manifest.getBlockCount(); block++) {
+            if (blocks.isVerified(block)) {
+                scheduler.skip(manifest.getBlockOffset(block),
+                        manifest.getBlockLength(block));
+            }
+        }
+
+        Logging.logCheckedFine(LOG, "Resuming with ", restored, " of ",
+                manifest.getBlockCount(), " blocks");
+    }
+
+    /**
+     * Returns the file recording which blocks of the data file have been
+     * verified.
+     */
+    private static File getStateFile(File dataFile) {
+        return new File(dataFile.getPath() + ".resume");
+    }
+
     /**
      * Cleanup member vars post-transfer.
      */
-    private void transferCleanup(File dataFile, ContentShareAdvertisement adv)
+    private void transferCleanup(File dataFile, List<Source> sources)
             throws TransferException, InterruptedException {
         criticalEntry();
         try {
 
+            for (Source source : sources) {
+                source.pipe.close();
+            }
+
             synchronized(this) {
-                outstanding.clear();
+                boolean complete = (scheduler != null) && scheduler.isComplete();
+                long eofOffset = complete ? scheduler.getEOFOffset() : -1;
+                scheduler = null;
 
-                periodicTask.cancel(false);
-                periodicTask = null;
+                if (periodicTask != null) {
+                    periodicTask.cancel(false);
+                    periodicTask = null;
+                }
 
                 // Check for latent exceptions (i.e., cancellations)
                 if (toThrow != null && toThrow != STALLED) {
+                    closeOut();
                     TransferException toThrowRef = toThrow;
                     toThrow = null;
                     throw toThrowRef;
                 }
 
-                if (written == eofOffset && out != null) {
+                if (complete && out != null) {
                     // Persist our Content
                     try {
+                        out.setLength(eofOffset);
                         out.close();
+                        if (blocks != null) {
+                            blocks.delete();
+                        }
                         ContentAdvertisement cAdv =
-                                adv.getContentAdvertisement();
+                                sources.get(0).adv.getContentAdvertisement();
                         content = new Content(
                                 cAdv.getContentID(),
                                 cAdv.getMetaID(),
@@ -579,27 +644,43 @@ public class DefaultContentTransfer extends AbstractContentTransfer
                         throw(new TransferException(
                                 "Could not close data file", iox));
                     }
+                } else if (blocks != null) {
+                    // Keep the verified blocks for the next attempt
+                    content = null;
+                    closeOut();
                 } else {
                     // Cleanup the data file
                     content = null;
+                    closeOut();
                     dataFile.delete();
                 }
             }
 
-            if (sourcePipe != null) {
-                sourcePipe.close();
-                sourcePipe = null;
-            }
-
+            blocks = null;
             out = null;
-            written = 0;
-            request = 0;
             running = false;
         } finally {
             criticalExit();
         }
     }
 
+    /**
+     * Closes the data file, ignoring failures.
+     */
+    private void closeOut() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException iox) {
+            Logging.logCheckedFinest(LOG, "Could not close data file\n", iox);
+        }
+
+        out = null;
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // Private methods protected by critical section methods:
 
@@ -679,6 +760,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
                 }
 
+                long written = scheduler.getBytesReceived();
                 if (written != lastWritten) {
                     lastWritten = written;
                     fireWritten = written;
@@ -691,7 +773,8 @@ public class DefaultContentTransfer extends AbstractContentTransfer
             }
 
             if (fireWritten >= 0) {
-                fireTransferProgress(written);
+                fireTransferProgress(fireWritten);
+                fireWritten = -1;
             }
         }
 
@@ -705,7 +788,6 @@ public class DefaultContentTransfer extends AbstractContentTransfer
      * @param msg message received
      */
     public void processMessage(Message msg) {
-        ByteArrayMessageElement bmsge;
         MessageElement msge;
         ListIterator it;
         StructuredDocument doc;
@@ -748,16 +830,11 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
         if (it.hasNext()) {
 
-            try {
-
-                bmsge = (ByteArrayMessageElement) it.next();
-                data = bmsge.getBytes();
-
-            } catch (ClassCastException ccx) {
+            // Data may arrive as any kind of element, eg. a buffer element
+            // from a zero-copy decoder or an in-process send.
+            msge = (MessageElement) it.next();
+            data = msge.getBytes(false);
 
-                Logging.logCheckedWarning(LOG, "Second message element not byte array\n", ccx);
-
-            }
         }
 
         processDataResponse(resp, data);
@@ -783,122 +860,48 @@ public class DefaultContentTransfer extends AbstractContentTransfer
      */
     private void periodicCheck() throws InterruptedException {
 
-        long millis = System.currentTimeMillis();
-
-        Logging.logCheckedFiner(LOG, "Peridiodic check starting");
-
-        int attempt=0;
-        int maxAttempts = outstanding.size();
-        boolean progress = true;
-
-        while (progress && attempt++ < maxAttempts) {
-
-            Logging.logCheckedFiner(LOG, "Periodic check attempt #", attempt,
-                        " (", maxAttempts, " max)");
-
-            progress = false;
-            int i=0;
-            int inUse=0;
-
-            for (Node node : outstanding) {
-
-                Logging.logCheckedFiner(LOG, "Evaluating status of Node #", i, ": ", node);
-
-                if (0 == node.timeStamp) {
-
-                    // Node not in use
-                    Logging.logCheckedFiner(LOG, "  Node not in use.");
-
-                    if (prepareRequest(node)) {
-
-                        Logging.logCheckedFiner(LOG, "  Node repurposed for request: ", node);
-
-                        progress = true;
-                        inUse++;
-                        sendRequest(node, i);
-
-                    }
-
-                } else if (node.data != null) {
-
-                    // Node has data, but data hasnt been written out yet.
-                    Logging.logCheckedFiner(LOG, "  Node awaiting data write-out.");
-
-                    if (checkWrite(node)) {
-
-                        Logging.logCheckedFiner(LOG, "  Data written.");
-
-                        if (prepareRequest(node)) {
-
-                            Logging.logCheckedFiner(LOG, "  Node repurposed for request: ", node);
-
-                            progress = true;
-                            inUse++;
-                            sendRequest(node, i);
-
-                        }
-
-                    } else {
-
-                        // Cant write yet.
-                        Logging.logCheckedFiner(LOG, "  Can't write yet.");
-                        inUse++;
-
-                    }
-
-                } else if (millis - node.timeStamp > RESPONSE_TIMEOUT) {
-
-                    // Request timed out
-                    Logging.logCheckedFiner(LOG, "  Timeout detected.");
-
-                    boolean beyondEOF = (eofOffset >= 0) && (eofOffset <= node.offset);
-
-                    if (beyondEOF) {
-
-                        Logging.logCheckedFiner(LOG, "  Request is beyond known EOF. Resetting.");
-                        progress = true;
-                        node.timeStamp = 0;
-
-                    } else {
+        if (scheduler == null) {
+            // Transfer already cleaned up
+            return;
+        }
 
-                        Logging.logCheckedFiner(LOG, "  Resending request.");
-                        inUse++;
-                        sendRequest(node, i);
+        long now = System.currentTimeMillis();
 
-                    }
+        Logging.logCheckedFiner(LOG, "Peridiodic check starting");
 
-                } else {
+        // Give up on requests which have gone unanswered
+        closeSources(scheduler.expire(now));
+        sendRequests(now);
 
-                    // Request outstanding.
-                    if (eofOffset >= 0 && eofOffset <= node.offset) {
+        if (scheduler.isComplete() && blocks != null && !blocks.isComplete()) {
 
-                        Logging.logCheckedFiner(LOG, "  Request is beyond known EOF. Resetting.");
-                        progress = true;
-                        node.timeStamp = 0;
+            // A source ended the content early
+            Logging.logCheckedWarning(LOG, "Transfer ended before all blocks were verified");
 
-                    } else {
+            synchronized(this) {
+                toThrow = STALLED;
+                running = false;
+                notifyAll();
+            }
 
-                        Logging.logCheckedFiner(LOG, "  Request outstanding.");
-                        inUse++;
+        } else if (scheduler.isComplete()) {
 
-                    }
-                }
+            // We're done.
+            Logging.logCheckedFine(LOG, "Transfer complete");
 
-                i++;
+            synchronized(this) {
+                running = false;
+                notifyAll();
             }
 
-            if (inUse == 0 && eofOffset >= 0) {
+        } else if (scheduler.getSources().isEmpty()) {
 
-                // We're done.
-                Logging.logCheckedFine(LOG, "Transfer complete");
-
-                synchronized(this) {
-                    running = false;
-                    notifyAll();
-                }
-
-                break;
+            Logging.logCheckedFine(LOG, "No sources left to request from");
 
+            synchronized(this) {
+                toThrow = STALLED;
+                running = false;
+                notifyAll();
             }
 
         }
@@ -917,63 +920,80 @@ public class DefaultContentTransfer extends AbstractContentTransfer
     }
 
     /**
-     * Sets up the specified node with the details of the next request
-     * needed.
+     * Verifies the blocks completed by data just written, requesting any
+     * which do not match the manifest again.
      */
-    private boolean prepareRequest(Node node) {
-        node.timeStamp = System.currentTimeMillis();
-
-        // Was the last request on this node completely successful?
-        if (node.data != null) {
-            if (node.data.length != node.length) {
-                // We need to request the remaining data
-                node.offset += node.data.length;
-                if (eofOffset >= 0 && node.offset >= eofOffset) {
-                    // No need to request any more data.
-                    node.timeStamp = 0;
-                    return false;
+    private void verifyBlocks(long offset, int length) {
+        BlockManifest manifest = blocks.getManifest();
+        boolean verified = false;
+
+        for (int block : blocks.received(offset, length)) {
+            try {
+
+                if (blocks.verify(block, out)) {
+                    verified = true;
+                    continue;
                 }
-                node.length -= node.data.length;
-                node.data = null;
-                return true;
+
+                Logging.logCheckedWarning(LOG, "Block ", block,
+                        " does not match manifest.  Requesting again.");
+
+            } catch (IOException iox) {
+
+                Logging.logCheckedWarning(LOG, "Could not verify block ", block, "\n", iox);
+
+            }
+
+            scheduler.reschedule(manifest.getBlockOffset(block),
+                    manifest.getBlockLength(block));
+        }
+
+        if (verified) {
+            try {
+                blocks.save();
+            } catch (IOException iox) {
+                Logging.logCheckedWarning(LOG, "Could not save transfer state\n", iox);
             }
-            node.data = null;
         }
+    }
 
-        if (eofOffset >= 0) {
-            // No more data to request or nobody to request from.Mark as unused.
-            node.timeStamp = 0;
-            return false;
+    /**
+     * Sends the requests which the scheduler has room for.
+     */
+    private void sendRequests(long now) {
+        for (Request<Source> request : scheduler.schedule(now)) {
+            if (!sendRequest(request)) {
+                closeSources(scheduler.sendFailed(request));
+            }
         }
+    }
 
-        // Request next segment.
-        node.offset = request;
-        node.length = MAX_REQUEST_LENGTH;
-        request += node.length;
-        return true;
+    /**
+     * Closes the pipes of the sources which the scheduler has given up on.
+     */
+    private void closeSources(List<Source> dropped) {
+        for (Source source : dropped) {
+            Logging.logCheckedFine(LOG, "Dropping unresponsive source: ", source);
+            source.pipe.close();
+        }
     }
 
     /**
      * Sends a request to a remote peer.
+     *
+     * @return {@code true} if the request was sent
      */
-    private void sendRequest(Node node, int idx) {
+    private boolean sendRequest(Request<Source> request) {
 
         XMLDocument doc;
         DataRequest req;
         Message msg;
 
-        if (null == sourcePipe) {
-            Logging.logCheckedFine(LOG, "No source pipe available.  Deferring node: ", node);
-            node.timeStamp = 1;
-            return;
-        }
-
-        node.timeStamp = System.currentTimeMillis();
         req = new DataRequest();
         req.setContentID(getTransferContentID());
-        req.setOffset(node.offset);
-        req.setLength(node.length);
-        req.setQueryID(idx);
+        req.setOffset(request.offset);
+        req.setLength(request.length);
+        req.setQueryID(request.queryID);
         req.setResponsePipe(responsePipeAdv);
 
         doc = (XMLDocument) req.getDocument(MimeMediaType.XMLUTF8);
@@ -983,7 +1003,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
         msg.addMessageElement(DefaultContentProvider.MSG_NAMESPACE, msge);
 
         if (Logging.SHOW_FINEST && LOG.isLoggable(Level.FINEST)) {
-            Logging.logCheckedFinest(LOG, "Sending DataRequest (idx=", idx, ", node=", node, "):");
+            Logging.logCheckedFinest(LOG, "Sending DataRequest (", request, "):");
             Logging.logCheckedFinest(LOG, "   ContentID: ", req.getContentID());
             Logging.logCheckedFinest(LOG, "   Offset : ", req.getOffset());
             Logging.logCheckedFinest(LOG, "   Length : ", req.getLength());
@@ -992,7 +1012,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
         try {
 
-            if (sourcePipe.send(msg)) return;
+            if (request.source.pipe.send(msg)) return true;
 
         } catch (IOException iox) {
 
@@ -1001,7 +1021,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
         }
 
         Logging.logCheckedFiner(LOG, "Did not send message");
-        node.timeStamp = 1;
+        return false;
 
     }
 
@@ -1009,9 +1029,8 @@ public class DefaultContentTransfer extends AbstractContentTransfer
      * Process an incoming data response.
      */
     private void processDataResponse(DataResponse resp, byte[] data) {
-        Node node;
-        int idx;
-        long offs;
+        Request<Source> request;
+        int len = (data == null) ? 0 : data.length;
 
         if (Logging.SHOW_FINEST && LOG.isLoggable(Level.FINEST)) {
             Logging.logCheckedFinest(LOG, "DataResponse:");
@@ -1020,7 +1039,7 @@ public class DefaultContentTransfer extends AbstractContentTransfer
             Logging.logCheckedFinest(LOG, "   Length : ", resp.getLength());
             Logging.logCheckedFinest(LOG, "   QID    : ", resp.getQueryID());
             Logging.logCheckedFinest(LOG, "   EOF    : ", resp.getEOF());
-            Logging.logCheckedFinest(LOG, "   Bytes  : ", ((data == null) ? 0 : data.length));
+            Logging.logCheckedFinest(LOG, "   Bytes  : ", len);
         }
 
         if (!resp.getContentID().equals(getTransferContentID())) {
@@ -1031,128 +1050,83 @@ public class DefaultContentTransfer extends AbstractContentTransfer
 
         }
 
-        if (resp.getLength() != ((data == null) ? 0 : data.length)) {
+        if (resp.getLength() != len) {
 
             Logging.logCheckedWarning(LOG, "Data length doesnt match length in header.  Discarding.");
-            Logging.logCheckedFinest(LOG, "Expected length: ", ((data == null) ? 0 : data.length));
+            Logging.logCheckedFinest(LOG, "Expected length: ", len);
             return;
 
         }
 
-        idx = resp.getQueryID();
-
-        if (idx >= outstanding.size()) {
+        // We have what appears to be a good packet.
+        if (SIMULATE_PACKET_LOSS) {
+            if (RANDOM.nextInt(100) < PACKET_LOSS_PERCENT) {
+                if (Logging.SHOW_FINE && LOG.isLoggable(Level.FINE)) {
+                    Logging.logCheckedFine(LOG, "Simulating lost packet");
+                    return;
+                }
+            }
+        }
 
-            Logging.logCheckedWarning(LOG, "Invalid query ID.  Discarding.");
-            Logging.logCheckedFinest(LOG, "Expected max: ", outstanding.size());
+        if (scheduler == null) {
+            Logging.logCheckedFiner(LOG, "No transfer in progress.  Discarding.");
             return;
-
         }
 
-        node = outstanding.get(idx);
+        long now = System.currentTimeMillis();
 
-        if (node == null) {
+        request = scheduler.received(
+                resp.getQueryID(), resp.getOffset(), len, resp.getEOF(), now);
 
-            Logging.logCheckedWarning(LOG, "Null node.  Discarding");
-            return;
+        if (request == null) {
 
-        }
+            // Unknown, stale or duplicate response
+            Logging.logCheckedFiner(LOG, "Unexpected response.  Discarding.");
 
-        boolean couldWrite;
+        } else if (len > 0) {
 
-        if (resp.getOffset() != node.offset) {
+            // We made some progress
+            lastProgress = now;
 
-            Logging.logCheckedWarning(LOG, "Invalid offset. Discarding.");
-            Logging.logCheckedFinest(LOG, "Expected offset: ", node.offset);
-            return;
+            try {
 
-        }
+                out.seek(request.offset);
+                out.write(data, 0, len);
 
-        // We have what appears to be a good packet.
-        if (SIMULATE_PACKET_LOSS) {
-            if (RANDOM.nextInt(100) < PACKET_LOSS_PERCENT) {
-                if (Logging.SHOW_FINE && LOG.isLoggable(Level.FINE)) {
-                    Logging.logCheckedFine(LOG, "Simulating lost packet");
-                    return;
-                }
-            }
-        }
+            } catch (IOException iox) {
 
-        // We made some progress
-        lastProgress = System.currentTimeMillis();
+                Logging.logCheckedWarning(LOG, "Could not write data\n", iox);
+
+                synchronized(this) {
+                    toThrow = new TransferException("Could not write data", iox);
+                    running = false;
+                    notifyAll();
+                }
+                return;
 
-        node.data = data;
-        if (resp.getEOF()) {
-            offs = node.offset;
-            if (null != node.data) {
-                offs += node.data.length;
-            }
-            // Update the best known EOF offset
-            if (eofOffset < 0 || offs < eofOffset) {
-                eofOffset = offs;
             }
-        }
-        couldWrite = checkWrite(node);
-        if (couldWrite) {
 
             if (Logging.SHOW_FINEST && LOG.isLoggable(Level.FINEST)) {
                 Logging.logCheckedFinest(LOG, "Wrote the following to disk:");
                 Logging.logCheckedFinest(LOG, "   Offset : ", resp.getOffset());
                 Logging.logCheckedFinest(LOG, "   Length : ", resp.getLength());
                 Logging.logCheckedFinest(LOG, "   QID    : ", resp.getQueryID());
-                Logging.logCheckedFinest(LOG, "   EOF    : ", resp.getEOF());
-                Logging.logCheckedFinest(LOG, "   Bytes  : ", ((data == null) ? 0 : data.length));
+                Logging.logCheckedFinest(LOG, "   Source : ", request.source);
             }
 
-            if (prepareRequest(node)) {
-                sendRequest(node, idx);
+            if (blocks != null) {
+                verifyBlocks(request.offset, len);
             }
 
-        } else {
-
-            // Signal an evaluation all Nodes
-            doPeriodic = true;
-
-        }
-
-        if (eofOffset >= 0) {
-            // If we've seen an EOF marker, cause a check
-            doPeriodic = true;
-        }
-    }
-
-    /**
-     * If the offset for this node's data is the same as the next byte
-     * which needs to be written to disk, write this node's data to disk.
-     */
-    private boolean checkWrite(Node node) {
-        if (node.offset != written) {
-            // Cant do anything about this now.
-            return false;
-        }
-
-        // Write data to disk.
-        node.timeStamp = 0;
-        if (node.data == null) {
-            return true;
         }
 
-        try {
-
-            out.write(node.data, 0, node.data.length);
-
-        } catch (IOException iox) {
-
-            // We'll implicitly try again later
-            Logging.logCheckedFinest(LOG, "Could not write data\n", iox);
-            return false;
+        // Keep the windows of the sources full
+        sendRequests(now);
 
+        if (scheduler.isComplete()) {
+            // Transfer is done, cause a check
+            doPeriodic = true;
         }
-
-        // If we got here, we wrote data.
-        written += node.data.length;
-
-        return true;
     }
 
     /**
@@ -0,0 +1,654 @@
+package net.jxta.impl.content.defprovider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides which chunks of the content to request from which sources.
+ * <p>
+ * The content is divided into chunks which are striped across all of the
+ * sources. Each source is allowed a window of outstanding requests which is
+ * sized from the throughput and round trip time measured for that source, so
+ * fast sources are given more of the content than slow ones. Once every chunk
+ * has been requested the scheduler enters end-game mode, in which sources
+ * with free window slots also request chunks which are still outstanding
+ * from other sources; whichever response arrives first is used.
+ * <p>
+ * The scheduler does no I/O and is not thread safe. Times are supplied by the
+ * caller.
+ *
+ * @param <S> the type of the source handles.
+ */
+final class SwarmScheduler<S> {
+
+    /**
+     * Weight of a new round trip time sample.
+     */
+    private static final double RTT_WEIGHT = 0.125;
+
+    /**
+     * Weight of a new throughput sample.
+     */
+    private static final double THROUGHPUT_WEIGHT = 0.25;
+
+    /**
+     * Maximum number of simultaneous requests for a chunk in end-game mode.
+     */
+    private static final int END_GAME_COPIES = 2;
+
+    /**
+     * A request for a chunk sent to a source.
+     *
+     * @param <S> the type of the source handles.
+     */
+    static final class Request<S> {
+        final int queryID;
+        final S source;
+        final long offset;
+        final int length;
+        final long sentAt;
+
+        private final Chunk<S> chunk;
+        private final SourceState<S> state;
+
+        private Request(int queryID, SourceState<S> state, Chunk<S> chunk, long sentAt) {
+            this.queryID = queryID;
+            this.source = state.source;
+            this.offset = chunk.offset;
+            this.length = chunk.length;
+            this.sentAt = sentAt;
+            this.chunk = chunk;
+            this.state = state;
+        }
+
+        @Override
+        public String toString() {
+            return "[Request queryID=" + queryID + ", offset=" + offset + ", length=" + length + ", source=" + source + "]";
+        }
+    }
+
+    /**
+     * A range of the content.
+     */
+    private static final class Chunk<S> {
+        final long offset;
+        int length;
+        final List<Request<S>> inFlight = new ArrayList<Request<S>>(END_GAME_COPIES);
+
+        Chunk(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        boolean isRequestedFrom(SourceState<S> state) {
+            for (Request<S> each : inFlight) {
+                if (each.state == state) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * The measurements of a source.
+     */
+    private static final class SourceState<S> {
+        final S source;
+        int window;
+        int outstanding;
+        double rttMillis = -1;
+        double bytesPerMilli = -1;
+        long lastDelivery;
+        int failures;
+
+        SourceState(S source, int window) {
+            this.source = source;
+            this.window = window;
+        }
+    }
+
+    /**
+     * Orders sources with the highest measured throughput first. Sources
+     * which have not been measured yet come first so that they are probed.
+     */
+    private static final Comparator<SourceState<?>> FASTEST_FIRST = new Comparator<SourceState<?>>() {
+        public int compare(SourceState<?> one, SourceState<?> two) {
+            boolean oneMeasured = one.bytesPerMilli >= 0;
+            boolean twoMeasured = two.bytesPerMilli >= 0;
+
+            if (oneMeasured != twoMeasured) {
+                return oneMeasured ? 1 : -1;
+            }
+
+            return Double.compare(two.bytesPerMilli, one.bytesPerMilli);
+        }
+    };
+
+    private final int chunkLength;
+    private final int initialWindow;
+    private final int maxWindow;
+    private final int maxFailures;
+    private final long responseTimeout;
+
+    private final Map<S, SourceState<S>> sources = new LinkedHashMap<S, SourceState<S>>();
+
+    /**
+     * Chunks which need to be requested, by offset.
+     */
+    private final TreeMap<Long, Chunk<S>> pending = new TreeMap<Long, Chunk<S>>();
+
+    /**
+     * Chunks which have been requested and not yet received, by offset.
+     */
+    private final TreeMap<Long, Chunk<S>> active = new TreeMap<Long, Chunk<S>>();
+
+    /**
+     * The outstanding requests, by query ID.
+     */
+    private final Map<Integer, Request<S>> requests = new HashMap<Integer, Request<S>>();
+
+    /**
+     * Ranges of the content which are already held and are not requested,
+     * end offsets by start offset.
+     */
+    private final TreeMap<Long, Long> held = new TreeMap<Long, Long>();
+
+    private long nextOffset = 0;
+    private long eofOffset = -1;
+    private int nextQueryID = 0;
+    private long received = 0;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param chunkLength     the number of bytes requested at one time.
+     * @param initialWindow   the number of requests a source may have
+     *                        outstanding before it has been measured.
+     * @param maxWindow       the largest number of requests a source may
+     *                        have outstanding.
+     * @param maxFailures     the number of consecutive failed requests after
+     *                        which a source is dropped.
+     * @param responseTimeout the number of milliseconds after which a request
+     *                        has failed.
+     */
+    SwarmScheduler(int chunkLength, int initialWindow, int maxWindow, int maxFailures, long responseTimeout) {
+        if (chunkLength <= 0) {
+            throw new IllegalArgumentException("chunk length must be positive");
+        }
+
+        this.chunkLength = chunkLength;
+        this.maxWindow = Math.max(1, maxWindow);
+        this.initialWindow = Math.max(1, Math.min(initialWindow, this.maxWindow));
+        this.maxFailures = Math.max(1, maxFailures);
+        this.responseTimeout = responseTimeout;
+    }
+
+    /**
+     * Adds a source.
+     *
+     * @param source the source.
+     */
+    void addSource(S source) {
+        if (!sources.containsKey(source)) {
+            sources.put(source, new SourceState<S>(source, initialWindow));
+        }
+    }
+
+    /**
+     * Removes a source. Its outstanding requests are forgotten and their
+     * chunks will be requested from other sources.
+     *
+     * @param source the source.
+     */
+    void removeSource(S source) {
+        SourceState<S> state = sources.remove(source);
+
+        if (null == state) {
+            return;
+        }
+
+        Iterator<Request<S>> eachRequest = requests.values().iterator();
+
+        while (eachRequest.hasNext()) {
+            Request<S> request = eachRequest.next();
+
+            if (request.state == state) {
+                eachRequest.remove();
+                release(request);
+            }
+        }
+    }
+
+    /**
+     * Returns the current sources.
+     *
+     * @return the current sources.
+     */
+    List<S> getSources() {
+        return new ArrayList<S>(sources.keySet());
+    }
+
+    /**
+     * Returns the number of requests a source may have outstanding.
+     *
+     * @param source the source.
+     * @return the window of the source or 0 if it is not a current source.
+     */
+    int getWindow(S source) {
+        SourceState<S> state = sources.get(source);
+
+        return (null == state) ? 0 : state.window;
+    }
+
+    /**
+     * Sets the length of the content when it is known in advance. Chunks are
+     * not requested beyond it.
+     *
+     * @param length the length of the content.
+     */
+    void setLength(long length) {
+        if ((eofOffset < 0) || (length < eofOffset)) {
+            eofOffset = length;
+            pruneBeyondEOF();
+            skipHeld();
+        }
+    }
+
+    /**
+     * Records a range of the content which is already held, for example from
+     * an earlier transfer, so that it is not requested. Must be called before
+     * the first call to {@link #schedule(long)}.
+     *
+     * @param offset the offset of the range.
+     * @param length the length of the range.
+     */
+    void skip(long offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        held.put(offset, offset + length);
+        received += length;
+        skipHeld();
+    }
+
+    /**
+     * Requests a range of the content again, for example because the data
+     * received for it was corrupt.
+     *
+     * @param offset the offset of the range.
+     * @param length the length of the range.
+     */
+    void reschedule(long offset, int length) {
+        received -= length;
+
+        for (int done = 0; done < length; done += chunkLength) {
+            Chunk<S> chunk = new Chunk<S>(offset + done, Math.min(chunkLength, length - done));
+
+            pending.put(chunk.offset, chunk);
+        }
+    }
+
+    /**
+     * Moves the next offset past any held ranges.
+     */
+    private void skipHeld() {
+        Map.Entry<Long, Long> range;
+
+        while ((null != (range = held.floorEntry(nextOffset))) && (range.getValue() > nextOffset)) {
+            nextOffset = range.getValue();
+        }
+    }
+
+    /**
+     * Returns the offset of the end of the content.
+     *
+     * @return the offset of the end of the content or -1 if it is not yet
+     *         known.
+     */
+    long getEOFOffset() {
+        return eofOffset;
+    }
+
+    /**
+     * Returns the number of bytes received.
+     *
+     * @return the number of bytes received.
+     */
+    long getBytesReceived() {
+        return received;
+    }
+
+    /**
+     * Returns {@code true} if every chunk has been requested and the
+     * remaining chunks may be requested from more than one source.
+     *
+     * @return {@code true} if in end-game mode.
+     */
+    boolean isEndGame() {
+        return (eofOffset >= 0) && pending.isEmpty() && (nextOffset >= eofOffset);
+    }
+
+    /**
+     * Returns {@code true} if every chunk of the content has been received.
+     *
+     * @return {@code true} if the content is complete.
+     */
+    boolean isComplete() {
+        return isEndGame() && active.isEmpty();
+    }
+
+    /**
+     * Returns the new requests which should be sent, filling the window of
+     * each source. The fastest sources are given chunks first and in
+     * end-game mode outstanding chunks are requested again from sources which
+     * do not already have them.
+     *
+     * @param now the current time in milliseconds.
+     * @return the requests to send.
+     */
+    List<Request<S>> schedule(long now) {
+        List<Request<S>> result = new ArrayList<Request<S>>();
+        List<SourceState<S>> ordered = new ArrayList<SourceState<S>>(sources.values());
+
+        Collections.sort(ordered, FASTEST_FIRST);
+
+        // One chunk per source per pass so that the chunks are striped.
+        boolean assigned = true;
+
+        while (assigned) {
+            assigned = false;
+
+            for (SourceState<S> state : ordered) {
+                if (state.outstanding >= state.window) {
+                    continue;
+                }
+
+                Chunk<S> chunk = nextChunk(state);
+
+                if (null == chunk) {
+                    continue;
+                }
+
+                Request<S> request = new Request<S>(newQueryID(), state, chunk, now);
+
+                chunk.inFlight.add(request);
+                active.put(chunk.offset, chunk);
+                requests.put(request.queryID, request);
+                state.outstanding++;
+                result.add(request);
+                assigned = true;
+            }
+        }
+
+        return result;
+    }
+
+    private int newQueryID() {
+        do {
+            nextQueryID = (nextQueryID == Integer.MAX_VALUE) ? 0 : nextQueryID + 1;
+        } while (requests.containsKey(nextQueryID));
+
+        return nextQueryID;
+    }
+
+    /**
+     * Returns the next chunk a source should request or {@code null} if there
+     * is none.
+     */
+    private Chunk<S> nextChunk(SourceState<S> state) {
+        if (!pending.isEmpty()) {
+            return pending.remove(pending.firstKey());
+        }
+
+        if ((eofOffset < 0) || (nextOffset < eofOffset)) {
+            int length = chunkLength;
+            Long nextHeld = held.higherKey(nextOffset);
+
+            if (null != nextHeld) {
+                length = (int) Math.min(length, nextHeld - nextOffset);
+            }
+
+            if (eofOffset >= 0) {
+                length = (int) Math.min(length, eofOffset - nextOffset);
+            }
+
+            Chunk<S> chunk = new Chunk<S>(nextOffset, length);
+
+            nextOffset += length;
+            skipHeld();
+            return chunk;
+        }
+
+        // End-game: help with the chunk which has been outstanding longest.
+        Chunk<S> oldest = null;
+        long oldestSent = Long.MAX_VALUE;
+
+        for (Chunk<S> chunk : active.values()) {
+            if ((chunk.inFlight.size() >= END_GAME_COPIES) || chunk.isRequestedFrom(state)) {
+                continue;
+            }
+
+            long sent = chunk.inFlight.isEmpty() ? Long.MIN_VALUE : chunk.inFlight.get(0).sentAt;
+
+            if (sent < oldestSent) {
+                oldest = chunk;
+                oldestSent = sent;
+            }
+        }
+
+        return oldest;
+    }
+
+    /**
+     * Forgets a request. If no other request for its chunk is outstanding the
+     * chunk will be requested again.
+     */
+    private void release(Request<S> request) {
+        Chunk<S> chunk = request.chunk;
+
+        request.state.outstanding--;
+        chunk.inFlight.remove(request);
+
+        if (chunk.inFlight.isEmpty() && (active.get(chunk.offset) == chunk)) {
+            active.remove(chunk.offset);
+
+            if ((eofOffset < 0) || (chunk.offset < eofOffset)) {
+                pending.put(chunk.offset, chunk);
+            }
+        }
+    }
+
+    /**
+     * Records that a source did not answer a request.
+     */
+    private void failed(Request<S> request, List<S> dropped) {
+        SourceState<S> state = request.state;
+
+        release(request);
+        state.window = Math.max(1, state.window / 2);
+        state.failures++;
+
+        if ((state.failures >= maxFailures) && sources.containsKey(state.source)) {
+            dropped.add(state.source);
+            removeSource(state.source);
+        }
+    }
+
+    /**
+     * Records that a request could not be sent.
+     *
+     * @param request the request.
+     * @return the sources which were dropped because of repeated failures.
+     */
+    List<S> sendFailed(Request<S> request) {
+        List<S> dropped = new ArrayList<S>();
+
+        if (requests.remove(request.queryID) == request) {
+            failed(request, dropped);
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Fails requests which have been outstanding longer than the response
+     * timeout and halves the window of their sources.
+     *
+     * @param now the current time in milliseconds.
+     * @return the sources which were dropped because of repeated failures.
+     */
+    List<S> expire(long now) {
+        List<S> dropped = new ArrayList<S>();
+        List<Request<S>> expired = new ArrayList<Request<S>>();
+
+        for (Request<S> request : requests.values()) {
+            if (now - request.sentAt > responseTimeout) {
+                expired.add(request);
+            }
+        }
+
+        for (Request<S> request : expired) {
+            if (requests.remove(request.queryID) == request) {
+                failed(request, dropped);
+            }
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Records a response. If the response carries data for a chunk which has
+     * not already been received the request is returned and the caller should
+     * store the data.
+     *
+     * @param queryID the query ID of the response.
+     * @param offset  the offset of the response data.
+     * @param length  the length of the response data.
+     * @param eof     {@code true} if the response data reaches the end of the
+     *                content.
+     * @param now     the current time in milliseconds.
+     * @return the request or {@code null} if the response should be discarded.
+     */
+    Request<S> received(int queryID, long offset, int length, boolean eof, long now) {
+        Request<S> request = requests.get(queryID);
+
+        if ((null == request) || (request.offset != offset) || (length > request.length) || (length < 0)) {
+            return null;
+        }
+
+        requests.remove(queryID);
+
+        SourceState<S> state = request.state;
+        Chunk<S> chunk = request.chunk;
+
+        if ((0 == length) && !eof) {
+            // The source could not provide the data, perhaps it no longer has
+            // it buffered. Ask again, possibly from another source.
+            release(request);
+            state.window = Math.max(1, state.window / 2);
+            return null;
+        }
+
+        measure(state, request, length, now);
+
+        if (eof) {
+            long end = offset + length;
+
+            if ((eofOffset < 0) || (end < eofOffset)) {
+                eofOffset = end;
+                pruneBeyondEOF();
+            }
+        }
+
+        // The chunk is complete, any other requests for it are abandoned.
+        for (Request<S> other : chunk.inFlight) {
+            other.state.outstanding--;
+
+            if (other != request) {
+                requests.remove(other.queryID);
+            }
+        }
+
+        chunk.inFlight.clear();
+        active.remove(chunk.offset);
+
+        if ((length < chunk.length) && !eof) {
+            // Short response, the rest must be requested again.
+            Chunk<S> rest = new Chunk<S>(offset + length, chunk.length - length);
+
+            pending.put(rest.offset, rest);
+        }
+
+        chunk.length = length;
+        received += length;
+
+        return request;
+    }
+
+    /**
+     * Updates the round trip time, throughput and window of a source.
+     */
+    private void measure(SourceState<S> state, Request<S> request, int length, long now) {
+        long rtt = Math.max(1, now - request.sentAt);
+
+        state.rttMillis = (state.rttMillis < 0) ? rtt : (1 - RTT_WEIGHT) * state.rttMillis + RTT_WEIGHT * rtt;
+        state.failures = 0;
+
+        if (0 == length) {
+            return;
+        }
+
+        // Responses arrive back to back while the window is full, so the gap
+        // between them measures how fast the source delivers.
+        long interval = Math.max(1, now - Math.max(state.lastDelivery, request.sentAt));
+        double sample = (double) length / interval;
+
+        state.bytesPerMilli = (state.bytesPerMilli < 0) ? sample : (1 - THROUGHPUT_WEIGHT) * state.bytesPerMilli + THROUGHPUT_WEIGHT * sample;
+        state.lastDelivery = now;
+
+        // Enough requests to cover the bandwidth-delay product, plus one to
+        // probe for more.
+        double inFlightBytes = state.bytesPerMilli * state.rttMillis;
+        int target = (int) Math.ceil(inFlightBytes / chunkLength) + 1;
+
+        state.window = Math.max(1, Math.min(maxWindow, target));
+    }
+
+    /**
+     * Forgets the chunks which lie beyond the end of the content.
+     */
+    private void pruneBeyondEOF() {
+        pending.tailMap(eofOffset).clear();
+
+        Iterator<Chunk<S>> eachChunk = active.tailMap(eofOffset).values().iterator();
+
+        while (eachChunk.hasNext()) {
+            Chunk<S> chunk = eachChunk.next();
+
+            for (Request<S> request : chunk.inFlight) {
+                request.state.outstanding--;
+                requests.remove(request.queryID);
+            }
+
+            chunk.inFlight.clear();
+            eachChunk.remove();
+        }
+
+        // A chunk which straddles the end only needs the data before it.
+        Map.Entry<Long, Chunk<S>> straddling = pending.lowerEntry(eofOffset);
+
+        if ((null != straddling) && (straddling.getKey() + straddling.getValue().length > eofOffset)) {
+            straddling.getValue().length = (int) (eofOffset - straddling.getKey());
+        }
+    }
+}
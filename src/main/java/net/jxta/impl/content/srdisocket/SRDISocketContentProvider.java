@@ -64,6 +64,7 @@ import net.jxta.document.MimeMediaType;
 import net.jxta.id.ID;
 import net.jxta.id.IDFactory;
 import net.jxta.impl.content.ModuleWrapperFactory;
+import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.logging.Logging;
 import net.jxta.peergroup.PeerGroup;
 import net.jxta.pipe.PipeID;
@@ -173,8 +174,12 @@ public class SRDISocketContentProvider
     private class ThreadFactoryImpl
             implements ThreadFactory, UncaughtExceptionHandler {
         private ThreadGroup threadGroup;
+        private TaskManager taskManager;
+        private int threadCount;
 
         public ThreadFactoryImpl(PeerGroup group) {
+            taskManager = group.getTaskManager();
+
             StringBuilder name = new StringBuilder();
             name.append(group.getPeerGroupName());
             name.append(" - ");
@@ -185,8 +190,9 @@ public class SRDISocketContentProvider
             threadGroup.setDaemon(true);
         }
 
-        public Thread newThread(Runnable runnable) {
-            Thread thread = new Thread(threadGroup, runnable);
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = taskManager.newThread(threadGroup, runnable,
+                    threadGroup.getName() + " " + (++threadCount));
             thread.setUncaughtExceptionHandler(this);
             return thread;
         }
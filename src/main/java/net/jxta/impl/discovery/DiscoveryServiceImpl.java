@@ -100,6 +100,8 @@ import java.io.StringReader;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -178,9 +180,20 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
     private final Set<DiscoveryListener> listeners = new HashSet<DiscoveryListener>();
 
     /**
-     * The table of discovery query listeners.
+     * The table of discovery query listeners. A query may have several
+     * listeners if identical queries were coalesced.
      */
-    private final Map<Integer, DiscoveryListener> queryListeners = new HashMap<Integer, DiscoveryListener>();
+    private final Map<Integer, List<DiscoveryListener>> queryListeners = new HashMap<Integer, List<DiscoveryListener>>();
+
+    /**
+     * Recently sent remote queries with which identical queries are coalesced.
+     */
+    private final RemoteQueryCache remoteQueries = new RemoteQueryCache(MAX_RESPONSES);
+
+    /**
+     * Periodically forgets the expired remote queries and their responses.
+     */
+    private ScheduledFuture<?> remoteQueriesExpiry = null;
     private final String checkPeerAdvLock = "Check/Update PeerAdvertisement Lock";
     private PeerAdvertisement lastPeerAdv = null;
     private int lastModCount = -1;
@@ -291,6 +304,12 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * A query identical to one sent recently is not sent again. The id of
+     * the earlier query is returned instead and the listener, if any, is
+     * given the responses that query has received so far followed by those
+     * it receives later. Global discovery listeners are called once for each
+     * response, as it arrives.
      */
     public int getRemoteAdvertisements(String peer, int type, String attribute, String value, int threshold, DiscoveryListener listener) {
 
@@ -311,6 +330,37 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
 
         }
 
+        int coalescedQueryID = remoteQueries.coalesce(peer, type, attribute, value, threshold, myQueryID);
+
+        if (coalescedQueryID != myQueryID) {
+
+            Logging.logCheckedFine(LOG, "Query for ", threshold, " ", dirname[type], " advs coalesced with query #", coalescedQueryID);
+
+            // The responses received so far are replayed to the listener of
+            // this query only. The global listeners were called when they
+            // arrived and will be called for the responses still to come.
+            if (listener != null) {
+                List<DiscoveryEvent> responses;
+
+                // Registering and taking the responses received so far under the
+                // same lock ensures each response is delivered exactly once.
+                synchronized (queryListeners) {
+                    addQueryListener(coalescedQueryID, listener);
+                    responses = remoteQueries.getResponses(coalescedQueryID);
+                }
+
+                for (DiscoveryEvent response : responses) {
+                    try {
+                        listener.discoveryEvent(response);
+                    } catch (Throwable all) {
+                        Logging.logCheckedWarning(LOG, "Uncaught Throwable in listener (", listener.getClass().getName(), ") :", Thread.currentThread().getName(), "\n", all);
+                    }
+                }
+            }
+
+            return coalescedQueryID;
+        }
+
         if (Logging.SHOW_FINE && LOG.isLoggable(Level.FINE)) {
             StringBuilder query = new StringBuilder("Sending query#" + myQueryID + " for " + threshold + " " + dirname[type] + " advs");
 
@@ -334,7 +384,7 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
 
         if (listener != null) {
             synchronized (queryListeners) {
-                queryListeners.put(myQueryID, listener);
+                addQueryListener(myQueryID, listener);
             }
         }
 
@@ -541,6 +591,16 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
 
         rendezvous.addListener(this);
 
+        long coalesceTime = remoteQueries.getTimeToLive();
+
+        if (coalesceTime > 0) {
+            remoteQueriesExpiry = group.getTaskManager().getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    remoteQueries.expire();
+                }
+            }, coalesceTime, coalesceTime, TimeUnit.MILLISECONDS);
+        }
+
         stopped = false;
 
         Logging.logCheckedInfo(LOG, "Discovery service started");
@@ -582,9 +642,15 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
 
         srdiIndex = null;
 
+        if (null != remoteQueriesExpiry) {
+            remoteQueriesExpiry.cancel(false);
+            remoteQueriesExpiry = null;
+        }
+
         // Forget about all remaining listeners.
         listeners.clear();
         queryListeners.clear();
+        remoteQueries.clear();
 
         Logging.logCheckedInfo(LOG, "Discovery service stopped.");
 
@@ -841,14 +907,18 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
         // Generate an event and callback the query listener (if any).
         DiscoveryEvent newevent = new DiscoveryEvent(srcAddress, res, response.getQueryId());
 
-        DiscoveryListener dl;
+        List<DiscoveryListener> dls;
         synchronized (queryListeners) {
-            dl = queryListeners.get(response.getQueryId());
+            remoteQueries.addResponse(newevent);
+
+            List<DiscoveryListener> registered = queryListeners.get(response.getQueryId());
+
+            dls = (null == registered) ? Collections.<DiscoveryListener>emptyList() : new ArrayList<DiscoveryListener>(registered);
         }
 
-        if (dl != null) {
+        for (DiscoveryListener dl : dls) {
             try {
-                dl.discoveryEvent(new DiscoveryEvent(srcAddress, res, response.getQueryId()));
+                dl.discoveryEvent(newevent);
             } catch (Throwable all) {
                 LOG.log(Level.SEVERE, "Uncaught Throwable in listener :" + Thread.currentThread().getName(), all);
             }
@@ -1073,12 +1143,21 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
         boolean removed = false;
 
         synchronized (queryListeners) {
-            Iterator<DiscoveryListener> eachDiscoveryListener = queryListeners.values().iterator();
+            Iterator<List<DiscoveryListener>> eachQuery = queryListeners.values().iterator();
 
-            while (eachDiscoveryListener.hasNext()) {
-                if (listener == eachDiscoveryListener.next()) {
-                    eachDiscoveryListener.remove();
-                    removed = true;
+            while (eachQuery.hasNext()) {
+                List<DiscoveryListener> queryListenerList = eachQuery.next();
+                Iterator<DiscoveryListener> eachDiscoveryListener = queryListenerList.iterator();
+
+                while (eachDiscoveryListener.hasNext()) {
+                    if (listener == eachDiscoveryListener.next()) {
+                        eachDiscoveryListener.remove();
+                        removed = true;
+                    }
+                }
+
+                if (queryListenerList.isEmpty()) {
+                    eachQuery.remove();
                 }
             }
         }
@@ -1089,6 +1168,24 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
         return removed;
     }
 
+    /**
+     * Adds a listener for the responses to the specified query. The caller
+     * must hold the {@code queryListeners} lock.
+     *
+     * @param queryID  the query id
+     * @param listener the listener
+     */
+    private void addQueryListener(int queryID, DiscoveryListener listener) {
+        List<DiscoveryListener> queryListenerList = queryListeners.get(queryID);
+
+        if (null == queryListenerList) {
+            queryListenerList = new ArrayList<DiscoveryListener>(1);
+            queryListeners.put(queryID, queryListenerList);
+        }
+
+        queryListenerList.add(listener);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1241,8 +1338,7 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
             try {
 
                 InputStream bis = results.get(i);
-                XMLDocument asDoc = (XMLDocument) StructuredDocumentFactory.newStructuredDocument(MimeMediaType.XMLUTF8, bis);
-                Advertisement adv = AdvertisementFactory.newAdvertisement(asDoc);
+                Advertisement adv = cm.getAdvertisement(dirname[type], bis);
                 advertisements.add(adv);
 
             } catch (Exception e) {
@@ -1415,13 +1511,14 @@ public class DiscoveryServiceImpl implements DiscoveryService, InternalQueryHand
         }
 
         PeerID pid = srdiMsg.getPeerID();
+        Collection<SrdiMessage.Entry> entries = srdiMsg.getEntries();
 
-        for (Object o : srdiMsg.getEntries()) {
-
-            SrdiMessage.Entry entry = (SrdiMessage.Entry) o;
-            srdiIndex.add(srdiMsg.getPrimaryKey(), entry.key, entry.value, pid, entry.expiration);
-            Logging.logCheckedFine(LOG, "Primary Key [", srdiMsg.getPrimaryKey(), "] key [", entry.key, "] value [", entry.value, "] exp [", entry.expiration, "]");
+        srdiIndex.addAll(srdiMsg.getPrimaryKey(), entries, pid);
 
+        if (Logging.SHOW_FINE && LOG.isLoggable(Level.FINE)) {
+            for (SrdiMessage.Entry entry : entries) {
+                LOG.fine("Primary Key [" + srdiMsg.getPrimaryKey() + "] key [" + entry.key + "] value [" + entry.value + "] exp [" + entry.expiration + "]");
+            }
         }
 
         srdiManager.replicateEntries(srdiMsg);
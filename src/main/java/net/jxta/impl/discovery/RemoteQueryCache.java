@@ -0,0 +1,252 @@
+package net.jxta.impl.discovery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jxta.discovery.DiscoveryEvent;
+import net.jxta.impl.util.TimeUtils;
+
+/**
+ * Remembers recently sent remote discovery queries so that identical queries
+ * issued within a short window are folded into the first one.
+ * <p>
+ * A query is identified by its target peer, advertisement type, attribute,
+ * value and threshold. For {@link #getTimeToLive()} milliseconds after a query
+ * is sent, identical queries are not sent again; the callers instead share the
+ * query id of the original and its listeners receive the responses which have
+ * already arrived (if any) followed by those which arrive later. A query which
+ * has received no responses within the window is thereby cached negatively.
+ * <p>
+ * Coalesced queries are never sent. Responses received so far are only
+ * replayed to the listener passed with a coalesced query. Global discovery
+ * listeners are not called again for them, since they were already called
+ * when each response arrived and will be called for the responses which
+ * arrive later.
+ * <p>
+ * Expired queries, and the responses remembered for them, are forgotten when
+ * a query is coalesced, when a response is recorded and when
+ * {@link #expire()} is called.
+ */
+final class RemoteQueryCache {
+
+    /**
+     * The system property which specifies how long, in milliseconds, an
+     * identical query is coalesced with a query already sent. Zero disables
+     * coalescing.
+     */
+    static final String TIME_TO_LIVE_SYSPROP = "net.jxta.impl.discovery.DiscoveryServiceImpl.queryCoalesceTime";
+
+    /**
+     * The coalescing window used if none is specified.
+     */
+    static final long DEFAULT_TIME_TO_LIVE = 5 * TimeUtils.ASECOND;
+
+    private final long timeToLive;
+
+    /**
+     * The maximum number of responses remembered for each query.
+     */
+    private final int maxResponses;
+
+    /**
+     * The queries in the order they were sent. Since every query lives for the
+     * same time the expired queries are always at the head.
+     */
+    private final LinkedHashMap<QueryKey, CachedQuery> byKey = new LinkedHashMap<QueryKey, CachedQuery>();
+
+    private final Map<Integer, CachedQuery> byQueryId = new HashMap<Integer, CachedQuery>();
+
+    RemoteQueryCache(int maxResponses) {
+        this(Long.getLong(TIME_TO_LIVE_SYSPROP, DEFAULT_TIME_TO_LIVE), maxResponses);
+    }
+
+    RemoteQueryCache(long timeToLive, int maxResponses) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive must not be negative");
+        }
+
+        this.timeToLive = timeToLive;
+        this.maxResponses = maxResponses;
+    }
+
+    long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the id of the query with which the described query should be
+     * coalesced. If there is no such query the described query is remembered
+     * under the proposed id and the proposed id is returned, in which case the
+     * caller must send the query.
+     *
+     * @param peer      the peer to which the query is sent or {@code null}
+     * @param type      the advertisement type
+     * @param attribute the attribute or {@code null}
+     * @param value     the value or {@code null}
+     * @param threshold the threshold
+     * @param queryId   the id proposed for the query
+     * @return the id of the query to use
+     */
+    synchronized int coalesce(String peer, int type, String attribute, String value, int threshold, int queryId) {
+        if (0 == timeToLive) {
+            return queryId;
+        }
+
+        long now = TimeUtils.timeNow();
+
+        expire(now);
+
+        QueryKey key = new QueryKey(peer, type, attribute, value, threshold);
+        CachedQuery existing = byKey.get(key);
+
+        if (null != existing) {
+            return existing.queryId;
+        }
+
+        CachedQuery query = new CachedQuery(queryId, TimeUtils.toAbsoluteTimeMillis(timeToLive, now));
+
+        byKey.put(key, query);
+        byQueryId.put(queryId, query);
+
+        return queryId;
+    }
+
+    /**
+     * Records a response to a query which is still being coalesced.
+     *
+     * @param event the response
+     */
+    synchronized void addResponse(DiscoveryEvent event) {
+        expire(TimeUtils.timeNow());
+
+        CachedQuery query = byQueryId.get(event.getQueryID());
+
+        if ((null != query) && (query.responses.size() < maxResponses)) {
+            query.responses.add(event);
+        }
+    }
+
+    /**
+     * Returns the responses which have been received for the specified query
+     * while it is being coalesced.
+     *
+     * @param queryId the query id
+     * @return the responses received so far
+     */
+    synchronized List<DiscoveryEvent> getResponses(int queryId) {
+        CachedQuery query = byQueryId.get(queryId);
+
+        if (null == query) {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<DiscoveryEvent>(query.responses);
+    }
+
+    /**
+     * Forgets all of the queries.
+     */
+    synchronized void clear() {
+        byKey.clear();
+        byQueryId.clear();
+    }
+
+    /**
+     * Returns the number of queries currently being coalesced, including any
+     * which have expired but have not yet been forgotten.
+     *
+     * @return the number of queries
+     */
+    synchronized int size() {
+        return byKey.size();
+    }
+
+    /**
+     * Forgets the queries which are no longer coalesced.
+     */
+    synchronized void expire() {
+        expire(TimeUtils.timeNow());
+    }
+
+    private void expire(long now) {
+        Iterator<CachedQuery> eachQuery = byKey.values().iterator();
+
+        while (eachQuery.hasNext()) {
+            CachedQuery query = eachQuery.next();
+
+            if (TimeUtils.toRelativeTimeMillis(query.expires, now) > 0) {
+                break;
+            }
+
+            eachQuery.remove();
+            byQueryId.remove(query.queryId);
+        }
+    }
+
+    private static final class CachedQuery {
+
+        final int queryId;
+        final long expires;
+        final List<DiscoveryEvent> responses = new ArrayList<DiscoveryEvent>();
+
+        CachedQuery(int queryId, long expires) {
+            this.queryId = queryId;
+            this.expires = expires;
+        }
+    }
+
+    private static final class QueryKey {
+
+        final String peer;
+        final int type;
+        final String attribute;
+        final String value;
+        final int threshold;
+
+        QueryKey(String peer, int type, String attribute, String value, int threshold) {
+            this.peer = peer;
+            this.type = type;
+            this.attribute = attribute;
+            this.value = value;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type * 31 + threshold;
+
+            result = result * 31 + ((null == peer) ? 0 : peer.hashCode());
+            result = result * 31 + ((null == attribute) ? 0 : attribute.hashCode());
+            result = result * 31 + ((null == value) ? 0 : value.hashCode());
+
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof QueryKey)) {
+                return false;
+            }
+
+            QueryKey other = (QueryKey) obj;
+
+            return (type == other.type) && (threshold == other.threshold)
+                    && equal(peer, other.peer)
+                    && equal(attribute, other.attribute)
+                    && equal(value, other.value);
+        }
+
+        private static boolean equal(String one, String two) {
+            return (null == one) ? (null == two) : one.equals(two);
+        }
+    }
+}
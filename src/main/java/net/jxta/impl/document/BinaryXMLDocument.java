@@ -0,0 +1,502 @@
+package net.jxta.impl.document;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.StructuredDocument;
+import net.jxta.document.StructuredDocumentFactory;
+import net.jxta.document.StructuredDocumentUtils;
+import net.jxta.document.XMLDocument;
+
+/**
+ * A compact binary encoding of XML documents. Documents of this type may be
+ * used wherever an {@link XMLDocument} is expected; only their serialized
+ * form differs from that of {@link LiteXMLDocument}.
+ * <p/>
+ * The encoding is :
+ * <pre>
+ *     document := 'J' 'X' 'B' version element
+ *     element  := name attributeCount { name string } value childCount { element }
+ *     name     := index [ string ]
+ *     value    := 0 | 1 string
+ *     string   := length UTF-8 bytes
+ * </pre>
+ * All counts, indexes and lengths are unsigned variable length integers, seven
+ * bits per byte with the high bit set on all but the last byte. Element and
+ * attribute names are held in a dictionary which is built as the document is
+ * read. A name is written in full the first time it appears, with the index
+ * equal to the number of names defined so far, and by its index thereafter.
+ * <p/>
+ * The textual representation of the document (as returned by
+ * {@link #toString()} and {@link #getReader()}) is XML.
+ */
+public class BinaryXMLDocument extends BinaryXMLElement implements XMLDocument<BinaryXMLElement> {
+
+    /**
+     * The MIME Media Type of binary XML documents.
+     */
+    public static final MimeMediaType MIME_TYPE = new MimeMediaType("application", "x-jxta-bxml").intern();
+
+    /**
+     * The current version of the encoding.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Documents nested more deeply than this are rejected.
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private final static class Instantiator implements StructuredDocumentFactory.Instantiator {
+
+        /**
+         * The MIME Media Types which this <CODE>StructuredDocument</CODE> is
+         * capable of emitting.
+         */
+        private static final MimeMediaType[] myTypes = {
+            MIME_TYPE
+        };
+
+        // these are the file extensions which are likely to contain files of
+        // the type i like.
+        private static final ExtensionMapping[] myExtensions = {
+            new ExtensionMapping("bxml", myTypes[0]), new ExtensionMapping("bxml", null) };
+
+        /**
+         * Creates new BinaryXMLDocument Instantiator
+         */
+        public Instantiator() {}
+
+        /**
+         * {@inheritDoc}
+         */
+        public MimeMediaType[] getSupportedMimeTypes() {
+            return (myTypes);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public ExtensionMapping[] getSupportedFileExtensions() {
+            return (myExtensions);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public StructuredDocument newInstance(MimeMediaType mimeType, String doctype) {
+            return new BinaryXMLDocument(mimeType, doctype, null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public StructuredDocument newInstance(MimeMediaType mimeType, String doctype, String value) {
+            return new BinaryXMLDocument(mimeType, doctype, value);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public StructuredDocument newInstance(MimeMediaType mimeType, InputStream source) throws IOException {
+            return new Decoder(mimeType, source).decode();
+        }
+    }
+
+    public static final StructuredDocumentFactory.Instantiator INSTANTIATOR = new Instantiator();
+
+    private final MimeMediaType mimeType;
+
+    /**
+     * Creates new BinaryXMLDocument
+     *
+     * @param mimeType The MIME Media Type of the document.
+     * @param type     The name of the root element.
+     * @param value    The value of the root element or {@code null}.
+     */
+    private BinaryXMLDocument(MimeMediaType mimeType, String type, String value) {
+        super(null, type, value);
+        doc = this;
+        parent = this;
+
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns the document as XML.
+     */
+    @Override
+    public String toString() {
+        return asXML().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public MimeMediaType getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getFileExtension() {
+        return TextDocumentCommon.Utils.getExtensionForMime(INSTANTIATOR.getSupportedFileExtensions(), getMimeType());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BinaryXMLElement createElement(Object key) {
+        return createElement(key, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BinaryXMLElement createElement(Object key, Object val) {
+        if (!String.class.isAssignableFrom(key.getClass())) {
+            throw new ClassCastException(key.getClass().getName() + " not supported by createElement.");
+        }
+
+        if ((null != val) && !String.class.isAssignableFrom(val.getClass())) {
+            throw new ClassCastException(val.getClass().getName() + " not supported by createElement.");
+        }
+
+        return new BinaryXMLElement(this, (String) key, (String) val);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BinaryXMLElement createElement(String name) {
+        return new BinaryXMLElement(this, name, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BinaryXMLElement createElement(String name, String val) {
+        return new BinaryXMLElement(this, name, val);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getStream() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        sendToStream(bos);
+
+        return new ByteArrayInputStream(bos.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void sendToStream(OutputStream stream) throws IOException {
+        OutputStream out = new BufferedOutputStream(stream);
+
+        out.write('J');
+        out.write('X');
+        out.write('B');
+        out.write(VERSION);
+
+        new Encoder(out).encode(this);
+
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns the document as XML.
+     */
+    public Reader getReader() {
+        return new StringReader(toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Writes the document as XML.
+     */
+    public void sendToWriter(Writer stream) throws IOException {
+        asXML().sendToWriter(stream);
+    }
+
+    /**
+     * Returns an XML copy of this document.
+     */
+    private XMLDocument asXML() {
+        XMLDocument result = (XMLDocument) LiteXMLDocument.INSTANTIATOR.newInstance(MimeMediaType.XMLUTF8, getName(), getTextValue());
+
+        for (Map.Entry<String, String> anAttr : getAttributeMap().entrySet()) {
+            result.addAttribute(anAttr.getKey(), anAttr.getValue());
+        }
+
+        for (Enumeration<BinaryXMLElement> eachChild = getChildren(); eachChild.hasMoreElements();) {
+            StructuredDocumentUtils.copyElements(result, result, eachChild.nextElement());
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the elements of a document.
+     */
+    private static class Encoder {
+
+        private final OutputStream out;
+
+        private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void encode(BinaryXMLElement element) throws IOException {
+            writeName(element.getName());
+
+            Map<String, String> attributes = element.getAttributeMap();
+
+            writeCount(attributes.size());
+
+            for (Map.Entry<String, String> anAttr : attributes.entrySet()) {
+                writeName(anAttr.getKey());
+                writeString(anAttr.getValue());
+            }
+
+            String value = element.getTextValue();
+
+            if (null == value) {
+                out.write(0);
+            } else {
+                out.write(1);
+                writeString(value);
+            }
+
+            writeCount(element.getChildCount());
+
+            for (Enumeration<BinaryXMLElement> eachChild = element.getChildren(); eachChild.hasMoreElements();) {
+                encode(eachChild.nextElement());
+            }
+        }
+
+        private void writeName(String name) throws IOException {
+            Integer index = names.get(name);
+
+            if (null != index) {
+                writeCount(index);
+            } else {
+                writeCount(names.size());
+                writeString(name);
+                names.put(name, names.size());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes("UTF-8");
+
+            writeCount(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeCount(int count) throws IOException {
+            while ((count & ~0x7F) != 0) {
+                out.write((count & 0x7F) | 0x80);
+                count >>>= 7;
+            }
+
+            out.write(count);
+        }
+    }
+
+    /**
+     * Reads a document.
+     */
+    private static class Decoder {
+
+        private final MimeMediaType mimeType;
+
+        private final byte[] data;
+
+        private int position = 0;
+
+        private final List<String> names = new ArrayList<String>();
+
+        Decoder(MimeMediaType mimeType, InputStream source) throws IOException {
+            this.mimeType = mimeType;
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while ((read = source.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+
+            data = bos.toByteArray();
+        }
+
+        BinaryXMLDocument decode() throws IOException {
+            if ((data.length < 4) || ('J' != data[0]) || ('X' != data[1]) || ('B' != data[2])) {
+                throw new IOException("Not a binary XML document");
+            }
+
+            if (VERSION != data[3]) {
+                throw new IOException("Unsupported binary XML version : " + data[3]);
+            }
+
+            position = 4;
+
+            String rootName = readName();
+            Map<String, String> attributes = readAttributes();
+            BinaryXMLDocument result = new BinaryXMLDocument(mimeType, rootName, readValue());
+
+            result.getAttributeMap().putAll(attributes);
+            readChildren(result, result, 1);
+
+            if (position != data.length) {
+                throw new IOException("Unexpected data after binary XML document");
+            }
+
+            return result;
+        }
+
+        private void readChildren(BinaryXMLDocument doc, BinaryXMLElement parent, int depth) throws IOException {
+            int childCount = readCount();
+
+            if ((childCount > 0) && (depth >= MAX_DEPTH)) {
+                throw new IOException("Binary XML document is nested too deeply");
+            }
+
+            for (int eachChild = 0; eachChild < childCount; eachChild++) {
+                String name = readName();
+                Map<String, String> attributes = readAttributes();
+                BinaryXMLElement child = new BinaryXMLElement(doc, name, readValue());
+
+                child.getAttributeMap().putAll(attributes);
+                parent.appendChild(child);
+                readChildren(doc, child, depth + 1);
+            }
+        }
+
+        private Map<String, String> readAttributes() throws IOException {
+            int attributeCount = readCount();
+
+            if (0 == attributeCount) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+            for (int eachAttr = 0; eachAttr < attributeCount; eachAttr++) {
+                String name = readName();
+
+                attributes.put(name, readString());
+            }
+
+            return attributes;
+        }
+
+        private String readValue() throws IOException {
+            int hasValue = readByte();
+
+            if (0 == hasValue) {
+                return null;
+            } else if (1 == hasValue) {
+                return readString();
+            } else {
+                throw new IOException("Malformed binary XML value");
+            }
+        }
+
+        private String readName() throws IOException {
+            int index = readCount();
+
+            if (index < names.size()) {
+                return names.get(index);
+            }
+
+            if (index != names.size()) {
+                throw new IOException("Undefined name in binary XML document : " + index);
+            }
+
+            String name = readString();
+
+            if (0 == name.length()) {
+                throw new IOException("Empty name in binary XML document");
+            }
+
+            for (int eachChar = name.length() - 1; eachChar >= 0; eachChar--) {
+                if (Character.isWhitespace(name.charAt(eachChar))) {
+                    throw new IOException("Illegal name in binary XML document");
+                }
+            }
+
+            names.add(name);
+
+            return name;
+        }
+
+        private String readString() throws IOException {
+            int length = readCount();
+
+            if (length > (data.length - position)) {
+                throw new IOException("Truncated binary XML document");
+            }
+
+            String result = new String(data, position, length, "UTF-8");
+
+            position += length;
+
+            return result;
+        }
+
+        private int readCount() throws IOException {
+            int result = 0;
+
+            for (int shift = 0; shift < 32; shift += 7) {
+                int each = readByte();
+
+                result |= (each & 0x7F) << shift;
+
+                if (0 == (each & 0x80)) {
+                    if (result < 0) {
+                        break;
+                    }
+
+                    return result;
+                }
+            }
+
+            throw new IOException("Malformed binary XML count");
+        }
+
+        private int readByte() throws IOException {
+            if (position >= data.length) {
+                throw new IOException("Truncated binary XML document");
+            }
+
+            return data[position++] & 0xFF;
+        }
+    }
+}
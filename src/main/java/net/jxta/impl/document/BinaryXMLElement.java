@@ -0,0 +1,265 @@
+package net.jxta.impl.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jxta.document.Attribute;
+import net.jxta.document.XMLDocument;
+import net.jxta.document.XMLElement;
+
+/**
+ * An element of a {@link BinaryXMLDocument}. Elements are held as a simple
+ * tree of objects; the binary encoding is only used when the document is
+ * read or written.
+ */
+public class BinaryXMLElement implements XMLElement<BinaryXMLElement> {
+
+    protected BinaryXMLDocument doc;
+
+    protected BinaryXMLElement parent;
+
+    protected final String name;
+
+    protected final String val;
+
+    private final List<BinaryXMLElement> children = new ArrayList<BinaryXMLElement>();
+
+    /**
+     * The attributes of this element in the order they were added.
+     */
+    private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+    /**
+     * Creates new BinaryXMLElement
+     *
+     * @param doc  The document which this element is part of.
+     * @param name The name of the element.
+     * @param val  The value of the element or {@code null}.
+     */
+    protected BinaryXMLElement(BinaryXMLDocument doc, String name, String val) {
+        for (int eachChar = name.length() - 1; eachChar >= 0; eachChar--) {
+            if (Character.isWhitespace(name.charAt(eachChar))) {
+                throw new IllegalArgumentException("Element names may not contain spaces.");
+            }
+        }
+
+        this.doc = doc;
+        this.name = name;
+        this.val = ((null == val) || (0 == val.length())) ? null : val;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object element) {
+        if (this == element) {
+            return true;
+        }
+
+        if (!(element instanceof BinaryXMLElement)) {
+            return false;
+        }
+
+        BinaryXMLElement xmlElement = (BinaryXMLElement) element;
+
+        if (doc != xmlElement.doc) {
+            return false;
+        }
+
+        if (!getName().equals(xmlElement.getName())) {
+            return false;
+        }
+
+        String val1 = getTextValue();
+        String val2 = xmlElement.getTextValue();
+
+        if ((null == val1) && (null == val2)) {
+            return true;
+        }
+
+        if ((null == val1) || (null == val2)) {
+            return false;
+        }
+
+        return val1.equals(val2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+
+        if (null != val) {
+            result = result * 31 + val.hashCode();
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public XMLDocument getRoot() {
+        return doc;
+    }
+
+    /**
+     * Get the name associated with an element.
+     *
+     * @return A string containing the key of this element.
+     */
+    public String getKey() {
+        return getName();
+    }
+
+    /**
+     * Get the value (if any) associated with an element.
+     *
+     * @return A string containing the value of this element, if any, otherwise null.
+     */
+    public String getValue() {
+        return getTextValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BinaryXMLElement getParent() {
+        return parent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Enumeration<BinaryXMLElement> getChildren() {
+        return Collections.enumeration(children);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getTextValue() {
+        return val;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void appendChild(BinaryXMLElement element) {
+        if (element.doc != this.doc) {
+            throw new IllegalArgumentException("Wrong Document");
+        }
+
+        if (null != element.parent) {
+            throw new IllegalArgumentException("New element is already in document");
+        }
+
+        element.parent = this;
+        children.add(element);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Enumeration<BinaryXMLElement> getChildren(Object key) {
+        if (key instanceof String)
+            return getChildren((String) key);
+        else
+            throw new ClassCastException(key.getClass().getName() + " not supported by getChildren.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Enumeration<BinaryXMLElement> getChildren(String name) {
+        List<BinaryXMLElement> result = new ArrayList<BinaryXMLElement>();
+
+        for (BinaryXMLElement aChild : children) {
+            if (name.equals(aChild.getName())) {
+                result.add(aChild);
+            }
+        }
+
+        return Collections.enumeration(result);
+    }
+
+    /**
+     * Returns the number of children of this element.
+     *
+     * @return the number of children of this element.
+     */
+    int getChildCount() {
+        return children.size();
+    }
+
+    /**
+     * Returns the attributes of this element in the order they were added.
+     *
+     * @return the attributes of this element.
+     */
+    Map<String, String> getAttributeMap() {
+        return attributes;
+    }
+
+    // Attributable methods
+
+    /**
+     * {@inheritDoc}
+     */
+    public String addAttribute(String name, String value) {
+        for (int eachChar = name.length() - 1; eachChar >= 0; eachChar--) {
+            if (Character.isWhitespace(name.charAt(eachChar))) {
+                throw new IllegalArgumentException("Attribute names may not contain spaces.");
+            }
+        }
+
+        return attributes.put(name, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String addAttribute(Attribute newAttrib) {
+        return addAttribute(newAttrib.getName(), newAttrib.getValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Enumeration<Attribute> getAttributes() {
+        List<Attribute> attrs = new ArrayList<Attribute>();
+
+        for (Map.Entry<String, String> anAttr : attributes.entrySet()) {
+            attrs.add(new Attribute(this, anAttr.getKey(), anAttr.getValue()));
+        }
+
+        return Collections.enumeration(attrs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute getAttribute(String name) {
+        String value = attributes.get(name);
+
+        if (null == value) {
+            return null;
+        }
+
+        return new Attribute(this, name, value);
+    }
+}
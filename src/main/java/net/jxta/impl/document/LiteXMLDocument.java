@@ -63,6 +63,9 @@ import net.jxta.document.XMLDocument;
 
 import java.io.*;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 
 /**
  * This class is an implementation of the StructuredDocument interface using
@@ -154,6 +157,33 @@ public class LiteXMLDocument extends LiteXMLElement implements XMLDocument<LiteX
      */
     private final MimeMediaType mimeType;
 
+    /*
+     * The fields of each entry in the single pass scan of the document. Entry
+     * zero is the root element.
+     */
+    private static final int SCAN_START_TAG_START = 0;
+    private static final int SCAN_START_TAG_END = 1;
+    private static final int SCAN_END_TAG_START = 2;
+    private static final int SCAN_END_TAG_END = 3;
+    private static final int SCAN_NAME = 4;
+    private static final int SCAN_FIRST_CHILD = 5;
+    private static final int SCAN_NEXT_SIBLING = 6;
+    private static final int SCAN_LAST_CHILD = 7;
+    private static final int SCAN_FIELDS = 8;
+
+    /**
+     * The locations of the elements found by the single pass scan of the
+     * document, {@link #SCAN_FIELDS} values per element, or {@code null} if
+     * all elements have been created. Only valid until the document is first
+     * modified.
+     */
+    private int[] scanned = null;
+
+    /**
+     * The interned names of the elements found by the single pass scan.
+     */
+    private String[] scannedNames = null;
+
     /**
      * Creates new LiteXMLDocument
      */
@@ -450,7 +480,10 @@ public class LiteXMLDocument extends LiteXMLElement implements XMLDocument<LiteX
         }
 
         if (!loc.startTag.equals(loc.endTag)) {
-            addChildTags(loc.body, this); // now add the subtags
+            if (!scanChildren(loc.body)) {
+                // the document uses constructs the scanner does not handle.
+                addChildTags(loc.body, this); // now add the subtags
+            }
         }
 
         if (paranoidConsistencyChecking) {
@@ -458,6 +491,260 @@ public class LiteXMLDocument extends LiteXMLElement implements XMLDocument<LiteX
         }
     }
 
+    /**
+     * Locates all of the descendants of the root element in a single pass
+     * over the document. The elements themselves are created on demand by
+     * {@link LiteXMLElement#materializeChildren()}.
+     * <p/>
+     * The scan only accepts documents made up of elements, attributes and
+     * text. The same elements are found as would be by {@link #addChildTags},
+     * which is used for documents containing anything else (comments,
+     * processing instructions, CDATA sections, malformed tags, etc.).
+     *
+     * @param range the body of the root element.
+     * @return {@code true} if the document was scanned, {@code false} if it
+     *         must be parsed with {@link #addChildTags}.
+     */
+    private boolean scanChildren(final charRange range) {
+        final StringBuilder source = docContent;
+        final int end = range.end;
+        int[] entries = new int[SCAN_FIELDS * 16];
+        int count = 1;
+        int[] open = new int[16];
+        int depth = 0;
+        List<String> names = new ArrayList<String>();
+
+        entries[SCAN_FIRST_CHILD] = -1;
+        entries[SCAN_LAST_CHILD] = -1;
+        open[0] = 0;
+
+        int current = range.start;
+
+        while (current <= end) {
+            int tagStart = source.indexOf("<", current);
+
+            if ((-1 == tagStart) || (tagStart >= end)) {
+                break;
+            }
+
+            char afterOpen = source.charAt(tagStart + 1);
+
+            if ('/' == afterOpen) {
+                // an end tag, which must exactly match the innermost open element.
+                if (0 == depth) {
+                    return false;
+                }
+
+                int entry = open[depth] * SCAN_FIELDS;
+                String name = names.get(entries[entry + SCAN_NAME]);
+                int nameStart = tagStart + 2;
+                int tagEnd = nameStart + name.length();
+
+                if ((tagEnd > end) || ('>' != source.charAt(tagEnd)) || !regionMatches(source, nameStart, name)) {
+                    return false;
+                }
+
+                entries[entry + SCAN_END_TAG_START] = tagStart;
+                entries[entry + SCAN_END_TAG_END] = tagEnd;
+                depth--;
+                current = tagEnd + 1;
+                continue;
+            }
+
+            if (('!' == afterOpen) || ('?' == afterOpen)) {
+                return false;
+            }
+
+            // a start tag
+            int nameEnd = tagStart + 1;
+
+            while (nameEnd <= end) {
+                char inTagName = source.charAt(nameEnd);
+
+                if (Character.isWhitespace(inTagName) || ('/' == inTagName) || ('>' == inTagName)) {
+                    break;
+                }
+
+                if ('<' == inTagName) {
+                    return false;
+                }
+
+                nameEnd++;
+            }
+
+            if ((nameEnd > end) || (nameEnd == tagStart + 1)) {
+                return false;
+            }
+
+            int tagEnd = nameEnd;
+
+            while ((tagEnd <= end) && ('>' != source.charAt(tagEnd))) {
+                if ('<' == source.charAt(tagEnd)) {
+                    return false;
+                }
+
+                tagEnd++;
+            }
+
+            if (tagEnd > end) {
+                return false;
+            }
+
+            if ((count + 1) * SCAN_FIELDS > entries.length) {
+                int[] larger = new int[entries.length * 2];
+
+                System.arraycopy(entries, 0, larger, 0, count * SCAN_FIELDS);
+                entries = larger;
+            }
+
+            int index = count++;
+            int entry = index * SCAN_FIELDS;
+            int parentEntry = open[depth] * SCAN_FIELDS;
+
+            if (-1 == entries[parentEntry + SCAN_LAST_CHILD]) {
+                entries[parentEntry + SCAN_FIRST_CHILD] = index;
+            } else {
+                entries[entries[parentEntry + SCAN_LAST_CHILD] * SCAN_FIELDS + SCAN_NEXT_SIBLING] = index;
+            }
+
+            entries[parentEntry + SCAN_LAST_CHILD] = index;
+
+            entries[entry + SCAN_START_TAG_START] = tagStart;
+            entries[entry + SCAN_START_TAG_END] = tagEnd;
+            entries[entry + SCAN_NAME] = nameIndex(names, source, tagStart + 1, nameEnd);
+            entries[entry + SCAN_FIRST_CHILD] = -1;
+            entries[entry + SCAN_NEXT_SIBLING] = -1;
+            entries[entry + SCAN_LAST_CHILD] = -1;
+
+            if ('/' == source.charAt(tagEnd - 1)) {
+                // an empty element
+                entries[entry + SCAN_END_TAG_START] = tagStart;
+                entries[entry + SCAN_END_TAG_END] = tagEnd;
+            } else {
+                if (++depth == open.length) {
+                    int[] deeper = new int[open.length * 2];
+
+                    System.arraycopy(open, 0, deeper, 0, open.length);
+                    open = deeper;
+                }
+
+                open[depth] = index;
+            }
+
+            current = tagEnd + 1;
+        }
+
+        if (0 != depth) {
+            return false;
+        }
+
+        if (-1 != entries[SCAN_FIRST_CHILD]) {
+            scanned = entries;
+            scannedNames = names.toArray(new String[names.size()]);
+            scanIndex = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the index of the name found in the specified range of the
+     * source, adding it to the names if it has not been seen before.
+     */
+    private static int nameIndex(List<String> names, StringBuilder source, int start, int end) {
+        int length = end - start;
+
+        for (int eachName = names.size() - 1; eachName >= 0; eachName--) {
+            String name = names.get(eachName);
+
+            if ((name.length() == length) && regionMatches(source, start, name)) {
+                return eachName;
+            }
+        }
+
+        names.add(source.substring(start, end).intern());
+
+        return names.size() - 1;
+    }
+
+    /**
+     * Returns {@code true} if the source contains the specified string at the
+     * specified location.
+     */
+    private static boolean regionMatches(StringBuilder source, int at, String match) {
+        if (at + match.length() > source.length()) {
+            return false;
+        }
+
+        for (int eachChar = match.length() - 1; eachChar >= 0; eachChar--) {
+            if (source.charAt(at + eachChar) != match.charAt(eachChar)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the index of the first child of the specified scan entry or -1.
+     */
+    int firstScannedChild(int index) {
+        return scanned[index * SCAN_FIELDS + SCAN_FIRST_CHILD];
+    }
+
+    /**
+     * Returns the index of the next sibling of the specified scan entry or -1.
+     */
+    int nextScannedSibling(int index) {
+        return scanned[index * SCAN_FIELDS + SCAN_NEXT_SIBLING];
+    }
+
+    /**
+     * Returns the interned name of the specified scan entry.
+     */
+    String scannedName(int index) {
+        return scannedNames[scanned[index * SCAN_FIELDS + SCAN_NAME]];
+    }
+
+    /**
+     * Returns the location of the specified scan entry.
+     */
+    tagRange scannedTagRange(int index) {
+        int entry = index * SCAN_FIELDS;
+        charRange startTag = new charRange(scanned[entry + SCAN_START_TAG_START], scanned[entry + SCAN_START_TAG_END]);
+
+        if (scanned[entry + SCAN_START_TAG_START] == scanned[entry + SCAN_END_TAG_START]) {
+            // an empty element
+            return new tagRange(startTag, new charRange(startTag.start, startTag.end), new charRange(startTag.start, startTag.end));
+        }
+
+        charRange endTag = new charRange(scanned[entry + SCAN_END_TAG_START], scanned[entry + SCAN_END_TAG_END]);
+
+        return new tagRange(startTag, new charRange(startTag.end + 1, endTag.start - 1), endTag);
+    }
+
+    /**
+     * Creates all of the elements which have not yet been created from the
+     * single pass scan. Must be called before the document is modified.
+     */
+    void materializeAll() {
+        if (null == scanned) {
+            return;
+        }
+
+        synchronized (this) {
+            materializeAll(this);
+            scanned = null;
+            scannedNames = null;
+        }
+    }
+
+    private static void materializeAll(LiteXMLElement element) {
+        for (Enumeration<LiteXMLElement> eachChild = element.getChildren(); eachChild.hasMoreElements();) {
+            materializeAll(eachChild.nextElement());
+        }
+    }
+
     protected tagRange getDocType(final StringBuilder source, boolean wholeElement) {
         final String xmldoctype = "!DOCTYPE";
         int start = 0;
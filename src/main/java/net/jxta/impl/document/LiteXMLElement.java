@@ -379,6 +379,17 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
      */
     private transient List<LiteXMLElement> children;
 
+    /**
+     * The name of this element, once known.
+     */
+    private transient String elementName = null;
+
+    /**
+     * If not -1 then the children of this element have not yet been created
+     * and are described by this entry of the document's single pass scan.
+     */
+    transient volatile int scanIndex = -1;
+
     /**
      * Creates new LiteXMLElement
      *
@@ -415,6 +426,8 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             uninserted.insert(0, "<" + name + ">");
             uninserted.append("</").append(name).append(">");
         }
+
+        elementName = name;
     }
 
     /**
@@ -515,6 +528,8 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             throw new IllegalStateException("This element has not been added.");
         }
 
+        materializeChildren();
+
         if (null == children) {
             List<LiteXMLElement> empty = Collections.emptyList();
 
@@ -536,6 +551,12 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             checkConsistency();
         }
 
+        String name = elementName;
+
+        if (null != name) {
+            return name;
+        }
+
         int current = loc.startTag.start + 1;
 
         while (current <= loc.startTag.end) {
@@ -548,7 +569,48 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             current++;
         }
 
-        return getDocument().docContent.substring(loc.startTag.start + 1, current);
+        name = getDocument().docContent.substring(loc.startTag.start + 1, current);
+        elementName = name;
+
+        return name;
+    }
+
+    /**
+     * Creates the children of this element from the document's single pass
+     * scan if they have not yet been created.
+     */
+    void materializeChildren() {
+        if (-1 == scanIndex) {
+            return;
+        }
+
+        LiteXMLDocument document = getDocument();
+
+        synchronized (document) {
+            int index = scanIndex;
+
+            if (-1 == index) {
+                return;
+            }
+
+            List<LiteXMLElement> created = new ArrayList<LiteXMLElement>();
+
+            for (int eachChild = document.firstScannedChild(index); -1 != eachChild; eachChild = document.nextScannedSibling(eachChild)) {
+                LiteXMLElement newChild = document.createElement(document.scannedTagRange(eachChild));
+
+                newChild.parent = this;
+                newChild.elementName = document.scannedName(eachChild);
+
+                if (-1 != document.firstScannedChild(eachChild)) {
+                    newChild.scanIndex = eachChild;
+                }
+
+                created.add(newChild);
+            }
+
+            children = created.isEmpty() ? null : created;
+            scanIndex = -1;
+        }
     }
 
     /**
@@ -589,6 +651,9 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             checkConsistency();
         }
 
+        getDocument().materializeAll();
+        materializeChildren();
+
         // If uninserted then this new element contains content which needs to
         // be added to the document. If uninserted is null then the child
         // element's content is already in the document, but merely needs to
@@ -688,6 +753,8 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
             checkConsistency();
         }
 
+        materializeChildren();
+
         if (null == children) {
             List<LiteXMLElement> empty = Collections.emptyList();
 
@@ -1588,6 +1655,8 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
         newStuff.append(value);
         newStuff.append(usingQuote);
 
+        getDocument().materializeAll();
+
         // add it in.
         if (!oldAttr.isValid()) {
             // we aren't replacing an existing value
@@ -1671,6 +1740,8 @@ public class LiteXMLElement implements XMLElement<LiteXMLElement> {
         assert elementRange.contains(loc.body);
         assert elementRange.contains(loc.endTag);
 
+        materializeChildren();
+
         if (null != children) {
             Iterator<LiteXMLElement> eachChild = children.iterator();
             Iterator<LiteXMLElement> nextChilds = children.iterator();
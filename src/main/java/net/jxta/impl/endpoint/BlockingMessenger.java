@@ -64,6 +64,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import net.jxta.endpoint.AbstractMessenger;
+import net.jxta.endpoint.BatchSendException;
 import net.jxta.endpoint.ChannelMessenger;
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.endpoint.Message;
@@ -151,6 +152,22 @@ public abstract class BlockingMessenger extends AbstractMessenger {
      */
     private Throwable currentThrowable = null;
 
+    /**
+     * If the outstanding message is the first of a batch, the messages of
+     * the batch, otherwise {@code null}.
+     */
+    private Message[] currentBatch = null;
+
+    /**
+     * The serviceName overrides for the messages of the batch.
+     */
+    private String[] currentBatchServices = null;
+
+    /**
+     * The serviceParam overrides for the messages of the batch.
+     */
+    private String[] currentBatchParams = null;
+
     /**
      * true if we have deliberately closed our one message input queue.
      */
@@ -383,6 +400,16 @@ public abstract class BlockingMessenger extends AbstractMessenger {
         currentService = service;
         currentParam = param;
         currentThrowable = null;
+        currentBatch = null;
+        currentBatchServices = null;
+        currentBatchParams = null;
+    }
+
+    private void storeCurrentBatch(Message[] msgs, String[] services, String[] params) {
+        storeCurrent(msgs[0], services[0], params[0]);
+        currentBatch = msgs;
+        currentBatchServices = services;
+        currentBatchParams = params;
     }
 
     /**
@@ -581,6 +608,60 @@ public abstract class BlockingMessenger extends AbstractMessenger {
      * {@inheritDoc}
      */
     public void sendMessageB(Message msg, String service, String serviceParam) throws IOException {
+        sendB(msg, service, serviceParam, null, null, null);
+    }
+
+    /**
+     * Sends several messages, in order, blocking until all of them are sent.
+     * If {@link #supportsBatching()} returns {@code true} the messages are
+     * written together, otherwise they are sent one at a time.
+     * <p/>
+     * If sending fails with a {@link BatchSendException} then the messages
+     * before {@link BatchSendException#getSent()} were sent. For any other
+     * failure none of the messages are considered sent, although some of
+     * them may have been received.
+     *
+     * @param msgs     The messages to send.
+     * @param services The destination service of each message.
+     * @param params   The destination service param of each message.
+     * @throws IOException Thrown for errors encountered while sending the messages.
+     */
+    public void sendMessagesB(Message[] msgs, String[] services, String[] params) throws IOException {
+        if ((msgs.length != services.length) || (msgs.length != params.length)) {
+            throw new IllegalArgumentException("There must be a service and a param for each message");
+        }
+
+        if (0 == msgs.length) {
+            return;
+        }
+
+        sendB(msgs[0], services[0], params[0], msgs, services, params);
+    }
+
+    /**
+     * Returns {@code true} if this messenger writes the messages given to
+     * {@link #sendMessagesB(Message[], String[], String[])} together rather
+     * than one at a time. The default implementation returns {@code false}.
+     *
+     * @return {@code true} if this messenger can write several messages at
+     *         once.
+     */
+    public boolean supportsBatching() {
+        return false;
+    }
+
+    /**
+     * Sends a message or a batch of messages.
+     *
+     * @param msg          The message or the first message of the batch.
+     * @param service      The destination service of msg.
+     * @param serviceParam The destination service param of msg.
+     * @param msgs         The batch or {@code null}.
+     * @param services     The destination service of each message of the batch or {@code null}.
+     * @param params       The destination service param of each message of the batch or {@code null}.
+     * @throws IOException Thrown for errors encountered while sending.
+     */
+    private void sendB(Message msg, String service, String serviceParam, Message[] msgs, String[] services, String[] params) throws IOException {
 
         DeferredAction action;
 
@@ -600,7 +681,11 @@ public abstract class BlockingMessenger extends AbstractMessenger {
             // We store the four elements of a pending msg separately. We do not want to pour millions of tmp objects on the GC for
             // nothing.
 
-            storeCurrent(msg, service, serviceParam);
+            if (null == msgs) {
+                storeCurrent(msg, service, serviceParam);
+            } else {
+                storeCurrentBatch(msgs, services, params);
+            }
             stateMachine.saturatedEvent();
             action = eventCalled();
         }
@@ -625,11 +710,26 @@ public abstract class BlockingMessenger extends AbstractMessenger {
 
         if (failure == null) {
             // No failure. Report ultimate succes.
-            msg.setMessageProperty(Messenger.class, OutgoingMessageEvent.SUCCESS);
+            if (null == msgs) {
+                msg.setMessageProperty(Messenger.class, OutgoingMessageEvent.SUCCESS);
+            } else {
+                for (Message aMsg : msgs) {
+                    aMsg.setMessageProperty(Messenger.class, OutgoingMessageEvent.SUCCESS);
+                }
+            }
             return;
         }
 
-        // Failure. See how we can manage to throw it.
+        // Failure. Report success for the messages of the batch which did go out.
+        if ((null != msgs) && (failure instanceof BatchSendException)) {
+            int sent = Math.min(((BatchSendException) failure).getSent(), msgs.length);
+
+            for (int eachMsg = 0; eachMsg < sent; eachMsg++) {
+                msgs[eachMsg].setMessageProperty(Messenger.class, OutgoingMessageEvent.SUCCESS);
+            }
+        }
+
+        // See how we can manage to throw it.
         if (failure instanceof IOException) {
             throw (IOException) failure;
         }
@@ -787,7 +887,11 @@ public abstract class BlockingMessenger extends AbstractMessenger {
         DeferredAction action;
 
         try {
-            sendMessageBImpl(currentMessage, currentService, currentParam);
+            if (null == currentBatch) {
+                sendMessageBImpl(currentMessage, currentService, currentParam);
+            } else {
+                sendMessagesBImpl(currentBatch, currentBatchServices, currentBatchParams);
+            }
         } catch (Throwable any) {
             // Did not work. We report the link down and let the state machine tell us when to fail the msg.  It is assumed that
             // when this happens, the cnx is already down.  FIXME - jice@jxta.org 20040413: check with the various kind of funky
@@ -851,6 +955,31 @@ public abstract class BlockingMessenger extends AbstractMessenger {
      */
     protected abstract void sendMessageBImpl(Message message, String service, String param) throws IOException;
 
+    /**
+     * Send several messages, in order, blocking as needed until all of them
+     * are sent. The default implementation sends the messages one at a time
+     * with {@link #sendMessageBImpl(Message, String, String)}. Transports
+     * which override this method to write the messages together should also
+     * override {@link #supportsBatching()}. They should throw a
+     * {@link BatchSendException} when they can tell which message failed.
+     *
+     * @param messages The messages to send.
+     * @param services The destination service of each message.
+     * @param params   The destination service param of each message.
+     * @throws IOException Thrown for errors encountered while sending the messages.
+     */
+    protected void sendMessagesBImpl(Message[] messages, String[] services, String[] params) throws IOException {
+        for (int eachMsg = 0; eachMsg < messages.length; eachMsg++) {
+            try {
+                sendMessageBImpl(messages[eachMsg], services[eachMsg], params[eachMsg]);
+            } catch (IOException failed) {
+                throw new BatchSendException(eachMsg, failed);
+            } catch (RuntimeException failed) {
+                throw new BatchSendException(eachMsg, failed);
+            }
+        }
+    }
+
     /**
      * return true if this messenger has not been used for a long time. The definition of long time is: "sufficient such that closing it
      * is worth the cost of having to re-open". A messenger should self close if it thinks it meets the definition of
@@ -0,0 +1,349 @@
+package net.jxta.impl.endpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import net.jxta.document.MimeMediaType;
+import net.jxta.endpoint.MessageElement;
+import net.jxta.logging.Logging;
+
+/**
+ * A Message Element whose data is a read-only view of a region of a larger
+ * {@link ByteBuffer}, typically the buffer a message was received into. The
+ * element data is <b>not</b> copied during construction.
+ *
+ * <p/>The backing buffer remains reachable for as long as any element which
+ * views it is reachable, so the buffer is released once the message and all
+ * of its elements have been dropped. The contents of the backing buffer must
+ * not change for the lifetime of the element.
+ *
+ * @see WireFormatMessageBinary#fromSharedBuffer(ByteBuffer, MimeMediaType, MimeMediaType, net.jxta.peergroup.PeerGroup)
+ */
+public class ByteBufferMessageElement extends MessageElement {
+
+    /**
+     * Logger
+     */
+    private static transient final Logger LOG = Logger.getLogger(ByteBufferMessageElement.class.getName());
+
+    /**
+     * Size of the scratch array used when writing direct buffers to streams.
+     */
+    private static final int SEND_CHUNK_SIZE = 8192;
+
+    /**
+     * The data of this element. Position is always zero and limit is the
+     * element length.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Create a new Message Element. The contents of the provided buffer
+     * between its position and limit are used as the element data and are
+     * <b>not</b> copied during construction. The position of the provided
+     * buffer is not modified.
+     *
+     * @param name Name of the MessageElement. May be the empty string ("") if
+     *             the MessageElement is not named.
+     * @param type Type of the MessageElement. null is the same as specifying
+     *             the type "Application/Octet-stream".
+     * @param data The buffer containing the contents of this element.
+     * @param sig  optional message digest/digital signature element or null if
+     *             no signature is desired.
+     */
+    public ByteBufferMessageElement(String name, MimeMediaType type, ByteBuffer data, MessageElement sig) {
+        super(name, type, sig);
+
+        if (null == data) {
+            throw new IllegalArgumentException("buffer must not be null");
+        }
+
+        this.data = data.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object target) {
+        if (this == target) {
+            return true;
+        }
+
+        if (target instanceof MessageElement) {
+            if (!super.equals(target)) {
+                return false;
+            }
+
+            if (target instanceof ByteBufferMessageElement) {
+                ByteBufferMessageElement likeMe = (ByteBufferMessageElement) target;
+
+                return data.equals(likeMe.data);
+            } else {
+                // have to do a slow stream comparison.
+                try {
+                    MessageElement likeMe = (MessageElement) target;
+
+                    InputStream myStream = getStream();
+                    InputStream itsStream = likeMe.getStream();
+
+                    int mine;
+                    int its;
+
+                    do {
+                        mine = myStream.read();
+                        its = itsStream.read();
+
+                        if (mine != its) {
+                            return false;
+                        }       // content didn't match
+
+                    } while ((-1 != mine) && (-1 != its));
+
+                    return ((-1 == mine) && (-1 == its)); // end at the same time?
+
+                } catch (IOException fatal) {
+
+                    Logging.logCheckedSevere(LOG, "MessageElements could not be compared.", fatal);
+                    throw new IllegalStateException("MessageElements could not be compared." + fatal);
+
+                }
+            }
+        }
+
+        return false; // not a message element
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Computed the same way as for {@link net.jxta.endpoint.ByteArrayMessageElement}
+     * so that elements with equal contents hash alike regardless of how they
+     * are stored.
+     */
+    @Override
+    public int hashCode() {
+        Checksum crc = new CRC32();
+        ByteBuffer hashing = getByteBuffer();
+        byte[] chunk = new byte[Math.min(SEND_CHUNK_SIZE, hashing.remaining())];
+
+        while (hashing.hasRemaining()) {
+            int toHash = Math.min(chunk.length, hashing.remaining());
+
+            hashing.get(chunk, 0, toHash);
+            crc.update(chunk, 0, toHash);
+        }
+
+        int dataHash = (int) crc.getValue();
+
+        int result = super.hashCode() * 6037 + // a prime
+                dataHash;
+
+        return (0 != result) ? result : 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns the string representation of this element. The 'charset'
+     * parameter of the mimetype, if any, is used to determine encoding. If
+     * the charset specified is unsupported then the default encoding will be
+     * used.
+     */
+    @Override
+    public synchronized String toString() {
+        String result;
+
+        if (null != cachedToString) {
+            result = cachedToString.get();
+
+            if (null != result) {
+                return result;
+            }
+        }
+
+        byte[] bytes = getBytes(false);
+        String charset = type.getParameter("charset");
+
+        try {
+            if (null == charset) {
+                result = new String(bytes);
+            } else {
+                result = new String(bytes, charset);
+            }
+        } catch (UnsupportedEncodingException caught) {
+            result = new String(bytes);
+        }
+
+        cachedToString = new SoftReference<String>(result);
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getByteLength() {
+        return data.limit();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The element data is not held in a byte array so the result is always a
+     * copy. Non-copy requests are cached so that repeated calls do not copy
+     * again.
+     */
+    @Override
+    public synchronized byte[] getBytes(boolean copy) {
+        byte[] result;
+
+        if (!copy && (null != cachedGetBytes)) {
+            result = cachedGetBytes.get();
+
+            if (null != result) {
+                return result;
+            }
+        }
+
+        result = new byte[data.limit()];
+        data.duplicate().get(result);
+
+        if (!copy) {
+            cachedGetBytes = new SoftReference<byte[]>(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getStream() {
+        return new ByteBufferInputStream(getByteBuffer());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sendToStream(OutputStream sendTo) throws IOException {
+        ByteBuffer sending = getByteBuffer();
+        byte[] chunk = new byte[Math.min(SEND_CHUNK_SIZE, sending.remaining())];
+
+        while (sending.hasRemaining()) {
+            int toSend = Math.min(chunk.length, sending.remaining());
+
+            sending.get(chunk, 0, toSend);
+            sendTo.write(chunk, 0, toSend);
+        }
+    }
+
+    /**
+     * Returns a new read-only view of the element data. The returned buffer
+     * has its own position and limit and may be freely consumed by the caller.
+     *
+     * @return a read-only buffer containing the contents of this element.
+     */
+    public ByteBuffer getByteBuffer() {
+        return data.duplicate();
+    }
+
+    /**
+     * An InputStream which reads from a ByteBuffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private int mark = 0;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            return buffer.get() & 0xFF;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (0 == len) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int toRead = Math.min(len, buffer.remaining());
+
+            buffer.get(b, off, toRead);
+
+            return toRead;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long skip(long n) {
+            int toSkip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+
+            buffer.position(buffer.position() + toSkip);
+
+            return toSkip;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void mark(int readlimit) {
+            mark = buffer.position();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset() {
+            buffer.position(mark);
+        }
+    }
+}
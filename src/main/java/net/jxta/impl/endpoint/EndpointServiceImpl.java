@@ -94,9 +94,12 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.jxta.endpoint.router.EndpointRoutingTransport;
+import net.jxta.util.ConcurrentWeakHashMap;
 import net.jxta.endpoint.router.RouteController;
 import net.jxta.impl.util.TimeUtils;
 
@@ -187,6 +190,31 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      */
     private final static boolean DEFAULT_USE_PARENT_ENDPOINT = true;
 
+    /**
+     * The system property which specifies the maximum number of queued
+     * messages which a canonical messenger sends together. 1, the default,
+     * disables batching.
+     */
+    static final String BATCH_MESSAGES_SYSPROP = "net.jxta.impl.endpoint.EndpointServiceImpl.batchMessages";
+
+    /**
+     * The system property which specifies the number of bytes after which no
+     * more messages are added to a batch.
+     */
+    static final String BATCH_BYTES_SYSPROP = "net.jxta.impl.endpoint.EndpointServiceImpl.batchBytes";
+
+    /**
+     * The system property which specifies how long, in milliseconds, a
+     * canonical messenger may wait for more messages to fill a batch.
+     */
+    static final String BATCH_DELAY_SYSPROP = "net.jxta.impl.endpoint.EndpointServiceImpl.batchDelay";
+
+    private final static int DEFAULT_BATCH_MESSAGES = 1;
+
+    private final static long DEFAULT_BATCH_BYTES = 64 * 1024;
+
+    private final static long DEFAULT_BATCH_DELAY = 0;
+
     EndpointServiceMonitor endpointServiceMonitor;
 
     /**
@@ -232,13 +260,28 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
 
     /**
      * The set of listener managed by this instance of the endpoint svc.
+     * Lookups are not synchronized.
      */
-    private final Map<String, EndpointListener> incomingMessageListeners = new HashMap<String, EndpointListener>(16);
+    private final IncomingListenerRegistry incomingMessageListeners = new IncomingListenerRegistry();
 
     /**
-     * The set of shared transport messengers currently ready for use.
+     * The set of shared transport messengers currently ready for use. Lookups
+     * are not synchronized; creation of a new messenger for an address is
+     * synchronized on the address's entry in {@link #messengerCreationLocks}.
      */
-    private final Map<EndpointAddress, Reference<Messenger>> messengerMap = new WeakHashMap<EndpointAddress, Reference<Messenger>>(32);
+    private final ConcurrentMap<EndpointAddress, Reference<Messenger>> messengerMap = new ConcurrentWeakHashMap<EndpointAddress, Reference<Messenger>>(32);
+
+    /**
+     * The locks which ensure that only one canonical messenger is created for
+     * an address at a time. The length is a power of two.
+     */
+    private final Object[] messengerCreationLocks = new Object[16];
+
+    {
+        for (int eachLock = 0; eachLock < messengerCreationLocks.length; eachLock++) {
+            messengerCreationLocks[eachLock] = new Object();
+        }
+    }
 
     /**
      * A means of preserving CanonicalMessenger instances as long as their cached messenger
@@ -275,17 +318,19 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      * create an infinite number of channels with pending messages, thus an
      * infinite number of messages too.
      */
-    private final Map<EndpointAddress, Reference<Messenger>> channelCache = new WeakHashMap<EndpointAddress, Reference<Messenger>>();
+    private final ConcurrentMap<EndpointAddress, Reference<Messenger>> channelCache = new ConcurrentWeakHashMap<EndpointAddress, Reference<Messenger>>();
 
     /**
      * The filter listeners.
      * <p/>
      * We rarely add/remove, never remove without iterating
      * and insert objects that are always unique. So using a set
-     * does not make sense. An array list is the best.
+     * does not make sense. The filters are consulted for every message so
+     * they are kept in copy-on-write lists which are iterated without
+     * locking.
      */
-    private final Collection<FilterListenerAndMask> incomingFilterListeners = new ArrayList<FilterListenerAndMask>();
-    private final Collection<FilterListenerAndMask> outgoingFilterListeners = new ArrayList<FilterListenerAndMask>();
+    private final List<FilterListenerAndMask> incomingFilterListeners = new CopyOnWriteArrayList<FilterListenerAndMask>();
+    private final List<FilterListenerAndMask> outgoingFilterListeners = new CopyOnWriteArrayList<FilterListenerAndMask>();
 
     /**
      * Holder for a filter listener and its conditions
@@ -367,8 +412,16 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
          * @param messengerMeter     the metering object if any
          */
         public CanonicalMessenger(int vmQueueSize, EndpointAddress destination, EndpointAddress logicalDestination, Object hint, OutboundMeter messengerMeter) {
-            super(group.getPeerGroupID(), destination, logicalDestination, vmQueueSize);
+            super(group.getPeerGroupID(), destination, logicalDestination, vmQueueSize, group.getTaskManager());
             this.hint = hint;
+
+            int batchMessages = Integer.getInteger(BATCH_MESSAGES_SYSPROP, DEFAULT_BATCH_MESSAGES);
+
+            if (batchMessages > 1) {
+                setBatching(batchMessages,
+                        Math.max(1, Long.getLong(BATCH_BYTES_SYSPROP, DEFAULT_BATCH_BYTES)),
+                        Math.max(0, Long.getLong(BATCH_DELAY_SYSPROP, DEFAULT_BATCH_DELAY)));
+            }
         }
 
         /**
@@ -476,6 +529,37 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
             }
 
         }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * If the transport messenger can write several messages at once, the
+         * batch is handed to it whole.
+         */
+        @Override
+        protected void sendMessagesBImpl(Message[] msgs, String[] services, String[] params) throws IOException {
+
+            if (!(cachedMessenger instanceof BlockingMessenger) || !((BlockingMessenger) cachedMessenger).supportsBatching()) {
+                super.sendMessagesBImpl(msgs, services, params);
+                return;
+            }
+
+            try {
+
+                ((BlockingMessenger) cachedMessenger).sendMessagesB(msgs, services, params);
+
+            } catch (IOException any) {
+
+                cachedMessenger = null;
+                throw any;
+
+            } catch (RuntimeException any) {
+
+                Logging.logCheckedWarning(LOG, "Failure sending ", msgs.length, " messages\n", any);
+                throw any;
+
+            }
+        }
     }
 
     /**
@@ -596,7 +680,7 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
         }
 
         // TODO: This listener should probably go at some stage (legacy stuff)
-        listenerAdaptor = new ListenerAdaptor(Thread.currentThread().getThreadGroup(), group.getTaskManager().getExecutorService());
+        listenerAdaptor = new ListenerAdaptor(Thread.currentThread().getThreadGroup(), group.getTaskManager().getExecutorService(), group.getTaskManager());
 
         // FIXME  when Load order Issue is resolved this should fail
         // until it is able to get a non-failing service Monitor (or
@@ -837,13 +921,13 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      */
     private Message processFilters(Message message, EndpointAddress srcAddress, EndpointAddress dstAddress, boolean incoming) {
 
-        Iterator<FilterListenerAndMask> eachFilter = incoming
-                ? incomingFilterListeners.iterator()
-                : outgoingFilterListeners.iterator();
+        List<FilterListenerAndMask> filters = incoming ? incomingFilterListeners : outgoingFilterListeners;
 
-        while (eachFilter.hasNext()) {
-            FilterListenerAndMask aFilter = eachFilter.next();
+        if (filters.isEmpty()) {
+            return message;
+        }
 
+        for (FilterListenerAndMask aFilter : filters) {
             Message.ElementIterator eachElement = message.getMessageElements();
 
             while (eachElement.hasNext()) {
@@ -987,13 +1071,12 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
             return;
         }
 
-        // Now that we know the original service name is valid, finish building the decoded version.
-        if (demangledAddress != dstAddress) {
-            decodedServiceName = dstAddress.getServiceName() + "/" + decodedServiceName;
-        }
+        // Now that we know the original service name is valid, the decoded version is the group redirection
+        // followed by the original service name.
+        String groupServiceName = (demangledAddress != dstAddress) ? dstAddress.getServiceName() : null;
 
         // Look up the listener
-        EndpointListener listener = getIncomingMessageListener(decodedServiceName, decodedServiceParam);
+        EndpointListener listener = getIncomingMessageListener(groupServiceName, decodedServiceName, decodedServiceParam);
 
         // No listener? oh well.
 
@@ -1001,7 +1084,7 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
 
             Logging.logCheckedWarning(LOG, "No listener for \'" + dstAddress + "\' in group ",
                         group, "\n\tdecodedServiceName :",
-                        decodedServiceName, "\tdecodedServiceParam :",
+                        new IncomingListenerRegistry.ListenerKey(groupServiceName, decodedServiceName), "\tdecodedServiceParam :",
                         decodedServiceParam);
 
             if (EndpointMeterBuildSettings.ENDPOINT_METERING && (endpointMeter != null)) 
@@ -1015,7 +1098,9 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
 
         try {
 
-            if (null != decodedServiceParam) {
+            if (null != groupServiceName) {
+                Logging.logCheckedFine(LOG, "Calling listener for \'", groupServiceName, "/", decodedServiceName, "/", decodedServiceParam, "\' with ", msg);
+            } else if (null != decodedServiceParam) {
                 Logging.logCheckedFine(LOG, "Calling listener for \'", decodedServiceName, "/", decodedServiceParam, "\' with ", msg);
             } else {
                 Logging.logCheckedFine(LOG, "Calling listener for \'", decodedServiceName, "\' with ", msg);
@@ -1393,18 +1478,12 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
             address += "/" + serviceParam;
         }
 
-        synchronized (incomingMessageListeners) {
-            if (incomingMessageListeners.containsKey(address)) {
-                return false;
-            }
-
-            InboundMeter incomingMessageListenerMeter = null;
-
-            if (EndpointMeterBuildSettings.ENDPOINT_METERING && (endpointServiceMonitor != null)) {
-                incomingMessageListenerMeter = endpointServiceMonitor.getInboundMeter(serviceName, serviceParam);
-            }
+        if (!incomingMessageListeners.add(new IncomingListenerRegistry.ListenerKey(serviceName, serviceParam), listener)) {
+            return false;
+        }
 
-            incomingMessageListeners.put(address, listener);
+        if (EndpointMeterBuildSettings.ENDPOINT_METERING && (endpointServiceMonitor != null)) {
+            endpointServiceMonitor.getInboundMeter(serviceName, serviceParam);
         }
 
         if (parentEndpoint != null) {
@@ -1429,21 +1508,35 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
             throw new IllegalArgumentException("serviceName must not be null");
         }
 
+        return getIncomingMessageListener(null, serviceName, serviceParam);
+    }
+
+    /**
+     * Returns the listener for a service name, which may be prefixed by a
+     * group redirection, and service parameter.
+     *
+     * @param groupServiceName the group redirection or {@code null}.
+     * @param serviceName the service name.
+     * @param serviceParam the service parameter or {@code null}.
+     * @return the listener or {@code null} if there is no listener.
+     */
+    private EndpointListener getIncomingMessageListener(String groupServiceName, String serviceName, String serviceParam) {
+
         EndpointListener listener = null;
 
         if (null != serviceParam) {
-            listener = incomingMessageListeners.get(serviceName + "/" + serviceParam);
+            listener = incomingMessageListeners.get(new IncomingListenerRegistry.ListenerKey(groupServiceName, serviceName, serviceParam));
         }
 
         // Didn't find it with param, maybe there is a generic listener for the service
         if (listener == null) {
-            listener = incomingMessageListeners.get(serviceName);
+            listener = incomingMessageListeners.get(new IncomingListenerRegistry.ListenerKey(groupServiceName, serviceName));
         }
 
         // Didn't find it still, try the compatibility name.
         if (listener == null) {
 
-            listener = incomingMessageListeners.get(serviceName + serviceParam);
+            listener = incomingMessageListeners.get(new IncomingListenerRegistry.ListenerKey(groupServiceName, serviceName + serviceParam));
 
             if (null != listener) 
                 Logging.logCheckedWarning(LOG, "Found handler only via compatibility listener : ", serviceName, serviceParam);
@@ -1472,10 +1565,7 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
             address += "/" + serviceParam;
         }
 
-        EndpointListener removedListener;
-        synchronized (incomingMessageListeners) {
-            removedListener = incomingMessageListeners.remove(address);
-        }
+        EndpointListener removedListener = incomingMessageListeners.remove(new IncomingListenerRegistry.ListenerKey(serviceName, serviceParam));
 
         if (parentEndpoint != null) {
             if (serviceName.startsWith(ChannelMessenger.InsertedServicePrefix)) {
@@ -1551,8 +1641,15 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
         }
 
         // Check the canonical map.
-        synchronized (messengerMap) {
+        Messenger existing = getUsableMessenger(messengerMap, addr);
+
+        if (existing != null) {
+            return existing;
+        }
 
+        synchronized (messengerCreationLocks[addr.hashCode() & (messengerCreationLocks.length - 1)]) {
+
+            // Check again, another thread may have created it while we waited.
             Reference<Messenger> ref = messengerMap.get(addr);
 
             if (ref != null) {
@@ -1564,7 +1661,7 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
                 }
 
                 // It has been GCed or is no longer USABLE. Make room for a new one.
-                messengerMap.remove(addr);
+                messengerMap.remove(addr, ref);
 
             }
 
@@ -1669,13 +1766,9 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      * {@inheritDoc}
      */
     public synchronized MessageFilterListener removeIncomingMessageFilterListener(MessageFilterListener listener, String namespace, String name) {
-        Iterator<FilterListenerAndMask> eachListener = incomingFilterListeners.iterator();
-
-        while (eachListener.hasNext()) {
-            FilterListenerAndMask aFilter = eachListener.next();
-
+        for (FilterListenerAndMask aFilter : incomingFilterListeners) {
             if (listener == aFilter.listener) {
-                eachListener.remove();
+                incomingFilterListeners.remove(aFilter);
                 return listener;
             }
         }
@@ -1687,15 +1780,11 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      * {@inheritDoc}
      */
     public synchronized MessageFilterListener removeOutgoingMessageFilterListener(MessageFilterListener listener, String namespace, String name) {
-        Iterator<FilterListenerAndMask> eachListener = outgoingFilterListeners.iterator();
-
-        while (eachListener.hasNext()) {
-            FilterListenerAndMask aFilter = eachListener.next();
-
+        for (FilterListenerAndMask aFilter : outgoingFilterListeners) {
             if ((listener == aFilter.listener)
                     && ((null != namespace) ? namespace.equals(aFilter.namespace) : (null == aFilter.namespace))
                     && ((null != name) ? name.equals(aFilter.name) : (null == aFilter.name))) {
-                eachListener.remove();
+                outgoingFilterListeners.remove(aFilter);
                 return listener;
             }
         }
@@ -1960,15 +2049,10 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
      */
     public Messenger getMessengerImmediate(EndpointAddress addr, Object hint) {
         // Note: for now, the hint is not used for canonicalization (hint != QOS).
-        synchronized (channelCache) {
-            Reference<Messenger> existing = channelCache.get(addr);
+        Messenger cached = getUsableMessenger(channelCache, addr);
 
-            if (existing != null) {
-                Messenger messenger = existing.get();
-                if ((messenger != null) && ((messenger.getState() & Messenger.USABLE) != 0)) {
-                    return messenger;
-                }
-            }
+        if (cached != null) {
+            return cached;
         }
 
         // We do not have a good one at hand. Make a new one.
@@ -1995,22 +2079,58 @@ public class EndpointServiceImpl implements EndpointService, MessengerEventListe
         ChannelMessenger res = (ChannelMessenger) found.getChannelMessenger(this.getGroup().getPeerGroupID(),
                 addr.getServiceName(), addr.getServiceParameter());
 
-        synchronized (channelCache) {
-            // We have to check again. May be we did all that in parallel with some other thread and it beat
-            // us to the finish line. In which case, substitute the existing one and throw ours away.
-            Reference<Messenger> existing = channelCache.get(addr);
+        // The listenerAdaptor of this interface obj is used to support the sendMessage-with-listener API.
+        res.setMessageWatcher(listenerAdaptor);
 
-            if (existing != null) {
-                Messenger messenger = existing.get();
-                if ((messenger != null) && ((messenger.getState() & Messenger.USABLE) != 0)) {
-                    return messenger;
-                }
+        Reference<Messenger> mine = new WeakReference<Messenger>(res);
+
+        // The channel is cached under its own address, which includes the service name and param so that channels
+        // to different services of the same peer are never mixed up. The channel references that address, so the
+        // weak entry lasts as long as the channel, and in particular while it has messages queued.
+        EndpointAddress key = res.getChannelAddress();
+
+        while (true) {
+            // May be we did all that in parallel with some other thread and it beat us to the finish line. In which
+            // case, substitute the existing one and throw ours away.
+            Reference<Messenger> existing = channelCache.putIfAbsent(key, mine);
+
+            if (existing == null) {
+                return res;
             }
-            // The listenerAdaptor of this interface obj is used to support the sendMessage-with-listener API.
-            res.setMessageWatcher(listenerAdaptor);
-            channelCache.put(res.getDestinationAddress(), new WeakReference<Messenger>(res));
+
+            Messenger messenger = existing.get();
+
+            if ((messenger != null) && ((messenger.getState() & Messenger.USABLE) != 0)) {
+                return messenger;
+            }
+
+            // It has been GCed or is no longer USABLE. Make room for ours.
+            channelCache.remove(key, existing);
         }
-        return res;
+    }
+
+    /**
+     * Returns the messenger cached for the specified address if it is still
+     * usable.
+     *
+     * @param cache the cache
+     * @param addr  the address
+     * @return the messenger or {@code null} if there is no usable messenger
+     */
+    private static Messenger getUsableMessenger(Map<EndpointAddress, Reference<Messenger>> cache, EndpointAddress addr) {
+        Reference<Messenger> ref = cache.get(addr);
+
+        if (ref == null) {
+            return null;
+        }
+
+        Messenger found = ref.get();
+
+        if ((found != null) && ((found.getState() & Messenger.USABLE) != 0)) {
+            return found;
+        }
+
+        return null;
     }
 
     /**
@@ -0,0 +1,285 @@
+package net.jxta.impl.endpoint;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jxta.endpoint.EndpointListener;
+
+/**
+ * The incoming message listeners of an endpoint service, indexed by the
+ * service name and service parameter they were registered with.
+ * <p>
+ * Listeners are looked up for every incoming message but are registered
+ * rarely. The listeners are therefore kept in an immutable map which is
+ * replaced whenever a listener is added or removed so that lookups never
+ * lock.
+ */
+final class IncomingListenerRegistry {
+
+    /**
+     * The registered listeners. The map is never modified, it is replaced.
+     */
+    private volatile Map<ListenerKey, EndpointListener> listeners = Collections.emptyMap();
+
+    /**
+     * Registers a listener if there is no listener already registered for
+     * the key.
+     *
+     * @param key      the key
+     * @param listener the listener
+     * @return {@code true} if the listener was registered otherwise
+     *         {@code false}
+     */
+    synchronized boolean add(ListenerKey key, EndpointListener listener) {
+        if (listeners.containsKey(key)) {
+            return false;
+        }
+
+        Map<ListenerKey, EndpointListener> updated = new HashMap<ListenerKey, EndpointListener>(listeners);
+
+        updated.put(key, listener);
+        listeners = Collections.unmodifiableMap(updated);
+
+        return true;
+    }
+
+    /**
+     * Removes the listener registered for the key.
+     *
+     * @param key the key
+     * @return the listener which was removed or {@code null} if there was no
+     *         listener registered for the key.
+     */
+    synchronized EndpointListener remove(ListenerKey key) {
+        if (!listeners.containsKey(key)) {
+            return null;
+        }
+
+        Map<ListenerKey, EndpointListener> updated = new HashMap<ListenerKey, EndpointListener>(listeners);
+        EndpointListener removed = updated.remove(key);
+
+        listeners = Collections.unmodifiableMap(updated);
+
+        return removed;
+    }
+
+    /**
+     * Returns the listener registered for the key.
+     *
+     * @param key the key
+     * @return the listener or {@code null} if there is no listener registered
+     *         for the key.
+     */
+    EndpointListener get(ListenerKey key) {
+        return listeners.get(key);
+    }
+
+    /**
+     * Removes all of the listeners.
+     */
+    synchronized void clear() {
+        listeners = Collections.emptyMap();
+    }
+
+    /**
+     * A listener address made of up to three parts separated by {@code '/'}
+     * characters, for example the service name and service parameter. Two
+     * keys are equal if they spell the same address, however it is divided
+     * into parts; the key {@code ("a", "b/c")} equals the key
+     * {@code ("a/b", "c")}. Keys are built without concatenating their
+     * parts.
+     */
+    static final class ListenerKey implements CharSequence {
+
+        private final String first;
+
+        private final String second;
+
+        private final String third;
+
+        private final int length;
+
+        private final int hash;
+
+        /**
+         * Creates a key for a service name and optional service parameter.
+         *
+         * @param serviceName  the service name
+         * @param serviceParam the service parameter or {@code null}
+         */
+        ListenerKey(String serviceName, String serviceParam) {
+            this(serviceName, serviceParam, null);
+        }
+
+        /**
+         * Creates a key from up to three parts. {@code null} parts are
+         * skipped.
+         *
+         * @param first  the first part or {@code null}
+         * @param second the second part or {@code null}
+         * @param third  the third part or {@code null}
+         */
+        ListenerKey(String first, String second, String third) {
+            String[] parts = {first, second, third};
+            int present = 0;
+
+            for (int eachPart = 0; eachPart < parts.length; eachPart++) {
+                if (null != parts[eachPart]) {
+                    parts[present++] = parts[eachPart];
+                }
+            }
+
+            if (0 == present) {
+                throw new IllegalArgumentException("At least one part must be non-null");
+            }
+
+            this.first = parts[0];
+            this.second = (present > 1) ? parts[1] : null;
+            this.third = (present > 2) ? parts[2] : null;
+
+            int len = this.first.length();
+
+            if (null != this.second) {
+                len += 1 + this.second.length();
+            }
+
+            if (null != this.third) {
+                len += 1 + this.third.length();
+            }
+
+            length = len;
+
+            // the same value as toString().hashCode()
+            int h = hash(0, this.first);
+
+            if (null != this.second) {
+                h = hash(31 * h + '/', this.second);
+            }
+
+            if (null != this.third) {
+                h = hash(31 * h + '/', this.third);
+            }
+
+            hash = h;
+        }
+
+        private static int hash(int h, String part) {
+            for (int eachChar = 0; eachChar < part.length(); eachChar++) {
+                h = 31 * h + part.charAt(eachChar);
+            }
+
+            return h;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public char charAt(int index) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException("index " + index + " length " + length);
+            }
+
+            if (index < first.length()) {
+                return first.charAt(index);
+            }
+
+            index -= first.length();
+
+            if (0 == index) {
+                return '/';
+            }
+
+            index--;
+
+            if (index < second.length()) {
+                return second.charAt(index);
+            }
+
+            index -= second.length();
+
+            if (0 == index) {
+                return '/';
+            }
+
+            return third.charAt(index - 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object target) {
+            if (this == target) {
+                return true;
+            }
+
+            if (!(target instanceof ListenerKey)) {
+                return false;
+            }
+
+            ListenerKey likeMe = (ListenerKey) target;
+
+            if ((hash != likeMe.hash) || (length != likeMe.length)) {
+                return false;
+            }
+
+            // Keys with the same parts are the usual case.
+            if (first.equals(likeMe.first)) {
+                if ((null == second) ? (null == likeMe.second) : second.equals(likeMe.second)) {
+                    return (null == third) ? (null == likeMe.third) : third.equals(likeMe.third);
+                }
+            }
+
+            for (int eachChar = 0; eachChar < length; eachChar++) {
+                if (charAt(eachChar) != likeMe.charAt(eachChar)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(length);
+
+            result.append(first);
+
+            if (null != second) {
+                result.append('/').append(second);
+            }
+
+            if (null != third) {
+                result.append('/').append(third);
+            }
+
+            return result.toString();
+        }
+    }
+}
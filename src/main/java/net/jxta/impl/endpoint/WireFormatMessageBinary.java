@@ -65,6 +65,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -150,6 +151,25 @@ public class WireFormatMessageBinary implements WireFormatMessage {
      */
     public static final WireFormatMessageFactory.Instantiator INSTANTIATOR = new Instantiator();
 
+    /**
+     * Read a message from the provided buffer without copying the element
+     * data. The elements of the returned message are read-only views of
+     * {@code buffer} (see {@link ByteBufferMessageElement}) so the contents of
+     * the buffer must not be modified for as long as the message is in use.
+     * The buffer is released when the message and its elements are no longer
+     * referenced.
+     *
+     * @param buffer the buffer containing the message.
+     * @param type the mime type of the message.
+     * @param contentEncoding the content encoding of the message.
+     * @param paramGroup the group for CBJX verification.
+     * @return the message.
+     * @throws IOException if the message could not be read.
+     */
+    public static Message fromSharedBuffer(ByteBuffer buffer, MimeMediaType type, MimeMediaType contentEncoding, PeerGroup paramGroup) throws IOException {
+        return ((Instantiator) INSTANTIATOR).fromBufferExternal(buffer, type, contentEncoding, WireFormatMessageFactory.CBJX_DISABLE, paramGroup, true, true);
+    }
+
     /**
      * Our instantiator.
      */
@@ -474,6 +494,8 @@ public class WireFormatMessageBinary implements WireFormatMessage {
          * Read in a message element from the provided data stream.
          *
          * @param buffer the data buffer to read from
+         * @param shareBuffer if {@code true} then the element data is a view
+         *                    of {@code buffer} rather than a copy.
          * @return object array containing two objects, index[0] contains an
          *         Integer which identifies the namespace to which this element belongs
          *         and index[1] contains a MessageElement. If null is returned then
@@ -482,7 +504,7 @@ public class WireFormatMessageBinary implements WireFormatMessage {
          * @throws IOException if EOF or other IOException is encountered
          *                     during the reading of the element.
          */
-        private Object[] readMessageElement(ByteBuffer buffer) throws IOException {
+        private Object[] readMessageElement(ByteBuffer buffer, boolean shareBuffer) throws IOException {
             // Read message signature
             char[] elsig = new char[4];
 
@@ -536,10 +558,24 @@ public class WireFormatMessageBinary implements WireFormatMessage {
             res[0] = nsid & 0x000000FF;
 
             byte[] value = null;
+            ByteBuffer sharedValue = null;
             Message submsg = null;
 
             // Value
-            if (type.equalsIngoringParams(myTypes[0])) {
+            if (shareBuffer) {
+                if ((dataLen < 0) || (dataLen > buffer.remaining())) {
+                    throw new BufferUnderflowException();
+                }
+
+                sharedValue = buffer.slice();
+                sharedValue.limit(dataLen);
+                buffer.position(buffer.position() + dataLen);
+
+                if (type.equalsIngoringParams(myTypes[0])) {
+                    submsg = fromBufferExternal(sharedValue, type, null, true, null, false, true);
+                    sharedValue = null;
+                }
+            } else if (type.equalsIngoringParams(myTypes[0])) {
                 byte[] tempB = new byte[dataLen];
                 buffer.get(tempB);
                 InputStream subis = new ByteArrayInputStream(tempB);
@@ -558,13 +594,15 @@ public class WireFormatMessageBinary implements WireFormatMessage {
             MessageElement sig = null;
 
             if ((flags & HAS_SIGNATURE) != 0) {
-                Object[] sigRes = readMessageElement(buffer);
+                Object[] sigRes = readMessageElement(buffer, shareBuffer);
 
                 sig = (MessageElement) sigRes[1];
             }
 
             if (null != value) {
                 res[1] = new ByteArrayMessageElement(name, type, value, sig);
+            } else if (null != sharedValue) {
+                res[1] = new ByteBufferMessageElement(name, type, sharedValue, sig);
             } else {
                 res[1] = new JxtaMessageMessageElement(name, type, submsg, sig);
             }
@@ -857,6 +895,24 @@ public class WireFormatMessageBinary implements WireFormatMessage {
         }
 
         public Message fromBufferExternal(ByteBuffer buffer, MimeMediaType type, MimeMediaType contentEncoding, boolean paramDisableCbjx, PeerGroup paramGroup, boolean isEnforce) throws IOException {
+            return fromBufferExternal(buffer, type, contentEncoding, paramDisableCbjx, paramGroup, isEnforce, false);
+        }
+
+        /**
+         * Read a message from the provided buffer.
+         *
+         * @param buffer the buffer to read from.
+         * @param type the mime type of the message.
+         * @param contentEncoding the content encoding of the message.
+         * @param paramDisableCbjx if {@code true} then CBJX verification is not performed.
+         * @param paramGroup the group for CBJX verification.
+         * @param isEnforce if {@code true} then CBJX verification is performed.
+         * @param shareBuffer if {@code true} then the element data is not
+         * copied, the elements are read-only views of {@code buffer}.
+         * @return the message.
+         * @throws IOException if the message could not be read.
+         */
+        Message fromBufferExternal(ByteBuffer buffer, MimeMediaType type, MimeMediaType contentEncoding, boolean paramDisableCbjx, PeerGroup paramGroup, boolean isEnforce, boolean shareBuffer) throws IOException {
             // FIXME 20020504 bondolo@jxta.org  Ignores type and contentEncoding completely.
             Message msg = new Message();
 
@@ -882,7 +938,7 @@ public class WireFormatMessageBinary implements WireFormatMessage {
                 Object[] anElement;
 
                 try {
-                    anElement = readMessageElement(buffer);
+                    anElement = readMessageElement(buffer, shareBuffer);
 
                     if (Logging.SHOW_FINER && LOG.isLoggable(Level.FINER)) {
                         LOG.finer(MessageFormat.format("Read element of size {0}, [{1}] {2}", anElement.length, anElement.toString(),buffer.toString()));
@@ -1581,7 +1637,11 @@ public class WireFormatMessageBinary implements WireFormatMessage {
 
             partBuffers.add(ByteBuffer.wrap(header));
 
-            partBuffers.add(ByteBuffer.wrap(element.getBytes(false)));
+            if (element instanceof ByteBufferMessageElement) {
+                partBuffers.add(((ByteBufferMessageElement) element).getByteBuffer());
+            } else {
+                partBuffers.add(ByteBuffer.wrap(element.getBytes(false)));
+            }
 
             if (null != sig) {
                 partBuffers.addAll(Arrays.asList(sig.getByteBuffers()));
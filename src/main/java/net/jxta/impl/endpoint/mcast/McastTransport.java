@@ -515,8 +515,7 @@ public class McastTransport implements Runnable, Module, MessagePropagater {
 
         // Cannot start before registration
         multicastProcessor = new DatagramProcessor(group.getTaskManager().getExecutorService(), poolSize);
-        multicastThread = new Thread(this, "IP Multicast Listener for " + publicAddress);
-        multicastThread.setDaemon(true);
+        multicastThread = group.getTaskManager().newThread(this, "IP Multicast Listener for " + publicAddress);
         multicastThread.start();
 
         try {
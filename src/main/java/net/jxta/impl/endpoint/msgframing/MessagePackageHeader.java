@@ -57,6 +57,7 @@
 package net.jxta.impl.endpoint.msgframing;
 
 import net.jxta.document.MimeMediaType;
+import net.jxta.impl.util.ByteBufferPool;
 import net.jxta.logging.Logging;
 
 import java.io.DataInput;
@@ -493,10 +494,22 @@ public class MessagePackageHeader {
      * @return ByteBuffer representing this Header
      */
     public ByteBuffer getByteBuffer() {
+        return getByteBuffer(ByteBufferPool.UNPOOLED);
+    }
+
+    /**
+     * Return a ByteBuffer representing this group of header elements. The
+     * buffer is acquired from the provided pool and should be released to it
+     * once written.
+     *
+     * @param pool the pool from which to acquire the buffer.
+     * @return ByteBuffer representing this Header
+     */
+    public ByteBuffer getByteBuffer(ByteBufferPool pool) {
         // note: according to the spec this may exceed MAX_HEADER_LEN,
         // but since there are practically only 3 header elements used
         // it's safe to assume this implemention detail.
-        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_LEN);
+        ByteBuffer buffer = pool.acquire(MAX_HEADER_LEN);
 
         for (Header header : headers) {
             byte[] name;
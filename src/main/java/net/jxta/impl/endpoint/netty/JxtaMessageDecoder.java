@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 
 import net.jxta.document.MimeMediaType;
 import net.jxta.endpoint.WireFormatMessageFactory;
+import net.jxta.impl.endpoint.WireFormatMessageBinary;
 import net.jxta.peergroup.PeerGroup;
 
 import org.jboss.netty.channel.Channel;
@@ -14,6 +15,12 @@ import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
 /**
  * Decodes JXTA message frames from their network form into logical Message objects,
  * and passes them upstream.
+ * <p>
+ * If the system property {@value #ZERO_COPY_PROPERTY} is set to {@code true}, binary
+ * messages are decoded without copying their element data: the elements of the
+ * resulting message are read-only views of the received frame buffer, which is
+ * released once the message is dropped. Each frame delivered by {@link JxtaProtocolHandler}
+ * has a buffer of its own, so the views are never overwritten by later frames.
  * 
  * @author iain.mcginniss@onedrum.com
  */
@@ -21,10 +28,19 @@ import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
 public class JxtaMessageDecoder extends OneToOneDecoder {
 
     public static final String NAME = "jxtaMessageDecoder";
+    public static final String ZERO_COPY_PROPERTY = "net.jxta.impl.endpoint.netty.zeroCopyDecode";
+    private static final boolean DEFAULT_ZERO_COPY = Boolean.getBoolean(ZERO_COPY_PROPERTY);
+
     private PeerGroup peerGroup;
+    private boolean zeroCopy;
 
     JxtaMessageDecoder(PeerGroup peerGroup) {
+        this(peerGroup, DEFAULT_ZERO_COPY);
+    }
+
+    JxtaMessageDecoder(PeerGroup peerGroup, boolean zeroCopy) {
         this.peerGroup = peerGroup;
+        this.zeroCopy = zeroCopy;
     }
 
 	@Override
@@ -39,6 +55,10 @@ public class JxtaMessageDecoder extends OneToOneDecoder {
         
         // TODO: we should pull the "content-coding" header out and do something with it, presumably
         // pass it to the factory. However, this is not done by TCPMessenger or MCastTransport either
+        if(zeroCopy && contentType.equalsIngoringParams(WireFormatMessageFactory.DEFAULT_WIRE_MIME)) {
+            return WireFormatMessageBinary.fromSharedBuffer(messageContents, contentType, null, peerGroup);
+        }
+        
         return WireFormatMessageFactory.fromBufferExternal(messageContents, contentType, null, peerGroup);
     }
 
@@ -5,6 +5,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.jxta.endpoint.BatchSendException;
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.endpoint.EndpointService;
 import net.jxta.endpoint.Message;
@@ -91,6 +92,58 @@ public class NettyMessenger extends BlockingMessenger implements MessageArrivalL
         }
         
         ChannelFuture future = channel.write(retargetMessage(message, service, param));
+        awaitWrite(future, message);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * All of the messages are handed to the channel before waiting for any
+     * of them to be written, so that they may be flushed together.
+     */
+    @Override
+    public boolean supportsBatching() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void sendMessagesBImpl(Message[] messages, String[] services, String[] params) throws IOException {
+
+        if (isClosed()) {
+
+            IOException failure = new IOException("Messenger was closed, it cannot be used to send messages.");
+            Logging.logCheckedWarning(LOG, failure);
+            throw failure;
+
+        }
+
+        ChannelFuture[] futures = new ChannelFuture[messages.length];
+
+        for (int eachMsg = 0; eachMsg < messages.length; eachMsg++) {
+            futures[eachMsg] = channel.write(retargetMessage(messages[eachMsg], services[eachMsg], params[eachMsg]));
+        }
+
+        for (int eachMsg = 0; eachMsg < messages.length; eachMsg++) {
+            try {
+                awaitWrite(futures[eachMsg], messages[eachMsg]);
+            } catch (IOException failed) {
+                // The messages before this one were written.
+                throw new BatchSendException(eachMsg, failed);
+            }
+        }
+    }
+
+    /**
+     * Waits for a message to be written to the channel.
+     *
+     * @param future the future of the write.
+     * @param message the message.
+     * @throws IOException if the message was not written. The channel is closed.
+     */
+    private void awaitWrite(ChannelFuture future, Message message) throws IOException {
         future.awaitUninterruptibly();
         if(!future.isSuccess()) {
             IOException failure;
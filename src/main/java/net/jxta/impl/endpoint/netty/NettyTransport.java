@@ -2,6 +2,7 @@
 package net.jxta.impl.endpoint.netty;
 
 import java.io.StringWriter;
+import java.security.NoSuchAlgorithmException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Enumeration;
@@ -11,6 +12,7 @@ import java.util.NoSuchElementException;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
 import net.jxta.document.Advertisement;
 import net.jxta.document.AdvertisementFactory;
 import net.jxta.document.StructuredDocument;
@@ -45,6 +47,14 @@ import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
  * the opening of a port using UPnP or STUN/TURN, or utilizing HTTP to tunnel the
  * data.
  * 
+ * Connections may be secured with TLS by providing an {@link SSLContext} from
+ * {@link #createSSLContext()}. The TLS engine of each connection runs within the
+ * netty pipeline, so secure connections share the I/O threads of the channel
+ * factories rather than each requiring a thread of its own. By default TLS is
+ * used if the system property {@value #TLS_PROPERTY} is {@code true}, with the
+ * key and trust material of the platform default context (configured through
+ * the standard {@code javax.net.ssl} system properties).
+ * 
  * @author iain.mcginniss@onedrum.com
  */
 public class NettyTransport implements Module {
@@ -52,6 +62,8 @@ public class NettyTransport implements Module {
     private static final Logger LOG = Logger.getLogger(NettyTransport.class.getName());
 
     public static final int MODULE_STARTUP_FAILED = -1;
+
+    public static final String TLS_PROPERTY = "net.jxta.impl.endpoint.netty.tls";
     
     private PeerGroup group;
 
@@ -65,11 +77,14 @@ public class NettyTransport implements Module {
     
     
     private boolean started = false;
+
+    private SSLContext sslContext;
     
     public void init(PeerGroup group, ID assignedID, Advertisement implAdv) throws PeerGroupException {
         this.group = group;
         this.protocolName = getDefaultProtocolName();
         processStaticConfiguration(implAdv);
+        this.sslContext = createSSLContext();
         
         TCPAdv instanceConfiguration = extractInstanceConfiguration(assignedID);
         initServer(instanceConfiguration);
@@ -103,7 +118,7 @@ public class NettyTransport implements Module {
             publicAddress = new EndpointAddress(protocolName, publicName, null, null);
         }
         
-        NettyTransportServer server = new NettyTransportServer(createServerSocketChannelFactory(), new InetSocketAddressTranslator(protocolName), group);
+        NettyTransportServer server = new NettyTransportServer(createServerSocketChannelFactory(), new InetSocketAddressTranslator(protocolName), group, sslContext);
         
         int preferredPort = correctPort(instanceConfiguration.getPort(), 1, 65535, getDefaultPort(), getDefaultPort(), "Preferred");
         int startPort = correctPort(instanceConfiguration.getStartPort(), 1, preferredPort, getDefaultPortRangeLowerBound(), 1, "Range start");
@@ -121,7 +136,7 @@ public class NettyTransport implements Module {
             return;
         }
         
-        client = new NettyTransportClient(createClientSocketChannelFactory(), new InetSocketAddressTranslator(protocolName), group, returnAddress);
+        client = new NettyTransportClient(createClientSocketChannelFactory(), new InetSocketAddressTranslator(protocolName), group, returnAddress, sslContext);
     }
 
     private EndpointAddress getPreferredReturnAddress(TCPAdv instanceConfiguration) {
@@ -154,6 +169,7 @@ public class NettyTransport implements Module {
         
         writer.append("\n\tConfiguration:");
         writer.append("\n\t\tProtocol: ").append(protocolName);
+        writer.append("\n\t\tTLS: ").append(Boolean.toString(sslContext != null));
         
         writer.append("\n\tServer enabled: ").append(Boolean.toString(serverEnabled));
         if(serverEnabled) {
@@ -238,6 +254,24 @@ public class NettyTransport implements Module {
         return new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
     }
     
+    /**
+     * @return the context used to secure connections with TLS, or {@code null} if connections are
+     * not to be encrypted. It is intended that this be overridden if a child implementation wishes
+     * to provide its own key and trust material, for instance from the peer's PSE keystore.
+     * @throws PeerGroupException if TLS is required but no context can be created.
+     */
+    protected SSLContext createSSLContext() throws PeerGroupException {
+        if(!Boolean.getBoolean(TLS_PROPERTY)) {
+            return null;
+        }
+
+        try {
+            return SSLContext.getDefault();
+        } catch(NoSuchAlgorithmException e) {
+            throw new PeerGroupException("Unable to create TLS context", e);
+        }
+    }
+    
     /**
      * Used to take a port from the configuration, and "correct" it to a useable port number.
      * <ol>
@@ -2,6 +2,9 @@ package net.jxta.impl.endpoint.netty;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
@@ -9,10 +12,21 @@ import net.jxta.peergroup.PeerGroup;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.util.Timer;
 
+/**
+ * Builds the pipeline for each connection of the netty transport. If an
+ * {@link SSLContext} is provided, an {@link SslHandler} is placed in front of
+ * the JXTA protocol handlers so that the whole connection, including the
+ * welcome message exchange, is encrypted. The TLS handshake is driven by the
+ * channel's I/O threads like any other traffic, see {@link TlsHandshakeHandler}. Pipelines created for
+ * outgoing connections (those with a remote address) act as the TLS client.
+ */
 public class NettyTransportChannelPipelineFactory implements ChannelPipelineFactory {
 
+    public static final String SSL_HANDLER_NAME = "ssl";
+
 	private PeerID localPeerId;
 	private Timer timeoutTimer;
 	private NettyChannelRegistry registry;
@@ -22,13 +36,27 @@ public class NettyTransportChannelPipelineFactory implements ChannelPipelineFact
     private EndpointAddress remoteAddress;
 
     private PeerGroup peerGroup;
+    private SSLContext sslContext;
 	
 	public NettyTransportChannelPipelineFactory(PeerGroup peerGroup, PeerID localPeerId, Timer timeoutTimer, NettyChannelRegistry registry, AddressTranslator addrTranslator, EndpointAddress remoteAddress, EndpointAddress returnAddress) {
-		this(peerGroup, localPeerId, timeoutTimer, registry, addrTranslator, new AtomicBoolean(true), remoteAddress, returnAddress);
+		this(peerGroup, localPeerId, timeoutTimer, registry, addrTranslator, remoteAddress, returnAddress, null);
+	}
+
+	public NettyTransportChannelPipelineFactory(PeerGroup peerGroup, PeerID localPeerId, Timer timeoutTimer, NettyChannelRegistry registry, AddressTranslator addrTranslator, EndpointAddress remoteAddress, EndpointAddress returnAddress, SSLContext sslContext) {
+		this(peerGroup, localPeerId, timeoutTimer, registry, addrTranslator, new AtomicBoolean(true), remoteAddress, returnAddress, sslContext);
 	}
 	
 	public NettyTransportChannelPipelineFactory(PeerGroup peerGroup, PeerID localPeerId, Timer timeoutTimer, NettyChannelRegistry registry, AddressTranslator addrTranslator, AtomicBoolean acceptConnectionFlag, EndpointAddress remoteAddress, EndpointAddress returnAddress) {
+		this(peerGroup, localPeerId, timeoutTimer, registry, addrTranslator, acceptConnectionFlag, remoteAddress, returnAddress, null);
+	}
+
+	/**
+	 * @param sslContext the context used to create the TLS engine of each connection,
+	 * or {@code null} for unencrypted connections.
+	 */
+	public NettyTransportChannelPipelineFactory(PeerGroup peerGroup, PeerID localPeerId, Timer timeoutTimer, NettyChannelRegistry registry, AddressTranslator addrTranslator, AtomicBoolean acceptConnectionFlag, EndpointAddress remoteAddress, EndpointAddress returnAddress, SSLContext sslContext) {
 		this.peerGroup = peerGroup;
+		this.sslContext = sslContext;
 		this.localPeerId = localPeerId;
 		this.timeoutTimer = timeoutTimer;
 		this.registry = registry;
@@ -41,6 +69,13 @@ public class NettyTransportChannelPipelineFactory implements ChannelPipelineFact
 	public ChannelPipeline getPipeline() throws Exception {
 		ChannelPipeline pipeline = Channels.pipeline();
 		pipeline.addFirst(ConnectionRejector.NAME, new ConnectionRejector(acceptConnectionFlag));
+		if(sslContext != null) {
+		    SSLEngine engine = sslContext.createSSLEngine();
+		    engine.setUseClientMode(remoteAddress != null);
+		    SslHandler sslHandler = new SslHandler(engine);
+		    pipeline.addLast(SSL_HANDLER_NAME, sslHandler);
+		    pipeline.addLast(TlsHandshakeHandler.NAME, new TlsHandshakeHandler(sslHandler));
+		}
 		pipeline.addLast(JxtaProtocolHandler.NAME, new JxtaProtocolHandler(addrTranslator, localPeerId, timeoutTimer, remoteAddress, returnAddress));
 		pipeline.addLast(JxtaMessageEncoder.NAME, new JxtaMessageEncoder(peerGroup));
 		pipeline.addLast(JxtaMessageDecoder.NAME, new JxtaMessageDecoder(peerGroup));
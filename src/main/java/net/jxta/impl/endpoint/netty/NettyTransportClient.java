@@ -6,6 +6,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.net.ssl.SSLContext;
+
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.endpoint.EndpointService;
 import net.jxta.endpoint.MessageSender;
@@ -64,8 +66,19 @@ public class NettyTransportClient implements MessageSender, TransportClientCompo
     private ChannelFactory clientFactory;
 
     private EndpointAddress returnAddress;
+
+    private SSLContext sslContext;
     
     public NettyTransportClient(ChannelFactory clientFactory, AddressTranslator addrTranslator, PeerGroup group, EndpointAddress returnAddress) {
+        this(clientFactory, addrTranslator, group, returnAddress, null);
+    }
+
+    /**
+     * @param sslContext the context used to secure outgoing connections with TLS, or {@code null}
+     * for unencrypted connections.
+     */
+    public NettyTransportClient(ChannelFactory clientFactory, AddressTranslator addrTranslator, PeerGroup group, EndpointAddress returnAddress, SSLContext sslContext) {
+        this.sslContext = sslContext;
         this.started = new AtomicBoolean(false);
         this.stopping = new AtomicBoolean(false);
         this.channels = new DefaultChannelGroup();
@@ -147,7 +160,7 @@ public class NettyTransportClient implements MessageSender, TransportClientCompo
         ClientConnectionRegistrationHandler clientRegistry = new ClientConnectionRegistrationHandler();
         
         ClientBootstrap bootstrap = new ClientBootstrap(clientFactory);
-        bootstrap.setPipelineFactory(new NettyTransportChannelPipelineFactory(group, localPeerID, timeoutTimer, clientRegistry, addrTranslator, dest, returnAddress));
+        bootstrap.setPipelineFactory(new NettyTransportChannelPipelineFactory(group, localPeerID, timeoutTimer, clientRegistry, addrTranslator, dest, returnAddress, sslContext));
         
         ChannelFuture connectFuture = bootstrap.connect(addrTranslator.toSocketAddress(dest));
         
@@ -10,6 +10,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.net.ssl.SSLContext;
+
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.endpoint.EndpointService;
 import net.jxta.endpoint.MessageReceiver;
@@ -66,8 +68,19 @@ public class NettyTransportServer implements NettyChannelRegistry, MessageReceiv
     private ChannelGroupFuture closeChannelsFuture;
 
     private List<EndpointAddress> boundAddresses;
+
+    private SSLContext sslContext;
     
     public NettyTransportServer(ServerChannelFactory factory, AddressTranslator addrTranslator, final PeerGroup group) {
+        this(factory, addrTranslator, group, null);
+    }
+
+    /**
+     * @param sslContext the context used to secure accepted connections with TLS, or {@code null}
+     * for unencrypted connections.
+     */
+    public NettyTransportServer(ServerChannelFactory factory, AddressTranslator addrTranslator, final PeerGroup group, SSLContext sslContext) {
+        this.sslContext = sslContext;
         this.channels = new DefaultChannelGroup();
         this.group = group;
         this.homeGroupID = group.getPeerGroupID();
@@ -79,7 +92,7 @@ public class NettyTransportServer implements NettyChannelRegistry, MessageReceiv
     }
  
     public void init(List<? extends SocketAddress> potentialBindpoints, EndpointAddress publicAddress, boolean usePublicOnly) throws PeerGroupException {
-        serverBootstrap.setPipelineFactory(new NettyTransportChannelPipelineFactory(group, localPeerID, timeoutTimer, this, addrTranslator, started, null, publicAddress));
+        serverBootstrap.setPipelineFactory(new NettyTransportChannelPipelineFactory(group, localPeerID, timeoutTimer, this, addrTranslator, started, null, publicAddress, sslContext));
         SocketAddress chosenAddress = bindServerChannel(potentialBindpoints);
         boundAddresses = Collections.unmodifiableList(addrTranslator.translateToExternalAddresses(chosenAddress));
         
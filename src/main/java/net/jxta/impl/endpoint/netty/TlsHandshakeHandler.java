@@ -0,0 +1,48 @@
+package net.jxta.impl.endpoint.netty;
+
+import java.util.logging.Logger;
+
+import net.jxta.logging.Logging;
+
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipelineCoverage;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.ssl.SslHandler;
+
+/**
+ * Starts the TLS handshake of a newly connected channel and holds back the
+ * connected event from the handlers above it until the handshake has
+ * completed, so that the JXTA welcome message exchange only ever takes place
+ * over an established secure session. If the handshake fails the channel is
+ * closed.
+ */
+@ChannelPipelineCoverage("one")
+public class TlsHandshakeHandler extends SimpleChannelUpstreamHandler {
+
+    private static final Logger LOG = Logger.getLogger(TlsHandshakeHandler.class.getName());
+
+    public static final String NAME = "tlsHandshake";
+
+    private final SslHandler sslHandler;
+
+    public TlsHandshakeHandler(SslHandler sslHandler) {
+        this.sslHandler = sslHandler;
+    }
+
+    @Override
+    public void channelConnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+        sslHandler.handshake(ctx.getChannel()).addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if(future.isSuccess()) {
+                    ctx.sendUpstream(e);
+                } else {
+                    Logging.logCheckedWarning(LOG, "TLS handshake with ", ctx.getChannel().getRemoteAddress(), " failed - closing connection\n", future.getCause());
+                    future.getChannel().close();
+                }
+            }
+        });
+    }
+}
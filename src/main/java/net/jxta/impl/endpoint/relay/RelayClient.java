@@ -208,8 +208,7 @@ public class RelayClient implements MessageReceiver, Runnable {
         }
 
         // start the client thread
-        thread = new Thread(this, "Relay Client Worker Thread for " + publicAddress);
-        thread.setDaemon(true);
+        thread = group.getTaskManager().newThread(this, "Relay Client Worker Thread for " + publicAddress);
         thread.start();
 
         Logging.logCheckedInfo(LOG, "Started client : ", publicAddress);
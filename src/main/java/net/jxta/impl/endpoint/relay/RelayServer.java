@@ -738,7 +738,7 @@ public class RelayServer implements MessageSender, MessengerEventListener, Runna
             if (rawMessenger) {
                 // BGSend will *not* close the messenger after use
                 // Because incoming messengers do not need to be closed.
-                new BGSend(messenger, responseMessage, serviceName, peerId);
+                group.getTaskManager().getCachedExecutorService().execute(new BGSend(messenger, responseMessage, serviceName, peerId));
             } else {
 
                 try {
@@ -1327,8 +1327,7 @@ public class RelayServer implements MessageSender, MessengerEventListener, Runna
 
         protected void startCache() {
             doRun = true;
-            cacheThread = new Thread(this, "RelayCache Worker Thread for " + server.publicAddress);
-            cacheThread.setDaemon(true);
+            cacheThread = server.group.getTaskManager().newThread(this, "RelayCache Worker Thread for " + server.publicAddress);
             cacheThread.start();
         }
 
@@ -1346,7 +1345,7 @@ public class RelayServer implements MessageSender, MessengerEventListener, Runna
     /**
      *  Sends a message on an synchronous messenger.
      */
-    static class BGSend extends Thread {
+    static class BGSend implements Runnable {
 
         Messenger mr;
         Message ms;
@@ -1354,19 +1353,15 @@ public class RelayServer implements MessageSender, MessengerEventListener, Runna
         String ps;
 
         BGSend(Messenger mr, Message ms, String sn, String ps) {
-            super("Relay Background Sender");
             this.mr = mr;
             this.ms = ms;
             this.sn = sn;
             this.ps = ps;
-            setDaemon(true);
-            start();
         }
 
         /**
          *  {@inheritDoc}
          */
-        @Override
         public void run() {
 
             try {
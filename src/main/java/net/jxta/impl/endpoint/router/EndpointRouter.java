@@ -63,14 +63,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.jxta.document.Advertisement;
@@ -94,7 +94,6 @@ import net.jxta.id.IDFactory;
 import net.jxta.impl.endpoint.LoopbackMessenger;
 import net.jxta.impl.endpoint.TransportUtils;
 import net.jxta.impl.util.TimeUtils;
-import net.jxta.impl.util.threads.SelfCancellingTask;
 import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
@@ -156,15 +155,36 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
     /**
      * These are peers which we know multi-hop routes for.
      */
-    private final Map<ID, RouteAdvertisement> routedRoutes = new HashMap<ID, RouteAdvertisement>(16);
+    private final Map<ID, RouteAdvertisement> routedRoutes = new ConcurrentHashMap<ID, RouteAdvertisement>(16);
 
     /**
      * A record of failures.
      * <p/>
      * Values are the time of failure as {@link java.lang.Long}. If
      * {@code Long.MAX_VALUE} then a connect attempt is current in progress.
+     * Entries are only ever changed with atomic map operations so that a
+     * single thread at a time attempts a connection to a destination.
      */
-    private final Map<PeerID, Long> triedAndFailed = new HashMap<PeerID, Long>();
+    private final ConcurrentMap<PeerID, Long> triedAndFailed = new ConcurrentHashMap<PeerID, Long>();
+
+    /**
+     * Number of destination locks. Must be a power of two.
+     */
+    private final static int DESTINATION_LOCKS = 64;
+
+    /**
+     * Locks guarding the route updates of a destination. Threads waiting
+     * for a route to a destination also wait on its lock. Destinations are
+     * spread over a fixed set of locks so that routing decisions for
+     * different peers rarely contend on the same monitor.
+     */
+    private final Object[] destinationLocks = new Object[DESTINATION_LOCKS];
+
+    {
+        for (int each = 0; each < DESTINATION_LOCKS; each++) {
+            destinationLocks[each] = new Object();
+        }
+    }
 
     /**
      * local peer ID as an endpointAddress.
@@ -211,30 +231,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
     /**
      * A record of expiration time of known bad routes we received a NACK route
      */
-    private final Map<EndpointAddress, BadRoute> badRoutes = new HashMap<EndpointAddress, BadRoute>();
-
-    /**
-     * We record queries when first started and keep them pending for
-     * a while. Threads coming in the meanwhile wait for a result without
-     * initiating a query. Thus threads may wait passed the point where
-     * the query is no-longer pending, and, although they could initiate
-     * a new one, they do not.
-     * <p/>
-     * However, other threads coming later may initiate a new query. So a
-     * query is not re-initiated systematically on a fixed schedule. This
-     * mechanism also serves to avoid infinite recursions if we're looking
-     * for the route to a rendezvous (route queries will try to go there
-     * themselves).
-     * <p/>
-     * FIXME: jice@jxta.org 20020903 this is approximate. We can do
-     * cleaner/better than this, but it's already an inexpensive improvement
-     * over what used before.
-     * <p/>
-     * FIXME: tra@jxta.org 20030818 the pending hashmap should be moved
-     * in the routeResolver class.
-     */
-    private final Map<PeerID, ClearPendingQuery> pendingQueries = 
-            Collections.synchronizedMap(new HashMap<PeerID, ClearPendingQuery>());
+    private final Map<EndpointAddress, BadRoute> badRoutes = new ConcurrentHashMap<EndpointAddress, BadRoute>();
 
     /**
      * PeerAdv tracking.
@@ -267,59 +264,6 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      */
     private RouteControl theRouteController = null;
 
-    class ClearPendingQuery extends SelfCancellingTask {
-        final PeerID peerID;
-        volatile boolean failed = false;
-        long nextRouteResolveAt = 0;
-
-        ClearPendingQuery(PeerID peerID) {
-            this.peerID = peerID;
-            // We schedule for one tick at one minute and another at 5 minutes
-            // after the second, we cancel ourselves.
-            setHandle(group.getTaskManager().getScheduledExecutorService().scheduleAtFixedRate(this, 60, 60 * 5, TimeUnit.SECONDS));
-            nextRouteResolveAt = TimeUtils.toAbsoluteTimeMillis(20L * TimeUtils.ASECOND);
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void execute() {
-            try {
-                if (failed) {
-                    // Second tick.
-                    // This negative cache info is expired.
-                    pendingQueries.remove(peerID);
-
-                    this.cancel();
-                } else {
-                    // First timer tick. We're done trying. This is now a negative
-                    // cache info. For the next 5 minutes that destination fails
-                    // immediately unless it unexpectedly gets finaly resolved.
-                    failed = true;
-                }
-
-            } catch (Throwable all) {
-
-                Logging.logCheckedSevere(LOG, "Uncaught Throwable in timer task ", Thread.currentThread().getName(), " for ", peerID, all);
-
-            }
-        }
-
-        public synchronized boolean isTimeToResolveRoute() {
-            if (TimeUtils.toRelativeTimeMillis(nextRouteResolveAt) > 0) {
-                return false;
-            }
-            // nextRouteResolveAt is passed. Set the next time to retry from now.
-            nextRouteResolveAt = TimeUtils.toAbsoluteTimeMillis(20L * TimeUtils.ASECOND);
-            return true;
-        }
-
-        public boolean isFailed() {
-            return failed;
-        }
-    }
-
     RouteAdvertisement getMyLocalRoute() {
 
         // Update our idea of the local peer adv. If it has change,
@@ -580,9 +524,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
 
         // We realy did bring something new. Give relief to those that have been
         // waiting for it.
-        synchronized (this) {
-            notifyAll();
-        }
+        messengersChanged();
 
         // NOTE to maintainers: Do not remove any negative cache info
         // or route here. It is being managed by lower-level routines.
@@ -663,6 +605,26 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
     public EndpointRouter() {
     }
 
+    /**
+     * Creates a router which uses the given services and is neither
+     * initialized nor started. Used to test the route tables and their
+     * locking.
+     *
+     * @param group         the group of the router
+     * @param destinations  the messengers to other peers
+     * @param routeCM       the route advertisement cache
+     * @param routeResolver the route resolver
+     */
+    EndpointRouter(PeerGroup group, Destinations destinations, RouteCM routeCM, RouteResolver routeResolver) {
+        this.group = group;
+        this.destinations = destinations;
+        this.routeCM = routeCM;
+        this.routeResolver = routeResolver;
+
+        localPeerId = group.getPeerID();
+        localPeerAddr = pid2addr(localPeerId);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -995,45 +957,22 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
                         || (TimeUtils.toRelativeTimeMillis(findRouteAt) <= 0)) {
 
                     // If it is already hopeless (negative cache), just give up.
-                    // Otherwise, try and recover the route. If a query is not
-                    // already pending, we may trigger a route discovery before we
-                    // wait. Else, just wait. The main problem we have here is that
-                    // the same may re-enter because the resolver query sent by
-                    // findRoute ends up with the rendezvous service trying to
-                    // resolve the same destiation if the destination  happens to be
-                    // the start of the walk. In that situation we will re-enter
-                    // at every findRoute attempt until the query becomes "failed".
-                    // However, we do want to do more than one findRoute because
-                    // just one attempt can fail for totaly fortuitous or temporary
-                    // reasons. A tradeoff is to do a very limitted number of attempts
-                    // but still more than one. Over the minute for which the query
-                    // is not failed, isTimeToRety will return true at most twice
-                    // so that'll be a total of three attempts: once every 20 seconds.
-                    boolean doFind = false;
-                    ClearPendingQuery t;
-
-                    synchronized (pendingQueries) {
-                        t = pendingQueries.get(peerID);
-
-                        if (t == null) {
-                            doFind = true;
-                            t = new ClearPendingQuery(peerID);
-                            pendingQueries.put(peerID, t);
-                        } else {
-                            if (t.isFailed()) {
-                                break;
-                            }
-                            if (t.isTimeToResolveRoute()) {
-                                doFind = true;
-                            }
-                        }
+                    // Otherwise, try and recover the route. The route resolver
+                    // only issues a query if none is pending, so concurrent
+                    // senders share one query and everyone else just waits.
+                    // The same may re-enter because the resolver query ends up
+                    // with the rendezvous service trying to resolve the same
+                    // destination if the destination happens to be the start
+                    // of the walk; the query cache bounds the number of
+                    // queries per round and backs off after failed rounds.
+                    if (routeResolver.getQueryCache().isFailed(peerID)) {
+                        break;
                     }
 
                     // protect against the async messenger request. We only
                     // look for a route after the first iteration by
                     // that time we will have bailed out from the async call
-                    if (doFind) {
-                        routeResolver.findRoute(peerAddress);
+                    if (routeResolver.resolveRoute(peerAddress)) {
                         // we do not need to check the CM, route table will
                         // be updated when the route response arrive. This reduces
                         // CM activities when we wait for the route response
@@ -1043,7 +982,9 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
 
                 // Now, wait. Responses to our query may occur asynchronously.
                 // threads.
-                synchronized (this) {
+                Object lock = getDestinationLock(peerID);
+
+                synchronized (lock) {
                     // We can't possibly do everything above while synchronized,
                     // so we could miss an event of interrest. But some changes
                     // are not readily noticeable anyway, so we must wake up
@@ -1052,7 +993,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
                         // we only need to wait if we haven't got a messenger
                         // yet.
                         if (destinations.getCurrentMessenger(peerAddress) == null) {
-                            wait(ASYNC_MESSENGER_WAIT);
+                            lock.wait(ASYNC_MESSENGER_WAIT);
                         }
                     } catch (InterruptedException woken) {
                         Thread.interrupted();
@@ -1141,9 +1082,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         // long as it works. The only good thing we can do here, is waking up 
         // those that may be waiting for a connection.
 
-        synchronized (this) {
-            notifyAll();
-        }
+        messengersChanged();
         return taken;
     }
 
@@ -1160,13 +1099,11 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         // than doing a redundant put.
 
         PeerID peerID = addr2pid(logDest);
+        Long curr = triedAndFailed.get(peerID);
 
-        synchronized (this) {
-            Long curr = triedAndFailed.get(peerID);
-
-            if (curr != null && curr > TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY)) {
-                triedAndFailed.put(peerID, TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
-            }
+        if (curr != null && curr > TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY)) {
+            // Only if no other thread changed it in the meantime.
+            triedAndFailed.replace(peerID, curr, TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
         }
     }
 
@@ -1187,9 +1124,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         destinations.addOutgoingMessenger(logDest, messenger);
 
         // Here's a new connection. Wakeup those that may be waiting for that.
-        synchronized (this) {
-            notifyAll();
-        }
+        messengersChanged();
         return true;
     }
 
@@ -1206,11 +1141,8 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         ID peerID = addr2pid(peerAddress);
 
         // check if we have a valid route
-        RouteAdvertisement route;
+        RouteAdvertisement route = routedRoutes.get(peerID);
 
-        synchronized (this) {
-            route = routedRoutes.get(peerID);
-        }
         if (route != null || !seekRoute) { // done
             return route;
         }
@@ -1350,12 +1282,24 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
 
         if (route == null) return false;
 
-        synchronized (this) {
+        try {
+            peerID = route.getDest().getPeerID();
+        } catch (Exception ez1) {
+            peerID = null;
+        }
+
+        if (null == peerID) {
+            Logging.logCheckedFine(LOG, "Got a route without destination - discard" + route.display());
+            return false;
+        }
+
+        Object lock = getDestinationLock(peerID);
+
+        synchronized (lock) {
             try {
 
                 Logging.logCheckedFine(LOG, route.display());
 
-                peerID = route.getDest().getPeerID();
                 peerAddress = pid2addr(peerID);
 
                 // Check if we are in the case where we are
@@ -1455,7 +1399,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
                 // We can get rid of any negative info we had. We have
                 // a new and different route.
                 badRoutes.remove(peerAddress);
-                notifyAll(); // Wakeup those waiting for a route.
+                lock.notifyAll(); // Wakeup those waiting for a route.
                 status = true;
             } catch (Exception e2) {
                 // We failed, leave things as they are.
@@ -1465,8 +1409,12 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         }
         // due to the potential high latency of making the
         // srdi revolver push we don't want to hold the lock
-        // on the EndpointRouter object as we may have to
+        // on the destination as we may have to
         // discover a new route to a rendezvous
+        if (status) {
+            routeResolver.getQueryCache().resolved(peerID);
+        }
+
         if (pushNeeded && status) {
             // we are pushing the SRDI entry to a replica peer
             routeResolver.pushSrdi(null, peerID);
@@ -1482,21 +1430,23 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
     void removeRoute(PeerID peerID) {
         boolean needRemove;
 
-        synchronized (this) {
+        // The route is no longer usable, allow a new query right away
+        routeResolver.getQueryCache().invalidate(peerID);
+
+        synchronized (getDestinationLock(peerID)) {
             needRemove = false;
-            if (routedRoutes.containsKey(peerID)) {
+            if (null != routedRoutes.remove(peerID)) {
                 if (group.isRendezvous()) {
                     // Remove the SRDI cache entry from the SRDI cache
                     needRemove = true;
                     Logging.logCheckedFine(LOG, "remove SRDI route " + peerID);
                 }
-                routedRoutes.remove(peerID);
             }
         }
 
         // due to the potential high latency of pushing
-        // the SRDI message we don't want to hold the EndpointRouter
-        // object lock
+        // the SRDI message we don't want to hold the destination
+        // lock
         if (needRemove) {
             // We are trying to flush it from the replica peer
             // Note: this is not guarantee to work if the peerview
@@ -2060,9 +2010,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
                     // failed as it currently holds an infinite timeout to permit
                     // another thread to retry that destination. We only retry
                     // every MAX_ASYNC_GETMESSENGER_RETRY seconds
-                    synchronized (this) {
-                        triedAndFailed.put(addr2pid(dest), TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
-                    }
+                    triedAndFailed.put(addr2pid(dest), TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
                     continue;
                 }
 
@@ -2087,11 +2035,10 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
                     Logging.logCheckedFine(LOG, "we got our async messenger, proceed");
 
                     // Success we got a messenger synchronously. Remove
-                    // the negative cache entry.
-                    synchronized (this) {
-                        triedAndFailed.remove(addr2pid(dest));
-                        notifyAll();
-                    }
+                    // the negative cache entry. The new messenger may be
+                    // the first hop of routes to other destinations too.
+                    triedAndFailed.remove(addr2pid(dest));
+                    messengersChanged();
                     return messenger;
                 }
             } catch (RuntimeException e) {
@@ -2122,27 +2069,32 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         // findReachableEndpoint is really lazy because what it does is expensive.
         // When needed, the negative info that prevents its from working
         // too much is removed. (see calls to ensureLocalRoute).
-        synchronized (this) {
-            Long nextTry = triedAndFailed.get(destPeerID);
+        Long nextTry = triedAndFailed.get(destPeerID);
 
-            if (nextTry != null) {
-                if (nextTry > TimeUtils.timeNow()) {
-                    return null;
-                }
+        if (nextTry != null) {
+            if (nextTry > TimeUtils.timeNow()) {
+                return null;
             }
+        }
 
-            // We are the first thread trying this destination. Let's preclude
-            // any other threads from attempting to do anything while we are
-            // trying that destination. Other threads will have a chance if they
-            // are still waiting when this thread is done. We will update
-            // triedAndFailed when we get the async notification that we got or
-            // we failed to get a messenger.
-
-            Logging.logCheckedFine(LOG, "Temporarly adding ", destPeerAddress.toString(), " to triedAndFailed, while attempting connection");
-            triedAndFailed.put(destPeerID, TimeUtils.toAbsoluteTimeMillis(Long.MAX_VALUE));
+        // We are the first thread trying this destination. Let's preclude
+        // any other threads from attempting to do anything while we are
+        // trying that destination. Other threads will have a chance if they
+        // are still waiting when this thread is done. We will update
+        // triedAndFailed when we get the async notification that we got or
+        // we failed to get a messenger. If another thread changed the entry
+        // since we looked at it, it is the one trying.
+        Long trying = TimeUtils.toAbsoluteTimeMillis(Long.MAX_VALUE);
+        boolean claimed = (nextTry == null)
+                ? (null == triedAndFailed.putIfAbsent(destPeerID, trying))
+                : triedAndFailed.replace(destPeerID, nextTry, trying);
 
+        if (!claimed) {
+            return null;
         }
 
+        Logging.logCheckedFine(LOG, "Temporarly adding ", destPeerAddress.toString(), " to triedAndFailed, while attempting connection");
+
         // Never tried or it was a long time ago.
         // Get (locally) the advertisements of this peer
         Iterator<RouteAdvertisement> advs;
@@ -2211,9 +2163,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
         // FIXEME: That can be even dirtier in the case of a bad hint.
         // We should really not register the peer in tried and failed.
 
-        synchronized (this) {
-            triedAndFailed.put(destPeerID, TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
-        }
+        triedAndFailed.put(destPeerID, TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY));
 
         Logging.logCheckedFine(LOG, "did not find a direct route to :", destPeerAddress);
         return null;
@@ -2545,46 +2495,79 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
             if (routeCM.updateRoute(route)) {
                 // We just dumped an adv for that dest, so we want to do a real check
                 // on its new addresses. Remove the entry from the negative cache.
-                synchronized (this) {
-                    Long nextTry = triedAndFailed.get(pID);
-
-                    if (nextTry != null) {
-                        // only remove if we do not have a pending request (infinite retry)
-                        // we take the conservative approach to avoid creating multiple
-                        // async thread blocked on the same destination
-                        if (nextTry <= TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY)) {
-                            triedAndFailed.remove(pID);
-                            notifyAll();
-                        }
-                    }
-                }
+                clearTriedAndFailed(pID);
             } else {
 
                 Logging.logCheckedFine(LOG, "Route for ", pID, " is same as existing route, not publishing it");
 
                 if (force) {
+                    clearTriedAndFailed(pID);
+                }
+            }
+
+        } catch (Exception e) {
 
-                    synchronized (this) {
+            Logging.logCheckedWarning(LOG, "Failed to publish route advertisement\n", e);
 
-                        Long nextTry = triedAndFailed.get(pID);
+        }
+    }
 
-                        if (nextTry != null) {
-                            // only remove if we do not have a pending request (infinite retry)
-                            // we take the conservative approach to avoid creating multiple
-                            // async thread blocked on the same destination
-                            if (nextTry <= TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY)) {
-                                triedAndFailed.remove(pID);
-                                notifyAll();
-                            }
-                        }
-                    }
+    /**
+     * Removes the negative cache entry of a destination unless a connection
+     * attempt to it is in progress.
+     *
+     * @param pID the destination
+     */
+    private void clearTriedAndFailed(PeerID pID) {
+        Long nextTry = triedAndFailed.get(pID);
+
+        if (nextTry != null) {
+            // only remove if we do not have a pending request (infinite retry)
+            // we take the conservative approach to avoid creating multiple
+            // async thread blocked on the same destination
+            if (nextTry <= TimeUtils.toAbsoluteTimeMillis(MAX_ASYNC_GETMESSENGER_RETRY)) {
+                if (triedAndFailed.remove(pID, nextTry)) {
+                    routeChanged(pID);
                 }
             }
+        }
+    }
 
-        } catch (Exception e) {
+    /**
+     * Returns the lock guarding the route updates of a destination.
+     *
+     * @param peerID the destination
+     * @return the lock of the destination
+     */
+    Object getDestinationLock(ID peerID) {
+        int hash = peerID.hashCode();
 
-            Logging.logCheckedWarning(LOG, "Failed to publish route advertisement\n", e);
+        hash ^= (hash >>> 16);
+        return destinationLocks[hash & (DESTINATION_LOCKS - 1)];
+    }
+
+    /**
+     * Wakes up the threads waiting for a route to a destination.
+     *
+     * @param peerID the destination
+     */
+    private void routeChanged(ID peerID) {
+        Object lock = getDestinationLock(peerID);
+
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
 
+    /**
+     * Wakes up all the threads waiting for a route. A new messenger may
+     * complete the route to any destination using its peer as a hop.
+     */
+    private void messengersChanged() {
+        for (Object lock : destinationLocks) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
         }
     }
 
@@ -2595,7 +2578,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      * @return true or false
      */
     boolean isPendingRouteQuery(PeerID peerID) {
-        return pendingQueries.containsKey(peerID);
+        return routeResolver.getQueryCache().isPending(peerID);
     }
 
     /**
@@ -2604,8 +2587,8 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      * @param peerID destination address
      * @return pending route query info
      */
-    ClearPendingQuery getPendingRouteQuery(PeerID peerID) {
-        return pendingQueries.get(peerID);
+    RouteQueryCache.Entry getPendingRouteQuery(PeerID peerID) {
+        return routeResolver.getQueryCache().getPending(peerID);
     }
 
     /**
@@ -2660,15 +2643,8 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      *
      * @return All pending route query destinations
      */
-    Collection<Map.Entry<PeerID, ClearPendingQuery>> getPendingQueriesAllDestinations() {
-        List<Map.Entry<PeerID, ClearPendingQuery>> copy = new ArrayList<Map.Entry<PeerID, ClearPendingQuery>>(
-                pendingQueries.size());
-
-        synchronized (pendingQueries) {
-            copy.addAll(pendingQueries.entrySet());
-        }
-
-        return copy;
+    Collection<Map.Entry<PeerID, RouteQueryCache.Entry>> getPendingQueriesAllDestinations() {
+        return routeResolver.getQueryCache().getAllPending();
     }
 
     /**
@@ -2695,7 +2671,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      * @param addr     of the bad route
      * @param badRoute bad route info
      */
-    synchronized void setBadRoute(EndpointAddress addr, BadRoute badRoute) {
+    void setBadRoute(EndpointAddress addr, BadRoute badRoute) {
         badRoutes.put(addr, badRoute);
     }
 
@@ -2705,7 +2681,7 @@ public class EndpointRouter implements EndpointListener, EndpointRoutingTranspor
      * @param addr of the bad route
      * @return BadRoute bad route info
      */
-    synchronized BadRoute getBadRoute(EndpointAddress addr) {
+    BadRoute getBadRoute(EndpointAddress addr) {
         return badRoutes.get(addr);
     }
 
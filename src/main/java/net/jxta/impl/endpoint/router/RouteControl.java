@@ -240,7 +240,7 @@ public class RouteControl implements RouteController {
     public RouteAdvertisement getRouteInfo(PeerID pId) {
 
         RouteAdvertisement route;
-        EndpointRouter.ClearPendingQuery entry;
+        RouteQueryCache.Entry entry;
         EndpointAddress addr = EndpointRouter.pid2addr(pId);
 
         // check if we have a direct route
@@ -419,7 +419,7 @@ public class RouteControl implements RouteController {
                 routes.add(entry.getValue());
             }
 
-            for (Map.Entry<PeerID, EndpointRouter.ClearPendingQuery> entry : router.getPendingQueriesAllDestinations()) {
+            for (Map.Entry<PeerID, RouteQueryCache.Entry> entry : router.getPendingQueriesAllDestinations()) {
                 PeerID pid = entry.getKey();
                 AccessPointAdvertisement ap = (AccessPointAdvertisement)
                         AdvertisementFactory.newAdvertisement(AccessPointAdvertisement.getAdvertisementType());
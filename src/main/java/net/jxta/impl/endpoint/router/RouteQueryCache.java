@@ -0,0 +1,378 @@
+package net.jxta.impl.endpoint.router;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jxta.impl.util.TimeUtils;
+import net.jxta.peer.PeerID;
+
+/**
+ * Tracks the route queries issued for each destination so that concurrent
+ * senders to the same destination share a single query.
+ * <p/>
+ * A destination goes through query rounds. During a round a query is
+ * re-issued at most every {@link #RETRY_INTERVAL} up to
+ * {@link #QUERIES_PER_ROUND} times. A round which does not resolve the route
+ * within {@link #ROUND_TIMEOUT} leaves a negative entry: queries for the
+ * destination are suppressed for a backoff period which doubles with each
+ * consecutive failed round, up to {@link #MAX_BACKOFF}. A resolved
+ * destination keeps a positive entry for {@link #RESOLVED_TTL} during which
+ * no new queries are issued for it.
+ * <p/>
+ * Entries are purged once they are of no further use.
+ */
+final class RouteQueryCache {
+
+    /**
+     * How long a query round lasts before the destination is considered
+     * unreachable.
+     */
+    static final long ROUND_TIMEOUT =
+            Long.getLong(RouteQueryCache.class.getName() + ".roundTimeout", 60L * TimeUtils.ASECOND);
+
+    /**
+     * Minimum time between two queries of a round.
+     */
+    static final long RETRY_INTERVAL =
+            Long.getLong(RouteQueryCache.class.getName() + ".retryInterval", 20L * TimeUtils.ASECOND);
+
+    /**
+     * Maximum number of queries in a round.
+     */
+    static final int QUERIES_PER_ROUND =
+            Integer.getInteger(RouteQueryCache.class.getName() + ".queriesPerRound", 3);
+
+    /**
+     * How long queries are suppressed after the first failed round.
+     */
+    static final long MIN_BACKOFF =
+            Long.getLong(RouteQueryCache.class.getName() + ".minBackoff", 5L * TimeUtils.AMINUTE);
+
+    /**
+     * Longest time queries are suppressed after consecutive failed rounds.
+     */
+    static final long MAX_BACKOFF =
+            Long.getLong(RouteQueryCache.class.getName() + ".maxBackoff", 60L * TimeUtils.AMINUTE);
+
+    /**
+     * How long queries are suppressed after a route has been resolved.
+     */
+    static final long RESOLVED_TTL =
+            Long.getLong(RouteQueryCache.class.getName() + ".resolvedTTL", 30L * TimeUtils.ASECOND);
+
+    /**
+     * Number of cache operations between purges of unused entries.
+     */
+    private static final int PURGE_INTERVAL = 1024;
+
+    /**
+     * The state of the route queries for a destination.
+     */
+    static final class Entry {
+
+        /**
+         * Start of the current round or -1 if no round is in progress.
+         */
+        private long roundStartedAt = -1;
+
+        /**
+         * Earliest time for the next query of the current round.
+         */
+        private long nextQueryAt;
+
+        /**
+         * Queries issued in the current round.
+         */
+        private int queries;
+
+        /**
+         * Consecutive failed rounds.
+         */
+        private int failures;
+
+        /**
+         * End of the negative entry or -1.
+         */
+        private long failedUntil = -1;
+
+        /**
+         * End of the positive entry or -1.
+         */
+        private long resolvedUntil = -1;
+
+        /**
+         * Ends the current round if it has timed out.
+         */
+        private void expireRound(long now) {
+            if ((roundStartedAt >= 0) && (now - roundStartedAt >= ROUND_TIMEOUT)) {
+                long roundEndedAt = roundStartedAt + ROUND_TIMEOUT;
+
+                roundStartedAt = -1;
+                failures++;
+
+                long backoff = MIN_BACKOFF;
+
+                for (int each = 1; (each < failures) && (backoff < MAX_BACKOFF); each++) {
+                    backoff *= 2;
+                }
+
+                failedUntil = roundEndedAt + Math.min(backoff, MAX_BACKOFF);
+            }
+        }
+
+        synchronized boolean shouldQuery(long now) {
+            expireRound(now);
+
+            if ((now < resolvedUntil) || (now < failedUntil)) {
+                return false;
+            }
+
+            if (roundStartedAt < 0) {
+                roundStartedAt = now;
+                queries = 1;
+                nextQueryAt = now + RETRY_INTERVAL;
+                failedUntil = -1;
+                resolvedUntil = -1;
+                return true;
+            }
+
+            if ((now >= nextQueryAt) && (queries < QUERIES_PER_ROUND)) {
+                queries++;
+                nextQueryAt = now + RETRY_INTERVAL;
+                return true;
+            }
+
+            return false;
+        }
+
+        synchronized void resolved(long now) {
+            roundStartedAt = -1;
+            failures = 0;
+            failedUntil = -1;
+            resolvedUntil = now + RESOLVED_TTL;
+        }
+
+        synchronized void invalidate() {
+            resolvedUntil = -1;
+        }
+
+        synchronized boolean isFailed(long now) {
+            expireRound(now);
+
+            return now < failedUntil;
+        }
+
+        synchronized boolean isPending(long now) {
+            expireRound(now);
+
+            return (roundStartedAt >= 0) || (now < failedUntil);
+        }
+
+        /**
+         * Returns {@code true} if the entry carries no information anymore.
+         * Failure counts are kept for as long as the longest backoff so that
+         * the backoff of a destination which keeps failing keeps growing.
+         */
+        synchronized boolean isStale(long now) {
+            expireRound(now);
+
+            return (roundStartedAt < 0) && (now >= resolvedUntil)
+                    && ((failures == 0) || (now >= failedUntil + MAX_BACKOFF));
+        }
+
+        /**
+         * Returns {@code true} if the destination is currently considered
+         * unreachable.
+         *
+         * @return {@code true} if the last query round for the destination
+         *         failed and its backoff has not yet expired.
+         */
+        public boolean isFailed() {
+            return isFailed(TimeUtils.timeNow());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized String toString() {
+            return "[roundStartedAt=" + roundStartedAt + ", queries=" + queries + ", failures=" + failures
+                    + ", failedUntil=" + failedUntil + ", resolvedUntil=" + resolvedUntil + "]";
+        }
+    }
+
+    private final ConcurrentMap<PeerID, Entry> entries = new ConcurrentHashMap<PeerID, Entry>();
+
+    private final AtomicInteger operations = new AtomicInteger();
+
+    /**
+     * Decides whether the caller should issue a route query for the
+     * destination. At most one caller is told to query at a time.
+     *
+     * @param peerID the destination.
+     * @return {@code true} if the caller should issue a query.
+     */
+    boolean shouldQuery(PeerID peerID) {
+        return shouldQuery(peerID, TimeUtils.timeNow());
+    }
+
+    boolean shouldQuery(PeerID peerID, long now) {
+        if (operations.incrementAndGet() % PURGE_INTERVAL == 0) {
+            purge(now);
+        }
+
+        Entry entry = entries.get(peerID);
+
+        if (null == entry) {
+            Entry created = new Entry();
+
+            entry = entries.putIfAbsent(peerID, created);
+
+            if (null == entry) {
+                entry = created;
+            }
+        }
+
+        return entry.shouldQuery(now);
+    }
+
+    /**
+     * Records that a route to the destination has been found.
+     *
+     * @param peerID the destination.
+     */
+    void resolved(PeerID peerID) {
+        resolved(peerID, TimeUtils.timeNow());
+    }
+
+    void resolved(PeerID peerID, long now) {
+        Entry entry = entries.get(peerID);
+
+        if (null == entry) {
+            Entry created = new Entry();
+
+            entry = entries.putIfAbsent(peerID, created);
+
+            if (null == entry) {
+                entry = created;
+            }
+        }
+
+        entry.resolved(now);
+    }
+
+    /**
+     * Records that the route to the destination is no longer usable, so a
+     * new query may be issued immediately.
+     *
+     * @param peerID the destination.
+     */
+    void invalidate(PeerID peerID) {
+        Entry entry = entries.get(peerID);
+
+        if (null != entry) {
+            entry.invalidate();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the destination is currently considered
+     * unreachable.
+     *
+     * @param peerID the destination.
+     * @return {@code true} if the last query round for the destination failed
+     *         and its backoff has not yet expired.
+     */
+    boolean isFailed(PeerID peerID) {
+        return isFailed(peerID, TimeUtils.timeNow());
+    }
+
+    boolean isFailed(PeerID peerID, long now) {
+        Entry entry = entries.get(peerID);
+
+        return (null != entry) && entry.isFailed(now);
+    }
+
+    /**
+     * Returns {@code true} if the destination is being queried or is
+     * considered unreachable.
+     *
+     * @param peerID the destination.
+     * @return {@code true} if a query round is in progress or failed recently.
+     */
+    boolean isPending(PeerID peerID) {
+        return isPending(peerID, TimeUtils.timeNow());
+    }
+
+    boolean isPending(PeerID peerID, long now) {
+        Entry entry = entries.get(peerID);
+
+        return (null != entry) && entry.isPending(now);
+    }
+
+    /**
+     * Returns the entry for a destination if it is being queried or is
+     * considered unreachable.
+     *
+     * @param peerID the destination.
+     * @return the entry or {@code null}.
+     */
+    Entry getPending(PeerID peerID) {
+        Entry entry = entries.get(peerID);
+
+        return ((null != entry) && entry.isPending(TimeUtils.timeNow())) ? entry : null;
+    }
+
+    /**
+     * Returns the destinations which are being queried or are considered
+     * unreachable.
+     *
+     * @return a copy of the pending entries.
+     */
+    Collection<Map.Entry<PeerID, Entry>> getAllPending() {
+        long now = TimeUtils.timeNow();
+        List<Map.Entry<PeerID, Entry>> result = new ArrayList<Map.Entry<PeerID, Entry>>();
+
+        for (Map.Entry<PeerID, Entry> each : entries.entrySet()) {
+            if (each.getValue().isPending(now)) {
+                result.add(each);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of destinations tracked.
+     *
+     * @return the number of destinations tracked.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Forgets everything.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes the entries which carry no information anymore.
+     */
+    void purge(long now) {
+        Iterator<Entry> each = entries.values().iterator();
+
+        while (each.hasNext()) {
+            if (each.next().isStale(now)) {
+                each.remove();
+            }
+        }
+    }
+}
@@ -176,6 +176,12 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
      */
     private SrdiManager srdiManager = null;
 
+    /**
+     * The route queries in progress, failed and recently resolved, by
+     * destination.
+     */
+    private final RouteQueryCache queryCache = new RouteQueryCache();
+
     /**
      *  Encapsulates current Membership Service credential.
      */
@@ -391,6 +397,8 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
         resolver = null;
         srdiManager = null;
         membership = null;
+
+        queryCache.clear();
     }
 
     /**
@@ -410,6 +418,33 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
         useRouteResolver = enable;
     }
 
+    /**
+     * Issues a route discovery resolver request unless one has recently been
+     * issued for the destination, its route was just resolved or it is known
+     * to be unreachable. Concurrent callers for the same destination share a
+     * single query.
+     *
+     * @param peer the destination as a logical endpoint address
+     * @return true if a query was issued
+     */
+    boolean resolveRoute(EndpointAddress peer) {
+        if (!queryCache.shouldQuery(EndpointRouter.addr2pid(peer))) {
+            return false;
+        }
+
+        findRoute(peer);
+        return true;
+    }
+
+    /**
+     * Returns the route queries in progress, failed and recently resolved.
+     *
+     * @return the route query cache
+     */
+    RouteQueryCache getQueryCache() {
+        return queryCache;
+    }
+
     /**
      * issue a new route discovery resolver request
      *
@@ -1096,7 +1131,7 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
         // a specific destination. When we find a route to the destination,
         // the next NACK processing will be sent.
 
-        if (router.isPendingRouteQuery(src)) {
+        if (queryCache.isPending(src)) {
             Logging.logCheckedFine(LOG, "drop NACK due to pending route discovery ", src);
             return;
         }
@@ -1155,7 +1190,6 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
             return true;
         }
 
-        String value;
         SrdiMessage srdiMsg;
 
         try {
@@ -1182,27 +1216,27 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
             return false;
         }
 
+        Collection<SrdiMessage.Entry> routes = new ArrayList<SrdiMessage.Entry>();
+
         for (SrdiMessage.Entry entry : srdiMsg.getEntries()) {
             // drop any information  about ourself
             if (entry.key.equals(localPeerId.toString())) {
                 continue;
             }
-            value = entry.value;
-            if (value == null) {
-                value = "";
-            }
 
             // Expiration of entries is taken care of by SrdiIdex, so we always add
             // FIXME hamada 20030314
             // All routes are added under the secondary key 'DstPID', it would be more correct to
             // Specify it in the message, but since versioning is not yet supported the following is
             // acceptable, since it is localized
-            srdiIndex.add(srdiMsg.getPrimaryKey(), RouteAdvertisement.DEST_PID_TAG, entry.key, pid, entry.expiration);
+            routes.add(new SrdiMessage.Entry(RouteAdvertisement.DEST_PID_TAG, entry.key, entry.expiration));
 
             Logging.logCheckedFine(LOG, "Primary Key [", srdiMsg.getPrimaryKey(), "] key [RouteAdvertisement.DEST_PID_TAG] value [", entry.key, "] exp [", entry.expiration, "]");
 
         }
 
+        srdiIndex.addAll(srdiMsg.getPrimaryKey(), routes, pid);
+
         return true;
     }
 
@@ -1234,8 +1268,8 @@ class RouteResolver implements Module, QueryHandler, SrdiHandler, SrdiPushEntrie
         // The SRDI cache will be flushed when the peer disconnect from
         // the rendezvous.
 
-        // We cannot support concurrent modification of the map while we
-        // do that: we must synchronize...
+        // The routed routes are a concurrent map, its iterator tolerates
+        // routes being added or removed while we do that.
         for (Iterator<ID> each = router.getAllRoutedRouteAddresses(); each.hasNext();) {
             ID pid = each.next();
             SrdiMessage.Entry entry = new SrdiMessage.Entry(pid.toString(), "", Long.MAX_VALUE);
@@ -585,8 +585,7 @@ final class HttpClientMessenger extends BlockingMessenger {
                 throw failure;
             }
 
-            pollerThread = new Thread(this, "HttpClientMessenger poller for " + senderURL);
-            pollerThread.setDaemon(true);
+            pollerThread = servletHttpTransport.group.getTaskManager().newThread(this, "HttpClientMessenger poller for " + senderURL);
             pollerThread.start();
         }
 
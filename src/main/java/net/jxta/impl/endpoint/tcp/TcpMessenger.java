@@ -56,10 +56,10 @@
 
 package net.jxta.impl.endpoint.tcp;
 
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -79,6 +79,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import net.jxta.document.MimeMediaType;
+import net.jxta.endpoint.BatchSendException;
 import net.jxta.endpoint.EndpointAddress;
 import net.jxta.endpoint.Message;
 import net.jxta.endpoint.MessageElement;
@@ -92,6 +93,7 @@ import net.jxta.impl.endpoint.msgframing.MessagePackageHeader;
 import net.jxta.impl.endpoint.msgframing.WelcomeMessage;
 import net.jxta.impl.endpoint.transportMeter.TransportBindingMeter;
 import net.jxta.impl.endpoint.transportMeter.TransportMeterBuildSettings;
+import net.jxta.impl.util.ByteBufferPool;
 import net.jxta.impl.util.TimeUtils;
 import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
@@ -112,6 +114,12 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
      */
     private static final int MAX_WRITE_ATTEMPTS = 3;
 
+    /**
+     * Space reserved beyond the serialized length of a message for the CBJX
+     * certificate, source and signature appended while it is written.
+     */
+    private static final int CBJX_ALLOWANCE = 4096;
+
     /**
      * Description of our current location within the stream.
      */
@@ -188,7 +196,19 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
     private AtomicReference<readState> state = new AtomicReference<readState>(readState.WELCOME);
 
     private final static int MAX_LEN = 4096;
-    private ByteBuffer buffer = ByteBuffer.allocate(MAX_LEN);
+
+    /**
+     * The buffer used for reading when the current message fits within
+     * {@code MAX_LEN}.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(MAX_LEN);
+
+    /**
+     * The current read buffer. Either {@code readBuffer} or, while a message
+     * larger than {@code MAX_LEN} is being read, a buffer from the transport's
+     * buffer pool.
+     */
+    private ByteBuffer buffer = readBuffer;
 
     /**
      * Header from the current incoming message (if any).
@@ -551,6 +571,56 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
         sendMessageDirect(message, service, serviceParam, false);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The messages are written with a single gathering write.
+     */
+    @Override
+    public boolean supportsBatching() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void sendMessagesBImpl(Message[] messages, String[] services, String[] params) throws IOException {
+
+        if (isClosed()) {
+
+            IOException failure = new IOException("Messenger was closed, it cannot be used to send messages.");
+            Logging.logCheckedWarning(LOG, failure);
+            throw failure;
+
+        }
+
+        for (int eachMsg = 0; eachMsg < messages.length; eachMsg++) {
+            setAddresses(messages[eachMsg], getDestAddressToUse(services[eachMsg], params[eachMsg]));
+        }
+
+        // send them
+        try {
+
+            Logging.logCheckedFine(LOG, "Sending ", messages.length, " messages on connection ", getDestinationAddress());
+            xmitMessages(messages);
+
+        } catch (BatchSendException caught) {
+
+            // The connection was already closed if writing failed. A message
+            // which could not be serialized does not break the connection.
+            Logging.logCheckedWarning(LOG, "Message send failed for message ", caught.getSent(), " of ", messages.length, "\n", caught);
+            throw caught;
+
+        } catch (IOException caught) {
+
+            Logging.logCheckedWarning(LOG, "Message send failed for ", messages.length, " messages\n", caught);
+            closeImpl();
+            throw caught;
+
+        }
+    }
+
     public void sendMessageDirect(Message message, String service, String serviceParam, boolean direct) throws IOException {
 
         if (isClosed()) {
@@ -561,8 +631,6 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
 
         }
 
-        // Set the message with the appropriate src and dest address
-        message.replaceMessageElement(EndpointServiceImpl.MESSAGE_SOURCE_NS, srcAddressElement);
         EndpointAddress destAddressToUse;
 
         if (direct) {
@@ -571,8 +639,7 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
             destAddressToUse = getDestAddressToUse(service, serviceParam);
         }
 
-        MessageElement dstAddressElement = new StringMessageElement(EndpointServiceImpl.MESSAGE_DESTINATION_NAME, destAddressToUse.toString(), null);
-        message.replaceMessageElement(EndpointServiceImpl.MESSAGE_DESTINATION_NS, dstAddressElement);
+        setAddresses(message, destAddressToUse);
 
         // send it
         try {
@@ -589,6 +656,19 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
         }
     }
 
+    /**
+     * Set the message with the appropriate src and dest address.
+     *
+     * @param message          the message.
+     * @param destAddressToUse the destination address.
+     */
+    private void setAddresses(Message message, EndpointAddress destAddressToUse) {
+        message.replaceMessageElement(EndpointServiceImpl.MESSAGE_SOURCE_NS, srcAddressElement);
+
+        MessageElement dstAddressElement = new StringMessageElement(EndpointServiceImpl.MESSAGE_DESTINATION_NAME, destAddressToUse.toString(), null);
+        message.replaceMessageElement(EndpointServiceImpl.MESSAGE_DESTINATION_NS, dstAddressElement);
+    }
+
     private void startMessenger() throws IOException {
         socketChannel.configureBlocking(true);
 
@@ -621,6 +701,20 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
      * @throws java.io.IOException For errors sending the message.
      */
     private void xmitMessage(Message msg) throws IOException {
+        xmitMessages(new Message[]{msg});
+    }
+
+    /**
+     * Send messages to the remote peer. The messages are serialized and then
+     * written to the socket with a single gathering write. If a message
+     * cannot be serialized, the messages before it are still written.
+     *
+     * @param msgs the messages to send.
+     * @throws java.io.IOException For errors sending the messages. When
+     * sending several messages, a {@link BatchSendException} telling which
+     * message failed.
+     */
+    private void xmitMessages(Message[] msgs) throws IOException {
 
         if (closed.get()) {
 
@@ -630,67 +724,151 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
         }
 
         long sendBeginTime = TimeUtils.timeNow();
-        long size = 0;
+        long[] sizes = new long[msgs.length];
+        ByteBufferPool pool = tcpTransport.bufferPool;
+        PooledBufferOutputStream[] serialBuffers = new PooledBufferOutputStream[msgs.length];
+        ByteBuffer[] partBuffers = new ByteBuffer[2 * msgs.length];
+        Object what = (1 == msgs.length) ? msgs[0] : (msgs.length + " messages");
+
+        // The number of messages serialized and the failure of the next one.
+        int count = msgs.length;
+        IOException serialFailure = null;
 
         try {
-            // todo 20020730 bondolo@jxta.org Do something with content-coding here
-            // serialize the message.
-            WireFormatMessage serialed = WireFormatMessageFactory.toWireExternal(msg, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, this.tcpTransport.group);
-            ByteArrayOutputStream tempBAOS = new ByteArrayOutputStream();
-            serialed.sendToStream(tempBAOS);
-            ByteBuffer tempBB = ByteBuffer.wrap(tempBAOS.toByteArray());
+            for (int eachMsg = 0; eachMsg < msgs.length; eachMsg++) {
+                Message msg = msgs[eachMsg];
+                WireFormatMessage serialed;
+                ByteBuffer tempBB;
+
+                try {
+                    // todo 20020730 bondolo@jxta.org Do something with content-coding here
+                    // serialize the message.
+                    serialed = WireFormatMessageFactory.toWireExternal(msg, WireFormatMessageFactory.DEFAULT_WIRE_MIME, null, this.tcpTransport.group);
+                    serialBuffers[eachMsg] = new PooledBufferOutputStream(pool, (int) Math.min(Integer.MAX_VALUE, serialed.getByteLength() + CBJX_ALLOWANCE));
+                    serialed.sendToStream(serialBuffers[eachMsg]);
+                    tempBB = serialBuffers[eachMsg].getBuffer();
+                } catch (IOException failed) {
+                    if (1 == msgs.length) {
+                        throw failed;
+                    }
 
-            // Build the package header
-            MessagePackageHeader header = new MessagePackageHeader();
+                    Logging.logCheckedWarning(LOG, "Could not serialize ", msg, "\n", failed);
+                    count = eachMsg;
+                    serialFailure = failed;
+                    break;
+                }
 
-            header.setContentTypeHeader(serialed.getMimeType());
-            size = tempBB.limit();
-            header.setContentLengthHeader(size);
+                // Build the package header
+                MessagePackageHeader header = new MessagePackageHeader();
 
-            Logging.logCheckedFine(LOG, "Sending ", msg, " (", size, ") to ", dstAddress, " via ", inetAddress.getHostAddress(), ":", port);
+                header.setContentTypeHeader(serialed.getMimeType());
+                sizes[eachMsg] = tempBB.limit();
+                header.setContentLengthHeader(sizes[eachMsg]);
 
-            List<ByteBuffer> partBuffers = new ArrayList<ByteBuffer>();
+                Logging.logCheckedFine(LOG, "Sending ", msg, " (", sizes[eachMsg], ") to ", dstAddress, " via ", inetAddress.getHostAddress(), ":", port);
+
+                partBuffers[2 * eachMsg] = header.getByteBuffer(pool);
+                partBuffers[2 * eachMsg + 1] = tempBB;
+            }
 
-            partBuffers.add(header.getByteBuffer());
-            partBuffers.add(tempBB);
+            ByteBuffer[] toWrite = partBuffers;
+
+            if (count < msgs.length) {
+                toWrite = new ByteBuffer[2 * count];
+                System.arraycopy(partBuffers, 0, toWrite, 0, toWrite.length);
+            }
 
             long written;
             writeLock.lock();
             try {
-                written = write(partBuffers.toArray(new ByteBuffer[partBuffers.size()]));
+                written = write(toWrite);
             } finally {
                 writeLock.unlock();
             }
 
             if (TransportMeterBuildSettings.TRANSPORT_METERING && (transportBindingMeter != null)) {
-                transportBindingMeter.messageSent(initiator, msg, TimeUtils.timeNow() - sendBeginTime, written);
+                long sendTime = TimeUtils.timeNow() - sendBeginTime;
+
+                if (1 == msgs.length) {
+                    transportBindingMeter.messageSent(initiator, msgs[0], sendTime, written);
+                } else {
+                    for (int eachMsg = 0; eachMsg < count; eachMsg++) {
+                        transportBindingMeter.messageSent(initiator, msgs[eachMsg], sendTime, sizes[eachMsg]);
+                    }
+                }
             }
 
-            Logging.logCheckedFine(LOG, MessageFormat.format("Sent {0} bytes {1} successfully via {2}:{3}", written, msg,
+            Logging.logCheckedFine(LOG, MessageFormat.format("Sent {0} bytes {1} successfully via {2}:{3}", written, what,
                 inetAddress.getHostAddress(), port));
 
             tcpTransport.incrementBytesSent(written);
-            tcpTransport.incrementMessagesSent();
+            for (int eachMsg = 0; eachMsg < count; eachMsg++) {
+                tcpTransport.incrementMessagesSent();
+            }
             setLastUsed(TimeUtils.timeNow());
         } catch (SocketTimeoutException failed) {
-            SocketTimeoutException failure = new SocketTimeoutException("Failed sending " + msg + " to : " + inetAddress.getHostAddress() + ":" + port);
+            SocketTimeoutException failure = new SocketTimeoutException("Failed sending " + what + " to : " + inetAddress.getHostAddress() + ":" + port);
             failure.initCause(failed);
-            throw failure;
+
+            if (1 == msgs.length) {
+                throw failure;
+            }
+
+            throw new BatchSendException(countWritten(partBuffers, count), failure);
         } catch (IOException failed) {
 
             if (TransportMeterBuildSettings.TRANSPORT_METERING && (transportBindingMeter != null)) {
-                transportBindingMeter.sendFailure(initiator, msg, TimeUtils.timeNow() - sendBeginTime, size);
+                for (int eachMsg = 0; eachMsg < msgs.length; eachMsg++) {
+                    transportBindingMeter.sendFailure(initiator, msgs[eachMsg], TimeUtils.timeNow() - sendBeginTime, sizes[eachMsg]);
+                }
             }
 
             Logging.logCheckedWarning(LOG, "Message send failed for ", inetAddress.getHostAddress(), ":", port, failed);
 
             closingDueToFailure = true;
             close();
-            IOException failure = new IOException("Failed sending " + msg + " to : " + inetAddress.getHostAddress() + ":" + port);
+            IOException failure = new IOException("Failed sending " + what + " to : " + inetAddress.getHostAddress() + ":" + port);
 
             failure.initCause(failed);
-            throw failure;
+
+            if (1 == msgs.length) {
+                throw failure;
+            }
+
+            throw new BatchSendException(countWritten(partBuffers, count), failure);
+        } finally {
+            for (int eachMsg = 0; eachMsg < msgs.length; eachMsg++) {
+                if (null != partBuffers[2 * eachMsg]) {
+                    pool.release(partBuffers[2 * eachMsg]);
+                }
+
+                if (null != serialBuffers[eachMsg]) {
+                    serialBuffers[eachMsg].release();
+                }
+            }
         }
+
+        if (null != serialFailure) {
+            throw new BatchSendException(count, serialFailure);
+        }
+    }
+
+    /**
+     * Returns the number of messages completely written from the buffers
+     * given to a gathering write which failed.
+     *
+     * @param partBuffers the header and body buffer of each message.
+     * @param count the number of messages in the buffers.
+     * @return the number of messages at the start of the buffers which were written.
+     */
+    private static int countWritten(ByteBuffer[] partBuffers, int count) {
+        int written = 0;
+
+        while ((written < count) && !partBuffers[2 * written].hasRemaining() && !partBuffers[2 * written + 1].hasRemaining()) {
+            written++;
+        }
+
+        return written;
     }
 
     /**
@@ -701,14 +879,12 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
      * @throws IOException Thrown for errors while writing message.
      */
     private long write(final ByteBuffer[] byteBuffers) throws IOException {
-        long nBytes = 0;
-        for (ByteBuffer byteBuffer : byteBuffers) nBytes += write(byteBuffer);
-        return nBytes;
-    }
-
-    private long write(final ByteBuffer byteBuffer) throws IOException {
         // Determine how many bytes there are to be written in the buffers.
-        long bytesToWrite = byteBuffer.remaining();
+        long bytesToWrite = 0;
+
+        for (ByteBuffer byteBuffer : byteBuffers) {
+            bytesToWrite += byteBuffer.remaining();
+        }
 
         if (bytesToWrite == 0L) {
             return 0L;
@@ -724,7 +900,7 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
                 // Write from the buffers until we write nothing.
                 do {
 
-                    wroteBytes = socketChannel.write(byteBuffer);
+                    wroteBytes = socketChannel.write(byteBuffers);
                     bytesWritten += wroteBytes;
 
                     if (wroteBytes < 0) throw new EOFException();
@@ -1036,14 +1212,18 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
 
                         ByteBuffer src = buffer;
 
-                        // create an array backed buffer
-                        Logging.logCheckedFine(LOG, MessageFormat.format("{0} Reallocating a new buffer of size {1} to replace :{2}",
+                        // obtain a larger buffer from the pool
+                        Logging.logCheckedFine(LOG, MessageFormat.format("{0} Acquiring a new buffer of size {1} to replace :{2}",
                             Thread.currentThread(), header.getContentLengthHeader(), buffer.toString()));
 
                         // This implementation limits the message size to the MTU which is always < 2GB
-                        buffer = ByteBuffer.allocate((int) header.getContentLengthHeader());
+                        buffer = tcpTransport.bufferPool.acquire((int) header.getContentLengthHeader());
                         buffer.put(src);
                         buffer.flip();
+
+                        if (src != readBuffer) {
+                            tcpTransport.bufferPool.release(src);
+                        }
                     }
                     state.set(readState.BODY);
                     /* FALLSTHROUGH */
@@ -1092,11 +1272,96 @@ public class TcpMessenger extends BlockingMessenger implements Runnable {
             }
         } // while loop
 
-        // prepare the buffer for more data
-        buffer.compact();
+        // prepare the buffer for more data. Messages are parsed into copies
+        // of their data so a pooled buffer can be returned once we are no
+        // longer in the middle of a large message.
+        if ((buffer != readBuffer) && (state.get() != readState.BODY) && (buffer.remaining() <= readBuffer.capacity())) {
+            ByteBuffer pooled = buffer;
+
+            readBuffer.clear();
+            readBuffer.put(pooled);
+            buffer = readBuffer;
+            tcpTransport.bufferPool.release(pooled);
+        } else {
+            buffer.compact();
+        }
+
         return msgs;
     }
 
+    /**
+     * An OutputStream which writes into a buffer obtained from a
+     * {@link ByteBufferPool}, replacing it with a larger one as needed.
+     */
+    private static class PooledBufferOutputStream extends OutputStream {
+
+        private final ByteBufferPool pool;
+
+        private ByteBuffer buffer;
+
+        PooledBufferOutputStream(ByteBufferPool pool, int initialCapacity) {
+            this.pool = pool;
+            this.buffer = pool.acquire(initialCapacity);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b) throws IOException {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureRemaining(len);
+            buffer.put(b, off, len);
+        }
+
+        private void ensureRemaining(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return;
+            }
+
+            long required = (long) buffer.position() + needed;
+
+            if (required > Integer.MAX_VALUE) {
+                throw new IOException("Message too large to serialize : " + required);
+            }
+
+            ByteBuffer larger = pool.acquire((int) Math.max(required, Math.min(Integer.MAX_VALUE, 2L * buffer.capacity())));
+
+            buffer.flip();
+            larger.put(buffer);
+            pool.release(buffer);
+            buffer = larger;
+        }
+
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return a buffer positioned at the start of the written bytes.
+         */
+        ByteBuffer getBuffer() {
+            ByteBuffer written = buffer.duplicate();
+
+            written.flip();
+            return written;
+        }
+
+        /**
+         * Returns the buffer to the pool. The stream may not be used afterwards.
+         */
+        void release() {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
     /**
      * A small class for processing individual messages. 
      */ 
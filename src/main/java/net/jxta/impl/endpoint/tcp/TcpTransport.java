@@ -77,6 +77,8 @@ import net.jxta.impl.endpoint.transportMeter.TransportMeterBuildSettings;
 import net.jxta.impl.endpoint.transportMeter.TransportServiceMonitor;
 import net.jxta.impl.meter.MonitorManager;
 import net.jxta.impl.protocol.TCPAdv;
+import net.jxta.impl.util.ByteBufferPool;
+import net.jxta.impl.util.SizeClassedByteBufferPool;
 import net.jxta.impl.util.TimeUtils;
 import net.jxta.logging.Logging;
 import net.jxta.meter.MonitorResources;
@@ -88,6 +90,7 @@ import net.jxta.protocol.ModuleImplAdvertisement;
 import net.jxta.protocol.TransportAdvertisement;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.lang.reflect.Constructor;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -178,6 +181,11 @@ public class TcpTransport implements Module, MessageSender, MessageReceiver {
     EndpointService endpoint = null;
     Executor executor;
 
+    /**
+     * The pool from which messengers obtain their message buffers.
+     */
+    ByteBufferPool bufferPool = ByteBufferPool.UNPOOLED;
+
     private String protocolName = "tcp";
     private TransportMeter unicastTransportMeter;
 
@@ -472,6 +480,8 @@ public class TcpTransport implements Module, MessageSender, MessageReceiver {
         // should we expose other than a public address if one was specified?
         publicAddressOnly = adv.getPublicAddressOnly();
 
+        bufferPool = createBufferPool(adv);
+
         // Start the servers
         if (adv.isServerEnabled()) {
             try {
@@ -630,6 +640,7 @@ public class TcpTransport implements Module, MessageSender, MessageReceiver {
 
             configInfo.append("\n\tConfiguration :");
             configInfo.append("\n\t\tUsing Interface: ").append(usingInterface.getHostAddress());
+            configInfo.append("\n\t\tBuffer Pool: ").append(bufferPool.getClass().getName());
 
             if (null != unicastServer) {
                 if (-1 == unicastServer.getStartPort()) {
@@ -655,6 +666,54 @@ public class TcpTransport implements Module, MessageSender, MessageReceiver {
         }
     }
 
+    /**
+     * Creates the message buffer pool described by the transport
+     * configuration. Falls back to the default pool if the configured
+     * implementation cannot be constructed, and to no pooling if the
+     * configured sizes are invalid.
+     *
+     * @param adv the transport configuration.
+     * @return the buffer pool.
+     */
+    private static ByteBufferPool createBufferPool(TCPAdv adv) {
+        int poolSize = adv.getBufferPoolSize();
+
+        if (0 == poolSize) {
+            return ByteBufferPool.UNPOOLED;
+        }
+
+        if (-1 == poolSize) {
+            poolSize = SizeClassedByteBufferPool.DEFAULT_POOL_SIZE;
+        }
+
+        int maxBufferSize = adv.getBufferPoolMaxBufferSize();
+
+        if (-1 == maxBufferSize) {
+            maxBufferSize = SizeClassedByteBufferPool.DEFAULT_MAX_BUFFER_SIZE;
+        }
+
+        String poolImpl = adv.getBufferPoolClass();
+
+        if (null != poolImpl) {
+            try {
+                Class<?> poolClass = Class.forName(poolImpl);
+                Class<? extends ByteBufferPool> poolClassChecked = poolClass.asSubclass(ByteBufferPool.class);
+                Constructor<? extends ByteBufferPool> constructor = poolClassChecked.getConstructor(int.class, int.class);
+                return constructor.newInstance(poolSize, maxBufferSize);
+            } catch (Exception e) {
+                Logging.logCheckedSevere(LOG, "Unable to construct buffer pool type [", poolImpl, "], constructing default\n", e);
+            }
+        }
+
+        if (maxBufferSize < SizeClassedByteBufferPool.MIN_BUFFER_SIZE) {
+            Logging.logCheckedWarning(LOG, "Buffer pool max buffer size ", maxBufferSize, " is less than ",
+                    SizeClassedByteBufferPool.MIN_BUFFER_SIZE, ", buffers will not be pooled");
+            return ByteBufferPool.UNPOOLED;
+        }
+
+        return new SizeClassedByteBufferPool(poolSize, maxBufferSize);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -795,8 +795,7 @@ class JTlsOutputStream extends OutputStream {
 
         public Retransmitter() {
 
-            this.retransmitterThread = new Thread(tp.myThreadGroup, this, "JXTA TLS Retransmiter for " + conn.destAddr);
-            retransmitterThread.setDaemon(true);
+            this.retransmitterThread = tp.getPeerGroup().getTaskManager().newThread(tp.myThreadGroup, this, "JXTA TLS Retransmiter for " + conn.destAddr);
             retransmitterThread.start();
 
             Logging.logCheckedInfo(LOG, "STARTED TLS Retransmit thread, RTO = ", RTO);
@@ -474,8 +474,7 @@ class TlsConn {
             this.ptin = ptin;
 
             // start our thread
-            workerThread = new Thread(TlsConn.this.transport.myThreadGroup, this, "JXTA TLS Plaintext Reader for " + TlsConn.this.destAddr);
-            workerThread.setDaemon(true);
+            workerThread = TlsConn.this.transport.getPeerGroup().getTaskManager().newThread(TlsConn.this.transport.myThreadGroup, this, "JXTA TLS Plaintext Reader for " + TlsConn.this.destAddr);
             workerThread.start();
 
             Logging.logCheckedInfo(LOG, "Started ReadPlaintextMessage thread for ", TlsConn.this.destAddr);
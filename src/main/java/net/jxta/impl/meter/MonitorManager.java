@@ -680,7 +680,7 @@ public class MonitorManager implements Service {
     }
 
     private void createReportThread() {
-        reportThread = new Thread(new Runnable() {
+        reportThread = peerGroup.getTaskManager().newThread(new Runnable() {
             public void run() {
                 mainLoop:
                 while (isRunning) {
@@ -724,7 +724,6 @@ public class MonitorManager implements Service {
             }
         }, "Meter-Monitor-Report");
 
-        reportThread.setDaemon(true);
         reportThread.start();
     }
 
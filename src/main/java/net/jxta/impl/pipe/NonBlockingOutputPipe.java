@@ -666,9 +666,8 @@ class NonBlockingOutputPipe implements PipeResolver.Listener, OutputPipe, Runnab
         // if there is no service thread, start one.
         if ((null == serviceThread) && !closed) {
 
-            serviceThread = new Thread(this,
+            serviceThread = peerGroup.getTaskManager().newThread(this,
                     "Worker Thread for NonBlockingOutputPipe : " + getPipeID());
-            serviceThread.setDaemon(true);
             serviceThread.start();
 
             Logging.logCheckedInfo(LOG, "Thread start : ", serviceThread.getName(),
@@ -776,10 +776,7 @@ class PipeResolver implements SrdiPushEntriesInterface, InternalQueryHandler, Sr
 
         Logging.logCheckedFine(LOG, "Received an SRDI messsage with ", srdiMsg.getEntries().size(), " entries from ", srdiMsg.getPeerID());
 
-        for (Object o : srdiMsg.getEntries()) {
-            Entry entry = (Entry) o;
-            srdiIndex.add(srdiMsg.getPrimaryKey(), entry.key, entry.value, srdiMsg.getPeerID(), entry.expiration);
-        }
+        srdiIndex.addAll(srdiMsg.getPrimaryKey(), srdiMsg.getEntries(), srdiMsg.getPeerID());
 
         if (!PipeService.PropagateType.equals(srdiMsg.getPrimaryKey())) {
             // don't replicate entries for propagate pipes. For unicast type
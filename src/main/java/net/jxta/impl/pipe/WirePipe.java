@@ -67,6 +67,7 @@ import net.jxta.id.ID;
 import net.jxta.impl.cm.Srdi;
 import net.jxta.impl.id.UUID.UUID;
 import net.jxta.impl.id.UUID.UUIDFactory;
+import net.jxta.impl.util.SeenMessageFilter;
 import net.jxta.logging.Logging;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
@@ -112,7 +113,6 @@ public class WirePipe implements EndpointListener, InputPipe, PipeRegistrar {
     private final RendezVousService rendezvous;
     private final PeerID localPeerId;
     private NonBlockingWireOutputPipe repropagater;
-    int messagesReceived = 0;
 
     /**
      * Table of local input pipes listening on this pipe. Weak map (used as a
@@ -122,27 +122,9 @@ public class WirePipe implements EndpointListener, InputPipe, PipeRegistrar {
     private final Map<InputPipe, Object> wireinputpipes = new WeakHashMap<InputPipe, Object>();
 
     /**
-     * The list of message ids we have already seen. The most recently seen
-     * messages are at the end of the list.
-     * <p/>
-     * XXX 20031102 bondolo@jxta.org: We might want to consider three
-     * performance enhancements:
-     * <p/>
-     * <ul>
-     * <li>Reverse the order of elements in the list. This would result
-     * in faster searching since the default strategy for ArrayList to
-     * search in index order. We are most likely to see duplicate messages
-     * amongst the messages we have seen recently. This would make
-     * additions more costly.</li>
-     * <p/>
-     * <li>When we do find a duplicate in the list, exchange it's location
-     * with the newest message in the list. This will keep annoying dupes
-     * close to the start of the list.</li>
-     * <p/>
-     * <li>When the array reaches MaxNbOfStoredIds treat it as a ring.</li>
-     * </ul>
+     * The message ids we have already seen. Used for duplicate removal.
      */
-    private final List<UUID> msgIds = new ArrayList<UUID>(MAX_RECORDED_MSGIDS);
+    private final SeenMessageFilter<UUID> msgIds = new SeenMessageFilter<UUID>(MAX_RECORDED_MSGIDS);
 
     /**
      * Constructor
@@ -553,23 +535,11 @@ public class WirePipe implements EndpointListener, InputPipe, PipeRegistrar {
                 msgid = UUIDFactory.newHashUUID(id.hashCode(), 0);
             }
         }
-        synchronized (msgIds) {
-
-            if (msgIds.contains(msgid)) {
-
-                // Already there. Nothing to do
-                Logging.logCheckedFine(LOG, "duplicate ", msgid);
-                return true;
-
-            }
-
-            if (msgIds.size() < MAX_RECORDED_MSGIDS) {
-                msgIds.add(msgid);
-            } else {
-                msgIds.set((messagesReceived % MAX_RECORDED_MSGIDS), msgid);
-            }
+        if (!msgIds.add(msgid)) {
 
-            messagesReceived++;
+            // Already there. Nothing to do
+            Logging.logCheckedFine(LOG, "duplicate ", msgid);
+            return true;
 
         }
 
@@ -94,6 +94,9 @@ public class TCPAdv extends TransportAdvertisement {
 //    private static final String MULTICAST_PORT_TAG = "MulticastPort"; // To delete in a future release
     private static final String FlagsTag = "Flags";
     private static final String PublicAddressOnlyAttr = "PublicAddressOnly";
+    private static final String BufferPoolTag = "BufferPool";
+    private static final String BufferPoolMaxAttr = "maxBufferSize";
+    private static final String BufferPoolClassAttr = "class";
 
     private String configMode = CONFIGMODES[0];
     private String interfaceAddress = null;
@@ -110,6 +113,9 @@ public class TCPAdv extends TransportAdvertisement {
     private boolean serverEnabled = true;
 //    private boolean multicastEnabled = true;  // To delete in a future release
     private boolean publicAddressOnly = false;
+    private int bufferPoolSize = -1;
+    private int bufferPoolMaxBufferSize = -1;
+    private String bufferPoolClass = null;
 
     /**
      * Our instantiator
@@ -632,6 +638,83 @@ public class TCPAdv extends TransportAdvertisement {
         publicAddressOnly = only;
     }
 
+    /**
+     * Returns the total number of bytes of message buffers the transport may
+     * keep for reuse. {@code 0} disables buffer pooling and {@code -1} selects
+     * the default.
+     *
+     * @return the buffer pool size in bytes.
+     */
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    /**
+     * Sets the total number of bytes of message buffers the transport may
+     * keep for reuse. {@code 0} disables buffer pooling and {@code -1} selects
+     * the default.
+     *
+     * @param size the buffer pool size in bytes.
+     */
+    public void setBufferPoolSize(int size) {
+        if (size < -1) {
+            throw new IllegalArgumentException("Illegal buffer pool size : " + size);
+        }
+        bufferPoolSize = size;
+    }
+
+    /**
+     * Returns the size of the largest message buffer the transport will keep
+     * for reuse. {@code -1} selects the default.
+     *
+     * @return the largest pooled buffer size in bytes.
+     */
+    public int getBufferPoolMaxBufferSize() {
+        return bufferPoolMaxBufferSize;
+    }
+
+    /**
+     * Sets the size of the largest message buffer the transport will keep
+     * for reuse. {@code -1} selects the default.
+     *
+     * @param size the largest pooled buffer size in bytes.
+     */
+    public void setBufferPoolMaxBufferSize(int size) {
+        if (size < -1) {
+            throw new IllegalArgumentException("Illegal maximum buffer size : " + size);
+        }
+        bufferPoolMaxBufferSize = size;
+    }
+
+    /**
+     * Returns the name of the {@link net.jxta.impl.util.ByteBufferPool}
+     * implementation the transport will use for message buffers or
+     * {@code null} for the default implementation.
+     *
+     * @return the buffer pool class name.
+     */
+    public String getBufferPoolClass() {
+        return bufferPoolClass;
+    }
+
+    /**
+     * Sets the name of the {@link net.jxta.impl.util.ByteBufferPool}
+     * implementation the transport will use for message buffers or
+     * {@code null} for the default implementation.
+     *
+     * @param className the buffer pool class name.
+     */
+    public void setBufferPoolClass(String className) {
+        if (null != className) {
+            className = className.trim();
+
+            if (0 == className.length()) {
+                className = null;
+            }
+        }
+        bufferPoolClass = className;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -746,6 +829,25 @@ public class TCPAdv extends TransportAdvertisement {
             return true;
         }
 
+        if (BufferPoolTag.equals(elem.getName())) {
+            try {
+                setBufferPoolSize(Integer.parseInt(value));
+                Attribute maxAttr = elem.getAttribute(BufferPoolMaxAttr);
+                Attribute classAttr = elem.getAttribute(BufferPoolClassAttr);
+
+                if (null != maxAttr) {
+                    setBufferPoolMaxBufferSize(Integer.parseInt(maxAttr.getValue().trim()));
+                }
+
+                if (null != classAttr) {
+                    setBufferPoolClass(classAttr.getValue());
+                }
+            } catch (NumberFormatException badSize) {
+                throw new IllegalArgumentException("Illegal buffer pool size : " + value);
+            }
+            return true;
+        }
+
         return false;
     }
 
@@ -861,6 +963,20 @@ public class TCPAdv extends TransportAdvertisement {
             adv.appendChild(server);
         }
 
+        if ((-1 != bufferPoolSize) || (-1 != bufferPoolMaxBufferSize) || (null != bufferPoolClass)) {
+            Element bufferPool = adv.createElement(BufferPoolTag, Integer.toString(bufferPoolSize));
+            adv.appendChild(bufferPool);
+            if (adv instanceof Attributable) {
+                Attributable attrElem = (Attributable) bufferPool;
+                if (-1 != bufferPoolMaxBufferSize) {
+                    attrElem.addAttribute(BufferPoolMaxAttr, Integer.toString(bufferPoolMaxBufferSize));
+                }
+                if (null != bufferPoolClass) {
+                    attrElem.addAttribute(BufferPoolClassAttr, bufferPoolClass);
+                }
+            }
+        }
+
 //
 //        To delete in a future release
 //
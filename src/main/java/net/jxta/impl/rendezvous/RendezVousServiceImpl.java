@@ -95,6 +95,7 @@ import net.jxta.impl.rendezvous.rendezvousMeter.RendezvousMeterBuildSettings;
 import net.jxta.impl.rendezvous.rendezvousMeter.RendezvousServiceMonitor;
 import net.jxta.impl.rendezvous.rpv.PeerView;
 import net.jxta.impl.rendezvous.rpv.PeerViewElement;
+import net.jxta.impl.util.SeenMessageFilter;
 import net.jxta.impl.util.TimeUtils;
 import net.jxta.logging.Logging;
 import net.jxta.meter.MonitorResources;
@@ -154,12 +155,7 @@ public final class RendezVousServiceImpl implements RendezVousService {
     /**
      * The message IDs we have seen. Used for duplicate removal.
      */
-    private final List<UUID> msgIds = new ArrayList<UUID>(MAX_MSGIDS);
-
-    /**
-     * Total number of messages which have been received.
-     */
-    private int messagesReceived;
+    private final SeenMessageFilter<UUID> msgIds = new SeenMessageFilter<UUID>(MAX_MSGIDS);
 
     private RdvConfigAdv.RendezVousConfiguration config = RdvConfigAdv.RendezVousConfiguration.EDGE;
     private boolean autoRendezvous = false;
@@ -949,11 +945,7 @@ public final class RendezVousServiceImpl implements RendezVousService {
 
     public boolean isMsgIdRecorded(UUID id) {
 
-        boolean found;
-
-        synchronized (msgIds) {
-            found = msgIds.contains(id);
-        }
+        boolean found = msgIds.contains(id);
 
         Logging.logCheckedFiner(LOG, id, " = ", found);
 
@@ -970,19 +962,10 @@ public final class RendezVousServiceImpl implements RendezVousService {
      */
     public boolean addMsgId(UUID id) {
 
-        synchronized (msgIds) {
-            if (isMsgIdRecorded(id)) {
-                // Already there. Nothing to do
-                return false;
-            }
-
-            if (msgIds.size() < MAX_MSGIDS) {
-                msgIds.add(id);
-            } else {
-                msgIds.set((messagesReceived % MAX_MSGIDS), id);
-            }
-
-            messagesReceived++;
+        if (!msgIds.add(id)) {
+            // Already there. Nothing to do
+            Logging.logCheckedFiner(LOG, id, " = ", true);
+            return false;
         }
 
         Logging.logCheckedFiner(LOG, "Added Message ID : ", id);
@@ -0,0 +1,116 @@
+package net.jxta.impl.resolver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import net.jxta.impl.util.TimeUtils;
+
+/**
+ * Remembers the peers which have announced that they accept resolver messages
+ * encoded as {@link net.jxta.impl.document.BinaryXMLDocument}.
+ * <p>
+ * A peer is forgotten if it has not renewed its announcement for
+ * {@link #DEFAULT_TIME_TO_LIVE} milliseconds, so that a peer which restarts
+ * with an older implementation is soon sent XML again. At most
+ * {@link #DEFAULT_MAX_PEERS} peers are remembered, the least recently
+ * announced are forgotten first.
+ */
+final class BinaryCapablePeers {
+
+    /**
+     * How long an announcement is remembered.
+     */
+    static final long DEFAULT_TIME_TO_LIVE = 30 * TimeUtils.AMINUTE;
+
+    /**
+     * The maximum number of peers remembered.
+     */
+    static final int DEFAULT_MAX_PEERS = 1024;
+
+    private final long timeToLive;
+
+    private final int maxPeers;
+
+    /**
+     * The expiration time of each peer's announcement, in the order the
+     * announcements were made.
+     */
+    private final LinkedHashMap<String, Long> peers = new LinkedHashMap<String, Long>();
+
+    BinaryCapablePeers() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_PEERS);
+    }
+
+    BinaryCapablePeers(long timeToLive, int maxPeers) {
+        this.timeToLive = timeToLive;
+        this.maxPeers = maxPeers;
+    }
+
+    /**
+     * Records that a peer accepts binary documents.
+     *
+     * @param peer the peer id
+     */
+    synchronized void add(String peer) {
+        long now = TimeUtils.timeNow();
+
+        // re-inserting moves the peer to the end of the iteration order.
+        peers.remove(peer);
+        peers.put(peer, TimeUtils.toAbsoluteTimeMillis(timeToLive, now));
+
+        expire(now);
+    }
+
+    /**
+     * Returns {@code true} if the peer has recently announced that it accepts
+     * binary documents.
+     *
+     * @param peer the peer id
+     * @return {@code true} if binary documents may be sent to the peer
+     */
+    synchronized boolean contains(String peer) {
+        Long expires = peers.get(peer);
+
+        if (null == expires) {
+            return false;
+        }
+
+        if (TimeUtils.toRelativeTimeMillis(expires) <= 0) {
+            peers.remove(peer);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Forgets all of the peers.
+     */
+    synchronized void clear() {
+        peers.clear();
+    }
+
+    /**
+     * Returns the number of peers remembered, including any whose
+     * announcement has expired but which have not yet been forgotten.
+     *
+     * @return the number of peers
+     */
+    synchronized int size() {
+        return peers.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Long> eachPeer = peers.values().iterator();
+
+        while (eachPeer.hasNext()) {
+            long expires = eachPeer.next();
+
+            if ((peers.size() <= maxPeers) && (TimeUtils.toRelativeTimeMillis(expires, now) > 0)) {
+                break;
+            }
+
+            eachPeer.remove();
+        }
+    }
+}
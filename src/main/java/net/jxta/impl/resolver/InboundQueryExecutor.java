@@ -0,0 +1,418 @@
+package net.jxta.impl.resolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import net.jxta.impl.util.threads.TaskManager;
+import net.jxta.logging.Logging;
+
+/**
+ * Executes the processing of inbound resolver queries on a dedicated pool of
+ * worker threads rather than on the endpoint thread which delivered them.
+ * <p>
+ * Each query handler has its own bounded queue. When a handler's queue is
+ * full further queries for that handler are dropped, so a storm of queries
+ * for one handler cannot exhaust memory or delay the queries of other
+ * handlers indefinitely. Each handler also has a priority; idle workers always
+ * take the oldest query of the highest priority handler which has queries
+ * waiting. By default route and pipe resolution queries are given priority
+ * over all other queries.
+ * <p>
+ * The number of workers, the queue length and the priorities are read from
+ * the system properties {@link #WORKERS_SYSPROP}, {@link #QUEUE_SIZE_SYSPROP}
+ * and {@link #PRIORITIES_SYSPROP}.
+ */
+final class InboundQueryExecutor {
+
+    private final static transient Logger LOG = Logger.getLogger(InboundQueryExecutor.class.getName());
+
+    /**
+     * The system property which specifies the number of worker threads. Zero
+     * disables the executor and queries are processed on the thread which
+     * delivered them.
+     */
+    static final String WORKERS_SYSPROP = "net.jxta.impl.resolver.ResolverServiceImpl.queryWorkers";
+
+    /**
+     * The system property which specifies the maximum number of queries
+     * waiting for each handler.
+     */
+    static final String QUEUE_SIZE_SYSPROP = "net.jxta.impl.resolver.ResolverServiceImpl.queryQueueSize";
+
+    /**
+     * The system property which specifies handler priorities as a comma
+     * separated list of {@code handlerName=priority} pairs. Higher priorities
+     * are served first. Handlers which are not listed have priority zero.
+     */
+    static final String PRIORITIES_SYSPROP = "net.jxta.impl.resolver.ResolverServiceImpl.queryPriorities";
+
+    static final int DEFAULT_WORKERS = 4;
+
+    static final int DEFAULT_QUEUE_SIZE = 100;
+
+    static final String DEFAULT_PRIORITIES = "EndpointRouter=10,JxtaPipeResolver=10";
+
+    /**
+     * The result of submitting a query.
+     */
+    enum Outcome {
+        /**
+         * An idle worker will process the query immediately.
+         */
+        DISPATCHED,
+        /**
+         * The query waits behind other queries.
+         */
+        QUEUED,
+        /**
+         * The query was discarded because the handler's queue is full or the
+         * executor has been stopped.
+         */
+        DROPPED
+    }
+
+    private final String name;
+
+    private final int queueSize;
+
+    private final Map<String, Integer> priorities;
+
+    /**
+     * The queues of each handler, in descending order of priority.
+     */
+    private final List<HandlerQueue> queues = new ArrayList<HandlerQueue>();
+
+    private final Map<String, HandlerQueue> queuesByName = new HashMap<String, HandlerQueue>();
+
+    private final List<Thread> workers = new ArrayList<Thread>();
+
+    private int idleWorkers = 0;
+
+    private int waitingTasks = 0;
+
+    /**
+     * Incremented for each submitted query. Used to order the queries of
+     * handlers with equal priority.
+     */
+    private long sequence = 0;
+
+    private boolean stopped = false;
+
+    /**
+     * Creates an executor configured from the system properties.
+     *
+     * @param taskManager creates the worker threads
+     * @param name the name used for the worker threads
+     * @return the executor or {@code null} if queries should be processed
+     *         inline
+     */
+    static InboundQueryExecutor fromSystemProperties(TaskManager taskManager, String name) {
+        int workers = Integer.getInteger(WORKERS_SYSPROP, DEFAULT_WORKERS);
+
+        if (workers <= 0) {
+            return null;
+        }
+
+        int queueSize = Math.max(1, Integer.getInteger(QUEUE_SIZE_SYSPROP, DEFAULT_QUEUE_SIZE));
+
+        return new InboundQueryExecutor(taskManager, name, workers, queueSize, parsePriorities(System.getProperty(PRIORITIES_SYSPROP, DEFAULT_PRIORITIES)));
+    }
+
+    /**
+     * Parses a list of {@code handlerName=priority} pairs. Malformed pairs are
+     * ignored.
+     *
+     * @param spec the list of pairs
+     * @return the priority of each listed handler
+     */
+    static Map<String, Integer> parsePriorities(String spec) {
+        Map<String, Integer> result = new HashMap<String, Integer>();
+
+        for (String pair : spec.split(",")) {
+            pair = pair.trim();
+
+            if (pair.length() == 0) {
+                continue;
+            }
+
+            int equals = pair.lastIndexOf('=');
+
+            try {
+                if (equals <= 0) {
+                    throw new NumberFormatException("missing priority");
+                }
+
+                result.put(pair.substring(0, equals).trim(), Integer.valueOf(pair.substring(equals + 1).trim()));
+            } catch (NumberFormatException badPair) {
+                Logging.logCheckedWarning(LOG, "Ignoring malformed query handler priority : ", pair);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates and starts an executor.
+     *
+     * @param taskManager creates the worker threads
+     * @param name        the name used for the worker threads
+     * @param workerCount the number of worker threads
+     * @param queueSize   the maximum number of queries waiting for each handler
+     * @param priorities  the priority of each handler, unlisted handlers have
+     *                    priority zero
+     */
+    InboundQueryExecutor(TaskManager taskManager, String name, int workerCount, int queueSize, Map<String, Integer> priorities) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("queueSize must be positive");
+        }
+
+        this.name = name;
+        this.queueSize = queueSize;
+        this.priorities = new HashMap<String, Integer>(priorities);
+
+        synchronized (this) {
+            for (int eachWorker = 0; eachWorker < workerCount; eachWorker++) {
+                Thread worker = taskManager.newThread(new Worker(), name + "-" + eachWorker);
+
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        Logging.logCheckedConfig(LOG, name, " processes queries with ", workerCount, " workers, queue size ", queueSize, ", priorities ", this.priorities);
+    }
+
+    /**
+     * Submits the processing of a query for the specified handler.
+     *
+     * @param handlerName the name of the handler to which the query is
+     *                    addressed
+     * @param task        processes the query
+     * @return the outcome
+     */
+    synchronized Outcome execute(String handlerName, Runnable task) {
+        if (stopped) {
+            return Outcome.DROPPED;
+        }
+
+        HandlerQueue queue = getQueue(handlerName);
+
+        if (queue.tasks.size() >= queueSize) {
+            queue.dropped++;
+            return Outcome.DROPPED;
+        }
+
+        Outcome outcome = (waitingTasks < idleWorkers) ? Outcome.DISPATCHED : Outcome.QUEUED;
+
+        if (Outcome.QUEUED == outcome) {
+            queue.delayed++;
+        }
+
+        queue.tasks.addLast(new QueuedTask(task, sequence++));
+        waitingTasks++;
+        notify();
+
+        return outcome;
+    }
+
+    /**
+     * Stops the workers and discards any waiting queries. Queries being
+     * processed are allowed to complete.
+     */
+    void stop() {
+        List<Thread> stopping;
+
+        synchronized (this) {
+            stopped = true;
+
+            for (HandlerQueue queue : queues) {
+                queue.tasks.clear();
+            }
+
+            waitingTasks = 0;
+            stopping = new ArrayList<Thread>(workers);
+            workers.clear();
+            notifyAll();
+        }
+
+        for (Thread worker : stopping) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of queries for the specified handler which are
+     * waiting to be processed.
+     *
+     * @param handlerName the handler name
+     * @return the number of waiting queries
+     */
+    synchronized int getQueueLength(String handlerName) {
+        HandlerQueue queue = queuesByName.get(handlerName);
+
+        return (null == queue) ? 0 : queue.tasks.size();
+    }
+
+    /**
+     * Returns the number of queries for the specified handler which have been
+     * dropped because its queue was full.
+     *
+     * @param handlerName the handler name
+     * @return the number of dropped queries
+     */
+    synchronized long getDroppedCount(String handlerName) {
+        HandlerQueue queue = queuesByName.get(handlerName);
+
+        return (null == queue) ? 0 : queue.dropped;
+    }
+
+    /**
+     * Returns the number of queries for the specified handler which had to
+     * wait because no worker was idle.
+     *
+     * @param handlerName the handler name
+     * @return the number of delayed queries
+     */
+    synchronized long getDelayedCount(String handlerName) {
+        HandlerQueue queue = queuesByName.get(handlerName);
+
+        return (null == queue) ? 0 : queue.delayed;
+    }
+
+    /**
+     * Returns the priority of the specified handler.
+     *
+     * @param handlerName the handler name
+     * @return the priority
+     */
+    int getPriority(String handlerName) {
+        Integer priority = priorities.get(handlerName);
+
+        return (null == priority) ? 0 : priority;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private HandlerQueue getQueue(String handlerName) {
+        HandlerQueue queue = queuesByName.get(handlerName);
+
+        if (null == queue) {
+            queue = new HandlerQueue(getPriority(handlerName));
+            queuesByName.put(handlerName, queue);
+
+            int position = 0;
+
+            while ((position < queues.size()) && (queues.get(position).priority >= queue.priority)) {
+                position++;
+            }
+
+            queues.add(position, queue);
+        }
+
+        return queue;
+    }
+
+    /**
+     * Removes and returns the oldest query of the highest priority handler
+     * which has queries waiting, or {@code null} if there are none.
+     */
+    private Runnable nextTask() {
+        HandlerQueue best = null;
+
+        for (HandlerQueue queue : queues) {
+            if ((null != best) && (queue.priority < best.priority)) {
+                break;
+            }
+
+            if (!queue.tasks.isEmpty() && ((null == best) || (queue.tasks.getFirst().sequence < best.tasks.getFirst().sequence))) {
+                best = queue;
+            }
+        }
+
+        if (null == best) {
+            return null;
+        }
+
+        waitingTasks--;
+
+        return best.tasks.removeFirst().task;
+    }
+
+    private class Worker implements Runnable {
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run() {
+            while (true) {
+                Runnable task;
+
+                synchronized (InboundQueryExecutor.this) {
+                    idleWorkers++;
+
+                    try {
+                        while (!stopped && (0 == waitingTasks)) {
+                            try {
+                                InboundQueryExecutor.this.wait();
+                            } catch (InterruptedException woken) {
+                                // check whether we have been stopped
+                            }
+                        }
+                    } finally {
+                        idleWorkers--;
+                    }
+
+                    if (stopped) {
+                        return;
+                    }
+
+                    task = nextTask();
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable all) {
+                    Logging.logCheckedSevere(LOG, "Uncaught Throwable in ", Thread.currentThread().getName(), "\n", all);
+                }
+            }
+        }
+    }
+
+    private static final class HandlerQueue {
+
+        final int priority;
+
+        final LinkedList<QueuedTask> tasks = new LinkedList<QueuedTask>();
+
+        long dropped = 0;
+
+        long delayed = 0;
+
+        HandlerQueue(int priority) {
+            this.priority = priority;
+        }
+    }
+
+    private static final class QueuedTask {
+
+        final Runnable task;
+
+        final long sequence;
+
+        QueuedTask(Runnable task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+}
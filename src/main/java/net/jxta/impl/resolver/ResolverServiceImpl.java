@@ -65,6 +65,7 @@ import net.jxta.document.XMLDocument;
 import net.jxta.endpoint.*;
 import net.jxta.id.ID;
 import net.jxta.id.IDFactory;
+import net.jxta.impl.document.BinaryXMLDocument;
 import net.jxta.impl.endpoint.router.RouteControl;
 import net.jxta.impl.meter.MonitorManager;
 import net.jxta.impl.protocol.ResolverQuery;
@@ -143,6 +144,28 @@ public class ResolverServiceImpl implements ResolverService {
      */
     private final static MimeMediaType GZIP_MEDIA_TYPE = new MimeMediaType("application/gzip").intern();
 
+    /**
+     * The system property which specifies whether queries and responses are
+     * sent as {@link BinaryXMLDocument} to peers which accept them. The
+     * default is {@code true}.
+     */
+    public final static String BINARY_DOCUMENTS_SYSPROP = "net.jxta.impl.resolver.ResolverServiceImpl.binaryDocuments";
+
+    /**
+     * The name of the message element with which a peer announces that it
+     * accepts queries and responses encoded as {@link BinaryXMLDocument}.
+     * Peers which do not recognize the element ignore it and are only ever
+     * sent XML.
+     */
+    private final static String ACCEPTS_ELEMENT_NAME = "ResolverAccepts";
+
+    private final boolean binaryDocuments = Boolean.valueOf(System.getProperty(BINARY_DOCUMENTS_SYSPROP, "true"));
+
+    /**
+     * The peers known to accept binary documents.
+     */
+    private final BinaryCapablePeers binaryPeers = new BinaryCapablePeers();
+
     private String outQueName = outQueNameShort;
     private String inQueName = inQueNameShort;
     private String srdiQueName = srdiQueNameShort;
@@ -162,6 +185,12 @@ public class ResolverServiceImpl implements ResolverService {
     private EndpointListener responseListener = null;
     private EndpointListener srdiListener = null;
 
+    /**
+     * Processes inbound queries or {@code null} if they are processed on the
+     * thread which delivered them.
+     */
+    private volatile InboundQueryExecutor queryExecutor = null;
+
     private ResolverServiceMonitor resolverServiceMonitor;
     private ResolverMeter resolverMeter;
 
@@ -328,6 +357,8 @@ public class ResolverServiceImpl implements ResolverService {
 
         }
 
+        queryExecutor = InboundQueryExecutor.fromSystemProperties(group.getTaskManager(), "JxtaResolverQuery " + group.getPeerGroupName());
+
         // Register Listeners
         try {
 
@@ -397,6 +428,15 @@ public class ResolverServiceImpl implements ResolverService {
         responseListener = null;
         srdiListener = null;
 
+        InboundQueryExecutor executor = queryExecutor;
+
+        queryExecutor = null;
+        if (null != executor) {
+            executor.stop();
+        }
+
+        binaryPeers.clear();
+
         membership.removePropertyChangeListener("defaultCredential", membershipCredListener);
         currentCredential = null;
 
@@ -532,6 +572,7 @@ public class ResolverServiceImpl implements ResolverService {
                 XMLDocument asDoc = (XMLDocument) query.getDocument(MimeMediaType.XMLUTF8);
                 MessageElement docElem = new TextDocumentMessageElement(outQueName, asDoc, null);
                 queryMsg.addMessageElement("jxta", docElem);
+                addAcceptsElement(queryMsg);
                 RendezVousService rendezvous = group.getRendezVousService();
 
                 if (null != rendezvous) {
@@ -563,7 +604,7 @@ public class ResolverServiceImpl implements ResolverService {
 
             // unicast instead
             boolean success = sendMessage(destPeer, null, handlerName, outQueName, outQueName,
-                    (XMLDocument) query.getDocument(MimeMediaType.XMLUTF8), false);
+                    (XMLDocument) query.getDocument(getEncodingFor(destPeer)), false);
 
             if (ResolverMeterBuildSettings.RESOLVER_METERING && (queryHandlerMeter != null)) {
                 if (success) {
@@ -592,7 +633,7 @@ public class ResolverServiceImpl implements ResolverService {
                 // Check if an optional route information is available to send the response
                 RouteAdvertisement route = response.getSrcPeerRoute();
                 boolean success = sendMessage(destPeer, route, handlerName, inQueName, inQueName,
-                        (XMLDocument) response.getDocument(MimeMediaType.XMLUTF8), false);
+                        (XMLDocument) response.getDocument(getEncodingFor(destPeer)), false);
 
                 if (ResolverMeterBuildSettings.RESOLVER_METERING && (queryHandlerMeter != null)) {
                     if (success) {
@@ -1084,12 +1125,21 @@ public class ResolverServiceImpl implements ResolverService {
                 byte gzipBytes[] = baos.toByteArray();
 
                 msgEl = new ByteArrayMessageElement(tagName, GZIP_MEDIA_TYPE, gzipBytes, null);
+            } else if (body instanceof BinaryXMLDocument) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+                body.sendToStream(baos);
+                msgEl = new ByteArrayMessageElement(tagName, body.getMimeType(), baos.toByteArray(), null);
             } else {
                 msgEl = new TextDocumentMessageElement(tagName, body, null);
             }
 
             msg.addMessageElement("jxta", msgEl);
 
+            if (!srdiQueName.equals(tagName)) {
+                addAcceptsElement(msg);
+            }
+
         } catch (Exception ez1) {
 
             // Not much we can do
@@ -1108,6 +1158,51 @@ public class ResolverServiceImpl implements ResolverService {
 
     }
 
+    /**
+     * Returns the encoding to use for queries and responses sent to the
+     * specified peer.
+     *
+     * @param destPeer the destination peer
+     * @return the MIME type of the document encoding
+     */
+    private MimeMediaType getEncodingFor(String destPeer) {
+        if (binaryDocuments && binaryPeers.contains(destPeer)) {
+            return BinaryXMLDocument.MIME_TYPE;
+        }
+
+        return MimeMediaType.XMLUTF8;
+    }
+
+    /**
+     * Announces in the message that we accept binary documents.
+     *
+     * @param msg the message
+     */
+    private void addAcceptsElement(Message msg) {
+        if (binaryDocuments) {
+            msg.replaceMessageElement("jxta", new StringMessageElement(ACCEPTS_ELEMENT_NAME, BinaryXMLDocument.MIME_TYPE.toString(), null));
+        }
+    }
+
+    /**
+     * Records whether the peer which sent a message accepts binary documents.
+     * A peer accepts them if it announced so or sent one.
+     *
+     * @param msg     the message
+     * @param element the message element containing the query or response
+     * @param peer    the peer which sent the message
+     */
+    private void recordEncodings(Message msg, MessageElement element, String peer) {
+        if (!binaryDocuments || (null == peer)) {
+            return;
+        }
+
+        if (BinaryXMLDocument.MIME_TYPE.equals(element.getMimeType().getBaseMimeMediaType())
+                || (null != msg.getMessageElement("jxta", ACCEPTS_ELEMENT_NAME))) {
+            binaryPeers.add(peer);
+        }
+    }
+
     private RouteController getRouteControl() {
         if (routeControl == null) {
             routeControl = endpoint.getEndpointRouter().getRouteController();
@@ -1148,6 +1243,17 @@ public class ResolverServiceImpl implements ResolverService {
                 StructuredDocument asDoc = StructuredDocumentFactory.newStructuredDocument(element);
                 query = new ResolverQuery(asDoc);
 
+                // The accepts element is added by the peer which sent us the
+                // message. Only record it if that peer is the originator of
+                // the query and not a rendezvous forwarding it.
+                if ((null != query.getSrcPeer()) && "jxta".equals(srcAddr.getProtocolName())) {
+                    String sender = ID.URIEncodingName + ":" + ID.URNNamespace + ":" + srcAddr.getProtocolAddress();
+
+                    if (sender.equals(query.getSrcPeer().toString())) {
+                        recordEncodings(message, element, sender);
+                    }
+                }
+
             } catch (IOException e) {
 
                 Logging.logCheckedWarning(LOG, "Ill formatted resolver query, ignoring.\n", e);
@@ -1170,6 +1276,49 @@ public class ResolverServiceImpl implements ResolverService {
 
             }
 
+            InboundQueryExecutor executor = queryExecutor;
+
+            if (null == executor) {
+                handleQuery(message, query, srcAddr);
+                return;
+            }
+
+            final Message queryMessage = message;
+            final ResolverQueryMsg queuedQuery = query;
+            final EndpointAddress querySrcAddr = srcAddr;
+
+            InboundQueryExecutor.Outcome outcome = executor.execute(query.getHandlerName(), new Runnable() {
+                public void run() {
+                    handleQuery(queryMessage, queuedQuery, querySrcAddr);
+                }
+            });
+
+            if (InboundQueryExecutor.Outcome.DROPPED == outcome) {
+
+                Logging.logCheckedFine(LOG, "Dropping query #", query.getQueryId(), " for ", query.getHandlerName(), ", queue is full");
+
+                if (ResolverMeterBuildSettings.RESOLVER_METERING && (resolverMeter != null)) {
+                    resolverMeter.queryQueueDropped(query);
+                }
+
+            } else if (InboundQueryExecutor.Outcome.QUEUED == outcome) {
+
+                if (ResolverMeterBuildSettings.RESOLVER_METERING && (resolverMeter != null)) {
+                    resolverMeter.queryDelayed(query);
+                }
+
+            }
+        }
+
+        /**
+         * Processes a query and repropagates it if the handler asks for it.
+         *
+         * @param message the message containing the query
+         * @param query   the query
+         * @param srcAddr who sent the query to us
+         */
+        private void handleQuery(Message message, ResolverQueryMsg query, EndpointAddress srcAddr) {
+
             int res = processQuery(query, srcAddr);
 
             if (ResolverService.Repropagate == res) {
@@ -1214,6 +1363,10 @@ public class ResolverServiceImpl implements ResolverService {
                 StructuredDocument asDoc = StructuredDocumentFactory.newStructuredDocument(element);
                 resolverResponse = new ResolverResponse(asDoc);
 
+                if ("jxta".equals(srcAddr.getProtocolName())) {
+                    recordEncodings(message, element, ID.URIEncodingName + ":" + ID.URNNamespace + ":" + srcAddr.getProtocolAddress());
+                }
+
             } catch (IOException e) {
 
                 Logging.logCheckedWarning(LOG, "Ill formatted resolver response, ignoring.\n", e);
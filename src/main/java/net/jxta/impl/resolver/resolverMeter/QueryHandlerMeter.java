@@ -325,6 +325,24 @@ public class QueryHandlerMeter {
         cumulativeMetrics.queryHopCountDropped();		
     }
 
+    public void queryQueueDropped() {
+        if (deltaMetrics == null) {	
+            createDeltaMetric();
+        }
+
+        deltaMetrics.queryQueueDropped();
+        cumulativeMetrics.queryQueueDropped();		
+    }
+
+    public void queryDelayed() {
+        if (deltaMetrics == null) {	
+            createDeltaMetric();
+        }
+
+        deltaMetrics.queryDelayed();
+        cumulativeMetrics.queryDelayed();		
+    }
+
     public void unableToPropagate() {
         if (deltaMetrics == null) {	
             createDeltaMetric();
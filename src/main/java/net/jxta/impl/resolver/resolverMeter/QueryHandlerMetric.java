@@ -94,6 +94,8 @@ public class QueryHandlerMetric implements DocumentSerializable {
     private int numErrorsSendingQueries = 0;
     private int numErrorsPropagatingQueries = 0;
     private int numQueriesHopCountDropped = 0;
+    private int numQueriesQueueDropped = 0;
+    private int numQueriesDelayed = 0;
 
     private int numPropagationQueriesDropped = 0;	
     private int numPropagatedInGroup = 0;	
@@ -177,6 +179,14 @@ public class QueryHandlerMetric implements DocumentSerializable {
         numQueriesHopCountDropped++;
     }
 
+    void queryQueueDropped() {
+        numQueriesQueueDropped++;
+    }
+
+    void queryDelayed() {
+        numQueriesDelayed++;
+    }
+
     void responseSentInGroup() {
         numResponsesSentInGroup++;
     }
@@ -325,6 +335,16 @@ public class QueryHandlerMetric implements DocumentSerializable {
         return numErrorsPropagatingQueries;
     }
 	
+    /** Number of Queries dropped because the handler's queue was full ***/
+    public int getNumQueriesQueueDropped() {
+        return numQueriesQueueDropped;
+    }
+
+    /** Number of Queries which waited because no worker was idle ***/
+    public int getNumQueriesDelayed() {
+        return numQueriesDelayed;
+    }
+
     /** Number of Responses sent in Group ***/
     public int getNumResponsesSentInGroup() {
         return numResponsesSentInGroup;
@@ -434,6 +454,12 @@ public class QueryHandlerMetric implements DocumentSerializable {
         if (numQueriesHopCountDropped != 0) {
             DocumentSerializableUtilities.addInt(element, "numQueriesHopCountDropped", numQueriesHopCountDropped);
         }
+        if (numQueriesQueueDropped != 0) {
+            DocumentSerializableUtilities.addInt(element, "numQueriesQueueDropped", numQueriesQueueDropped);
+        }
+        if (numQueriesDelayed != 0) {
+            DocumentSerializableUtilities.addInt(element, "numQueriesDelayed", numQueriesDelayed);
+        }
         if (numPropagationQueriesDropped != 0) {
             DocumentSerializableUtilities.addInt(element, "numPropagationQueriesDropped", numPropagationQueriesDropped);
         }
@@ -513,6 +539,10 @@ public class QueryHandlerMetric implements DocumentSerializable {
                 numErrorsPropagatingQueries = DocumentSerializableUtilities.getInt(childElement);
             } else if (tagName.equals("numQueriesHopCountDropped")) { 
                 numQueriesHopCountDropped = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("numQueriesQueueDropped")) { 
+                numQueriesQueueDropped = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("numQueriesDelayed")) { 
+                numQueriesDelayed = DocumentSerializableUtilities.getInt(childElement);
             } else if (tagName.equals("numPropagationQueriesDropped")) { 
                 numPropagationQueriesDropped = DocumentSerializableUtilities.getInt(childElement);
             } else if (tagName.equals("numPropagatedInGroup")) { 
@@ -561,6 +591,8 @@ public class QueryHandlerMetric implements DocumentSerializable {
         this.numErrorsSendingQueries += otherQueryHandlerMetric.numErrorsSendingQueries;
         this.numErrorsPropagatingQueries += otherQueryHandlerMetric.numErrorsPropagatingQueries;
         this.numQueriesHopCountDropped += otherQueryHandlerMetric.numQueriesHopCountDropped;
+        this.numQueriesQueueDropped += otherQueryHandlerMetric.numQueriesQueueDropped;
+        this.numQueriesDelayed += otherQueryHandlerMetric.numQueriesDelayed;
 
         this.numResponsesSentInGroup += otherQueryHandlerMetric.numResponsesSentInGroup;
         this.numResponsesSentViaWalker += otherQueryHandlerMetric.numResponsesSentViaWalker;
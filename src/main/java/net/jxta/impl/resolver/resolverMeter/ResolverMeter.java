@@ -200,6 +200,28 @@ public class ResolverMeter {
         }
     }
 
+    public void queryQueueDropped(ResolverQueryMsg query) {
+        String handlerName = query.getHandlerName();
+		
+        if (handlerName != null) {
+            QueryHandlerMeter queryHandlerMeter = resolverServiceMonitor.getQueryHandlerMeter(handlerName);
+
+            queryHandlerMeter.queryQueueDropped();
+        } else { 
+            invalidQueryDiscarded();
+        }
+    }
+
+    public void queryDelayed(ResolverQueryMsg query) {
+        String handlerName = query.getHandlerName();
+		
+        if (handlerName != null) {
+            QueryHandlerMeter queryHandlerMeter = resolverServiceMonitor.getQueryHandlerMeter(handlerName);
+
+            queryHandlerMeter.queryDelayed();
+        }
+    }
+
     public void queryPropagationError(ResolverQueryMsg query) {
         String handlerName = query.getHandlerName();
 		
@@ -0,0 +1,56 @@
+package net.jxta.impl.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A source of reusable {@link ByteBuffer}s. Buffers are obtained with
+ * {@link #acquire(int)} and should be handed back with {@link #release(ByteBuffer)}
+ * once the caller, and anything the caller handed the buffer to, is finished
+ * with them. A released buffer must not be used again by the releaser.
+ * <p/>
+ * Implementations must be thread safe. Implementations which are configured
+ * by name must provide a public constructor taking the total number of bytes
+ * which may be retained by the pool and the capacity of the largest buffer
+ * which will be retained, both as {@code int}.
+ */
+public interface ByteBufferPool {
+
+    /**
+     * A pool which retains nothing and allocates a new heap buffer for every
+     * request.
+     */
+    public static final ByteBufferPool UNPOOLED = new ByteBufferPool() {
+
+        /**
+         * {@inheritDoc}
+         */
+        public ByteBuffer acquire(int minCapacity) {
+            return ByteBuffer.allocate(minCapacity);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void release(ByteBuffer buffer) {
+            // nothing to do.
+        }
+    };
+
+    /**
+     * Returns a cleared buffer with a capacity of at least the requested
+     * number of bytes.
+     *
+     * @param minCapacity The minimum capacity of the buffer.
+     * @return A cleared buffer.
+     */
+    public ByteBuffer acquire(int minCapacity);
+
+    /**
+     * Returns a buffer to the pool. The pool may keep any buffer it is able
+     * to hand out again, including one which it did not allocate, so callers
+     * must only release buffers they no longer reference.
+     *
+     * @param buffer The buffer being returned.
+     */
+    public void release(ByteBuffer buffer);
+}
@@ -0,0 +1,145 @@
+package net.jxta.impl.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded record of recently seen message identifiers used for duplicate
+ * message suppression.
+ *
+ * <p/>Identifiers are held in a concurrent hash table for constant time
+ * lookup, and in a fixed size ring which records the order in which they were
+ * added. Once the ring is full each newly recorded identifier evicts the
+ * oldest one. Optionally, identifiers which were recorded more than a maximum
+ * age ago are also treated as not having been seen.
+ *
+ * <p/>No global lock is taken; concurrent callers recording the same
+ * identifier are guaranteed that exactly one of them will be told the
+ * identifier is new.
+ *
+ * @param <T> The type of the message identifiers.
+ */
+public class SeenMessageFilter<T> {
+
+    /**
+     * The recorded identifiers and the time at which each was recorded.
+     */
+    private final ConcurrentMap<T, Long> seen;
+
+    /**
+     * The identifiers in the order they were recorded.
+     */
+    private final AtomicReferenceArray<T> ring;
+
+    /**
+     * The total number of identifiers recorded. The next ring slot to use is
+     * this value modulo the ring length.
+     */
+    private final AtomicLong recorded = new AtomicLong(0);
+
+    /**
+     * Identifiers recorded longer ago than this, in milliseconds, are
+     * considered to not have been seen. Zero for no age limit.
+     */
+    private final long maxAge;
+
+    /**
+     * Create a filter with no age limit.
+     *
+     * @param capacity The maximum number of identifiers remembered.
+     */
+    public SeenMessageFilter(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * Create a filter.
+     *
+     * @param capacity The maximum number of identifiers remembered.
+     * @param maxAge   The maximum time in milliseconds an identifier is
+     *                 remembered or zero to remember identifiers until they
+     *                 are evicted by newer ones.
+     */
+    public SeenMessageFilter(int capacity, long maxAge) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("maxAge must not be negative");
+        }
+
+        this.seen = new ConcurrentHashMap<T, Long>(capacity * 2);
+        this.ring = new AtomicReferenceArray<T>(capacity);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns {@code true} if the identifier has been recorded and not yet
+     * forgotten.
+     *
+     * @param id The message identifier.
+     * @return {@code true} if the identifier has been seen otherwise
+     *         {@code false}.
+     */
+    public boolean contains(T id) {
+        Long when = seen.get(id);
+
+        return (null != when) && !isExpired(when, TimeUtils.timeNow());
+    }
+
+    /**
+     * Records the identifier as seen.
+     *
+     * @param id The message identifier.
+     * @return {@code true} if the identifier was newly recorded otherwise
+     *         {@code false} if it is a duplicate.
+     */
+    public boolean add(T id) {
+        long now = TimeUtils.timeNow();
+        Long stamp = now;
+
+        Long previous = seen.putIfAbsent(id, stamp);
+
+        if (null != previous) {
+            // Refresh an expired entry. It keeps its existing ring slot.
+            return isExpired(previous, now) && seen.replace(id, previous, stamp);
+        }
+
+        int slot = (int) (recorded.getAndIncrement() % ring.length());
+        T evicted = ring.getAndSet(slot, id);
+
+        if ((null != evicted) && !evicted.equals(id)) {
+            seen.remove(evicted);
+        }
+
+        return true;
+    }
+
+    /**
+     * Forget all recorded identifiers.
+     */
+    public void clear() {
+        for (int eachSlot = 0; eachSlot < ring.length(); eachSlot++) {
+            ring.set(eachSlot, null);
+        }
+
+        seen.clear();
+    }
+
+    /**
+     * Returns the number of identifiers currently remembered, including any
+     * which have expired but have not yet been evicted.
+     *
+     * @return the number of identifiers remembered.
+     */
+    public int size() {
+        return seen.size();
+    }
+
+    private boolean isExpired(long when, long now) {
+        return (maxAge > 0) && (TimeUtils.toRelativeTimeMillis(now, when) > maxAge);
+    }
+}
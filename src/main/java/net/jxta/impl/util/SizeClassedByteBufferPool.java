@@ -0,0 +1,192 @@
+package net.jxta.impl.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ByteBufferPool} of direct buffers organized into power of two size
+ * classes. A request is satisfied from the smallest size class which can hold
+ * it, so a buffer may be larger than requested. Requests larger than the
+ * largest size class are satisfied with unpooled heap buffers.
+ * <p/>
+ * The total capacity of the buffers retained by the pool is bounded. Buffers
+ * released while the pool is full are dropped and left to the garbage
+ * collector.
+ */
+public class SizeClassedByteBufferPool implements ByteBufferPool {
+
+    /**
+     * The capacity of the smallest size class.
+     */
+    public static final int MIN_BUFFER_SIZE = 1024;
+
+    /**
+     * Default for the total capacity of retained buffers.
+     */
+    public static final int DEFAULT_POOL_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Default for the capacity of the largest size class.
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The free buffers of each size class. Index {@code i} holds buffers of
+     * {@code MIN_BUFFER_SIZE << i} bytes.
+     */
+    private final Queue<ByteBuffer>[] freeBuffers;
+
+    /**
+     * Total number of bytes which may be retained.
+     */
+    private final long poolSize;
+
+    /**
+     * Total capacity of the buffers currently retained.
+     */
+    private final AtomicLong retained = new AtomicLong(0);
+
+    /**
+     * Number of requests which were satisfied by a retained buffer.
+     */
+    private final AtomicLong hits = new AtomicLong(0);
+
+    /**
+     * Number of requests which required a new buffer to be allocated.
+     */
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Creates a pool with the default sizes.
+     */
+    public SizeClassedByteBufferPool() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param poolSize The total capacity of the buffers which may be retained.
+     * @param maxBufferSize The capacity of the largest buffer which will be
+     * pooled. Rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public SizeClassedByteBufferPool(int poolSize, int maxBufferSize) {
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("Pool size must be >= 0 : " + poolSize);
+        }
+
+        if (maxBufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Max buffer size must be >= " + MIN_BUFFER_SIZE + " : " + maxBufferSize);
+        }
+
+        this.poolSize = poolSize;
+
+        int classes = sizeClass(maxBufferSize) + 1;
+
+        freeBuffers = new Queue[classes];
+        for (int eachClass = 0; eachClass < classes; eachClass++) {
+            freeBuffers[eachClass] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /**
+     * Returns the index of the smallest size class which can hold the
+     * requested number of bytes.
+     *
+     * @param capacity The number of bytes.
+     * @return The size class index.
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros((capacity - 1) / MIN_BUFFER_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must be >= 0 : " + minCapacity);
+        }
+
+        int sizeClass = sizeClass(minCapacity);
+
+        if (sizeClass >= freeBuffers.length) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocate(minCapacity);
+        }
+
+        ByteBuffer buffer = freeBuffers[sizeClass].poll();
+
+        if (null == buffer) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sizeClass);
+        }
+
+        retained.addAndGet(-buffer.capacity());
+        hits.incrementAndGet();
+        buffer.clear();
+
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Any writable direct buffer whose capacity is exactly one of the size
+     * classes is retained, whether or not it was allocated by this pool,
+     * unless the pool is full. Other buffers are ignored.
+     */
+    public void release(ByteBuffer buffer) {
+        if ((null == buffer) || !buffer.isDirect() || buffer.isReadOnly()) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+
+        if ((sizeClass >= freeBuffers.length) || ((MIN_BUFFER_SIZE << sizeClass) != capacity)) {
+            return;
+        }
+
+        if (retained.addAndGet(capacity) > poolSize) {
+            retained.addAndGet(-capacity);
+            return;
+        }
+
+        freeBuffers[sizeClass].offer(buffer);
+    }
+
+    /**
+     * Returns the total capacity of the buffers currently retained.
+     *
+     * @return The total capacity of the buffers currently retained.
+     */
+    public long getRetainedBytes() {
+        return retained.get();
+    }
+
+    /**
+     * Returns the number of requests satisfied by a retained buffer.
+     *
+     * @return The number of requests satisfied by a retained buffer.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests which required an allocation.
+     *
+     * @return The number of requests which required an allocation.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -57,6 +57,7 @@
 package net.jxta.impl.util.pipe.reliable;
 
 import net.jxta.endpoint.Message;
+import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.logging.Logging;
 import net.jxta.pipe.InputPipe;
 import java.util.logging.Logger;
@@ -70,6 +71,19 @@ public class IncomingPipeAdaptor implements Runnable {
     private Thread poller = null;
 
     public IncomingPipeAdaptor(InputPipe pipe, Incoming incoming) {
+        this(pipe, incoming, null);
+    }
+
+    /**
+     * Creates an adaptor whose poll thread is created by the given task
+     * manager.
+     *
+     * @param pipe the pipe to poll
+     * @param incoming receives the messages
+     * @param taskManager creates the poll thread or {@code null} for a plain
+     * daemon thread
+     */
+    public IncomingPipeAdaptor(InputPipe pipe, Incoming incoming, TaskManager taskManager) {
         if (pipe == null) {
             throw new IllegalArgumentException("pipe cannot be null");
         }
@@ -80,8 +94,12 @@ public class IncomingPipeAdaptor implements Runnable {
         }
         this.incoming = incoming;
 
-        poller = new Thread(this, "Reliable IncomingPipe Message Poll Thread");
-        poller.setDaemon(true);
+        if (taskManager != null) {
+            poller = taskManager.newThread(this, "Reliable IncomingPipe Message Poll Thread");
+        } else {
+            poller = new Thread(this, "Reliable IncomingPipe Message Poll Thread");
+            poller.setDaemon(true);
+        }
         poller.start();
     }
 
@@ -8,6 +8,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
@@ -32,7 +33,7 @@ public class CachedThreadExecutorService implements ExecutorService {
     public CachedThreadExecutorService(ThreadFactory inTF) {
 
         // Initialization
-        if (inTF!=null) {
+        if (inTF == null) {
             cachedExecutorService = Executors.newCachedThreadPool();
         } else {
             cachedExecutorService = Executors.newCachedThreadPool(inTF);
@@ -40,6 +41,13 @@ public class CachedThreadExecutorService implements ExecutorService {
 
     }
 
+    /**
+     * Returns the underlying thread pool, for metrics.
+     */
+    ThreadPoolExecutor getThreadPool() {
+        return (ThreadPoolExecutor) cachedExecutorService;
+    }
+
     public void shutdown() {
         throw new IllegalStateException("shutdown cannot be called on a shared thread pool executor");
     }
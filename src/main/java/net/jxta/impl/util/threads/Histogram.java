@@ -0,0 +1,258 @@
+package net.jxta.impl.util.threads;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as durations, with buckets whose
+ * bounds are powers of two. Bucket 0 counts the value 0 and bucket {@code n}
+ * counts the values from 2<sup>n-1</sup> to 2<sup>n</sup>-1. Values are
+ * recorded without locking.
+ */
+public final class Histogram {
+
+    /**
+     * The number of buckets. Larger values are counted in the last bucket.
+     */
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     */
+    public Histogram() {
+    }
+
+    /**
+     * Creates a histogram with the given bucket counts.
+     *
+     * @param counts the count of each bucket, at most {@link #BUCKETS}.
+     * @param total  the sum of the recorded values.
+     * @param max    the largest recorded value.
+     */
+    public Histogram(long[] counts, long total, long max) {
+        if (counts.length > BUCKETS) {
+            throw new IllegalArgumentException("Too many buckets : " + counts.length);
+        }
+
+        for (int eachBucket = 0; eachBucket < counts.length; eachBucket++) {
+            this.counts.set(eachBucket, counts[eachBucket]);
+        }
+
+        this.total.set(total);
+        this.max.set(max);
+    }
+
+    /**
+     * Returns the bucket in which a value is counted.
+     *
+     * @param value the value.
+     * @return the bucket.
+     */
+    static int bucketOf(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     *
+     * @param bucket the bucket.
+     * @return the largest value counted in the bucket.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket >= BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        return (1L << bucket) - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucketOf(value));
+        total.addAndGet(value);
+
+        long currentMax = max.get();
+
+        while ((value > currentMax) && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of values counted in a bucket.
+     *
+     * @param bucket the bucket.
+     * @return the number of values counted in the bucket.
+     */
+    public long getBucketCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        long count = 0;
+
+        for (int eachBucket = 0; eachBucket < BUCKETS; eachBucket++) {
+            count += counts.get(eachBucket);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return the sum of the recorded values.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest recorded value or 0 if no values were recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean of the recorded values or 0 if no values were
+     *         recorded.
+     */
+    public long getMean() {
+        long count = getCount();
+
+        return (0 == count) ? 0 : getTotal() / count;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded values,
+     * the upper bound of the bucket in which the percentile falls, but no more
+     * than the largest recorded value.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return an upper bound of the percentile or 0 if no values were
+     *         recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = getBucketCounts();
+        long count = 0;
+
+        for (long eachCount : snapshot) {
+            count += eachCount;
+        }
+
+        if (0 == count) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+
+        for (int eachBucket = 0; eachBucket < snapshot.length; eachBucket++) {
+            seen += snapshot[eachBucket];
+
+            if ((seen >= rank) && (seen > 0)) {
+                return Math.min(getBucketUpperBound(eachBucket), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns the count of each bucket.
+     *
+     * @return the count of each bucket.
+     */
+    public long[] getBucketCounts() {
+        long[] result = new long[BUCKETS];
+
+        for (int eachBucket = 0; eachBucket < BUCKETS; eachBucket++) {
+            result[eachBucket] = counts.get(eachBucket);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this histogram.
+     *
+     * @param other the other histogram.
+     */
+    public void merge(Histogram other) {
+        for (int eachBucket = 0; eachBucket < BUCKETS; eachBucket++) {
+            counts.addAndGet(eachBucket, other.counts.get(eachBucket));
+        }
+
+        total.addAndGet(other.getTotal());
+
+        long otherMax = other.getMax();
+        long currentMax = max.get();
+
+        while ((otherMax > currentMax) && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Removes the values recorded by an earlier copy of this histogram. The
+     * largest value is not changed as it cannot be recovered.
+     *
+     * @param earlier the earlier copy.
+     */
+    public void diff(Histogram earlier) {
+        for (int eachBucket = 0; eachBucket < BUCKETS; eachBucket++) {
+            counts.addAndGet(eachBucket, -earlier.counts.get(eachBucket));
+        }
+
+        total.addAndGet(-earlier.getTotal());
+    }
+
+    /**
+     * Returns a copy of this histogram.
+     *
+     * @return a copy of this histogram.
+     */
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+
+        copy.merge(this);
+
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMean() + " p50=" + getPercentile(50) + " p99=" + getPercentile(99) + " max=" + getMax();
+    }
+}
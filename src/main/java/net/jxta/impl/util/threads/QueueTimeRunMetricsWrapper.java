@@ -9,20 +9,35 @@ import net.jxta.logging.Logging;
 public class QueueTimeRunMetricsWrapper<T> extends RunMetricsWrapper<T> {
 
 	private long scheduleTime;
+	private long scheduleNanos;
 	
 	public QueueTimeRunMetricsWrapper(ScheduledExecutorService longTaskMonitor, Callable<T> wrapped) {
-		super(longTaskMonitor, wrapped);
-        this.scheduleTime = System.currentTimeMillis();
+		this(longTaskMonitor, null, wrapped);
 	}
 	
 	public QueueTimeRunMetricsWrapper(ScheduledExecutorService longTaskMonitor, Runnable wrapped) {
-		super(longTaskMonitor, wrapped);
+		this(longTaskMonitor, null, wrapped);
+	}
+	
+	public QueueTimeRunMetricsWrapper(ScheduledExecutorService longTaskMonitor, TaskMetrics metrics, Callable<T> wrapped) {
+		super(longTaskMonitor, metrics, wrapped);
 		this.scheduleTime = System.currentTimeMillis();
+		this.scheduleNanos = (null != metrics) ? System.nanoTime() : 0L;
+	}
+	
+	public QueueTimeRunMetricsWrapper(ScheduledExecutorService longTaskMonitor, TaskMetrics metrics, Runnable wrapped) {
+		super(longTaskMonitor, metrics, wrapped);
+		this.scheduleTime = System.currentTimeMillis();
+		this.scheduleNanos = (null != metrics) ? System.nanoTime() : 0L;
 	}
 	
 	@Override
 	public T call() throws Exception {
 
+            if (null != metrics) {
+                metrics.recordQueueTime(getWrappedType(), (System.nanoTime() - scheduleNanos) / 1000);
+            }
+
             long queuedTime = System.currentTimeMillis() - scheduleTime;
 
             if(queuedTime > 2000 && Logging.SHOW_WARNING && SharedThreadPoolExecutor.LOG.isLoggable(Level.WARNING)) {
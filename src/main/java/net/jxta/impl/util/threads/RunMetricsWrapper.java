@@ -28,14 +28,28 @@ class RunMetricsWrapper<T> implements Callable<T>, Runnable {
     private ScheduledExecutorService longTaskMonitor;
     private String wrappedType;
 
+    /**
+     * The metrics to which the run time is recorded or {@code null} if metrics are not recorded.
+     */
+    final TaskMetrics metrics;
+
     public RunMetricsWrapper(ScheduledExecutorService longTaskMonitor, Callable<T> wrapped) {
+        this(longTaskMonitor, null, wrapped);
+    }
+
+    public RunMetricsWrapper(ScheduledExecutorService longTaskMonitor, Runnable wrapped) {
+        this(longTaskMonitor, null, wrapped);
+    }
+
+    public RunMetricsWrapper(ScheduledExecutorService longTaskMonitor, TaskMetrics metrics, Callable<T> wrapped) {
         this.wrappedRunnable = wrapped;
         this.longTaskMonitor = longTaskMonitor;
+        this.metrics = metrics;
         this.wrappedType = wrapped.getClass().getName();
     }
 
-    public RunMetricsWrapper(ScheduledExecutorService longTaskMonitor, Runnable wrapped) {
-    	this(longTaskMonitor, new RunnableAsCallableWrapper<T>(wrapped));
+    public RunMetricsWrapper(ScheduledExecutorService longTaskMonitor, TaskMetrics metrics, Runnable wrapped) {
+    	this(longTaskMonitor, metrics, new RunnableAsCallableWrapper<T>(wrapped));
     	this.wrappedType = wrapped.getClass().getName();
     }
 
@@ -47,10 +61,20 @@ class RunMetricsWrapper<T> implements Callable<T>, Runnable {
                 TimeUnit.SECONDS);
 
         startTime = System.currentTimeMillis();
-        T returnVal = wrappedRunnable.call();
-        long elapsedTime = System.currentTimeMillis() - startTime;
+        long startNanos = (null != metrics) ? System.nanoTime() : 0L;
+        T returnVal;
+
+        try {
+            returnVal = wrappedRunnable.call();
+        } finally {
+            future.cancel(true);
 
-        future.cancel(true);
+            if (null != metrics) {
+                metrics.recordRunTime(wrappedType, (System.nanoTime() - startNanos) / 1000);
+            }
+        }
+
+        long elapsedTime = System.currentTimeMillis() - startTime;
 
         if(elapsedTime > 200 && Logging.SHOW_WARNING && SharedThreadPoolExecutor.LOG.isLoggable(Level.WARNING)) {
             SharedThreadPoolExecutor.LOG.log(Level.WARNING, "task of type [{0}] took {1}ms to complete in the shared executor", new Object[] { getWrappedType(), elapsedTime });
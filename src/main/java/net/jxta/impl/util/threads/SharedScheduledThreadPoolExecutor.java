@@ -2,7 +2,9 @@ package net.jxta.impl.util.threads;
 
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -21,9 +23,19 @@ public class SharedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecut
 
     private ScheduledExecutorService longTaskMonitorExecutor;
 
+    /**
+     * The metrics to which tasks are recorded or {@code null} if metrics are not recorded.
+     */
+    private final TaskMetrics metrics;
+
     public SharedScheduledThreadPoolExecutor(ScheduledExecutorService monitorExecutor, int corePoolSize, ThreadFactory threadFactory) {
+    	this(monitorExecutor, null, corePoolSize, threadFactory);
+    }
+
+    public SharedScheduledThreadPoolExecutor(ScheduledExecutorService monitorExecutor, TaskMetrics metrics, int corePoolSize, ThreadFactory threadFactory) {
     	super(corePoolSize, threadFactory);
     	this.longTaskMonitorExecutor = monitorExecutor;
+    	this.metrics = metrics;
     }
 	
 	@Override
@@ -44,42 +56,93 @@ public class SharedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecut
 		return super.shutdownNow();
 	}
 	
+	private void rejected(RunMetricsWrapper<?> wrapper) {
+	    if (null != metrics) {
+	        metrics.recordRejected(wrapper.getWrappedType());
+	    }
+	}
+	
+	// The submit and execute methods schedule the wrapped task directly so that it is not wrapped
+	// a second time by schedule().
+	
 	@Override
 	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
-	    return super.schedule((Callable<V>)new RunMetricsWrapper<V>(longTaskMonitorExecutor, callable), delay, unit);
+	    RunMetricsWrapper<V> wrapper = new RunMetricsWrapper<V>(longTaskMonitorExecutor, metrics, callable);
+	    try {
+	        return super.schedule((Callable<V>)wrapper, delay, unit);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 	
 	@Override
 	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
-	    return super.schedule((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, command), delay, unit);
+	    RunMetricsWrapper<Void> wrapper = new RunMetricsWrapper<Void>(longTaskMonitorExecutor, metrics, command);
+	    try {
+	        return super.schedule((Runnable)wrapper, delay, unit);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 	
 	@Override
 	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
-	    return super.scheduleAtFixedRate((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, command), initialDelay, period, unit);
+	    RunMetricsWrapper<Void> wrapper = new RunMetricsWrapper<Void>(longTaskMonitorExecutor, metrics, command);
+	    try {
+	        return super.scheduleAtFixedRate((Runnable)wrapper, initialDelay, period, unit);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 	
 	@Override
 	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
-	    return super.scheduleWithFixedDelay((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, command), initialDelay, delay, unit);
+	    RunMetricsWrapper<Void> wrapper = new RunMetricsWrapper<Void>(longTaskMonitorExecutor, metrics, command);
+	    try {
+	        return super.scheduleWithFixedDelay((Runnable)wrapper, initialDelay, delay, unit);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 	
 	@Override
 	public <T> Future<T> submit(Callable<T> task) {
-	    return super.submit((Callable<T>)new RunMetricsWrapper<T>(longTaskMonitorExecutor, task));
+	    RunMetricsWrapper<T> wrapper = new RunMetricsWrapper<T>(longTaskMonitorExecutor, metrics, task);
+	    try {
+	        return super.schedule((Callable<T>)wrapper, 0, TimeUnit.NANOSECONDS);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 	
 	@Override
 	public Future<?> submit(Runnable task) {
-	    return super.submit((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, task));
+	    return submit(task, null);
 	}
 	
 	public <T extends Object> java.util.concurrent.Future<T> submit(Runnable task, T result) {
-	    return super.submit((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, task), result);
+	    RunMetricsWrapper<Void> wrapper = new RunMetricsWrapper<Void>(longTaskMonitorExecutor, metrics, task);
+	    try {
+	        return super.schedule(Executors.callable((Runnable)wrapper, result), 0, TimeUnit.NANOSECONDS);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	};
 	
 	@Override
 	public void execute(Runnable command) {
-	    super.execute((Runnable)new RunMetricsWrapper<Void>(longTaskMonitorExecutor, command));
+	    RunMetricsWrapper<Void> wrapper = new RunMetricsWrapper<Void>(longTaskMonitorExecutor, metrics, command);
+	    try {
+	        super.schedule((Runnable)wrapper, 0, TimeUnit.NANOSECONDS);
+	    } catch (RejectedExecutionException rejected) {
+	        rejected(wrapper);
+	        throw rejected;
+	    }
 	}
 }
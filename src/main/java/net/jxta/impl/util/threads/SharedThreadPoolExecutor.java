@@ -4,8 +4,10 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -25,6 +27,11 @@ public class SharedThreadPoolExecutor extends ThreadPoolExecutor {
     
     ScheduledExecutorService longTaskMonitorService;
 
+    /**
+     * The metrics to which tasks are recorded or {@code null} if metrics are not recorded.
+     */
+    private final TaskMetrics metrics;
+
 	public SharedThreadPoolExecutor(ScheduledExecutorService monitoringExecutor,
                         	        int corePoolSize,
                                     int maximumPoolSize,
@@ -32,8 +39,20 @@ public class SharedThreadPoolExecutor extends ThreadPoolExecutor {
                                     TimeUnit unit,
                                     BlockingQueue<Runnable> workQueue,
                                     ThreadFactory threadFactory) {
+	    this(monitoringExecutor, null, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+    }
+
+	public SharedThreadPoolExecutor(ScheduledExecutorService monitoringExecutor,
+	                                TaskMetrics metrics,
+                        	        int corePoolSize,
+                                    int maximumPoolSize,
+                                    long keepAliveTime,
+                                    TimeUnit unit,
+                                    BlockingQueue<Runnable> workQueue,
+                                    ThreadFactory threadFactory) {
 	    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
         this.longTaskMonitorService = monitoringExecutor;
+        this.metrics = metrics;
     }
 
     @Override
@@ -54,22 +73,45 @@ public class SharedThreadPoolExecutor extends ThreadPoolExecutor {
 		super.shutdownNow();
 	}
 	
+	/**
+	 * Executes a task which has already been wrapped, counting it if it is rejected.
+	 */
+	private void executeWrapped(RunMetricsWrapper<?> wrapper, Runnable command) {
+	    try {
+	        super.execute(command);
+	    } catch (RejectedExecutionException rejected) {
+	        if (null != metrics) {
+	            metrics.recordRejected(wrapper.getWrappedType());
+	        }
+	        throw rejected;
+	    }
+	}
+	
 	@Override
 	public void execute(Runnable command) {
-	    super.execute(new QueueTimeRunMetricsWrapper<Void>(longTaskMonitorService, command));
+	    QueueTimeRunMetricsWrapper<Void> wrapper = new QueueTimeRunMetricsWrapper<Void>(longTaskMonitorService, metrics, command);
+	    executeWrapped(wrapper, wrapper);
 	}
 	
+	// The submit methods execute the future directly so that it is not wrapped a second time by execute().
+	
 	@Override
 	public <T> Future<T> submit(Callable<T> task) {
-	    return super.submit((Callable<T>)new QueueTimeRunMetricsWrapper<T>(longTaskMonitorService, task));
+	    QueueTimeRunMetricsWrapper<T> wrapper = new QueueTimeRunMetricsWrapper<T>(longTaskMonitorService, metrics, task);
+	    RunnableFuture<T> future = newTaskFor((Callable<T>) wrapper);
+	    executeWrapped(wrapper, future);
+	    return future;
 	}
 	
 	@Override
 	public Future<?> submit(Runnable task) {
-	    return super.submit((Runnable)new QueueTimeRunMetricsWrapper<Void>(longTaskMonitorService, task));
+	    return submit(task, null);
 	}
 	
 	public <T extends Object> java.util.concurrent.Future<T> submit(Runnable task, T result) {
-	    return super.submit((Runnable)new QueueTimeRunMetricsWrapper<Void>(longTaskMonitorService, task), result);
+	    QueueTimeRunMetricsWrapper<Void> wrapper = new QueueTimeRunMetricsWrapper<Void>(longTaskMonitorService, metrics, task);
+	    RunnableFuture<T> future = newTaskFor((Runnable) wrapper, result);
+	    executeWrapped(wrapper, future);
+	    return future;
 	};
 }
@@ -30,17 +30,31 @@ public class TaskManager {
 	static final String MAX_WORKER_POOL_SIZE_SYSPROP = "net.jxta.util.threads.TaskManager.maxWorkerPoolSize";
 	static final String SCHEDULED_POOL_SIZE_SYSPROP = "net.jxta.util.threads.TaskManager.scheduledPoolSize";
 	static final String IDLE_THREAD_TIMEOUT_SYSPROP = "net.jxta.util.threads.TaskManager.idleThreadTimeout";
+	static final String VIRTUAL_THREADS_SYSPROP = "net.jxta.util.threads.TaskManager.virtualThreads";
+	static final String METRICS_SYSPROP = "net.jxta.util.threads.TaskManager.metrics";
 	
 	static final int DEFAULT_CORE_POOL_SIZE =4;
 	static final int DEFAULT_MAX_WORKER_POOL_SIZE = Integer.MAX_VALUE;
 	static final int DEFAULT_SCHEDULED_POOL_SIZE = 2;
 	static final int DEFAULT_IDLE_THREAD_TIMEOUT = 10;
+	static final boolean DEFAULT_VIRTUAL_THREADS = false;
+	static final boolean DEFAULT_METRICS = false;
 	
 	private SharedThreadPoolExecutor normalExecutor;
 	private SharedScheduledThreadPoolExecutor scheduledExecutor;
 	private ScheduledExecutorService monitoringExecutor;
         private CachedThreadExecutorService cachedExecutor;
 	
+	/**
+	 * If {@code true} then tasks and threads are run on virtual threads.
+	 */
+	private final boolean virtualThreads;
+	
+	/**
+	 * The task and thread pool metrics.
+	 */
+	private final TaskMetrics metrics;
+	
 	private Map<String, ProxiedScheduledExecutorService> proxiedExecutors;
 	
 	private boolean started;
@@ -63,6 +77,22 @@ public class TaskManager {
         return Math.max(0, timeout);
 	}
 	
+	static boolean getVirtualThreads(Boolean useVirtualThreads) {
+	    boolean use = (useVirtualThreads == null) ? Boolean.valueOf(System.getProperty(VIRTUAL_THREADS_SYSPROP, Boolean.toString(DEFAULT_VIRTUAL_THREADS)))
+	                                              : useVirtualThreads;
+
+	    if (use && !VirtualThreads.isAvailable()) {
+	        LOG.log(Level.WARNING, "Virtual threads are not available on this Java runtime - using platform threads");
+	        return false;
+	    }
+
+	    return use;
+	}
+
+	static boolean getMetricsEnabled() {
+	    return Boolean.valueOf(System.getProperty(METRICS_SYSPROP, Boolean.toString(DEFAULT_METRICS)));
+	}
+
 	static int getMaxWorkerPoolSize(int coreWorkerPoolSize, Integer maxWorkerPoolSize) {
 	    // while core pool size is allowed to be zero, max pool size
 	    // must be greater than the core pool size AND greater than
@@ -94,18 +124,57 @@ public class TaskManager {
 	 * tasks.
 	 */
 	public TaskManager(Integer coreWorkerPoolSize, Integer maxWorkerPoolSize, Integer idleThreadTimeoutSecs, Integer scheduledPoolSize) {
+	    this(coreWorkerPoolSize, maxWorkerPoolSize, idleThreadTimeoutSecs, scheduledPoolSize, null);
+	}
+
+	/**
+	 * As {@link #TaskManager(Integer, Integer, Integer, Integer)}, but also allows virtual threads to be
+	 * explicitly enabled or disabled. When virtual threads are used, the executor service and the cached
+	 * executor service run each task on a virtual thread; the pool size parameters then only apply to
+	 * the scheduled executor. Virtual threads are only used if the Java runtime provides them.
+	 *
+	 * @param coreWorkerPoolSize the number of threads that will be maintained in the executor service.
+	 * @param maxWorkerPoolSize the maximum number of threads that will be allowed in the executor service.
+	 * @param idleThreadTimeoutSecs the minimum amount of time that additional threads (beyond the core pool size)
+	 * will stay alive before terminating.
+	 * @param scheduledPoolSize the number of threads that will be used for the execution of deferred and periodic
+	 * tasks.
+	 * @param useVirtualThreads whether tasks are run on virtual threads.
+	 */
+	public TaskManager(Integer coreWorkerPoolSize, Integer maxWorkerPoolSize, Integer idleThreadTimeoutSecs, Integer scheduledPoolSize, Boolean useVirtualThreads) {
 	    NamedThreadFactory NTF = new NamedThreadFactory("JxtaTaskMonitor");
             monitoringExecutor = Executors.newSingleThreadScheduledExecutor(NTF);
-            int corePoolSize = getCorePoolSize(coreWorkerPoolSize);
-            normalExecutor = new SharedThreadPoolExecutor(monitoringExecutor,
-                                                          corePoolSize,
-                                                          getMaxWorkerPoolSize(corePoolSize, maxWorkerPoolSize),
-                                                          getIdleThreadTimeout(idleThreadTimeoutSecs),
-                                                          TimeUnit.SECONDS,
-                                                          new SynchronousQueue<Runnable>(),
-                                                          new NamedThreadFactory("JxtaWorker"));
-            scheduledExecutor = new SharedScheduledThreadPoolExecutor(monitoringExecutor, getScheduledPoolSize(scheduledPoolSize), new NamedThreadFactory("JxtaScheduledWorker"));
-            cachedExecutor = new CachedThreadExecutorService(NTF);
+            virtualThreads = getVirtualThreads(useVirtualThreads);
+            metrics = new TaskMetrics(getMetricsEnabled());
+            // When metrics are disabled the executors are given no metrics and record nothing.
+            TaskMetrics taskMetrics = metrics.isEnabled() ? metrics : null;
+            if (virtualThreads) {
+                // Virtual threads are cheap to create, the pool only saves restarting one for each task.
+                normalExecutor = new SharedThreadPoolExecutor(monitoringExecutor,
+                                                              taskMetrics,
+                                                              0,
+                                                              Integer.MAX_VALUE,
+                                                              getIdleThreadTimeout(idleThreadTimeoutSecs),
+                                                              TimeUnit.SECONDS,
+                                                              new SynchronousQueue<Runnable>(),
+                                                              VirtualThreads.newFactory("JxtaWorker"));
+                cachedExecutor = new CachedThreadExecutorService(VirtualThreads.newFactory("JxtaCachedWorker"));
+            } else {
+                int corePoolSize = getCorePoolSize(coreWorkerPoolSize);
+                normalExecutor = new SharedThreadPoolExecutor(monitoringExecutor,
+                                                              taskMetrics,
+                                                              corePoolSize,
+                                                              getMaxWorkerPoolSize(corePoolSize, maxWorkerPoolSize),
+                                                              getIdleThreadTimeout(idleThreadTimeoutSecs),
+                                                              TimeUnit.SECONDS,
+                                                              new SynchronousQueue<Runnable>(),
+                                                              new NamedThreadFactory("JxtaWorker"));
+                cachedExecutor = new CachedThreadExecutorService(NTF);
+            }
+            scheduledExecutor = new SharedScheduledThreadPoolExecutor(monitoringExecutor, taskMetrics, getScheduledPoolSize(scheduledPoolSize), new NamedThreadFactory("JxtaScheduledWorker"));
+            metrics.addPool("JxtaWorker", normalExecutor);
+            metrics.addPool("JxtaScheduledWorker", scheduledExecutor);
+            metrics.addPool("JxtaCachedWorker", cachedExecutor.getThreadPool());
             proxiedExecutors = Collections.synchronizedMap(new HashMap<String, ProxiedScheduledExecutorService>());
             started=true;
         }
@@ -128,6 +197,60 @@ public class TaskManager {
 		return cachedExecutor;
 	}
 
+	/**
+	 * Returns {@code true} if the executor service and cached executor service run tasks, and
+	 * {@link #newThread(Runnable, String)} creates, virtual threads.
+	 */
+	public boolean isUsingVirtualThreads() {
+	    return virtualThreads;
+	}
+
+	/**
+	 * Provides the metrics of the tasks run by the executor service and scheduled executor service,
+	 * and the state of the thread pools. Task metrics are only recorded if the system property
+	 * {@value #METRICS_SYSPROP} was {@code true} when this task manager was created; otherwise only
+	 * the thread pool state is available. The metrics are also reported by the task service monitor.
+	 */
+	public TaskMetrics getMetrics() {
+	    return metrics;
+	}
+
+	/**
+	 * Creates, but does not start, a daemon thread for a long running task such as a socket reader.
+	 * The thread is a virtual thread if virtual threads are in use, otherwise a platform thread.
+	 * Short tasks should instead be given to {@link #getExecutorService()}, which keeps track of
+	 * how long they run.
+	 *
+	 * @param task the task which the thread runs.
+	 * @param name the name of the thread.
+	 * @return the new thread.
+	 */
+	public Thread newThread(Runnable task, String name) {
+	    return newThread(null, task, name);
+	}
+
+	/**
+	 * As {@link #newThread(Runnable, String)}, but a platform thread is created in the given thread
+	 * group. Virtual threads do not belong to the given group.
+	 *
+	 * @param group the thread group of a platform thread or {@code null} for the current group.
+	 * @param task the task which the thread runs.
+	 * @param name the name of the thread.
+	 * @return the new thread.
+	 */
+	public Thread newThread(ThreadGroup group, Runnable task, String name) {
+	    Thread thread;
+
+	    if (virtualThreads) {
+	        thread = VirtualThreads.newThread(task, name);
+	    } else {
+	        thread = new Thread(group, task, name);
+	        thread.setDaemon(true);
+	    }
+
+	    return thread;
+	}
+
 	/**
 	 * Provides a shared scheduled executor service.
 	 * Note that since this instance could be shared, it is illegal to attempt to shut down the
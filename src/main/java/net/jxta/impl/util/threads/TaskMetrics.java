@@ -0,0 +1,310 @@
+package net.jxta.impl.util.threads;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for the tasks and thread pools of a {@link TaskManager}. For each
+ * type (class) of task it records how long tasks waited in the queue, how
+ * long they ran, in microseconds, and how many were rejected. The thread
+ * counts of the pools are read when requested.
+ * <p>
+ * Task metrics are only recorded if they were enabled when the task manager
+ * was created, see {@link TaskManager#getMetrics()}.
+ */
+public class TaskMetrics {
+
+    /**
+     * If {@code true} then task metrics are recorded.
+     */
+    private final boolean enabled;
+
+    /**
+     * The metrics for each task type, by task class name.
+     */
+    private final ConcurrentMap<String, TaskType> taskTypes = new ConcurrentHashMap<String, TaskType>();
+
+    /**
+     * The thread pools, by name.
+     */
+    private final Map<String, ThreadPoolExecutor> pools = Collections.synchronizedMap(new LinkedHashMap<String, ThreadPoolExecutor>());
+
+    TaskMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns {@code true} if task metrics are recorded.
+     *
+     * @return {@code true} if task metrics are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    void addPool(String name, ThreadPoolExecutor pool) {
+        pools.put(name, pool);
+    }
+
+    private TaskType getTaskType(String taskType) {
+        TaskType result = taskTypes.get(taskType);
+
+        if (null == result) {
+            result = new TaskType(taskType);
+
+            TaskType existing = taskTypes.putIfAbsent(taskType, result);
+
+            if (null != existing) {
+                result = existing;
+            }
+        }
+
+        return result;
+    }
+
+    void recordQueueTime(String taskType, long micros) {
+        getTaskType(taskType).queueTime.record(micros);
+    }
+
+    void recordRunTime(String taskType, long micros) {
+        getTaskType(taskType).runTime.record(micros);
+    }
+
+    void recordRejected(String taskType) {
+        getTaskType(taskType).rejected.incrementAndGet();
+    }
+
+    /**
+     * Returns a copy of the metrics of each type of task, by task class name.
+     *
+     * @return the metrics of each type of task, sorted by task class name.
+     */
+    public Map<String, TaskType> getTaskTypes() {
+        Map<String, TaskType> result = new TreeMap<String, TaskType>();
+
+        for (TaskType each : taskTypes.values()) {
+            result.put(each.getName(), each.copy());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the current state of each thread pool, by pool name.
+     *
+     * @return the current state of each thread pool.
+     */
+    public Map<String, PoolState> getPools() {
+        Map<String, PoolState> result = new LinkedHashMap<String, PoolState>();
+
+        synchronized (pools) {
+            for (Map.Entry<String, ThreadPoolExecutor> each : pools.entrySet()) {
+                result.put(each.getKey(), new PoolState(each.getKey(), each.getValue()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The metrics of a type of task.
+     */
+    public static final class TaskType {
+
+        private final String name;
+
+        private final Histogram queueTime;
+
+        private final Histogram runTime;
+
+        private final AtomicLong rejected;
+
+        TaskType(String name) {
+            this(name, new Histogram(), new Histogram(), 0);
+        }
+
+        /**
+         * Creates the metrics of a type of task.
+         *
+         * @param name      the class name of the task.
+         * @param queueTime the queue times in microseconds.
+         * @param runTime   the run times in microseconds.
+         * @param rejected  the number of rejected tasks.
+         */
+        public TaskType(String name, Histogram queueTime, Histogram runTime, long rejected) {
+            this.name = name;
+            this.queueTime = queueTime;
+            this.runTime = runTime;
+            this.rejected = new AtomicLong(rejected);
+        }
+
+        /**
+         * Returns the class name of the task.
+         *
+         * @return the class name of the task.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the time tasks waited for a thread, in microseconds. Only
+         * tasks run by the executor service are counted; the delay of
+         * scheduled tasks is not queue time.
+         *
+         * @return the time tasks waited for a thread.
+         */
+        public Histogram getQueueTime() {
+            return queueTime;
+        }
+
+        /**
+         * Returns the time tasks ran, in microseconds.
+         *
+         * @return the time tasks ran.
+         */
+        public Histogram getRunTime() {
+            return runTime;
+        }
+
+        /**
+         * Returns the number of tasks which the executor rejected.
+         *
+         * @return the number of rejected tasks.
+         */
+        public long getRejectedCount() {
+            return rejected.get();
+        }
+
+        TaskType copy() {
+            return new TaskType(name, queueTime.copy(), runTime.copy(), rejected.get());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return name + " queue[" + queueTime + "] run[" + runTime + "] rejected=" + getRejectedCount();
+        }
+    }
+
+    /**
+     * The state of a thread pool when it was read.
+     */
+    public static final class PoolState {
+
+        private final String name;
+
+        private final int poolSize;
+
+        private final int activeCount;
+
+        private final int largestPoolSize;
+
+        private final int queueSize;
+
+        private final long completedTaskCount;
+
+        /**
+         * Creates a pool state.
+         *
+         * @param name               the name of the pool.
+         * @param poolSize           the number of threads.
+         * @param activeCount        the number of threads running tasks.
+         * @param largestPoolSize    the largest number of threads.
+         * @param queueSize          the number of queued tasks.
+         * @param completedTaskCount the number of completed tasks.
+         */
+        public PoolState(String name, int poolSize, int activeCount, int largestPoolSize, int queueSize, long completedTaskCount) {
+            this.name = name;
+            this.poolSize = poolSize;
+            this.activeCount = activeCount;
+            this.largestPoolSize = largestPoolSize;
+            this.queueSize = queueSize;
+            this.completedTaskCount = completedTaskCount;
+        }
+
+        PoolState(String name, ThreadPoolExecutor pool) {
+            // The counts are read separately and may be slightly inconsistent.
+            this(name, pool.getPoolSize(), pool.getActiveCount(), pool.getLargestPoolSize(), pool.getQueue().size(), pool.getCompletedTaskCount());
+        }
+
+        /**
+         * Returns the name of the pool.
+         *
+         * @return the name of the pool.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of threads in the pool.
+         *
+         * @return the number of threads in the pool.
+         */
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * Returns the number of threads running tasks.
+         *
+         * @return the number of threads running tasks.
+         */
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        /**
+         * Returns the number of threads waiting for tasks.
+         *
+         * @return the number of threads waiting for tasks.
+         */
+        public int getIdleCount() {
+            return Math.max(0, poolSize - activeCount);
+        }
+
+        /**
+         * Returns the largest number of threads the pool has had.
+         *
+         * @return the largest number of threads the pool has had.
+         */
+        public int getLargestPoolSize() {
+            return largestPoolSize;
+        }
+
+        /**
+         * Returns the number of queued tasks.
+         *
+         * @return the number of queued tasks.
+         */
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /**
+         * Returns the number of tasks the pool has completed.
+         *
+         * @return the number of completed tasks.
+         */
+        public long getCompletedTaskCount() {
+            return completedTaskCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return name + " threads=" + poolSize + " active=" + activeCount + " idle=" + getIdleCount() + " queued=" + queueSize;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package net.jxta.impl.util.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import net.jxta.logging.Logging;
+
+/**
+ * Creates virtual threads on Java runtimes which provide them. The platform
+ * API is used through reflection so that this class may be compiled for, and
+ * loaded by, older runtimes; on those {@link #isAvailable()} returns
+ * {@code false}.
+ */
+final class VirtualThreads {
+
+    private static final Logger LOG = Logger.getLogger(VirtualThreads.class.getName());
+
+    /**
+     * {@code Thread.ofVirtual()} or {@code null} if not available.
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * {@code Thread.Builder.name(String, long)}.
+     */
+    private static final Method BUILDER_NAME;
+
+    /**
+     * {@code Thread.Builder.factory()}.
+     */
+    private static final Method BUILDER_FACTORY;
+
+    /**
+     * {@code Thread.Builder.name(String)}.
+     */
+    private static final Method BUILDER_FIXED_NAME;
+
+    /**
+     * {@code Thread.Builder.unstarted(Runnable)}.
+     */
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method builderFixedName = null;
+        Method builderUnstarted = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            builderFixedName = builder.getMethod("name", String.class);
+            builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+
+            // Fails if virtual threads are a preview feature which is not enabled.
+            ofVirtual.invoke(null);
+        } catch (Throwable notAvailable) {
+            ofVirtual = null;
+
+            Logging.logCheckedFine(LOG, "Virtual threads are not available : ", notAvailable);
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        BUILDER_FIXED_NAME = builderFixedName;
+        BUILDER_UNSTARTED = builderUnstarted;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns {@code true} if this runtime provides virtual threads.
+     *
+     * @return {@code true} if this runtime provides virtual threads.
+     */
+    static boolean isAvailable() {
+        return null != OF_VIRTUAL;
+    }
+
+    /**
+     * Returns a factory for virtual threads named with the pool name and a
+     * sequence number.
+     *
+     * @param poolName the name of the pool.
+     * @return the thread factory.
+     * @throws UnsupportedOperationException if this runtime does not provide
+     *                                       virtual threads.
+     */
+    static ThreadFactory newFactory(String poolName) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads are not available");
+        }
+
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+
+            builder = BUILDER_NAME.invoke(builder, poolName + "-", 1L);
+
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (Exception failed) {
+            Logging.logCheckedWarning(LOG, "Could not create virtual thread factory\n", failed);
+
+            UnsupportedOperationException failure = new UnsupportedOperationException("Could not create virtual thread factory");
+
+            failure.initCause(failed);
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates, but does not start, a virtual thread.
+     *
+     * @param task the task which the thread runs.
+     * @param name the name of the thread.
+     * @return the new thread.
+     * @throws UnsupportedOperationException if this runtime does not provide
+     *                                       virtual threads.
+     */
+    static Thread newThread(Runnable task, String name) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads are not available");
+        }
+
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+
+            builder = BUILDER_FIXED_NAME.invoke(builder, name);
+
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+        } catch (Exception failed) {
+            Logging.logCheckedWarning(LOG, "Could not create virtual thread\n", failed);
+
+            UnsupportedOperationException failure = new UnsupportedOperationException("Could not create virtual thread");
+
+            failure.initCause(failed);
+            throw failure;
+        }
+    }
+}
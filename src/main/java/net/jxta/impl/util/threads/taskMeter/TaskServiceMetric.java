@@ -0,0 +1,223 @@
+package net.jxta.impl.util.threads.taskMeter;
+
+import net.jxta.document.Element;
+import net.jxta.document.TextElement;
+import net.jxta.id.IDFactory;
+import net.jxta.meter.MonitorResources;
+import net.jxta.meter.ServiceMetric;
+import net.jxta.platform.ModuleClassID;
+import net.jxta.util.documentSerializable.DocumentSerializableUtilities;
+import net.jxta.util.documentSerializable.DocumentSerializationException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Service Metric for the Task Manager: the metrics of each type of task
+ * and the state of each thread pool.
+ */
+public class TaskServiceMetric implements ServiceMetric {
+    private Map<String, TaskTypeMetric> taskTypeMetrics = new LinkedHashMap<String, TaskTypeMetric>();
+    private Map<String, ThreadPoolMetric> threadPoolMetrics = new LinkedHashMap<String, ThreadPoolMetric>();
+    private ModuleClassID moduleClassID = MonitorResources.taskServiceMonitorClassID;
+
+    /**
+     * Create a Service Metric: No-arg constructor is required.
+     */
+    public TaskServiceMetric() {}
+
+    /**
+     * 	Initialize the metric with the ModuleClassID of the Monitor.
+     */
+    public void init(ModuleClassID moduleClassID) {
+        this.moduleClassID = moduleClassID;
+    }
+
+    /**
+     * Get the ModuleClassID of the Monitor that generated this ServiceMetric.
+     */
+    public ModuleClassID getModuleClassID() {
+        return moduleClassID;
+    }
+
+    /**
+     * Add the metric of a type of task, replacing any metric for that type.
+     */
+    public synchronized void addTaskTypeMetric(TaskTypeMetric taskTypeMetric) {
+        taskTypeMetrics.put(taskTypeMetric.getTaskType(), taskTypeMetric);
+    }
+
+    /**
+     * Get the metrics of all the types of task.
+     */
+    public synchronized Iterator<TaskTypeMetric> getTaskTypeMetrics() {
+        return new LinkedHashMap<String, TaskTypeMetric>(taskTypeMetrics).values().iterator();
+    }
+
+    /**
+     * Get the metric of a type of task.
+     *
+     * @param taskType the class name of the task.
+     * @return the metric or {@code null} if there is no metric for the task type.
+     */
+    public synchronized TaskTypeMetric getTaskTypeMetric(String taskType) {
+        return taskTypeMetrics.get(taskType);
+    }
+
+    /**
+     * Add the metric of a thread pool, replacing any metric for that pool.
+     */
+    public synchronized void addThreadPoolMetric(ThreadPoolMetric threadPoolMetric) {
+        threadPoolMetrics.put(threadPoolMetric.getPoolName(), threadPoolMetric);
+    }
+
+    /**
+     * Get the metrics of all the thread pools.
+     */
+    public synchronized Iterator<ThreadPoolMetric> getThreadPoolMetrics() {
+        return new LinkedHashMap<String, ThreadPoolMetric>(threadPoolMetrics).values().iterator();
+    }
+
+    /**
+     * Get the metric of a thread pool.
+     *
+     * @param poolName the name of the pool.
+     * @return the metric or {@code null} if there is no metric for the pool.
+     */
+    public synchronized ThreadPoolMetric getThreadPoolMetric(String poolName) {
+        return threadPoolMetrics.get(poolName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void serializeTo(Element element) throws DocumentSerializationException {
+        for (TaskTypeMetric taskTypeMetric : taskTypeMetrics.values()) {
+            DocumentSerializableUtilities.addDocumentSerializable(element, "taskTypeMetric", taskTypeMetric);
+        }
+
+        for (ThreadPoolMetric threadPoolMetric : threadPoolMetrics.values()) {
+            DocumentSerializableUtilities.addDocumentSerializable(element, "threadPoolMetric", threadPoolMetric);
+        }
+
+        if (moduleClassID != null) {
+            DocumentSerializableUtilities.addString(element, "moduleClassID", moduleClassID.toString());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void initializeFrom(Element element) throws DocumentSerializationException {
+        for (Enumeration e = element.getChildren(); e.hasMoreElements();) {
+            Element childElement = (TextElement) e.nextElement();
+            String tagName = (String) childElement.getKey();
+
+            if (tagName.equals("taskTypeMetric")) {
+                TaskTypeMetric taskTypeMetric = (TaskTypeMetric) DocumentSerializableUtilities.getDocumentSerializable(
+                        childElement, TaskTypeMetric.class);
+
+                taskTypeMetrics.put(taskTypeMetric.getTaskType(), taskTypeMetric);
+            } else if (tagName.equals("threadPoolMetric")) {
+                ThreadPoolMetric threadPoolMetric = (ThreadPoolMetric) DocumentSerializableUtilities.getDocumentSerializable(
+                        childElement, ThreadPoolMetric.class);
+
+                threadPoolMetrics.put(threadPoolMetric.getPoolName(), threadPoolMetric);
+            } else if (tagName.equals("moduleClassID")) {
+                try {
+                    moduleClassID = (ModuleClassID) IDFactory.fromURI(
+                            new URI(DocumentSerializableUtilities.getString(childElement)));
+                } catch (URISyntaxException jex) {
+                    throw new DocumentSerializationException("Can't read moduleClassID", jex);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The task metrics are added. The thread pool metrics are the state of
+     * the pools at a moment and are replaced.
+     */
+    public void mergeMetrics(ServiceMetric otherServiceMetric) {
+        mergeMetrics(otherServiceMetric, true, true);
+    }
+
+    /**
+     * This will only merge the designated submetrics.
+     *
+     * @param otherServiceMetric        other metric to merge
+     * @param includeTaskTypeMetrics    Include the task metrics in the merge
+     * @param includeThreadPoolMetrics  Include the thread pool metrics in the merge
+     */
+    public synchronized void mergeMetrics(ServiceMetric otherServiceMetric, boolean includeTaskTypeMetrics, boolean includeThreadPoolMetrics) {
+        TaskServiceMetric otherTaskServiceMetric = (TaskServiceMetric) otherServiceMetric;
+
+        if (includeTaskTypeMetrics) {
+            for (Iterator<TaskTypeMetric> i = otherTaskServiceMetric.getTaskTypeMetrics(); i.hasNext();) {
+                TaskTypeMetric otherTaskTypeMetric = i.next();
+                TaskTypeMetric taskTypeMetric = taskTypeMetrics.get(otherTaskTypeMetric.getTaskType());
+
+                if (taskTypeMetric == null) {
+                    taskTypeMetric = new TaskTypeMetric(otherTaskTypeMetric);
+                    taskTypeMetrics.put(taskTypeMetric.getTaskType(), taskTypeMetric);
+                }
+
+                taskTypeMetric.mergeMetrics(otherTaskTypeMetric);
+            }
+        }
+
+        if (includeThreadPoolMetrics) {
+            for (Iterator<ThreadPoolMetric> i = otherTaskServiceMetric.getThreadPoolMetrics(); i.hasNext();) {
+                ThreadPoolMetric otherThreadPoolMetric = i.next();
+
+                threadPoolMetrics.put(otherThreadPoolMetric.getPoolName(), otherThreadPoolMetric);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The task metrics are subtracted and task types with no remaining
+     * metrics are removed. The thread pool metrics are not changed.
+     */
+    public synchronized void diffMetrics(ServiceMetric otherServiceMetric) {
+        TaskServiceMetric otherTaskServiceMetric = (TaskServiceMetric) otherServiceMetric;
+
+        for (Iterator<TaskTypeMetric> i = otherTaskServiceMetric.getTaskTypeMetrics(); i.hasNext();) {
+            TaskTypeMetric otherTaskTypeMetric = i.next();
+            TaskTypeMetric taskTypeMetric = taskTypeMetrics.get(otherTaskTypeMetric.getTaskType());
+
+            if (taskTypeMetric != null) {
+                taskTypeMetric.diffMetrics(otherTaskTypeMetric);
+
+                if (taskTypeMetric.isEmpty()) {
+                    taskTypeMetrics.remove(taskTypeMetric.getTaskType());
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a deep copy of this metric only including the portions designated in the Filter
+     * The resulting metric is Safe to modify without danger to the underlying Monitor Metrics.
+     *
+     * @param taskServiceMonitorFilter Filter designates constituant parts to be included
+     * @return a copy of this metric with the designated parts
+     */
+    public TaskServiceMetric deepCopy(TaskServiceMonitorFilter taskServiceMonitorFilter) {
+        TaskServiceMetric serviceMetric = new TaskServiceMetric();
+
+        serviceMetric.moduleClassID = moduleClassID;
+        serviceMetric.mergeMetrics(this, taskServiceMonitorFilter.isIncludeTaskTypeMetrics(),
+                taskServiceMonitorFilter.isIncludeThreadPoolMetrics());
+
+        return serviceMetric;
+    }
+}
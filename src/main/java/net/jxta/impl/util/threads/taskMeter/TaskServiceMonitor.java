@@ -0,0 +1,83 @@
+package net.jxta.impl.util.threads.taskMeter;
+
+import net.jxta.impl.meter.GenericServiceMonitor;
+import net.jxta.impl.util.threads.TaskMetrics;
+import net.jxta.meter.ServiceMetric;
+import net.jxta.meter.ServiceMonitorFilter;
+
+/**
+ * The Service Monitor for the Task Manager of the peer group.
+ * <p>The Task Manager records its own metrics, this monitor reads them on
+ * each pulse. Task metrics are only recorded if they are enabled, see
+ * {@link net.jxta.impl.util.threads.TaskManager#getMetrics()}.
+ */
+public class TaskServiceMonitor extends GenericServiceMonitor {
+
+    /**
+     * The task metrics when they were last collected.
+     */
+    private TaskServiceMetric lastTaskServiceMetric;
+
+    public TaskServiceMonitor() {}
+
+    private TaskServiceMetric createCurrentServiceMetric() {
+        TaskServiceMetric taskServiceMetric = (TaskServiceMetric) createServiceMetric();
+        TaskMetrics taskMetrics = getPeerGroup().getTaskManager().getMetrics();
+
+        for (TaskMetrics.TaskType taskType : taskMetrics.getTaskTypes().values()) {
+            taskServiceMetric.addTaskTypeMetric(new TaskTypeMetric(taskType));
+        }
+
+        for (TaskMetrics.PoolState poolState : taskMetrics.getPools().values()) {
+            taskServiceMetric.addThreadPoolMetric(new ThreadPoolMetric(poolState));
+        }
+
+        return taskServiceMetric;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ServiceMetric collectServiceMetrics() {
+        TaskServiceMetric currentTaskServiceMetric = createCurrentServiceMetric();
+        TaskServiceMetric deltaTaskServiceMetric = (TaskServiceMetric) createServiceMetric();
+
+        deltaTaskServiceMetric.mergeMetrics(currentTaskServiceMetric);
+
+        if (lastTaskServiceMetric != null) {
+            deltaTaskServiceMetric.diffMetrics(lastTaskServiceMetric);
+        }
+
+        lastTaskServiceMetric = currentTaskServiceMetric;
+
+        return deltaTaskServiceMetric;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceMetric getServiceMetric(ServiceMonitorFilter serviceMonitorFilter, long fromTime, long toTime, int pulseIndex, long reportRate) {
+        int deltaReportRateIndex = monitorManager.getReportRateIndex(reportRate);
+        TaskServiceMetric origServiceMetric = (TaskServiceMetric) deltaServiceMetrics[deltaReportRateIndex];
+
+        if (origServiceMetric == null) {
+            return null;
+        }
+
+        TaskServiceMonitorFilter taskServiceMonitorFilter = (TaskServiceMonitorFilter) serviceMonitorFilter;
+
+        return origServiceMetric.deepCopy(taskServiceMonitorFilter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceMetric getCumulativeServiceMetric(ServiceMonitorFilter serviceMonitorFilter, long fromTime, long toTime) {
+        TaskServiceMonitorFilter taskServiceMonitorFilter = (TaskServiceMonitorFilter) serviceMonitorFilter;
+
+        return createCurrentServiceMetric().deepCopy(taskServiceMonitorFilter);
+    }
+}
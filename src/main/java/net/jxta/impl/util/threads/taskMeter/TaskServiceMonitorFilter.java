@@ -0,0 +1,74 @@
+package net.jxta.impl.util.threads.taskMeter;
+
+import net.jxta.document.Element;
+import net.jxta.document.TextElement;
+import net.jxta.id.IDFactory;
+import net.jxta.meter.MonitorResources;
+import net.jxta.meter.ServiceMonitorFilter;
+import net.jxta.platform.ModuleClassID;
+import net.jxta.util.documentSerializable.DocumentSerializableUtilities;
+import net.jxta.util.documentSerializable.DocumentSerializationException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Enumeration;
+
+public class TaskServiceMonitorFilter implements ServiceMonitorFilter {
+    private boolean includeTaskTypeMetrics = true;
+    private boolean includeThreadPoolMetrics = true;
+    private ModuleClassID moduleClassID = MonitorResources.taskServiceMonitorClassID;
+
+    public ModuleClassID getModuleClassID() {
+        return moduleClassID;
+    }
+
+    public TaskServiceMonitorFilter() {}
+
+    public void init(ModuleClassID moduleClassID) {
+        this.moduleClassID = moduleClassID;
+    }
+
+    public boolean isIncludeTaskTypeMetrics() {
+        return includeTaskTypeMetrics;
+    }
+
+    public boolean isIncludeThreadPoolMetrics() {
+        return includeThreadPoolMetrics;
+    }
+
+    public void setIncludeTaskTypeMetrics(boolean includeTaskTypeMetrics) {
+        this.includeTaskTypeMetrics = includeTaskTypeMetrics;
+    }
+
+    public void setIncludeThreadPoolMetrics(boolean includeThreadPoolMetrics) {
+        this.includeThreadPoolMetrics = includeThreadPoolMetrics;
+    }
+
+    public void serializeTo(Element element) throws DocumentSerializationException {
+        DocumentSerializableUtilities.addBoolean(element, "includeTaskTypeMetrics", includeTaskTypeMetrics);
+        DocumentSerializableUtilities.addBoolean(element, "includeThreadPoolMetrics", includeThreadPoolMetrics);
+        if (moduleClassID != null) {
+            DocumentSerializableUtilities.addString(element, "moduleClassID", moduleClassID.toString());
+        }
+    }
+
+    public void initializeFrom(Element element) throws DocumentSerializationException {
+        for (Enumeration e = element.getChildren(); e.hasMoreElements();) {
+            Element childElement = (TextElement) e.nextElement();
+            String tagName = (String) childElement.getKey();
+
+            if (tagName.equals("includeTaskTypeMetrics")) {
+                includeTaskTypeMetrics = DocumentSerializableUtilities.getBoolean(childElement);
+            } else if (tagName.equals("includeThreadPoolMetrics")) {
+                includeThreadPoolMetrics = DocumentSerializableUtilities.getBoolean(childElement);
+            } else if (tagName.equals("moduleClassID")) {
+                try {
+                    moduleClassID = (ModuleClassID) IDFactory.fromURI(
+                            new URI((DocumentSerializableUtilities.getString(childElement))));
+                } catch (URISyntaxException jex) {
+                    throw new DocumentSerializationException("Can't read moduleClassID", jex);
+                }
+            }
+        }
+    }
+}
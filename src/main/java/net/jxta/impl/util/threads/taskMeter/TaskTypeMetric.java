@@ -0,0 +1,169 @@
+package net.jxta.impl.util.threads.taskMeter;
+
+import net.jxta.document.Element;
+import net.jxta.document.TextElement;
+import net.jxta.impl.util.threads.Histogram;
+import net.jxta.impl.util.threads.TaskMetrics;
+import net.jxta.util.documentSerializable.DocumentSerializable;
+import net.jxta.util.documentSerializable.DocumentSerializableUtilities;
+import net.jxta.util.documentSerializable.DocumentSerializationException;
+
+import java.util.Enumeration;
+
+/**
+ * Metrics for a type (class) of task run by the Task Manager. Times are in
+ * microseconds.
+ */
+public class TaskTypeMetric implements DocumentSerializable {
+    private String taskType;
+    private Histogram queueTime = new Histogram();
+    private Histogram runTime = new Histogram();
+    private long rejected;
+
+    public TaskTypeMetric(TaskMetrics.TaskType taskType) {
+        this.taskType = taskType.getName();
+        this.queueTime = taskType.getQueueTime().copy();
+        this.runTime = taskType.getRunTime().copy();
+        this.rejected = taskType.getRejectedCount();
+    }
+
+    public TaskTypeMetric(TaskTypeMetric prototype) {
+        this.taskType = prototype.taskType;
+    }
+
+    public TaskTypeMetric() {}
+
+    /** The class name of the task **/
+    public String getTaskType() {
+        return taskType;
+    }
+
+    /** The time tasks waited for a thread, in microseconds **/
+    public Histogram getQueueTime() {
+        return queueTime;
+    }
+
+    /** The time tasks ran, in microseconds **/
+    public Histogram getRunTime() {
+        return runTime;
+    }
+
+    /** The number of tasks which were rejected **/
+    public long getRejected() {
+        return rejected;
+    }
+
+    boolean isEmpty() {
+        return (0 == queueTime.getCount()) && (0 == runTime.getCount()) && (0 == rejected);
+    }
+
+    public void serializeTo(Element element) throws DocumentSerializationException {
+        if (taskType != null) {
+            DocumentSerializableUtilities.addString(element, "taskType", taskType);
+        }
+        if (queueTime.getCount() != 0) {
+            serializeHistogram(DocumentSerializableUtilities.createChildElement(element, "queueTime"), queueTime);
+        }
+        if (runTime.getCount() != 0) {
+            serializeHistogram(DocumentSerializableUtilities.createChildElement(element, "runTime"), runTime);
+        }
+        if (rejected != 0) {
+            DocumentSerializableUtilities.addLong(element, "rejected", rejected);
+        }
+    }
+
+    public void initializeFrom(Element element) throws DocumentSerializationException {
+        for (Enumeration e = element.getChildren(); e.hasMoreElements();) {
+            Element childElement = (TextElement) e.nextElement();
+            String tagName = (String) childElement.getKey();
+
+            if (tagName.equals("taskType")) {
+                taskType = DocumentSerializableUtilities.getString(childElement);
+            } else if (tagName.equals("queueTime")) {
+                queueTime = initializeHistogram(childElement);
+            } else if (tagName.equals("runTime")) {
+                runTime = initializeHistogram(childElement);
+            } else if (tagName.equals("rejected")) {
+                rejected = DocumentSerializableUtilities.getLong(childElement);
+            }
+        }
+    }
+
+    private static void serializeHistogram(Element element, Histogram histogram) {
+        long[] counts = histogram.getBucketCounts();
+        int used = counts.length;
+
+        while ((used > 0) && (0 == counts[used - 1])) {
+            used--;
+        }
+
+        StringBuilder buckets = new StringBuilder();
+
+        for (int eachBucket = 0; eachBucket < used; eachBucket++) {
+            if (eachBucket > 0) {
+                buckets.append(' ');
+            }
+            buckets.append(counts[eachBucket]);
+        }
+
+        DocumentSerializableUtilities.addLong(element, "total", histogram.getTotal());
+        DocumentSerializableUtilities.addLong(element, "max", histogram.getMax());
+        DocumentSerializableUtilities.addString(element, "buckets", buckets.toString());
+    }
+
+    private static Histogram initializeHistogram(Element element) throws DocumentSerializationException {
+        long total = DocumentSerializableUtilities.getLong(element, "total", 0);
+        long max = DocumentSerializableUtilities.getLong(element, "max", 0);
+        String buckets = DocumentSerializableUtilities.getString(element, "buckets", "").trim();
+
+        if (buckets.length() == 0) {
+            return new Histogram(new long[0], total, max);
+        }
+
+        String[] parts = buckets.split(" ");
+
+        if (parts.length > Histogram.BUCKETS) {
+            throw new DocumentSerializationException("Too many histogram buckets : " + parts.length);
+        }
+
+        long[] counts = new long[parts.length];
+
+        try {
+            for (int eachBucket = 0; eachBucket < parts.length; eachBucket++) {
+                counts[eachBucket] = Long.parseLong(parts[eachBucket]);
+            }
+        } catch (NumberFormatException badCount) {
+            throw new DocumentSerializationException("Bad histogram bucket count", badCount);
+        }
+
+        return new Histogram(counts, total, max);
+    }
+
+    public void mergeMetrics(TaskTypeMetric otherTaskTypeMetric) {
+        queueTime.merge(otherTaskTypeMetric.queueTime);
+        runTime.merge(otherTaskTypeMetric.runTime);
+        rejected += otherTaskTypeMetric.rejected;
+    }
+
+    public void diffMetrics(TaskTypeMetric otherTaskTypeMetric) {
+        queueTime.diff(otherTaskTypeMetric.queueTime);
+        runTime.diff(otherTaskTypeMetric.runTime);
+        rejected -= otherTaskTypeMetric.rejected;
+    }
+
+    @Override
+    public int hashCode() {
+        return taskType.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof TaskTypeMetric) {
+            TaskTypeMetric otherTaskTypeMetric = (TaskTypeMetric) other;
+
+            return taskType.equals(otherTaskTypeMetric.taskType);
+        } else {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.jxta.impl.util.threads.taskMeter;
+
+import net.jxta.document.Element;
+import net.jxta.document.TextElement;
+import net.jxta.impl.util.threads.TaskMetrics;
+import net.jxta.util.documentSerializable.DocumentSerializable;
+import net.jxta.util.documentSerializable.DocumentSerializableUtilities;
+import net.jxta.util.documentSerializable.DocumentSerializationException;
+
+import java.util.Enumeration;
+
+/**
+ * The state of a Task Manager thread pool when the metric was collected.
+ **/
+public class ThreadPoolMetric implements DocumentSerializable {
+    private String poolName;
+    private int poolSize;
+    private int activeCount;
+    private int largestPoolSize;
+    private int queueSize;
+    private long completedTaskCount;
+
+    public ThreadPoolMetric(TaskMetrics.PoolState poolState) {
+        this.poolName = poolState.getName();
+        this.poolSize = poolState.getPoolSize();
+        this.activeCount = poolState.getActiveCount();
+        this.largestPoolSize = poolState.getLargestPoolSize();
+        this.queueSize = poolState.getQueueSize();
+        this.completedTaskCount = poolState.getCompletedTaskCount();
+    }
+
+    public ThreadPoolMetric() {}
+
+    /** The name of the pool **/
+    public String getPoolName() {
+        return poolName;
+    }
+
+    /** The number of threads in the pool **/
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /** The number of threads running tasks **/
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /** The number of threads waiting for tasks **/
+    public int getIdleCount() {
+        return Math.max(0, poolSize - activeCount);
+    }
+
+    /** The largest number of threads the pool has had **/
+    public int getLargestPoolSize() {
+        return largestPoolSize;
+    }
+
+    /** The number of queued tasks **/
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /** The number of tasks the pool has completed **/
+    public long getCompletedTaskCount() {
+        return completedTaskCount;
+    }
+
+    public void serializeTo(Element element) throws DocumentSerializationException {
+        if (poolName != null) {
+            DocumentSerializableUtilities.addString(element, "poolName", poolName);
+        }
+        DocumentSerializableUtilities.addInt(element, "poolSize", poolSize);
+        DocumentSerializableUtilities.addInt(element, "activeCount", activeCount);
+        DocumentSerializableUtilities.addInt(element, "largestPoolSize", largestPoolSize);
+        DocumentSerializableUtilities.addInt(element, "queueSize", queueSize);
+        DocumentSerializableUtilities.addLong(element, "completedTaskCount", completedTaskCount);
+    }
+
+    public void initializeFrom(Element element) throws DocumentSerializationException {
+        for (Enumeration e = element.getChildren(); e.hasMoreElements();) {
+            Element childElement = (TextElement) e.nextElement();
+            String tagName = (String) childElement.getKey();
+
+            if (tagName.equals("poolName")) {
+                poolName = DocumentSerializableUtilities.getString(childElement);
+            } else if (tagName.equals("poolSize")) {
+                poolSize = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("activeCount")) {
+                activeCount = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("largestPoolSize")) {
+                largestPoolSize = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("queueSize")) {
+                queueSize = DocumentSerializableUtilities.getInt(childElement);
+            } else if (tagName.equals("completedTaskCount")) {
+                completedTaskCount = DocumentSerializableUtilities.getLong(childElement);
+            }
+        }
+    }
+}
@@ -57,6 +57,7 @@
 package net.jxta.impl.xindice.core.filer;
 
 import net.jxta.impl.xindice.core.DBException;
+import net.jxta.impl.util.threads.NamedThreadFactory;
 import net.jxta.impl.xindice.core.FaultCodes;
 import net.jxta.impl.xindice.core.data.Key;
 import net.jxta.impl.xindice.core.data.Value;
@@ -71,12 +72,23 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.EmptyStackException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -99,6 +111,20 @@ import java.util.logging.Logger;
  * to the underlying file. Too large number will limit amount of
  * collections you can open. Default value is 16
  * (DEFAULT_DESCRIPTORS_MAX).</li>
+ * <li><strong>page cache size</strong>: The number of recently used pages
+ * kept loaded in memory, see {@link #setPageCacheSize(int)}. The default is
+ * read from the system property {@value #PAGE_CACHE_SIZE_PROPERTY} and is
+ * {@value #DEFAULT_PAGE_CACHE_SIZE} if not set.</li>
+ * <li><strong>write-behind</strong>: Whether dirty pages are written out by a
+ * background thread once {@value #MAX_DIRTY_SIZE} pages are waiting rather
+ * than by the thread which modified the last page, see
+ * {@link #setWriteBehind(boolean)}. The default is read from the system
+ * property {@value #WRITE_BEHIND_PROPERTY} and is enabled if not set.</li>
+ * <li><strong>memory mapped</strong>: Whether pages are read and written
+ * through memory mapped regions of the file rather than through the pool of
+ * random access file descriptors, see {@link #setMemoryMapped(boolean)}. The
+ * default is read from the system property {@value #MEMORY_MAPPED_PROPERTY}
+ * and is disabled if not set.</li>
  * </ul>
  * <p/>
  * <br>FIXME: Currently it seems that maxkeysize is not used anywhere.
@@ -117,6 +143,51 @@ public abstract class Paged {
      */
     private static final int MAX_DIRTY_SIZE = 128;
 
+    /**
+     * With write-behind enabled, the number of dirty pages at which writers
+     * stop leaving the flushing to the background and flush themselves.
+     */
+    private static final int MAX_WRITE_BEHIND_SIZE = 4 * MAX_DIRTY_SIZE;
+
+    /**
+     * System property which specifies the default page cache size.
+     */
+    public static final String PAGE_CACHE_SIZE_PROPERTY = "net.jxta.impl.xindice.core.filer.Paged.pageCacheSize";
+
+    /**
+     * The page cache size used if none is specified.
+     */
+    public static final int DEFAULT_PAGE_CACHE_SIZE = 64;
+
+    /**
+     * System property which specifies whether write-behind is enabled by default.
+     */
+    public static final String WRITE_BEHIND_PROPERTY = "net.jxta.impl.xindice.core.filer.Paged.writeBehind";
+
+    /**
+     * System property which specifies whether memory mapped I/O is used by default.
+     */
+    public static final String MEMORY_MAPPED_PROPERTY = "net.jxta.impl.xindice.core.filer.Paged.memoryMapped";
+
+    /**
+     * The size of each memory mapped region of the file.
+     */
+    private static final int MAPPED_REGION_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Executor shared by all paged files for writing out dirty pages in the
+     * background. Its single thread exits when there is nothing to flush.
+     */
+    private static final ExecutorService FLUSHER;
+
+    static {
+        ThreadPoolExecutor flusher = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Paged write-behind"));
+
+        flusher.allowCoreThreadTimeOut(true);
+        FLUSHER = flusher;
+    }
+
     // The maximum number of open random access files we can have
     private static final int DEFAULT_DESCRIPTORS_MAX = 16;
 
@@ -145,15 +216,59 @@ public abstract class Paged {
      */
     protected boolean sync = true;
 
-    // TODO: This is not a cache right now, but a way to assure that only one page instance at most exists in memory at all times.
     /**
-     * Cache of recently read pages.
+     * All pages currently in memory.
      * <p/>
-     * Cache contains weak references to the Page objects, keys are page numbers (Long objects).
-     * Access synchronized by this map itself.
+     * This is not a cache, but a way to assure that only one page instance at most exists in memory at all times.
+     * It contains weak references to the Page objects, keys are page numbers (Long objects).
+     * Access synchronized by this Paged.
      */
     private final Map<Long, WeakReference<Page>> pages = new WeakHashMap<Long, WeakReference<Page>>();
 
+    /**
+     * Cache of recently used pages, in least recently used order.
+     * <p/>
+     * Holds strong references so that the most recently used pages stay loaded in memory.
+     * Access synchronized by this Paged.
+     */
+    private final LinkedHashMap<Long, Page> recentPages = new LinkedHashMap<Long, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+            return size() > pageCacheSize;
+        }
+    };
+
+    /**
+     * The maximum number of pages in {@link #recentPages}.
+     */
+    private volatile int pageCacheSize = Integer.getInteger(PAGE_CACHE_SIZE_PROPERTY, DEFAULT_PAGE_CACHE_SIZE);
+
+    /**
+     * Number of page requests satisfied by a page already in memory.
+     */
+    private final AtomicLong cacheHits = new AtomicLong(0);
+
+    /**
+     * Number of page requests which required the page to be read from disk.
+     */
+    private final AtomicLong cacheMisses = new AtomicLong(0);
+
+    /**
+     * If true dirty pages are written out in the background.
+     */
+    private volatile boolean writeBehind = Boolean.valueOf(System.getProperty(WRITE_BEHIND_PROPERTY, "true"));
+
+    /**
+     * True while a background flush is waiting to run.
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * Serializes flushes so that a flush does not complete while an earlier
+     * background flush is still writing pages.
+     */
+    private final Object flushLock = new Object();
+
     /**
      * Cache of modified pages waiting to be written out.
      * Access is synchronized by the {@link #dirtyLock}.
@@ -165,6 +280,29 @@ public abstract class Paged {
      */
     private final Object dirtyLock = new Object();
 
+    /**
+     * If true pages are accessed through memory mapped regions of the file.
+     */
+    private volatile boolean memoryMapped = Boolean.getBoolean(MEMORY_MAPPED_PROPERTY);
+
+    /**
+     * The memory mapped regions of the file, mapped on first use. Replaced,
+     * never modified, when a region is added.
+     */
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    /**
+     * The file and channel from which the regions are mapped.
+     * Access is synchronized by the {@link #regionsLock}.
+     */
+    private RandomAccessFile mappedFile;
+    private FileChannel mappedChannel;
+
+    /**
+     * Lock for mapping new regions.
+     */
+    private final Object regionsLock = new Object();
+
     /**
      * Random access file descriptors cache.
      * Access to it and to {@link #descriptorsCount} is synchronized by itself.
@@ -290,6 +428,113 @@ public abstract class Paged {
         }
     }
 
+    /**
+     * Sets whether pages are read and written through memory mapped regions
+     * of the file. The regions are mapped as they are first used and the
+     * file grows to cover each region mapped. Mapped regions are released
+     * when they are garbage collected after the file is closed. Must be set
+     * before the file is opened.
+     *
+     * @param memoryMapped if true use memory mapped I/O for pages.
+     * @throws IllegalStateException if the file is open.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        if (opened) {
+            throw new IllegalStateException("I/O mode cannot be changed while open");
+        }
+
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return true if pages are read and written through memory mapped regions of the file.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Returns the mapped region with the specified index, mapping it if necessary.
+     *
+     * @param index The region index
+     * @return the mapped region
+     * @throws IOException if the region could not be mapped
+     */
+    private MappedByteBuffer getRegion(int index) throws IOException {
+        MappedByteBuffer[] current = regions;
+
+        if ((index < current.length) && (current[index] != null)) {
+            return current[index];
+        }
+
+        synchronized (regionsLock) {
+            current = regions;
+            if ((index < current.length) && (current[index] != null)) {
+                return current[index];
+            }
+
+            if (null == mappedChannel) {
+                mappedFile = new RandomAccessFile(file, "rw");
+                mappedChannel = mappedFile.getChannel();
+            }
+
+            MappedByteBuffer[] grown = new MappedByteBuffer[Math.max(current.length, index + 1)];
+
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[index] = mappedChannel.map(FileChannel.MapMode.READ_WRITE, (long) index * MAPPED_REGION_SIZE, MAPPED_REGION_SIZE);
+            regions = grown;
+
+            return grown[index];
+        }
+    }
+
+    /**
+     * Copies bytes between the mapped file and an array.
+     *
+     * @param offset The file offset
+     * @param data   The array
+     * @param write  If true the array is written to the file, otherwise the array is read from the file.
+     * @throws IOException if a region could not be mapped
+     */
+    private void transferMapped(long offset, byte[] data, boolean write) throws IOException {
+        int done = 0;
+
+        while (done < data.length) {
+            long position = offset + done;
+            MappedByteBuffer region = getRegion((int) (position / MAPPED_REGION_SIZE));
+            ByteBuffer view = region.duplicate();
+            int count = Math.min(data.length - done, MAPPED_REGION_SIZE - (int) (position % MAPPED_REGION_SIZE));
+
+            view.position((int) (position % MAPPED_REGION_SIZE));
+            if (write) {
+                view.put(data, done, count);
+                if (sync) {
+                    region.force();
+                }
+            } else {
+                view.get(data, done, count);
+            }
+            done += count;
+        }
+    }
+
+    /**
+     * Releases the memory mapped regions and closes the mapped file.
+     */
+    private void closeMapped() {
+        synchronized (regionsLock) {
+            regions = new MappedByteBuffer[0];
+            mappedChannel = null;
+            if (null != mappedFile) {
+                try {
+                    mappedFile.close();
+                } catch (IOException e) {// Ignore close exception
+                }
+                mappedFile = null;
+            }
+        }
+    }
+
     /**
      * getPage returns the page specified by pageNum.
      *
@@ -306,7 +551,11 @@ public abstract class Paged {
             // No need to synchronize on dirtyLock thanks to atomic assignment
             page = dirty.get(lp);
 
-            // if not check if it's already loaded in the page cache
+            // if not check if it's recently used or otherwise still in memory
+            if (page == null) {
+                page = recentPages.get(lp);
+            }
+
             if (page == null) {
                 WeakReference<Page> ref = pages.get(lp);
 
@@ -319,6 +568,13 @@ public abstract class Paged {
             if (page == null) {
                 page = new Page(lp);
                 pages.put(page.pageNum, new WeakReference<Page>(page));
+                cacheMisses.incrementAndGet();
+            } else {
+                cacheHits.incrementAndGet();
+            }
+
+            if (pageCacheSize > 0) {
+                recentPages.put(page.pageNum, page);
             }
         }
 
@@ -644,6 +900,8 @@ public abstract class Paged {
                         LOG.fine(descriptorsCount + " out of " + total + " files were not closed during close.");
                     }
                 }
+
+                closeMapped();
             } catch (Exception e) {
                 // Failed to close, leave open
                 opened = true;
@@ -666,23 +924,121 @@ public abstract class Paged {
         }
     }
 
+    /**
+     * Sets the number of recently used pages which are kept loaded in memory.
+     * Zero disables the page cache.
+     *
+     * @param pageCacheSize the number of pages
+     */
+    public void setPageCacheSize(int pageCacheSize) {
+        if (pageCacheSize < 0) {
+            throw new IllegalArgumentException("Page cache size must not be negative");
+        }
+
+        synchronized (this) {
+            this.pageCacheSize = pageCacheSize;
+
+            // trim the cache down to the new size
+            Iterator<Long> eachPage = recentPages.keySet().iterator();
+
+            while (recentPages.size() > pageCacheSize) {
+                eachPage.next();
+                eachPage.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of recently used pages which are kept loaded in memory.
+     */
+    public int getPageCacheSize() {
+        return pageCacheSize;
+    }
+
+    /**
+     * @return the number of page requests satisfied by a page already in memory.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the number of page requests which required the page to be read from disk.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Sets whether dirty pages are written out by a background thread. Dirty
+     * pages are always written out by {@link #flush()} and {@link #close()}.
+     *
+     * @param writeBehind if true dirty pages are written in the background.
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * @return true if dirty pages are written out in the background.
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
     void addDirty(Page page) throws IOException {
+        int dirtyCount;
+
         synchronized (dirtyLock) {
             dirty.put(page.pageNum, page);
-            if (dirty.size() > MAX_DIRTY_SIZE) {
+            dirtyCount = dirty.size();
+        }
+
+        if (dirtyCount <= MAX_DIRTY_SIZE) {
+            return;
+        }
+
+        // Too many dirty pages... flush them
+        if (writeBehind && (dirtyCount <= MAX_WRITE_BEHIND_SIZE)) {
+            scheduleFlush();
+            return;
+        }
+
+        try {
+            flush();
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Schedules a background flush of the dirty pages unless one is already pending.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        FLUSHER.execute(new Runnable() {
+            public void run() {
+                flushScheduled.set(false);
+
                 try {
-                    // Too many dirty pages... flush them
                     flush();
                 } catch (Exception e) {
-                    throw new IOException(e.getMessage());
+                    LOG.log(Level.WARNING, "Exception while flushing " + file.getName() + " in the background\n", e);
                 }
             }
-        }
+        });
     }
 
     public void flush() throws DBException {
-        // This method is not synchronized
+        synchronized (flushLock) {
+            flushDirty();
+        }
+    }
 
+    private void flushDirty() throws DBException {
         // Error flag/counter
         int error = 0;
 
@@ -1378,9 +1734,13 @@ public abstract class Paged {
                 try {
                     byte[] data = new byte[fileHeader.pageSize];
 
-                    raf = getDescriptor();
-                    raf.seek(this.offset);
-                    raf.read(data);
+                    if (memoryMapped) {
+                        transferMapped(this.offset, data, false);
+                    } else {
+                        raf = getDescriptor();
+                        raf.seek(this.offset);
+                        raf.read(data);
+                    }
 
                     // Read in the header
                     ByteArrayInputStream bis = new ByteArrayInputStream(data);
@@ -1423,6 +1783,12 @@ public abstract class Paged {
          * @throws java.io.IOException if an io error occurs
          */
         public synchronized void flush() throws IOException {
+            if (memoryMapped) {
+                // Mapping the region has already grown the file
+                transferMapped(this.offset, this.data, true);
+                return;
+            }
+
             RandomAccessFile raf = null;
 
             try {
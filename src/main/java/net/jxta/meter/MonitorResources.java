@@ -197,6 +197,12 @@ public class MonitorResources {
     public static final ModuleClassID relayServiceMonitorClassID = (ModuleClassID)
             ID.create(URI.create(WK_ID_PREFIX + "0000010F05"));
 
+    /**
+     * Well known module class identifier: Task Manager
+     */
+    public static final ModuleClassID taskServiceMonitorClassID = (ModuleClassID)
+            ID.create(URI.create(WK_ID_PREFIX + "0000011005"));
+
     /**
      * Well known service specification identifier: the standard monitor
      */
@@ -279,10 +285,16 @@ public class MonitorResources {
     public static final ModuleSpecID refRelayServiceMonitorSpecID = (ModuleSpecID)
             ID.create(URI.create(WK_ID_PREFIX + "0000010F0106"));
 
+    /**
+     * Well known service specification identifier: the standard Task Manager
+     */
+    public static final ModuleSpecID refTaskServiceMonitorSpecID = (ModuleSpecID)
+            ID.create(URI.create(WK_ID_PREFIX + "000001100106"));
+
     private static ModuleClassID standardServiceMonitorClassIDs[] = new ModuleClassID[] {
         resolverServiceMonitorClassID, rendezvousServiceMonitorClassID, endpointServiceMonitorClassID
                 ,
-        transportServiceMonitorClassID };
+        transportServiceMonitorClassID, taskServiceMonitorClassID };
 
     public static ModuleImplAdvertisement getReferenceAllPurposeMonitorServiceImplAdvertisement(boolean includeTransports) {
     	ModuleImplAdvertisement moduleImplAdvertisement = (ModuleImplAdvertisement)AdvertisementFactory.newAdvertisement(ModuleImplAdvertisement.getAdvertisementType());
@@ -329,6 +341,14 @@ public class MonitorResources {
                 ,
                 "net.jxta.impl.rendezvous.rendezvousMeter.RendezvousServiceMonitorFilter");
 
+        addServiceMonitorServiceAdvertisement(param, refTaskServiceMonitorSpecID, "Tasks"
+                ,
+                "net.jxta.impl.util.threads.taskMeter.TaskServiceMonitor"
+                ,
+                "net.jxta.impl.util.threads.taskMeter.TaskServiceMetric"
+                ,
+                "net.jxta.impl.util.threads.taskMeter.TaskServiceMonitorFilter");
+
         moduleImplAdvertisement.setParam(param);
         return moduleImplAdvertisement;
     }
@@ -560,6 +580,10 @@ public class MonitorResources {
             return "Relay";
         }
 
+        if (moduleClassID.equals(taskServiceMonitorClassID)) {
+            return "Tasks";
+        }
+
         return null;
     }
 
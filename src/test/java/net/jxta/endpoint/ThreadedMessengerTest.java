@@ -0,0 +1,173 @@
+package net.jxta.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jxta.peergroup.PeerGroupID;
+
+import org.junit.Test;
+
+public class ThreadedMessengerTest {
+
+    private static final EndpointAddress DESTINATION = new EndpointAddress("test", "destination", null, null);
+
+    private static class RecordingMessenger extends ThreadedMessenger {
+
+        final List<Message> sent = new ArrayList<Message>();
+
+        final List<Integer> batches = new ArrayList<Integer>();
+
+        /**
+         * A message which always fails to be sent.
+         */
+        Message bad = null;
+
+        /**
+         * If true, batches are sent one message at a time by ThreadedMessenger.
+         */
+        boolean defaultBatches = false;
+
+        RecordingMessenger(int maxMessages, long maxBytes, long maxDelay) {
+            super(PeerGroupID.defaultNetPeerGroupID, DESTINATION, null, 100);
+
+            setBatching(maxMessages, maxBytes, maxDelay);
+        }
+
+        @Override
+        protected void closeImpl() {
+        }
+
+        @Override
+        protected boolean connectImpl() {
+            return true;
+        }
+
+        @Override
+        protected EndpointAddress getLogicalDestinationImpl() {
+            return DESTINATION;
+        }
+
+        @Override
+        protected synchronized void sendMessageBImpl(Message msg, String service, String param) throws IOException {
+            if (msg == bad) {
+                throw new IOException("bad message");
+            }
+
+            sent.add(msg);
+            batches.add(1);
+            notifyAll();
+        }
+
+        @Override
+        protected synchronized void sendMessagesBImpl(Message[] msgs, String[] services, String[] params) throws IOException {
+            if (defaultBatches) {
+                super.sendMessagesBImpl(msgs, services, params);
+                return;
+            }
+
+            for (Message aMsg : msgs) {
+                sent.add(aMsg);
+            }
+            batches.add(msgs.length);
+            notifyAll();
+        }
+
+        synchronized void waitForMessages(int count) throws InterruptedException {
+            long giveUpAt = System.currentTimeMillis() + 10000;
+
+            while ((sent.size() < count) && (System.currentTimeMillis() < giveUpAt)) {
+                wait(100);
+            }
+        }
+    }
+
+    private static List<Message> sendMessages(Messenger messenger, int count) {
+        List<Message> msgs = new ArrayList<Message>();
+
+        for (int eachMsg = 0; eachMsg < count; eachMsg++) {
+            Message msg = new Message();
+
+            msg.addMessageElement(new StringMessageElement("seq", Integer.toString(eachMsg), null));
+            assertTrue(messenger.sendMessageN(msg, "service", null));
+            msgs.add(msg);
+        }
+
+        return msgs;
+    }
+
+    @Test
+    public void testQueuedMessagesAreBatched() throws Exception {
+        RecordingMessenger messenger = new RecordingMessenger(4, Long.MAX_VALUE, 500);
+        Messenger channel = messenger.getChannelMessenger(PeerGroupID.defaultNetPeerGroupID, "service", null);
+
+        List<Message> msgs = sendMessages(channel, 10);
+
+        messenger.waitForMessages(msgs.size());
+
+        synchronized (messenger) {
+            assertEquals(msgs, messenger.sent);
+
+            int largest = 0;
+
+            for (int batch : messenger.batches) {
+                assertTrue("batch of " + batch, batch <= 4);
+                largest = Math.max(largest, batch);
+            }
+
+            assertTrue("no batch was sent", largest > 1);
+        }
+    }
+
+    @Test
+    public void testBatchFailureChargedToFailedMessage() throws Exception {
+        RecordingMessenger messenger = new RecordingMessenger(4, Long.MAX_VALUE, 500);
+        Messenger channel = messenger.getChannelMessenger(PeerGroupID.defaultNetPeerGroupID, "service", null);
+        List<Message> msgs = new ArrayList<Message>();
+
+        synchronized (messenger) {
+            // Hold the messenger so that the messages are queued together.
+            msgs.addAll(sendMessages(channel, 10));
+            messenger.bad = msgs.get(2);
+            messenger.defaultBatches = true;
+        }
+
+        messenger.waitForMessages(msgs.size() - 1);
+
+        synchronized (messenger) {
+            List<Message> expected = new ArrayList<Message>(msgs);
+
+            expected.remove(2);
+
+            // Every good message is sent once, in order.
+            assertEquals(expected, messenger.sent);
+        }
+
+        Object outcome = msgs.get(2).getMessageProperty(Messenger.class);
+
+        assertTrue("bad message was not bounced: " + outcome, outcome instanceof OutgoingMessageEvent);
+        assertNotNull(((OutgoingMessageEvent) outcome).getFailure());
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        RecordingMessenger messenger = new RecordingMessenger(4, 1, 100);
+        Messenger channel = messenger.getChannelMessenger(PeerGroupID.defaultNetPeerGroupID, "service", null);
+
+        List<Message> msgs = sendMessages(channel, 5);
+
+        messenger.waitForMessages(msgs.size());
+
+        synchronized (messenger) {
+            assertEquals(msgs, messenger.sent);
+
+            for (int batch : messenger.batches) {
+                assertEquals(1, batch);
+            }
+        }
+    }
+}
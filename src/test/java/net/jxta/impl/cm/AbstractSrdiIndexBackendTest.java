@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -21,6 +22,7 @@ import net.jxta.impl.util.threads.TaskManager;
 import net.jxta.peer.PeerID;
 import net.jxta.peergroup.PeerGroup;
 import net.jxta.peergroup.PeerGroupID;
+import net.jxta.protocol.SrdiMessage;
 import net.jxta.test.util.JUnitRuleMockery;
 
 import org.jmock.Expectations;
@@ -139,6 +141,25 @@ public abstract class AbstractSrdiIndexBackendTest {
 		assertContains(results, comparator, new Entry(PEER_ID, 35000L), new Entry(PEER_ID_2, 36000L));
 	}
 	
+	@Test
+	public void testAddAll() throws Exception {
+		clock.currentTime = 30000L;
+		srdiIndex.add("a", "b", "c", PEER_ID, 1000L);
+		
+		List<SrdiMessage.Entry> entries = new ArrayList<SrdiMessage.Entry>();
+		entries.add(new SrdiMessage.Entry("b", "c", 5000L));
+		entries.add(new SrdiMessage.Entry("b", "d", 6000L));
+		entries.add(new SrdiMessage.Entry("e", "f", 7000L));
+		srdiIndex.addAll("a", entries, PEER_ID);
+		
+		List<Entry> results = srdiIndex.getRecord("a", "b", "c");
+		assertEquals(1, results.size());
+		assertContains(results, comparator, new Entry(PEER_ID, 35000L));
+		assertContains(srdiIndex.getRecord("a", "b", "d"), comparator, new Entry(PEER_ID, 36000L));
+		assertContains(srdiIndex.getRecord("a", "e", "f"), comparator, new Entry(PEER_ID, 37000L));
+		assertContains(srdiIndex.query("a", "b", null, NO_THRESHOLD), PEER_ID);
+	}
+	
 	@Test
 	public void testRemove() throws Exception {
 		srdiIndex.add("a", "b", "c", PEER_ID, 1000L);
@@ -1,9 +1,11 @@
 package net.jxta.impl.cm;
 
+import java.util.Collection;
 import java.util.List;
 
 import net.jxta.impl.cm.Srdi.Entry;
 import net.jxta.peer.PeerID;
+import net.jxta.protocol.SrdiMessage;
 
 /**
  * Null object implementation of SrdiAPI
@@ -15,6 +17,10 @@ public class NullSrdiIndexBackend implements SrdiAPI {
 		// do nothing
 	}
 
+	public void addAll(String primaryKey, Collection<SrdiMessage.Entry> entries, PeerID pid) {
+		// do nothing
+	}
+
 	public void clear() {
 		// do nothing
 	}
@@ -0,0 +1,139 @@
+package net.jxta.impl.cm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.XMLDocument;
+import net.jxta.id.IDFactory;
+import net.jxta.peergroup.PeerGroupID;
+import net.jxta.pipe.PipeID;
+import net.jxta.pipe.PipeService;
+import net.jxta.protocol.PipeAdvertisement;
+
+import org.junit.Test;
+
+public class ParsedAdvertisementCacheTest {
+
+    private static final String DN = "Adv";
+
+    private final PipeAdvertisement pipeAdv = createPipeAdvertisement("pipe");
+
+    private static PipeAdvertisement createPipeAdvertisement(String name) {
+        PipeAdvertisement adv = (PipeAdvertisement) AdvertisementFactory.newAdvertisement(PipeAdvertisement.getAdvertisementType());
+        PipeID pipeID = IDFactory.newPipeID(PeerGroupID.defaultNetPeerGroupID);
+
+        adv.setPipeID(pipeID);
+        adv.setType(PipeService.UnicastType);
+        adv.setName(name);
+
+        return adv;
+    }
+
+    private static InputStream recordOf(PipeAdvertisement adv) throws Exception {
+        XMLDocument doc = (XMLDocument) adv.getDocument(MimeMediaType.XMLUTF8);
+
+        return new ByteArrayInputStream(doc.toString().getBytes("UTF-8"));
+    }
+
+    private static String nameOf(PipeAdvertisement adv) {
+        return adv.getID().getUniqueValue().toString();
+    }
+
+    @Test
+    public void testIdenticalRecordsAreParsedOnce() throws Exception {
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(64 * 1024);
+
+        PipeAdvertisement first = (PipeAdvertisement) cache.getAdvertisement(DN, recordOf(pipeAdv));
+        PipeAdvertisement second = (PipeAdvertisement) cache.getAdvertisement(DN, recordOf(pipeAdv));
+
+        assertEquals(pipeAdv, first);
+        assertEquals(pipeAdv, second);
+        assertNotSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCallersReceivePrivateCopies() throws Exception {
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(64 * 1024);
+
+        PipeAdvertisement first = (PipeAdvertisement) cache.getAdvertisement(DN, recordOf(pipeAdv));
+        first.setName("changed");
+
+        PipeAdvertisement second = (PipeAdvertisement) cache.getAdvertisement(DN, recordOf(pipeAdv));
+        assertEquals("pipe", second.getName());
+    }
+
+    @Test
+    public void testModifiedRecordIsParsedAgain() throws Exception {
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(64 * 1024);
+
+        cache.getAdvertisement(DN, recordOf(pipeAdv));
+        pipeAdv.setName("renamed");
+
+        PipeAdvertisement result = (PipeAdvertisement) cache.getAdvertisement(DN, recordOf(pipeAdv));
+
+        assertEquals("renamed", result.getName());
+        assertEquals(2, cache.getMisses());
+        // the entry for the previous version of the record was replaced
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidateDropsEntry() throws Exception {
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(64 * 1024);
+
+        cache.getAdvertisement(DN, recordOf(pipeAdv));
+        cache.invalidate("Peers", nameOf(pipeAdv));
+        assertEquals(1, cache.size());
+
+        cache.invalidate(DN, nameOf(pipeAdv));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        PipeAdvertisement[] advs = new PipeAdvertisement[3];
+        int recordSize = 0;
+
+        for (int i = 0; i < advs.length; i++) {
+            advs[i] = createPipeAdvertisement("pipe" + i);
+            recordSize = Math.max(recordSize, recordOf(advs[i]).available());
+        }
+
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(2 * recordSize);
+
+        cache.getAdvertisement(DN, recordOf(advs[0]));
+        cache.getAdvertisement(DN, recordOf(advs[1]));
+        cache.getAdvertisement(DN, recordOf(advs[0]));
+        cache.getAdvertisement(DN, recordOf(advs[2]));
+
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getMisses());
+
+        cache.getAdvertisement(DN, recordOf(advs[0]));
+        assertEquals(3, cache.getMisses());
+
+        cache.getAdvertisement(DN, recordOf(advs[1]));
+        assertEquals(4, cache.getMisses());
+        assertTrue(cache.getTotalBytes() <= 2 * recordSize);
+    }
+
+    @Test
+    public void testZeroSizeDisablesCaching() throws Exception {
+        ParsedAdvertisementCache cache = new ParsedAdvertisementCache(0);
+
+        assertEquals(pipeAdv, cache.getAdvertisement(DN, recordOf(pipeAdv)));
+        assertEquals(pipeAdv, cache.getAdvertisement(DN, recordOf(pipeAdv)));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -0,0 +1,150 @@
+package net.jxta.impl.content.defprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.StructuredDocumentFactory;
+import net.jxta.document.XMLDocument;
+import net.jxta.document.XMLElement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockManifestTest {
+
+    private static final int BLOCK = 1000;
+
+    private byte[] data;
+    private BlockManifest manifest;
+    private File dataFile;
+    private File stateFile;
+
+    @Before
+    public void setUp() throws IOException {
+        data = new byte[3500];
+        new Random(42).nextBytes(data);
+        manifest = BlockManifest.compute(new ByteArrayInputStream(data), data.length, BLOCK);
+
+        dataFile = File.createTempFile("BlockManifestTest", ".data");
+        stateFile = new File(dataFile.getPath() + ".resume");
+    }
+
+    @After
+    public void tearDown() {
+        dataFile.delete();
+        stateFile.delete();
+    }
+
+    @Test
+    public void testCompute() {
+        assertEquals(4, manifest.getBlockCount());
+        assertEquals(3000, manifest.getBlockOffset(3));
+        assertEquals(500, manifest.getBlockLength(3));
+        assertTrue(manifest.verify(1, data, BLOCK, BLOCK));
+        assertTrue(manifest.verify(3, data, 3000, 500));
+        assertFalse(manifest.verify(1, data, 0, BLOCK));
+    }
+
+    @Test(expected = IOException.class)
+    public void testComputeShortStream() throws IOException {
+        BlockManifest.compute(new ByteArrayInputStream(data), data.length + 1, BLOCK);
+    }
+
+    @Test
+    public void testBlockSizeGrowsWithLength() {
+        int small = BlockManifest.getBlockSizeFor(1);
+        long huge = 64L * 1024 * 1024 * 1024;
+
+        assertEquals(small, BlockManifest.getBlockSizeFor(small));
+        assertTrue(huge / BlockManifest.getBlockSizeFor(huge) <= 1024);
+    }
+
+    @Test
+    public void testAdvertisementRoundTrip() throws IOException {
+        DefaultContentShareAdvertisementImpl adv = new DefaultContentShareAdvertisementImpl();
+
+        adv.setBlockManifest(manifest);
+
+        XMLDocument doc = (XMLDocument) adv.getDocument(MimeMediaType.XMLUTF8);
+        XMLElement root = (XMLElement) StructuredDocumentFactory.newStructuredDocument(
+                MimeMediaType.XMLUTF8, doc.getStream());
+        DefaultContentShareAdvertisementImpl parsed = new DefaultContentShareAdvertisementImpl(root);
+
+        assertNotNull(parsed.getBlockManifest());
+        assertEquals(manifest, parsed.getBlockManifest());
+    }
+
+    @Test
+    public void testTrackAndResume() throws IOException {
+        RandomAccessFile out = new RandomAccessFile(dataFile, "rw");
+        BlockTracker tracker = new BlockTracker(manifest, "urn:jxta:test", stateFile);
+
+        try {
+            // Block 0 arrives in two pieces, block 1 is corrupt.
+            out.write(data, 0, 1500);
+            assertTrue(tracker.received(0, 600).isEmpty());
+            assertEquals(Arrays.asList(0), tracker.received(600, 900));
+            assertTrue(tracker.verify(0, out));
+
+            byte[] corrupt = data.clone();
+            corrupt[1700] ^= 1;
+            out.seek(1500);
+            out.write(corrupt, 1500, 1500);
+            assertEquals(Arrays.asList(1, 2), tracker.received(1500, 1500));
+            assertFalse(tracker.verify(1, out));
+            assertTrue(tracker.verify(2, out));
+            assertFalse(tracker.isComplete());
+
+            tracker.save();
+        } finally {
+            out.close();
+        }
+
+        // After a restart only the verified blocks are restored.
+        out = new RandomAccessFile(dataFile, "rw");
+        tracker = new BlockTracker(manifest, "urn:jxta:test", stateFile);
+
+        try {
+            assertEquals(2, tracker.resume(out));
+            assertTrue(tracker.isVerified(0));
+            assertFalse(tracker.isVerified(1));
+            assertTrue(tracker.isVerified(2));
+
+            out.seek(BLOCK);
+            out.write(data, BLOCK, BLOCK);
+            out.seek(3000);
+            out.write(data, 3000, 500);
+
+            List<Integer> complete = tracker.received(BLOCK, BLOCK);
+
+            assertEquals(Arrays.asList(1), complete);
+            assertTrue(tracker.verify(1, out));
+            assertEquals(Arrays.asList(3), tracker.received(3000, 500));
+            assertTrue(tracker.verify(3, out));
+            assertTrue(tracker.isComplete());
+        } finally {
+            out.close();
+        }
+
+        // State for other content is ignored.
+        out = new RandomAccessFile(dataFile, "rw");
+
+        try {
+            assertEquals(0, new BlockTracker(manifest, "urn:jxta:other", stateFile).resume(out));
+        } finally {
+            out.close();
+        }
+    }
+}
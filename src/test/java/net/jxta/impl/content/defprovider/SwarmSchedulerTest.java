@@ -0,0 +1,216 @@
+package net.jxta.impl.content.defprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jxta.impl.content.defprovider.SwarmScheduler.Request;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SwarmSchedulerTest {
+
+    private static final int CHUNK = 100;
+
+    private SwarmScheduler<String> scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new SwarmScheduler<String>(CHUNK, 2, 8, 3, 1000);
+    }
+
+    @Test
+    public void testChunksStripedAcrossSources() {
+        scheduler.addSource("a");
+        scheduler.addSource("b");
+
+        List<Request<String>> requests = scheduler.schedule(0);
+
+        assertEquals(4, requests.size());
+        assertEquals("a", requests.get(0).source);
+        assertEquals("b", requests.get(1).source);
+        assertEquals("a", requests.get(2).source);
+        assertEquals("b", requests.get(3).source);
+
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(i * CHUNK, requests.get(i).offset);
+            assertEquals(CHUNK, requests.get(i).length);
+        }
+
+        // The windows are full.
+        assertTrue(scheduler.schedule(0).isEmpty());
+    }
+
+    @Test
+    public void testWindowFollowsThroughput() {
+        scheduler.addSource("fast");
+        scheduler.addSource("slow");
+
+        List<Request<String>> requests = scheduler.schedule(0);
+
+        // The fast source answers quickly and back to back, the slow source
+        // takes its time.
+        long now = 50;
+
+        for (Request<String> request : requests) {
+            if ("fast".equals(request.source)) {
+                assertNotNull(scheduler.received(request.queryID, request.offset, CHUNK, false, now++));
+            }
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (Request<String> request : scheduler.schedule(now)) {
+                if ("fast".equals(request.source)) {
+                    assertNotNull(scheduler.received(request.queryID, request.offset, CHUNK, false, now + 50));
+                }
+            }
+            now += 51;
+        }
+
+        assertTrue(scheduler.getWindow("fast") > 2);
+        assertEquals(2, scheduler.getWindow("slow"));
+    }
+
+    @Test
+    public void testTimeoutsShrinkWindowAndDropSource() {
+        scheduler.addSource("a");
+        scheduler.addSource("b");
+
+        List<Request<String>> requests = scheduler.schedule(0);
+
+        // Only "b" answers.
+        for (Request<String> request : requests) {
+            if ("b".equals(request.source)) {
+                scheduler.received(request.queryID, request.offset, CHUNK, false, 10);
+            }
+        }
+
+        assertTrue(scheduler.expire(500).isEmpty());
+        assertTrue(scheduler.expire(1001).isEmpty());
+        assertEquals(1, scheduler.getWindow("a"));
+
+        // The chunks "a" lost are requested again.
+        List<Request<String>> retries = scheduler.schedule(1001);
+        List<Long> offsets = new ArrayList<Long>();
+
+        for (Request<String> request : retries) {
+            offsets.add(request.offset);
+
+            if ("b".equals(request.source)) {
+                scheduler.received(request.queryID, request.offset, CHUNK, false, 1050);
+            }
+        }
+
+        assertTrue(offsets.contains(0L));
+        assertTrue(offsets.contains(2L * CHUNK));
+
+        List<String> dropped = scheduler.expire(3000);
+
+        assertEquals(1, dropped.size());
+        assertEquals("a", dropped.get(0));
+        assertEquals(1, scheduler.getSources().size());
+        assertEquals(0, scheduler.getWindow("a"));
+    }
+
+    @Test
+    public void testShortResponseRequeuesRemainder() {
+        scheduler.addSource("a");
+
+        Request<String> first = scheduler.schedule(0).get(0);
+
+        assertNotNull(scheduler.received(first.queryID, 0, 40, false, 10));
+        assertEquals(40, scheduler.getBytesReceived());
+
+        Request<String> rest = scheduler.schedule(10).get(0);
+
+        assertEquals(40, rest.offset);
+        assertEquals(60, rest.length);
+    }
+
+    @Test
+    public void testEndGameAndCompletion() {
+        scheduler.addSource("a");
+        scheduler.addSource("b");
+
+        List<Request<String>> requests = scheduler.schedule(0);
+
+        // The content ends part way through the second chunk.
+        Request<String> second = requests.get(1);
+
+        assertEquals(CHUNK, second.offset);
+        assertNotNull(scheduler.received(second.queryID, CHUNK, 30, true, 10));
+        assertEquals(CHUNK + 30, scheduler.getEOFOffset());
+        assertTrue(scheduler.isEndGame());
+        assertFalse(scheduler.isComplete());
+
+        // Responses beyond the end are no longer expected.
+        assertNull(scheduler.received(requests.get(2).queryID, 2 * CHUNK, 0, true, 10));
+
+        // The first chunk is still with "a", so "b" is asked for it as well.
+        List<Request<String>> duplicates = scheduler.schedule(10);
+
+        assertEquals(1, duplicates.size());
+        assertEquals("b", duplicates.get(0).source);
+        assertEquals(0, duplicates.get(0).offset);
+
+        assertNotNull(scheduler.received(duplicates.get(0).queryID, 0, CHUNK, false, 20));
+        assertNull(scheduler.received(requests.get(0).queryID, 0, CHUNK, false, 30));
+
+        assertTrue(scheduler.isComplete());
+        assertEquals(CHUNK + 30, scheduler.getBytesReceived());
+        assertTrue(scheduler.schedule(30).isEmpty());
+    }
+
+    @Test
+    public void testResumeSkipsHeldRanges() {
+        scheduler.addSource("a");
+        scheduler.setLength(5 * CHUNK);
+        scheduler.skip(0, CHUNK);
+        scheduler.skip(2 * CHUNK + 50, CHUNK);
+
+        assertEquals(2 * CHUNK, scheduler.getBytesReceived());
+
+        List<Request<String>> requests = scheduler.schedule(0);
+
+        assertEquals(2, requests.size());
+        assertEquals(CHUNK, requests.get(0).offset);
+        assertEquals(CHUNK, requests.get(0).length);
+        assertEquals(2 * CHUNK, requests.get(1).offset);
+        assertEquals(50, requests.get(1).length);
+
+        for (Request<String> request : requests) {
+            assertNotNull(scheduler.received(request.queryID, request.offset, request.length, false, 10));
+        }
+
+        // The remainder up to the known length, then a corrupt block again.
+        requests = scheduler.schedule(10);
+
+        assertEquals(2, requests.size());
+        assertEquals(3 * CHUNK + 50, requests.get(0).offset);
+        assertEquals(4 * CHUNK + 50, requests.get(1).offset);
+        assertEquals(50, requests.get(1).length);
+
+        for (Request<String> request : requests) {
+            assertNotNull(scheduler.received(request.queryID, request.offset, request.length, false, 20));
+        }
+
+        assertTrue(scheduler.isComplete());
+        assertTrue(scheduler.schedule(20).isEmpty());
+
+        scheduler.reschedule(CHUNK, CHUNK);
+        assertFalse(scheduler.isComplete());
+
+        Request<String> retry = scheduler.schedule(20).get(0);
+
+        assertEquals(CHUNK, retry.offset);
+        assertNotNull(scheduler.received(retry.queryID, retry.offset, retry.length, false, 30));
+        assertTrue(scheduler.isComplete());
+        assertEquals(5 * CHUNK, scheduler.getBytesReceived());
+    }
+}
@@ -0,0 +1,125 @@
+package net.jxta.impl.discovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.jxta.discovery.DiscoveryEvent;
+import net.jxta.discovery.DiscoveryService;
+import net.jxta.endpoint.EndpointAddress;
+import net.jxta.impl.protocol.DiscoveryResponse;
+import net.jxta.impl.util.FakeSystemClock;
+import net.jxta.impl.util.TimeUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RemoteQueryCacheTest {
+
+    private FakeSystemClock clock;
+    private RemoteQueryCache cache;
+
+    @Before
+    public void setUp() {
+        clock = new FakeSystemClock();
+        clock.currentTime = 100000L;
+        TimeUtils.setClock(clock);
+
+        cache = new RemoteQueryCache(1000, 2);
+    }
+
+    @After
+    public void tearDown() {
+        TimeUtils.resetClock();
+    }
+
+    private static DiscoveryEvent responseTo(int queryId) {
+        return new DiscoveryEvent(new EndpointAddress("tcp://127.0.0.1:9701"), new DiscoveryResponse(), queryId);
+    }
+
+    @Test
+    public void testIdenticalQueriesAreCoalesced() {
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1));
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDifferentQueriesAreNotCoalesced() {
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1));
+        assertEquals(2, cache.coalesce(null, DiscoveryService.ADV, "Name", "other", 10, 2));
+        assertEquals(3, cache.coalesce(null, DiscoveryService.PEER, "Name", "pipe", 10, 3));
+        assertEquals(4, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 5, 4));
+        assertEquals(5, cache.coalesce("urn:jxta:peer", DiscoveryService.ADV, "Name", "pipe", 10, 5));
+        assertEquals(6, cache.coalesce(null, DiscoveryService.ADV, null, null, 10, 6));
+        assertEquals(6, cache.coalesce(null, DiscoveryService.ADV, null, null, 10, 7));
+    }
+
+    @Test
+    public void testQueriesExpire() {
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1));
+
+        clock.currentTime += 999;
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 2));
+
+        clock.currentTime += 1;
+        assertEquals(3, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 3));
+        assertEquals(1, cache.size());
+        assertTrue(cache.getResponses(1).isEmpty());
+    }
+
+    @Test
+    public void testResponsesAreRememberedWhileCoalescing() {
+        cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1);
+
+        DiscoveryEvent first = responseTo(1);
+        DiscoveryEvent second = responseTo(1);
+
+        cache.addResponse(first);
+        cache.addResponse(second);
+        cache.addResponse(responseTo(1));
+        cache.addResponse(responseTo(7));
+
+        assertEquals(2, cache.getResponses(1).size());
+        assertSame(first, cache.getResponses(1).get(0));
+        assertSame(second, cache.getResponses(1).get(1));
+        assertTrue(cache.getResponses(7).isEmpty());
+    }
+
+    @Test
+    public void testExpiredResponsesAreForgotten() {
+        cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1);
+        cache.addResponse(responseTo(1));
+
+        clock.currentTime += 1000;
+        cache.expire();
+
+        assertEquals(0, cache.size());
+        assertTrue(cache.getResponses(1).isEmpty());
+
+        // A response recorded after the window does not keep the query alive.
+        cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 2);
+        clock.currentTime += 1000;
+        cache.addResponse(responseTo(2));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testZeroTimeToLiveDisablesCoalescing() {
+        cache = new RemoteQueryCache(0, 2);
+
+        assertEquals(1, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1));
+        assertEquals(2, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClear() {
+        cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 1);
+        cache.clear();
+
+        assertEquals(2, cache.coalesce(null, DiscoveryService.ADV, "Name", "pipe", 10, 2));
+    }
+}
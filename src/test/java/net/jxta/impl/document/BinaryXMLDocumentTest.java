@@ -0,0 +1,162 @@
+package net.jxta.impl.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.document.Attribute;
+import net.jxta.document.MimeMediaType;
+import net.jxta.document.StructuredDocumentFactory;
+import net.jxta.document.XMLDocument;
+import net.jxta.document.XMLElement;
+import net.jxta.id.IDFactory;
+import net.jxta.impl.protocol.ResolverQuery;
+import net.jxta.peer.PeerID;
+import net.jxta.peergroup.PeerGroupID;
+import net.jxta.protocol.AccessPointAdvertisement;
+import net.jxta.protocol.RouteAdvertisement;
+
+import org.junit.Test;
+
+public class BinaryXMLDocumentTest {
+
+    private static byte[] encode(XMLDocument doc) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        doc.sendToStream(bos);
+
+        return bos.toByteArray();
+    }
+
+    private static XMLDocument decode(byte[] data) throws IOException {
+        return (XMLDocument) StructuredDocumentFactory.newStructuredDocument(BinaryXMLDocument.MIME_TYPE, new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        XMLDocument doc = (XMLDocument) StructuredDocumentFactory.newStructuredDocument(BinaryXMLDocument.MIME_TYPE, "jxta:Test");
+
+        doc.addAttribute("xmlns:jxta", "http://jxta.org");
+
+        XMLElement first = doc.createElement("Item", "one < two & été");
+
+        doc.appendChild(first);
+        first.addAttribute("type", "a");
+        first.addAttribute("other", "b");
+        first.appendChild(doc.createElement("Item", "nested"));
+        doc.appendChild(doc.createElement("Empty"));
+        doc.appendChild(doc.createElement("Item", "three"));
+
+        XMLDocument copy = decode(encode(doc));
+
+        assertEquals("jxta:Test", copy.getName());
+        assertEquals("http://jxta.org", copy.getAttribute("xmlns:jxta").getValue());
+
+        List<XMLElement> children = Collections.list((Enumeration<XMLElement>) copy.getChildren());
+
+        assertEquals(3, children.size());
+        assertEquals("one < two & été", children.get(0).getTextValue());
+        assertEquals("a", children.get(0).getAttribute("type").getValue());
+
+        List<Attribute> attributes = Collections.list(children.get(0).getAttributes());
+
+        assertEquals(2, attributes.size());
+        assertEquals("type", attributes.get(0).getName());
+        assertEquals("other", attributes.get(1).getName());
+        assertEquals("nested", ((XMLElement) children.get(0).getChildren("Item").nextElement()).getTextValue());
+        assertEquals("Empty", children.get(1).getName());
+        assertNull(children.get(1).getTextValue());
+        assertEquals(2, Collections.list(copy.getChildren("Item")).size());
+
+        // the text form is XML
+        XMLDocument asXML = (XMLDocument) StructuredDocumentFactory.newStructuredDocument(MimeMediaType.XMLUTF8, copy.getReader());
+
+        assertEquals("three", ((XMLElement) Collections.list(asXML.getChildren("Item")).get(1)).getTextValue());
+    }
+
+    @Test
+    public void testResolverQueryRoundTrip() throws Exception {
+        PeerID peer = IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID);
+        AccessPointAdvertisement ap = (AccessPointAdvertisement) AdvertisementFactory.newAdvertisement(AccessPointAdvertisement.getAdvertisementType());
+
+        ap.setPeerID(peer);
+        ap.addEndpointAddress("tcp://192.168.1.2:9701");
+        ap.addEndpointAddress("http://192.168.1.2:9700");
+
+        RouteAdvertisement route = (RouteAdvertisement) AdvertisementFactory.newAdvertisement(RouteAdvertisement.getAdvertisementType());
+
+        route.setDest(ap);
+
+        ResolverQuery query = new ResolverQuery();
+
+        query.setHandlerName("urn:jxta:uuid-DEADBEEFDEAFBABAFEEDBABE0000000305");
+        query.setQueryId(42);
+        query.setSrcPeer(peer);
+        query.setSrcPeerRoute(route);
+        query.setQuery("<?xml version=\"1.0\"?><jxta:DiscoveryQuery><Type>2</Type></jxta:DiscoveryQuery>");
+
+        byte[] binary = encode((XMLDocument) query.getDocument(BinaryXMLDocument.MIME_TYPE));
+        byte[] xml = encode((XMLDocument) query.getDocument(MimeMediaType.XMLUTF8));
+
+        assertTrue("binary " + binary.length + " xml " + xml.length, binary.length < xml.length);
+
+        ResolverQuery copy = new ResolverQuery(decode(binary));
+
+        assertEquals(query.getHandlerName(), copy.getHandlerName());
+        assertEquals(42, copy.getQueryId());
+        assertEquals(peer, copy.getSrcPeer());
+        assertEquals(query.getQuery(), copy.getQuery());
+        assertEquals(peer, copy.getSrcPeerRoute().getDestPeerID());
+        assertEquals(2, Collections.list(copy.getSrcPeerRoute().getDest().getEndpointAddresses()).size());
+    }
+
+    @Test
+    public void testMalformedDocumentsAreRejected() throws Exception {
+        XMLDocument doc = (XMLDocument) StructuredDocumentFactory.newStructuredDocument(BinaryXMLDocument.MIME_TYPE, "Root", "value");
+
+        doc.appendChild(doc.createElement("Child", "child value"));
+
+        byte[] data = encode(doc);
+
+        for (int length = 0; length < data.length; length++) {
+            byte[] truncated = new byte[length];
+
+            System.arraycopy(data, 0, truncated, 0, length);
+
+            try {
+                decode(truncated);
+                fail("Truncated document of length " + length + " was accepted");
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+
+        byte[] undefinedName = data.clone();
+
+        // the root name is the first name, any index other than zero is undefined.
+        undefinedName[4] = 5;
+
+        try {
+            decode(undefinedName);
+            fail("Undefined name was accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        try {
+            decode("<?xml version=\"1.0\"?><Root/>".getBytes("UTF-8"));
+            fail("XML was accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.jxta.impl.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import net.jxta.document.MimeMediaType;
+
+import org.junit.Test;
+
+public class LiteXMLDocumentTest {
+
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private static final String NESTED = PROLOG
+            + "<jxta:PA xmlns:jxta=\"http://jxta.org\">\n"
+            + "  <PID>urn:jxta:uuid-59616261646162614A78746150325033</PID>\n"
+            + "  <Svc>\n"
+            + "    <MCID>one</MCID>\n"
+            + "    <Parm><Addr>tcp://1.2.3.4:9701</Addr><Addr>http://5.6.7.8:9700</Addr></Parm>\n"
+            + "  </Svc>\n"
+            + "  <Svc>\n"
+            + "    <MCID>two</MCID>\n"
+            + "    <Parm type='x y'/>\n"
+            + "  </Svc>\n"
+            + "  <Name>peer &lt;one&gt;</Name>\n"
+            + "</jxta:PA>\n";
+
+    private static LiteXMLDocument parse(String xml) throws Exception {
+        return (LiteXMLDocument) LiteXMLDocument.INSTANTIATOR.newInstance(MimeMediaType.XMLUTF8, new StringReader(xml));
+    }
+
+    private static List<LiteXMLElement> children(LiteXMLElement element) {
+        return Collections.list(element.getChildren());
+    }
+
+    @Test
+    public void testScannedTree() throws Exception {
+        LiteXMLDocument doc = parse(NESTED);
+
+        assertEquals("jxta:PA", doc.getName());
+
+        List<LiteXMLElement> top = children(doc);
+
+        assertEquals(4, top.size());
+        assertEquals("PID", top.get(0).getName());
+        assertEquals("urn:jxta:uuid-59616261646162614A78746150325033", top.get(0).getTextValue());
+        assertEquals("Name", top.get(3).getName());
+        assertEquals("peer <one>", top.get(3).getTextValue());
+        assertSame(doc, top.get(0).getParent());
+
+        assertEquals(2, Collections.list(doc.getChildren("Svc")).size());
+
+        List<LiteXMLElement> addrs = Collections.list(children(top.get(1)).get(1).getChildren("Addr"));
+
+        assertEquals(2, addrs.size());
+        assertEquals("http://5.6.7.8:9700", addrs.get(1).getTextValue());
+
+        LiteXMLElement emptyParm = children(top.get(2)).get(1);
+
+        assertEquals("Parm", emptyParm.getName());
+        assertEquals("x y", emptyParm.getAttribute("type").getValue());
+        assertFalse(emptyParm.getChildren().hasMoreElements());
+
+        // names of the same tag are shared.
+        assertSame(top.get(1).getName(), top.get(2).getName());
+        assertSame(children(top.get(1)).get(1).getName(), emptyParm.getName());
+    }
+
+    @Test
+    public void testUnscannableDocumentsAreParsed() throws Exception {
+        LiteXMLDocument doc = parse(PROLOG + "<a><c>text</c><d/><!-- <b>not an element</b> --></a>");
+        List<LiteXMLElement> top = children(doc);
+
+        assertEquals(2, top.size());
+        assertEquals("c", top.get(0).getName());
+        assertEquals("text", top.get(0).getTextValue());
+        assertEquals("d", top.get(1).getName());
+    }
+
+    @Test
+    public void testChildrenAreCreatedOnce() throws Exception {
+        LiteXMLDocument doc = parse(NESTED);
+        LiteXMLElement svc = children(doc).get(1);
+
+        assertSame(children(svc).get(0), children(svc).get(0));
+        assertSame(children(svc).get(0), svc.getChildren("MCID").nextElement());
+    }
+
+    @Test
+    public void testModifyBeforeChildrenAreCreated() throws Exception {
+        LiteXMLDocument doc = parse(NESTED);
+        LiteXMLElement pid = children(doc).get(0);
+
+        // lengthens the start tag of an element which precedes elements not yet created.
+        pid.addAttribute("type", "jxta:PID");
+        doc.appendChild(doc.createElement("Desc", "added"));
+
+        LiteXMLElement parm = children(children(doc).get(1)).get(1);
+        List<LiteXMLElement> addrs = children(parm);
+
+        assertEquals(2, addrs.size());
+        assertEquals("tcp://1.2.3.4:9701", addrs.get(0).getTextValue());
+        assertEquals("jxta:PID", pid.getAttribute("type").getValue());
+        assertEquals("added", children(doc).get(4).getTextValue());
+
+        assertTrue(doc.checkConsistency());
+
+        LiteXMLDocument reparsed = parse(doc.toString());
+
+        assertEquals(5, children(reparsed).size());
+        assertEquals("http://5.6.7.8:9700", children(children(children(reparsed).get(1)).get(1)).get(1).getTextValue());
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final LiteXMLDocument doc = parse(NESTED);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<LiteXMLElement> seen = Collections.synchronizedList(new ArrayList<LiteXMLElement>());
+        List<Thread> readers = new ArrayList<Thread>();
+
+        for (int eachReader = 0; eachReader < 8; eachReader++) {
+            Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException woken) {
+                        return;
+                    }
+
+                    Enumeration<LiteXMLElement> svcs = doc.getChildren("Svc");
+
+                    seen.add(children(svcs.nextElement()).get(1));
+                }
+            };
+
+            reader.start();
+            readers.add(reader);
+        }
+
+        start.countDown();
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals(8, seen.size());
+
+        for (LiteXMLElement each : seen) {
+            assertNotNull(each);
+            assertSame(seen.get(0), each);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.jxta.impl.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.jxta.endpoint.EndpointAddress;
+import net.jxta.endpoint.EndpointListener;
+import net.jxta.endpoint.Message;
+import net.jxta.impl.endpoint.IncomingListenerRegistry.ListenerKey;
+
+import org.junit.Test;
+
+public class IncomingListenerRegistryTest {
+
+    private static class NullListener implements EndpointListener {
+        public void processIncomingMessage(Message message, EndpointAddress srcAddr, EndpointAddress dstAddr) {
+        }
+    }
+
+    @Test
+    public void testKeysMatchTheirAddress() {
+        String[][] parts = {
+            {"svc", null, null, "svc"},
+            {"svc", "param", null, "svc/param"},
+            {"group", "svc", "param", "group/svc/param"},
+            {null, "svc", "param", "svc/param"},
+            {"group", null, "param", "group/param"},
+            {"", "", "", "//"}
+        };
+
+        for (String[] each : parts) {
+            ListenerKey key = new ListenerKey(each[0], each[1], each[2]);
+
+            assertEquals(each[3], key.toString());
+            assertEquals(key.toString(), key.toString().hashCode(), key.hashCode());
+            assertEquals(key.toString().length(), key.length());
+
+            for (int eachChar = 0; eachChar < key.length(); eachChar++) {
+                assertEquals(key.toString().charAt(eachChar), key.charAt(eachChar));
+            }
+        }
+    }
+
+    @Test
+    public void testKeysAreEqualRegardlessOfParts() {
+        ListenerKey registered = new ListenerKey("EndpointService:group", "svc/param");
+        ListenerKey lookup = new ListenerKey("EndpointService:group", "svc", "param");
+
+        assertEquals(registered, lookup);
+        assertEquals(lookup, registered);
+        assertEquals(registered.hashCode(), lookup.hashCode());
+
+        assertFalse(new ListenerKey("svc", "param").equals(new ListenerKey("svc", "parab")));
+        assertFalse(new ListenerKey("svc", "param").equals(new ListenerKey("svcparam", null)));
+    }
+
+    @Test
+    public void testRegistration() {
+        IncomingListenerRegistry registry = new IncomingListenerRegistry();
+        EndpointListener first = new NullListener();
+        EndpointListener second = new NullListener();
+
+        assertTrue(registry.add(new ListenerKey("svc", "param"), first));
+        assertFalse(registry.add(new ListenerKey("svc", "param"), second));
+        assertTrue(registry.add(new ListenerKey("svc", null), second));
+
+        assertSame(first, registry.get(new ListenerKey(null, "svc", "param")));
+        assertSame(second, registry.get(new ListenerKey("svc", null)));
+        assertNull(registry.get(new ListenerKey("svc", "other")));
+
+        assertSame(first, registry.remove(new ListenerKey("svc", "param")));
+        assertNull(registry.remove(new ListenerKey("svc", "param")));
+        assertNull(registry.get(new ListenerKey("svc", "param")));
+
+        registry.clear();
+
+        assertNull(registry.get(new ListenerKey("svc", null)));
+    }
+}
@@ -0,0 +1,125 @@
+package net.jxta.impl.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import net.jxta.document.MimeMediaType;
+import net.jxta.endpoint.ByteArrayMessageElement;
+import net.jxta.endpoint.Message;
+import net.jxta.endpoint.MessageElement;
+import net.jxta.endpoint.StringMessageElement;
+import net.jxta.endpoint.WireFormatMessage;
+import net.jxta.endpoint.WireFormatMessageFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WireFormatMessageBinaryTest {
+
+    private static final MimeMediaType TYPE = WireFormatMessageFactory.DEFAULT_WIRE_MIME;
+
+    private WireFormatMessageBinary.Instantiator instantiator;
+    private Message message;
+
+    @Before
+    public void setUp() {
+        instantiator = new WireFormatMessageBinary.Instantiator();
+
+        message = new Message();
+        message.addMessageElement("ns", new StringMessageElement("text", "hello world", null));
+        message.addMessageElement("ns", new ByteArrayMessageElement("bytes", MimeMediaType.AOS, new byte[] { 1, 2, 3, 4, 5 }, null));
+
+        Message inner = new Message();
+        inner.addMessageElement("inner", new StringMessageElement("innerText", "nested", null));
+        message.addMessageElement("ns", new JxtaMessageMessageElement("sub", TYPE, inner, null));
+    }
+
+    @Test
+    public void testSharedBufferDecodeMatchesCopyingDecode() throws Exception {
+        ByteBuffer serialized = serialize(message);
+
+        Message copied = instantiator.fromBufferExternal(serialized.duplicate(), TYPE, null, true, null, false, false);
+        Message shared = instantiator.fromBufferExternal(serialized.duplicate(), TYPE, null, true, null, false, true);
+
+        assertEquals(copied.getMessageElement("ns", "text"), shared.getMessageElement("ns", "text"));
+        assertEquals(copied.getMessageElement("ns", "bytes"), shared.getMessageElement("ns", "bytes"));
+        assertEquals("hello world", shared.getMessageElement("ns", "text").toString());
+
+        MessageElement sub = shared.getMessageElement("ns", "sub");
+        assertTrue(sub instanceof JxtaMessageMessageElement);
+        assertNotNull(((JxtaMessageMessageElement) sub).getMessage().getMessageElement("inner", "innerText"));
+    }
+
+    @Test
+    public void testSharedBufferElementsViewReceivedBuffer() throws Exception {
+        ByteBuffer serialized = serialize(message);
+        Message shared = instantiator.fromBufferExternal(serialized.duplicate(), TYPE, null, true, null, false, true);
+
+        MessageElement bytes = shared.getMessageElement("ns", "bytes");
+        assertTrue(bytes instanceof ByteBufferMessageElement);
+
+        ByteBuffer view = ((ByteBufferMessageElement) bytes).getByteBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(5, view.remaining());
+
+        // the element is a view of the received bytes, not a copy.
+        int offset = indexOf(serialized, new byte[] { 1, 2, 3, 4, 5 });
+        serialized.put(offset, (byte) 9);
+        assertEquals(9, bytes.getStream().read());
+    }
+
+    @Test
+    public void testSharedBufferMessageReserializes() throws Exception {
+        ByteBuffer serialized = serialize(message);
+        Message shared = instantiator.fromBufferExternal(serialized.duplicate(), TYPE, null, true, null, false, true);
+
+        ByteBuffer reserialized = serialize(shared);
+        assertEquals(serialized, reserialized);
+
+        WireFormatMessage wire = instantiator.toWireExternal(shared, TYPE, null, true, null);
+        ByteBuffer[] parts = wire.getByteBuffers();
+        ByteBuffer gathered = ByteBuffer.allocate((int) wire.getByteLength());
+        for (ByteBuffer part : parts) {
+            gathered.put(part);
+        }
+        gathered.flip();
+        assertEquals(serialized, gathered);
+    }
+
+    @Test
+    public void testByteBufferElementEqualsByteArrayElement() {
+        byte[] data = { 10, 20, 30 };
+        ByteArrayMessageElement byteArray = new ByteArrayMessageElement("el", null, data, null);
+        ByteBufferMessageElement byteBuffer = new ByteBufferMessageElement("el", null, ByteBuffer.wrap(data), null);
+
+        assertTrue(byteBuffer.equals(byteArray));
+        assertTrue(byteArray.equals(byteBuffer));
+        assertEquals(byteArray.hashCode(), byteBuffer.hashCode());
+        assertFalse(byteBuffer.equals(new ByteBufferMessageElement("el", null, ByteBuffer.wrap(new byte[] { 10, 20 }), null)));
+    }
+
+    private ByteBuffer serialize(Message msg) throws Exception {
+        WireFormatMessage wire = instantiator.toWireExternal(msg, TYPE, null, true, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wire.sendToStream(out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private int indexOf(ByteBuffer buffer, byte[] pattern) {
+        for (int i = 0; i <= buffer.limit() - pattern.length; i++) {
+            boolean found = true;
+            for (int j = 0; j < pattern.length && found; j++) {
+                found = buffer.get(i + j) == pattern[j];
+            }
+            if (found) {
+                return i;
+            }
+        }
+        throw new AssertionError("pattern not found");
+    }
+}
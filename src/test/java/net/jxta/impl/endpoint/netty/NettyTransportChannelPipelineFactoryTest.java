@@ -0,0 +1,77 @@
+package net.jxta.impl.endpoint.netty;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLContext;
+
+import net.jxta.endpoint.EndpointAddress;
+import net.jxta.peer.PeerID;
+
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NettyTransportChannelPipelineFactoryTest {
+
+    private static final PeerID LOCAL_PEER_ID = PeerID.create(URI.create("urn:jxta:uuid-59616261646162614E5047205032503304F8E1DEBB4942C0BF16DD923DEC949803"));
+    private static final EndpointAddress REMOTE_ENDPOINT_ADDR = new EndpointAddress("test", "remoteaddr:54321", null, null);
+    private static final EndpointAddress RETURN_ENDPOINT_ADDR = new EndpointAddress("test", "10.1.1.1:12345", null, null);
+
+    private SSLContext sslContext;
+
+    @Before
+    public void setUp() throws Exception {
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, null, null);
+    }
+
+    @Test
+    public void testNoSslHandlerWithoutContext() throws Exception {
+        ChannelPipeline pipeline = createFactory(REMOTE_ENDPOINT_ADDR, null).getPipeline();
+
+        assertNull(pipeline.get(NettyTransportChannelPipelineFactory.SSL_HANDLER_NAME));
+        assertNull(pipeline.get(TlsHandshakeHandler.NAME));
+        assertNotNull(pipeline.get(JxtaProtocolHandler.NAME));
+    }
+
+    @Test
+    public void testOutgoingConnectionIsTlsClient() throws Exception {
+        ChannelPipeline pipeline = createFactory(REMOTE_ENDPOINT_ADDR, sslContext).getPipeline();
+
+        SslHandler sslHandler = (SslHandler) pipeline.get(NettyTransportChannelPipelineFactory.SSL_HANDLER_NAME);
+        assertNotNull(sslHandler);
+        assertTrue(sslHandler.getEngine().getUseClientMode());
+        assertNotNull(pipeline.get(TlsHandshakeHandler.NAME));
+    }
+
+    @Test
+    public void testAcceptedConnectionIsTlsServer() throws Exception {
+        ChannelPipeline pipeline = createFactory(null, sslContext).getPipeline();
+
+        SslHandler sslHandler = (SslHandler) pipeline.get(NettyTransportChannelPipelineFactory.SSL_HANDLER_NAME);
+        assertNotNull(sslHandler);
+        assertFalse(sslHandler.getEngine().getUseClientMode());
+    }
+
+    @Test
+    public void testSslHandlerPrecedesProtocolHandler() throws Exception {
+        ChannelPipeline pipeline = createFactory(REMOTE_ENDPOINT_ADDR, sslContext).getPipeline();
+
+        assertEquals(ConnectionRejector.class, pipeline.getFirst().getClass());
+        assertEquals(MessageDispatchHandler.class, pipeline.getLast().getClass());
+
+        List<String> names = new ArrayList<String>(pipeline.toMap().keySet());
+        assertTrue(names.indexOf(NettyTransportChannelPipelineFactory.SSL_HANDLER_NAME) < names.indexOf(TlsHandshakeHandler.NAME));
+        assertTrue(names.indexOf(TlsHandshakeHandler.NAME) < names.indexOf(JxtaProtocolHandler.NAME));
+    }
+
+    private NettyTransportChannelPipelineFactory createFactory(EndpointAddress remoteAddress, SSLContext context) {
+        return new NettyTransportChannelPipelineFactory(null, LOCAL_PEER_ID, new FakeTimer(), null, new InetSocketAddressTranslator("test"), new AtomicBoolean(true), remoteAddress, RETURN_ENDPOINT_ADDR, context);
+    }
+}
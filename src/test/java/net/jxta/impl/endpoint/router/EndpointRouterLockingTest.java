@@ -0,0 +1,311 @@
+package net.jxta.impl.endpoint.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jxta.document.AdvertisementFactory;
+import net.jxta.endpoint.EndpointAddress;
+import net.jxta.endpoint.Message;
+import net.jxta.endpoint.Messenger;
+import net.jxta.endpoint.MessengerEvent;
+import net.jxta.id.ID;
+import net.jxta.id.IDFactory;
+import net.jxta.impl.endpoint.BlockingMessenger;
+import net.jxta.impl.endpoint.netty.FakePeerGroup;
+import net.jxta.impl.util.threads.TaskManager;
+import net.jxta.peer.PeerID;
+import net.jxta.peergroup.PeerGroupID;
+import net.jxta.protocol.AccessPointAdvertisement;
+import net.jxta.protocol.RouteAdvertisement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EndpointRouterLockingTest {
+
+    /**
+     * Well below {@link EndpointRouter#ASYNC_MESSENGER_WAIT}, so a waiter
+     * which returns within it was woken rather than timed out.
+     */
+    private static final long WAKEUP_TIMEOUT = EndpointRouter.ASYNC_MESSENGER_WAIT / 2;
+
+    private TaskManager taskManager;
+    private ExecutorService threads;
+    private TestRouteCM routeCM;
+    private RouteResolver routeResolver;
+    private Destinations destinations;
+    private TestEndpointRouter router;
+
+    private PeerID dest;
+    private PeerID hop;
+
+    private class TestPeerGroup extends FakePeerGroup {
+
+        @Override
+        public boolean isRendezvous() {
+            return false;
+        }
+
+        @Override
+        public TaskManager getTaskManager() {
+            return taskManager;
+        }
+    }
+
+    /**
+     * Serves route advertisements from a map instead of the discovery cache.
+     */
+    private static class TestRouteCM extends RouteCM {
+
+        final ConcurrentMap<ID, RouteAdvertisement> routes = new ConcurrentHashMap<ID, RouteAdvertisement>();
+
+        @Override
+        protected Collection<RouteAdvertisement> getRouteAdv(ID peerID) {
+            RouteAdvertisement route = routes.get(peerID);
+
+            return (route == null) ? Collections.<RouteAdvertisement>emptyList() : Collections.singletonList(route);
+        }
+
+        @Override
+        protected void createRoute(RouteAdvertisement route) {
+        }
+    }
+
+    /**
+     * Holds the attempts to reach a destination until released.
+     */
+    private static class TestEndpointRouter extends EndpointRouter {
+
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        TestEndpointRouter(FakePeerGroup group, Destinations destinations, RouteCM routeCM, RouteResolver routeResolver) {
+            super(group, destinations, routeCM, routeResolver);
+        }
+
+        @Override
+        Messenger findBestReachableEndpoint(EndpointAddress dest, List<EndpointAddress> mightWork, boolean exist) {
+            attempts.incrementAndGet();
+
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException woken) {
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+        }
+    }
+
+    private static class TestMessenger extends BlockingMessenger {
+
+        private final EndpointAddress logicalDest;
+
+        TestMessenger(EndpointAddress logicalDest, TaskManager taskManager) {
+            super(PeerGroupID.defaultNetPeerGroupID, logicalDest, taskManager, false);
+            this.logicalDest = logicalDest;
+        }
+
+        @Override
+        protected void closeImpl() {
+        }
+
+        @Override
+        protected void sendMessageBImpl(Message message, String service, String param) throws IOException {
+        }
+
+        @Override
+        protected boolean isIdleImpl() {
+            return false;
+        }
+
+        @Override
+        protected EndpointAddress getLogicalDestinationImpl() {
+            return logicalDest;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager();
+        threads = Executors.newCachedThreadPool();
+
+        FakePeerGroup group = new TestPeerGroup();
+
+        routeCM = new TestRouteCM();
+        routeResolver = new RouteResolver(null) {
+            @Override
+            protected void findRoute(EndpointAddress peer) {
+            }
+        };
+        destinations = new Destinations(group.getEndpointService());
+        router = new TestEndpointRouter(group, destinations, routeCM, routeResolver);
+
+        dest = IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID);
+
+        // The hop must not share the lock of the destination, or waking the
+        // hop's waiters would also wake those of the destination.
+        do {
+            hop = IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID);
+        } while (router.getDestinationLock(hop) == router.getDestinationLock(dest));
+    }
+
+    @After
+    public void tearDown() {
+        router.release.countDown();
+        threads.shutdownNow();
+        taskManager.shutdown();
+    }
+
+    private static AccessPointAdvertisement newAccessPoint(PeerID peer) {
+        AccessPointAdvertisement ap = (AccessPointAdvertisement)
+                AdvertisementFactory.newAdvertisement(AccessPointAdvertisement.getAdvertisementType());
+
+        ap.setPeerID(peer);
+        return ap;
+    }
+
+    private RouteAdvertisement newRoute(PeerID destination, PeerID... hops) {
+        RouteAdvertisement route = (RouteAdvertisement)
+                AdvertisementFactory.newAdvertisement(RouteAdvertisement.getAdvertisementType());
+        Vector<AccessPointAdvertisement> hopAps = new Vector<AccessPointAdvertisement>();
+
+        for (PeerID each : hops) {
+            hopAps.add(newAccessPoint(each));
+        }
+        route.setDest(newAccessPoint(destination));
+        route.setHops(hopAps);
+        return route;
+    }
+
+    /**
+     * Starts a thread looking for the gateway to the destination and returns
+     * once it waits for the route to change.
+     */
+    private Future<EndpointAddress> startWaiter() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Thread[] waiter = new Thread[1];
+
+        Future<EndpointAddress> result = threads.submit(new Callable<EndpointAddress>() {
+            public EndpointAddress call() {
+                waiter[0] = Thread.currentThread();
+                started.countDown();
+                return router.getGatewayAddress(EndpointRouter.pid2addr(dest), true, null);
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        long giveUpAt = System.currentTimeMillis() + 5000;
+
+        while (waiter[0].getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("waiter did not wait", System.currentTimeMillis() < giveUpAt);
+            Thread.sleep(10);
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testOneCallerClaimsEachAttempt() throws Exception {
+        final int rounds = 50;
+        final int callers = 32;
+        List<Future<Messenger>> results = new ArrayList<Future<Messenger>>();
+
+        // Each round races the callers for a new destination.
+        for (int round = 1; round <= rounds; round++) {
+            final PeerID target = IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID);
+            final RouteAdvertisement hint = newRoute(target);
+            final CyclicBarrier go = new CyclicBarrier(callers);
+            List<Future<Messenger>> roundResults = new ArrayList<Future<Messenger>>();
+
+            // Give the callers an address to attempt.
+            hint.getDest().addEndpointAddress(new EndpointAddress("tcp://127.0.0.1:9701"));
+
+            for (int each = 0; each < callers; each++) {
+                roundResults.add(threads.submit(new Callable<Messenger>() {
+                    public Messenger call() throws Exception {
+                        go.await();
+                        return router.findReachableEndpoint(EndpointRouter.pid2addr(target), false, hint);
+                    }
+                }));
+            }
+
+            // Everyone but the caller which claimed the attempt gives up at once.
+            long giveUpAt = System.currentTimeMillis() + 5000;
+            int finished;
+
+            do {
+                Thread.sleep(5);
+                finished = 0;
+                for (Future<Messenger> result : roundResults) {
+                    if (result.isDone()) {
+                        finished++;
+                    }
+                }
+            } while ((finished < callers - 1) && (System.currentTimeMillis() < giveUpAt));
+
+            assertEquals(callers - 1, finished);
+            assertEquals(round, router.attempts.get());
+
+            results.addAll(roundResults);
+        }
+
+        router.release.countDown();
+
+        for (Future<Messenger> result : results) {
+            assertNull(result.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(rounds, router.attempts.get());
+    }
+
+    @Test
+    public void testSetRouteWakesWaiter() throws Exception {
+        Messenger hopMessenger = new TestMessenger(EndpointRouter.pid2addr(hop), taskManager);
+
+        destinations.addOutgoingMessenger(EndpointRouter.pid2addr(hop), hopMessenger);
+
+        Future<EndpointAddress> result = startWaiter();
+
+        assertTrue(router.setRoute(newRoute(dest, hop), true));
+
+        assertEquals(EndpointRouter.pid2addr(hop), result.get(WAKEUP_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testHopMessengerWakesWaiter() throws Exception {
+        // Another sender already has a route query in flight, so the waiter
+        // keeps looking for a route through the hops it knows.
+        routeResolver.getQueryCache().shouldQuery(dest);
+        routeCM.routes.put(dest, newRoute(dest, hop));
+
+        Future<EndpointAddress> result = startWaiter();
+
+        Messenger hopMessenger = new TestMessenger(EndpointRouter.pid2addr(hop), taskManager);
+
+        router.newMessenger(new MessengerEvent(this, hopMessenger, null));
+
+        assertEquals(EndpointRouter.pid2addr(hop), result.get(WAKEUP_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+}
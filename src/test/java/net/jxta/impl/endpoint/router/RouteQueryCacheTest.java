@@ -0,0 +1,127 @@
+package net.jxta.impl.endpoint.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.jxta.id.IDFactory;
+import net.jxta.impl.util.TimeUtils;
+import net.jxta.peer.PeerID;
+import net.jxta.peergroup.PeerGroupID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RouteQueryCacheTest {
+
+    private RouteQueryCache cache;
+    private PeerID peer;
+
+    @Before
+    public void setUp() {
+        cache = new RouteQueryCache();
+        peer = IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID);
+    }
+
+    @Test
+    public void testSingleQueryInFlight() {
+        long now = TimeUtils.timeNow();
+
+        assertTrue(cache.shouldQuery(peer, now));
+        assertFalse(cache.shouldQuery(peer, now));
+        assertFalse(cache.shouldQuery(peer, now + RouteQueryCache.RETRY_INTERVAL - 1));
+        assertTrue(cache.isPending(peer, now + 1));
+        assertNotNull(cache.getPending(peer));
+        assertEquals(1, cache.getAllPending().size());
+
+        // Another destination is not affected.
+        assertTrue(cache.shouldQuery(IDFactory.newPeerID(PeerGroupID.defaultNetPeerGroupID), now));
+    }
+
+    @Test
+    public void testRetriesPerRound() {
+        long now = 0;
+        int queries = 0;
+
+        while (now < RouteQueryCache.ROUND_TIMEOUT) {
+            if (cache.shouldQuery(peer, now)) {
+                queries++;
+            }
+            now += RouteQueryCache.RETRY_INTERVAL / 4;
+        }
+
+        assertEquals(Math.min(RouteQueryCache.QUERIES_PER_ROUND,
+                (int) ((RouteQueryCache.ROUND_TIMEOUT - 1) / RouteQueryCache.RETRY_INTERVAL) + 1), queries);
+    }
+
+    @Test
+    public void testFailedRoundsBackOff() {
+        long now = 0;
+        long backoff = RouteQueryCache.MIN_BACKOFF;
+
+        for (int round = 0; round < 6; round++) {
+            assertTrue(cache.shouldQuery(peer, now));
+            assertFalse(cache.isFailed(peer, now));
+
+            now += RouteQueryCache.ROUND_TIMEOUT;
+
+            assertTrue(cache.isFailed(peer, now));
+            assertTrue(cache.isPending(peer, now));
+            assertFalse(cache.shouldQuery(peer, now + backoff - 1));
+            assertTrue(cache.isFailed(peer, now + backoff - 1));
+            assertFalse(cache.isFailed(peer, now + backoff));
+
+            now += backoff;
+            backoff = Math.min(backoff * 2, RouteQueryCache.MAX_BACKOFF);
+        }
+    }
+
+    @Test
+    public void testResolvedSuppressesQueries() {
+        assertTrue(cache.shouldQuery(peer, 0));
+        cache.resolved(peer, 10);
+
+        assertFalse(cache.isPending(peer, 10));
+        assertNull(cache.getPending(peer));
+        assertFalse(cache.shouldQuery(peer, 10 + RouteQueryCache.RESOLVED_TTL - 1));
+        assertTrue(cache.shouldQuery(peer, 10 + RouteQueryCache.RESOLVED_TTL));
+
+        // A route which broke may be looked for again right away.
+        cache.resolved(peer, 20);
+        cache.invalidate(peer);
+        assertTrue(cache.shouldQuery(peer, 21));
+    }
+
+    @Test
+    public void testResolvedResetsBackoff() {
+        assertTrue(cache.shouldQuery(peer, 0));
+        assertTrue(cache.isFailed(peer, RouteQueryCache.ROUND_TIMEOUT));
+
+        cache.resolved(peer, RouteQueryCache.ROUND_TIMEOUT);
+        assertFalse(cache.isFailed(peer, RouteQueryCache.ROUND_TIMEOUT));
+    }
+
+    @Test
+    public void testPurge() {
+        assertTrue(cache.shouldQuery(peer, 0));
+        cache.resolved(peer, 0);
+        assertEquals(1, cache.size());
+
+        cache.purge(RouteQueryCache.RESOLVED_TTL - 1);
+        assertEquals(1, cache.size());
+
+        cache.purge(RouteQueryCache.RESOLVED_TTL);
+        assertEquals(0, cache.size());
+
+        // Failures are remembered for as long as the longest backoff.
+        assertTrue(cache.shouldQuery(peer, 0));
+        long failedUntil = RouteQueryCache.ROUND_TIMEOUT + RouteQueryCache.MIN_BACKOFF;
+
+        cache.purge(failedUntil + RouteQueryCache.MAX_BACKOFF - 1);
+        assertEquals(1, cache.size());
+        cache.purge(failedUntil + RouteQueryCache.MAX_BACKOFF);
+        assertEquals(0, cache.size());
+    }
+}
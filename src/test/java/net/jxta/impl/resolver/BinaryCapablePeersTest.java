@@ -0,0 +1,74 @@
+package net.jxta.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.jxta.impl.util.FakeSystemClock;
+import net.jxta.impl.util.TimeUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryCapablePeersTest {
+
+    private FakeSystemClock clock;
+    private BinaryCapablePeers peers;
+
+    @Before
+    public void setUp() {
+        clock = new FakeSystemClock();
+        clock.currentTime = 100000L;
+        TimeUtils.setClock(clock);
+
+        peers = new BinaryCapablePeers(1000, 3);
+    }
+
+    @After
+    public void tearDown() {
+        TimeUtils.resetClock();
+    }
+
+    @Test
+    public void testAnnouncedPeersAreRemembered() {
+        assertFalse(peers.contains("urn:jxta:a"));
+
+        peers.add("urn:jxta:a");
+
+        assertTrue(peers.contains("urn:jxta:a"));
+        assertFalse(peers.contains("urn:jxta:b"));
+    }
+
+    @Test
+    public void testAnnouncementsExpire() {
+        peers.add("urn:jxta:a");
+        clock.currentTime += 600;
+        peers.add("urn:jxta:b");
+        clock.currentTime += 600;
+
+        assertFalse(peers.contains("urn:jxta:a"));
+        assertTrue(peers.contains("urn:jxta:b"));
+
+        // renewing extends the announcement
+        peers.add("urn:jxta:b");
+        clock.currentTime += 600;
+
+        assertTrue(peers.contains("urn:jxta:b"));
+    }
+
+    @Test
+    public void testOldestPeersAreForgottenFirst() {
+        peers.add("urn:jxta:a");
+        peers.add("urn:jxta:b");
+        peers.add("urn:jxta:c");
+        peers.add("urn:jxta:a");
+        peers.add("urn:jxta:d");
+
+        assertEquals(3, peers.size());
+        assertFalse(peers.contains("urn:jxta:b"));
+        assertTrue(peers.contains("urn:jxta:a"));
+        assertTrue(peers.contains("urn:jxta:c"));
+        assertTrue(peers.contains("urn:jxta:d"));
+    }
+}
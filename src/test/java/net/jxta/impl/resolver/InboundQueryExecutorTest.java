@@ -0,0 +1,155 @@
+package net.jxta.impl.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.jxta.impl.util.threads.TaskManager;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class InboundQueryExecutorTest {
+
+    private final TaskManager taskManager = new TaskManager();
+
+    private InboundQueryExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (null != executor) {
+            executor.stop();
+        }
+
+        taskManager.shutdown();
+    }
+
+    /**
+     * Occupies the single worker until released.
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute("blocker", new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException woken) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        return release;
+    }
+
+    private Runnable recorder(final List<String> order, final String name, final CountDownLatch done) {
+        return new Runnable() {
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void testHigherPriorityHandlersAreServedFirst() throws Exception {
+        Map<String, Integer> priorities = new HashMap<String, Integer>();
+
+        priorities.put("router", 10);
+        executor = new InboundQueryExecutor(taskManager, "test", 1, 10, priorities);
+
+        CountDownLatch release = blockWorker();
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(4);
+
+        assertEquals(InboundQueryExecutor.Outcome.QUEUED, executor.execute("discovery", recorder(order, "discovery1", done)));
+        executor.execute("peerinfo", recorder(order, "peerinfo", done));
+        executor.execute("router", recorder(order, "router", done));
+        executor.execute("discovery", recorder(order, "discovery2", done));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals("router", order.get(0));
+        assertEquals("discovery1", order.get(1));
+        assertEquals("peerinfo", order.get(2));
+        assertEquals("discovery2", order.get(3));
+    }
+
+    @Test
+    public void testFullQueueDropsQueries() throws Exception {
+        executor = new InboundQueryExecutor(taskManager, "test", 1, 2, Collections.<String, Integer>emptyMap());
+
+        CountDownLatch release = blockWorker();
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        assertEquals(InboundQueryExecutor.Outcome.QUEUED, executor.execute("discovery", recorder(order, "1", done)));
+        assertEquals(InboundQueryExecutor.Outcome.QUEUED, executor.execute("discovery", recorder(order, "2", done)));
+        assertEquals(InboundQueryExecutor.Outcome.DROPPED, executor.execute("discovery", recorder(order, "3", done)));
+
+        // other handlers have their own queue
+        assertEquals(InboundQueryExecutor.Outcome.QUEUED, executor.execute("router", recorder(order, "router", done)));
+
+        assertEquals(2, executor.getQueueLength("discovery"));
+        assertEquals(1, executor.getDroppedCount("discovery"));
+        assertEquals(2, executor.getDelayedCount("discovery"));
+        assertEquals(0, executor.getDroppedCount("router"));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(order.contains("3"));
+    }
+
+    @Test
+    public void testIdleWorkerDispatchesImmediately() throws Exception {
+        executor = new InboundQueryExecutor(taskManager, "test", 2, 10, Collections.<String, Integer>emptyMap());
+
+        CountDownLatch done = new CountDownLatch(1);
+
+        // wait for the workers to become idle
+        long deadline = System.currentTimeMillis() + 5000;
+        InboundQueryExecutor.Outcome outcome;
+
+        do {
+            Thread.sleep(10);
+            outcome = executor.execute("discovery", recorder(new ArrayList<String>(), "1", done));
+        } while ((InboundQueryExecutor.Outcome.DISPATCHED != outcome) && (System.currentTimeMillis() < deadline));
+
+        assertEquals(InboundQueryExecutor.Outcome.DISPATCHED, outcome);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStoppedExecutorDropsQueries() {
+        executor = new InboundQueryExecutor(taskManager, "test", 1, 10, Collections.<String, Integer>emptyMap());
+        executor.stop();
+
+        assertEquals(InboundQueryExecutor.Outcome.DROPPED, executor.execute("discovery", new Runnable() {
+            public void run() {
+            }
+        }));
+    }
+
+    @Test
+    public void testParsePriorities() {
+        Map<String, Integer> priorities = InboundQueryExecutor.parsePriorities("EndpointRouter=10, urn:jxta:uuid-1=5,broken,bad=x,");
+
+        assertEquals(2, priorities.size());
+        assertEquals(Integer.valueOf(10), priorities.get("EndpointRouter"));
+        assertEquals(Integer.valueOf(5), priorities.get("urn:jxta:uuid-1"));
+    }
+}
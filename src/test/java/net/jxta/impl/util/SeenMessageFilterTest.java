@@ -0,0 +1,125 @@
+package net.jxta.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeenMessageFilterTest {
+
+    private FakeSystemClock clock;
+
+    @Before
+    public void setUp() {
+        clock = new FakeSystemClock();
+        clock.currentTime = 100000L;
+        TimeUtils.setClock(clock);
+    }
+
+    @After
+    public void tearDown() {
+        TimeUtils.resetClock();
+    }
+
+    @Test
+    public void testAddDetectsDuplicates() {
+        SeenMessageFilter<String> filter = new SeenMessageFilter<String>(4);
+
+        assertFalse(filter.contains("a"));
+        assertTrue(filter.add("a"));
+        assertTrue(filter.contains("a"));
+        assertFalse(filter.add("a"));
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    public void testOldestIsEvictedWhenFull() {
+        SeenMessageFilter<String> filter = new SeenMessageFilter<String>(3);
+
+        filter.add("a");
+        filter.add("b");
+        filter.add("c");
+        filter.add("d");
+
+        assertFalse(filter.contains("a"));
+        assertTrue(filter.contains("b"));
+        assertTrue(filter.contains("d"));
+        assertEquals(3, filter.size());
+
+        assertTrue(filter.add("a"));
+        assertFalse(filter.contains("b"));
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        SeenMessageFilter<String> filter = new SeenMessageFilter<String>(10, 1000);
+
+        filter.add("a");
+        clock.currentTime += 1000;
+        assertTrue(filter.contains("a"));
+        assertFalse(filter.add("a"));
+
+        clock.currentTime += 1;
+        assertFalse(filter.contains("a"));
+        assertTrue(filter.add("a"));
+        assertTrue(filter.contains("a"));
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    public void testClear() {
+        SeenMessageFilter<String> filter = new SeenMessageFilter<String>(2);
+
+        filter.add("a");
+        filter.add("b");
+        filter.clear();
+
+        assertEquals(0, filter.size());
+        assertTrue(filter.add("a"));
+        assertTrue(filter.add("c"));
+        assertTrue(filter.contains("a"));
+    }
+
+    @Test
+    public void testConcurrentAddsAcceptEachIdOnce() throws Exception {
+        final SeenMessageFilter<Integer> filter = new SeenMessageFilter<Integer>(10000);
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+
+        for (int eachThread = 0; eachThread < threads.length; eachThread++) {
+            threads[eachThread] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException woken) {
+                        return;
+                    }
+
+                    for (int id = 0; id < 5000; id++) {
+                        if (filter.add(id)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[eachThread].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5000, accepted.get());
+        assertEquals(5000, filter.size());
+    }
+}
@@ -0,0 +1,81 @@
+package net.jxta.impl.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SizeClassedByteBufferPoolTest {
+
+    private SizeClassedByteBufferPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new SizeClassedByteBufferPool(16 * 1024, 8 * 1024);
+    }
+
+    @Test
+    public void testAcquireRoundsUpToSizeClass() {
+        assertEquals(1024, pool.acquire(1).capacity());
+        assertEquals(1024, pool.acquire(1024).capacity());
+        assertEquals(2048, pool.acquire(1025).capacity());
+        assertEquals(8192, pool.acquire(8192).capacity());
+        assertTrue(pool.acquire(100).isDirect());
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() {
+        ByteBuffer first = pool.acquire(3000);
+        first.put((byte) 1);
+        pool.release(first);
+        assertEquals(4096, pool.getRetainedBytes());
+
+        ByteBuffer second = pool.acquire(4000);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void testOversizedRequestsAreNotPooled() {
+        ByteBuffer big = pool.acquire(10000);
+        assertFalse(big.isDirect());
+        assertEquals(10000, big.capacity());
+
+        pool.release(big);
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testRetainedBytesAreBounded() {
+        ByteBuffer one = pool.acquire(8192);
+        ByteBuffer two = pool.acquire(8192);
+        ByteBuffer three = pool.acquire(8192);
+
+        pool.release(one);
+        pool.release(two);
+        pool.release(three);
+
+        assertEquals(16 * 1024, pool.getRetainedBytes());
+        assertSame(one, pool.acquire(8192));
+        assertSame(two, pool.acquire(8192));
+        assertNotSame(three, pool.acquire(8192));
+    }
+
+    @Test
+    public void testForeignBuffersAreIgnored() {
+        pool.release(ByteBuffer.allocate(1024));
+        pool.release(ByteBuffer.allocateDirect(1500));
+        pool.release(ByteBuffer.allocateDirect(1024).asReadOnlyBuffer());
+
+        assertEquals(0, pool.getRetainedBytes());
+    }
+}
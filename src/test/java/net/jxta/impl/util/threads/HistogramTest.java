@@ -0,0 +1,70 @@
+package net.jxta.impl.util.threads;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, Histogram.bucketOf(0));
+        assertEquals(1, Histogram.bucketOf(1));
+        assertEquals(2, Histogram.bucketOf(2));
+        assertEquals(2, Histogram.bucketOf(3));
+        assertEquals(3, Histogram.bucketOf(4));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+
+        for (int bucket = 0; bucket < Histogram.BUCKETS - 1; bucket++) {
+            assertEquals(bucket, Histogram.bucketOf(Histogram.getBucketUpperBound(bucket)));
+            assertEquals(bucket + 1, Histogram.bucketOf(Histogram.getBucketUpperBound(bucket) + 1));
+        }
+    }
+
+    @Test
+    public void testRecord() {
+        Histogram histogram = new Histogram();
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotal());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.getMean());
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(0, new Histogram().getPercentile(50));
+    }
+
+    @Test
+    public void testMergeAndDiff() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+
+        first.record(10);
+        second.record(1000);
+        second.record(20);
+
+        Histogram merged = first.copy();
+
+        merged.merge(second);
+
+        assertEquals(3, merged.getCount());
+        assertEquals(1030, merged.getTotal());
+        assertEquals(1000, merged.getMax());
+
+        merged.diff(first);
+
+        assertEquals(2, merged.getCount());
+        assertEquals(1020, merged.getTotal());
+        assertEquals(0, merged.getBucketCount(Histogram.bucketOf(10)));
+
+        Histogram restored = new Histogram(merged.getBucketCounts(), merged.getTotal(), merged.getMax());
+
+        assertEquals(merged.getCount(), restored.getCount());
+        assertEquals(merged.getPercentile(50), restored.getPercentile(50));
+    }
+}
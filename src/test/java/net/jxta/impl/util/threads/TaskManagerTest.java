@@ -1,6 +1,11 @@
 package net.jxta.impl.util.threads;
 
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.*;
 
 import java.util.Properties;
@@ -21,6 +26,8 @@ public class TaskManagerTest {
 		System.clearProperty(TaskManager.SCHEDULED_POOL_SIZE_SYSPROP);
 		System.clearProperty(TaskManager.IDLE_THREAD_TIMEOUT_SYSPROP);
 		System.clearProperty(TaskManager.MAX_WORKER_POOL_SIZE_SYSPROP);
+		System.clearProperty(TaskManager.VIRTUAL_THREADS_SYSPROP);
+		System.clearProperty(TaskManager.METRICS_SYSPROP);
 	}
 	
 	@After
@@ -168,4 +175,149 @@ public class TaskManagerTest {
 
     }
 
+    @Test
+    public void testVirtualThreads_hasDefault() {
+        assertEquals(TaskManager.DEFAULT_VIRTUAL_THREADS, TaskManager.getVirtualThreads(null));
+    }
+
+    @Test
+    public void testVirtualThreads_usesSysPropWhenAvailable() {
+        setSysProp(TaskManager.VIRTUAL_THREADS_SYSPROP, "true");
+        assertEquals(VirtualThreads.isAvailable(), TaskManager.getVirtualThreads(null));
+    }
+
+    @Test
+    public void testVirtualThreads_specifiedAsParameter() {
+        setSysProp(TaskManager.VIRTUAL_THREADS_SYSPROP, "true");
+        assertFalse(TaskManager.getVirtualThreads(false));
+        assertEquals(VirtualThreads.isAvailable(), TaskManager.getVirtualThreads(true));
+    }
+
+    @Test
+    public void testNewThread() throws Exception {
+        for (boolean virtual : new boolean[] {false, true}) {
+            TaskManager t = new TaskManager(null, null, null, null, virtual);
+            final Thread[] ranIn = new Thread[1];
+
+            Thread thread = t.newThread(new Runnable() {
+                public void run() {
+                    ranIn[0] = Thread.currentThread();
+                }
+            }, "test thread");
+
+            assertEquals("test thread", thread.getName());
+            assertTrue(thread.isDaemon());
+            assertEquals(virtual && VirtualThreads.isAvailable(), t.isUsingVirtualThreads());
+
+            thread.start();
+            thread.join(10000);
+
+            assertSame(thread, ranIn[0]);
+
+            t.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorServiceRunsTasks() throws Exception {
+        for (boolean virtual : new boolean[] {false, true}) {
+            TaskManager t = new TaskManager(null, null, null, null, virtual);
+
+            assertEquals(Integer.valueOf(1), t.getExecutorService().submit(new Callable<Integer>() {
+                public Integer call() {
+                    return 1;
+                }
+            }).get(10, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(2), t.getCachedExecutorService().submit(new Callable<Integer>() {
+                public Integer call() {
+                    return 2;
+                }
+            }).get(10, TimeUnit.SECONDS));
+
+            t.shutdown();
+        }
+    }
+
+    private static class CountingTask implements Callable<Integer> {
+        public Integer call() {
+            return 1;
+        }
+    }
+
+    @Test
+    public void testMetrics_disabledByDefault() throws Exception {
+        TaskManager t = new TaskManager();
+
+        t.getExecutorService().submit(new CountingTask()).get(10, TimeUnit.SECONDS);
+
+        assertFalse(t.getMetrics().isEnabled());
+        assertTrue(t.getMetrics().getTaskTypes().isEmpty());
+        assertEquals(3, t.getMetrics().getPools().size());
+
+        t.shutdown();
+    }
+
+    @Test
+    public void testMetrics_recordsTasks() throws Exception {
+        setSysProp(TaskManager.METRICS_SYSPROP, "true");
+        TaskManager t = new TaskManager();
+
+        t.getExecutorService().submit(new CountingTask()).get(10, TimeUnit.SECONDS);
+        t.getExecutorService().submit(new CountingTask()).get(10, TimeUnit.SECONDS);
+        t.getScheduledExecutorService().schedule(new CountingTask(), 1, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+
+        Map<String, TaskMetrics.TaskType> taskTypes = t.getMetrics().getTaskTypes();
+
+        // only the task itself is recorded, not the future which wraps it
+        assertEquals(1, taskTypes.size());
+
+        TaskMetrics.TaskType counting = taskTypes.get(CountingTask.class.getName());
+
+        assertEquals(2, counting.getQueueTime().getCount());
+        assertEquals(3, counting.getRunTime().getCount());
+        assertEquals(0, counting.getRejectedCount());
+
+        TaskMetrics.PoolState worker = t.getMetrics().getPools().get("JxtaWorker");
+
+        assertTrue(worker.getPoolSize() > 0);
+        assertEquals(worker.getPoolSize(), worker.getActiveCount() + worker.getIdleCount());
+
+        t.shutdown();
+    }
+
+    @Test
+    public void testMetrics_countsRejectedTasks() throws Exception {
+        setSysProp(TaskManager.METRICS_SYSPROP, "true");
+        TaskManager t = new TaskManager(1, 1, null, null, false);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        t.getExecutorService().execute(new Runnable() {
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        running.await(10, TimeUnit.SECONDS);
+
+        assertEquals(1, t.getMetrics().getPools().get("JxtaWorker").getActiveCount());
+
+        try {
+            t.getExecutorService().submit(new CountingTask());
+            fail("the task should have been rejected");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+
+        release.countDown();
+
+        assertEquals(1, t.getMetrics().getTaskTypes().get(CountingTask.class.getName()).getRejectedCount());
+
+        t.shutdown();
+    }
+
 }
@@ -0,0 +1,157 @@
+package net.jxta.impl.xindice.core.filer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import net.jxta.impl.xindice.core.data.Key;
+import net.jxta.impl.xindice.core.data.Value;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PagedTest {
+
+    private static final int RECORDS = 600;
+
+    private File dir;
+    private BTreeFiler filer;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("paged", "test");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+
+        filer = openFiler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        filer.close();
+
+        for (File each : dir.listFiles()) {
+            each.delete();
+        }
+        dir.delete();
+    }
+
+    private BTreeFiler openFiler() throws Exception {
+        return openFiler(false);
+    }
+
+    private BTreeFiler openFiler(boolean memoryMapped) throws Exception {
+        BTreeFiler result = new BTreeFiler();
+
+        result.setSync(false);
+        result.setMemoryMapped(memoryMapped);
+        result.setLocation(dir.getAbsolutePath(), "test");
+        if (!result.open()) {
+            result.create();
+            result.open();
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testRepeatedReadsAreServedFromCache() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            filer.writeRecord(new Key("key" + i), new Value("value" + i));
+        }
+        filer.flush();
+
+        filer.readRecord(new Key("key7"));
+        long misses = filer.getCacheMisses();
+        long hits = filer.getCacheHits();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new Value("value7"), filer.readRecord(new Key("key7")).getValue());
+        }
+
+        assertEquals(misses, filer.getCacheMisses());
+        assertTrue(filer.getCacheHits() >= hits + 100);
+    }
+
+    @Test
+    public void testPageCacheSizeCanBeChanged() throws Exception {
+        filer.setPageCacheSize(0);
+        assertEquals(0, filer.getPageCacheSize());
+
+        filer.writeRecord(new Key("a"), new Value("b"));
+        assertEquals(new Value("b"), filer.readRecord(new Key("a")).getValue());
+
+        filer.setPageCacheSize(16);
+        assertEquals(16, filer.getPageCacheSize());
+    }
+
+    @Test
+    public void testWriteBehindRecordsSurviveReopen() throws Exception {
+        assertTrue(filer.isWriteBehind());
+        checkRecordsSurviveReopen();
+    }
+
+    @Test
+    public void testSynchronousFlushRecordsSurviveReopen() throws Exception {
+        filer.setWriteBehind(false);
+        assertFalse(filer.isWriteBehind());
+        checkRecordsSurviveReopen();
+    }
+
+    @Test
+    public void testMemoryMappedRecordsSurviveReopen() throws Exception {
+        filer.close();
+        filer = openFiler(true);
+        assertTrue(filer.isMemoryMapped());
+        checkRecordsSurviveReopen();
+    }
+
+    @Test
+    public void testMemoryMappedFileIsReadableWithoutMapping() throws Exception {
+        filer.close();
+        filer = openFiler(true);
+
+        for (int i = 0; i < 100; i++) {
+            filer.writeRecord(new Key("key" + i), new Value("value" + i));
+        }
+
+        filer.close();
+        filer = openFiler(false);
+
+        assertEquals(100, filer.getRecordCount());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new Value("value" + i), filer.readRecord(new Key("key" + i)).getValue());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMemoryMappedCannotChangeWhileOpen() throws Exception {
+        filer.setMemoryMapped(true);
+    }
+
+    private void checkRecordsSurviveReopen() throws Exception {
+        Random random = new Random(42);
+        Value[] values = new Value[RECORDS];
+
+        // values larger than a page, so that many more pages than the dirty limit are written
+        for (int i = 0; i < RECORDS; i++) {
+            byte[] data = new byte[2048 + random.nextInt(4096)];
+
+            random.nextBytes(data);
+            values[i] = new Value(data);
+            filer.writeRecord(new Key("key" + i), values[i]);
+        }
+
+        filer.close();
+        filer = openFiler();
+
+        assertEquals(RECORDS, filer.getRecordCount());
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals(values[i], filer.readRecord(new Key("key" + i)).getValue());
+        }
+    }
+}
@@ -187,6 +187,9 @@ public class ContentServer {
              * back a list of ContentShare objects.  Pragmatically, we
              * are likely to get one ContentShare per ContentProvider
              * implementation, though this isn't necessarily true.
+             * Providers may read the whole file before returning, for
+             * instance to include a block manifest in their advertisement,
+             * so sharing a large file can take a while.
              */
             List<ContentShare> shares = service.shareContent(content);
 